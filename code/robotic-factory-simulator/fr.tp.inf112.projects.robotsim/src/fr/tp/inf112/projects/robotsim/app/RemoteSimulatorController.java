@@ -5,26 +5,29 @@ import fr.tp.inf112.projects.canvas.controller.Observer;
 import fr.tp.inf112.projects.canvas.model.Canvas;
 import fr.tp.inf112.projects.canvas.model.CanvasPersistenceManager;
 import fr.tp.inf112.projects.robotsim.model.Factory;
-import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
-import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.FactoryBinaryCodec;
+import fr.tp.inf112.projects.robotsim.model.FactoryDelta;
+import fr.tp.inf112.projects.robotsim.model.FactoryJsonCodec;
+import fr.tp.inf112.projects.robotsim.model.FactorySimulationEventStream;
+import fr.tp.inf112.projects.robotsim.model.FactorySnapshot;
 /* Java related packages */
 import java.net.http.*;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.logging.*;
 import javax.swing.SwingUtilities;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
-import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
 
 public class RemoteSimulatorController extends SimulatorController {
 
+    /* Longest time a poll waits for the simulation to change, idle simulations cost one request per period */
+    private static final long POLL_WAIT_MILLIS = 20000;
+
     private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor();
     /* Used to connect to the microservice of simulation */
     private HttpClient httpClient;
@@ -33,6 +36,16 @@ public class RemoteSimulatorController extends SimulatorController {
     URI startSimulationURI     = null;
     URI stopSimulationURI      = null;
     URI retrieveSimulationURI  = null;
+    URI streamSimulationURI    = null;
+    /* Server-Sent Event stream of the simulation, null if not streaming */
+    private FactorySimulationEventStream eventStream;
+    /* Tick of the displayed factory, older keyframes and deltas are ignored */
+    private long modelTick = -1;
+    /* Tick of the displayed keyframe, deltas keyed by component may arrive out of tick order after it */
+    private long keyframeTick = -1;
+    /* Version of the last factory retrieved, sent back so that the server only answers with what changed */
+    private String remoteETag;
+    private String remoteTick;
 
     private static final Logger LOGGER = Logger.getLogger(RemoteSimulatorController.class.getName());
 
@@ -47,7 +60,8 @@ public class RemoteSimulatorController extends SimulatorController {
         this.startSimulationURI = URI.create("http://" + remoteAddr + ":" + remotePort + "/simulation/start/" + startFactoryId);
         this.stopSimulationURI  = URI.create("http://" + remoteAddr + ":" + remotePort + "/simulation/stop/" + startFactoryId);
         this.retrieveSimulationURI = URI.create("http://" + remoteAddr + ":" + remotePort + "/simulation/retrieve/" + startFactoryId);
-        super.factoryModel  = getFactoryFromRemote();
+        this.streamSimulationURI   = URI.create("http://" + remoteAddr + ":" + remotePort + "/simulation/stream/" + startFactoryId);
+        super.factoryModel  = getFactoryFromRemote(0);
     }
 
     /** Method to extract a Factory model from a JSON text.
@@ -58,20 +72,8 @@ public class RemoteSimulatorController extends SimulatorController {
     {
         Factory factory = null;
 
-        // Build a type validator similar to your test so polymorphic type info is allowed
-        PolymorphicTypeValidator ptv = BasicPolymorphicTypeValidator.builder()
-                .allowIfSubType(PositionedShape.class.getPackageName())
-                .allowIfSubType(Component.class.getPackageName())
-                .allowIfSubType("fr.tp.inf112.projects.canvas.model.impl")
-                .allowIfSubType("java.util")
-                .build();
-
-        ObjectMapper mapper = new ObjectMapper()
-                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-        mapper.activateDefaultTyping(ptv, ObjectMapper.DefaultTyping.NON_FINAL);
-
         try {
-            factory = mapper.readValue(body, Factory.class);
+            factory = FactoryJsonCodec.readFactory(body);
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Failed to parse Factory from JSON", e);
             return null;
@@ -83,25 +85,62 @@ public class RemoteSimulatorController extends SimulatorController {
     /**
      * Method to retrieve the factory model from the remote simulation server.
      *
-     * @return The factory model retrieved from the remote simulation server.
+     * The version of the last factory retrieved is sent along, so that the server answers with no
+     * content if it did not change, or with the delta of the ticks since then, which is applied to
+     * the displayed factory.
+     *
+     * @param waitMs time the server may hold the request until the factory changes, 0 to answer at once.
+     * @return The factory model retrieved from the remote simulation server, null if it did not
+     *         change, was updated by a delta or could not be retrieved.
      */
-    private Factory getFactoryFromRemote() {
+    private Factory getFactoryFromRemote(final long waitMs) {
         LOGGER.info("Building request to get the factory from the remote server: " + remoteAddr + ":" + remotePort);
-        HttpRequest getReqRetrieveFact = HttpRequest.newBuilder()
-                .uri(retrieveSimulationURI)
-                .GET()
-                .build();
+        final URI uri = remoteTick == null ? retrieveSimulationURI
+                                           : URI.create(retrieveSimulationURI + "?since=" + remoteTick + "&wait=" + waitMs);
+
+        /* Prefer the binary format, servers not supporting it answer with JSON */
+        HttpRequest.Builder getReqBuilder = HttpRequest.newBuilder()
+                .uri(uri)
+                .header("Accept", FactoryBinaryCodec.MEDIA_TYPE + ", " + FactoryJsonCodec.DELTA_MEDIA_TYPE + ", application/json;q=0.9")
+                .GET();
+        if (remoteETag != null) {
+            getReqBuilder.header("If-None-Match", remoteETag);
+        }
+        HttpRequest getReqRetrieveFact = getReqBuilder.build();
 
         LOGGER.info("Sending request to get the factory from the remote server: " + remoteAddr + ":" + remotePort);
         try {
-            HttpResponse<String> resp = httpClient.send(getReqRetrieveFact, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<byte[]> resp = httpClient.send(getReqRetrieveFact, HttpResponse.BodyHandlers.ofByteArray());
+
+            /* The displayed factory is still the current one */
+            if (resp.statusCode() == 304) {
+                return null;
+            }
 
             if (resp.statusCode() != 200) {
                 LOGGER.severe("Remote server returned status: " + resp.statusCode());
                 return null;
             }
 
-            String body = resp.body();
+            remoteTick = resp.headers().firstValue(FactorySnapshot.TICK_HEADER).orElse(null);
+
+            final String contentType = resp.headers().firstValue("Content-Type").orElse("");
+            if (contentType.startsWith(FactoryJsonCodec.DELTA_MEDIA_TYPE)) {
+                /* Applied after the factories retrieved before it */
+                final String jsonDelta = new String(resp.body(), StandardCharsets.UTF_8);
+                SwingUtilities.invokeLater(() -> applyJsonFactoryDelta(jsonDelta));
+                return null;
+            }
+
+            remoteETag = resp.headers().firstValue("ETag").orElse(null);
+
+            if (contentType.startsWith(FactoryBinaryCodec.MEDIA_TYPE)) {
+                Factory factory = FactoryBinaryCodec.decode(resp.body());
+                LOGGER.info("Successfully decoded binary factory of " + resp.body().length + " bytes from remote server");
+                return factory;
+            }
+
+            String body = resp.body() == null ? null : new String(resp.body(), StandardCharsets.UTF_8);
             if (body == null || body.isBlank()) {
                 LOGGER.warning("Empty response body from remote server");
                 return null;
@@ -204,11 +243,14 @@ public class RemoteSimulatorController extends SimulatorController {
     /* ToDo: 1. Get the JSON text from FactorySimulatorEventConsumer
              2. Set the factory model to the JSON parsed into factory*/
     public void startRemotePolling(long initialDelayMs, long periodMs) {
-        poller.scheduleAtFixedRate(() -> {
+        /* A poll held by the server delays the next one instead of queuing the missed ones */
+        poller.scheduleWithFixedDelay(() -> {
             try {
-                final Factory remote = getFactoryFromRemote();
+                /* Held by the server until the simulation changes, so idle simulations are not sent again */
+                final Factory remote = getFactoryFromRemote(POLL_WAIT_MILLIS);
                 if (remote != null) {
-                    SwingUtilities.invokeLater(() -> setFactoryModel(remote));
+                    final String tick = remoteTick;
+                    SwingUtilities.invokeLater(() -> setRetrievedFactory(remote, tick));
                 }
             } catch (Throwable t) {
                 LOGGER.log(Level.WARNING, "Remote polling failed", t);
@@ -216,10 +258,49 @@ public class RemoteSimulatorController extends SimulatorController {
         }, initialDelayMs, periodMs, TimeUnit.MILLISECONDS);
     }
 
+    /* Called on the event dispatch thread, where the deltas retrieved next are applied after it */
+    private synchronized void setRetrievedFactory(final Factory factory,
+                                                  final String remoteTick) {
+        if (remoteTick == null) {
+            setFactoryModel(factory);
+            return;
+        }
+
+        final long tick = Long.parseLong(remoteTick);
+        /* The server restarted its simulation, the ticks started again */
+        if (tick < modelTick) {
+            modelTick = -1;
+        }
+        setFactoryKeyframe(factory, tick);
+    }
+
     public void stopRemotePolling() {
         poller.shutdownNow();
     }
 
+    /**
+     * Method to receive the changes of the simulation pushed by the remote server as Server-Sent
+     * Events, instead of polling the whole factory or consuming Kafka.
+     * @param maxFps maximum number of updates per second sent by the server.
+     */
+    public synchronized void startRemoteStreaming(final int maxFps) {
+        if (eventStream != null) {
+            return;
+        }
+
+        eventStream = new FactorySimulationEventStream(this, URI.create(streamSimulationURI + "?maxFps=" + maxFps));
+        final Thread streamThread = new Thread(eventStream::consumeEvents, "simulation-event-stream");
+        streamThread.setDaemon(true);
+        streamThread.start();
+    }
+
+    public synchronized void stopRemoteStreaming() {
+        if (eventStream != null) {
+            eventStream.stop();
+            eventStream = null;
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -247,4 +328,71 @@ public class RemoteSimulatorController extends SimulatorController {
             LOGGER.warning("Received invalid JSON factory model");
         }
     }
+
+    /**
+     * Method to set the factory model from a JSON keyframe, unless a more recent model is displayed.
+     * @param jsonFactory
+     * @param tick tick of the simulation at which the keyframe was taken.
+     */
+    public synchronized void setJsonFactoryKeyframe(final String jsonFactory, final long tick) {
+        if (tick < modelTick) {
+            return;
+        }
+
+        Factory factory = extractFactoryFromJson(jsonFactory);
+        if (factory != null) {
+            setFactoryKeyframe(factory, tick);
+        }
+        else {
+            LOGGER.warning("Received invalid JSON factory keyframe");
+        }
+    }
+
+    /**
+     * Method to set the factory model from a decoded keyframe, unless a more recent model is displayed.
+     * @param factory
+     * @param tick tick of the simulation at which the keyframe was taken.
+     */
+    public synchronized void setFactoryKeyframe(final Factory factory, final long tick) {
+        if (tick < modelTick) {
+            return;
+        }
+
+        setFactoryModel(factory);
+        modelTick = tick;
+        keyframeTick = tick;
+    }
+
+    /**
+     * Method to move the components of the displayed factory as described by a JSON delta.
+     * @param jsonDelta
+     */
+    public synchronized void applyJsonFactoryDelta(final String jsonDelta) {
+        final FactoryDelta delta;
+        try {
+            delta = FactoryJsonCodec.readDelta(jsonDelta);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Received invalid JSON factory delta", e);
+            return;
+        }
+
+        applyFactoryDelta(delta);
+    }
+
+    /**
+     * Method to move the components of the displayed factory as described by a delta, unless a more
+     * recent model is displayed.
+     * @param delta
+     */
+    public synchronized void applyFactoryDelta(final FactoryDelta delta) {
+        final Factory factory = (Factory) getCanvas();
+        if (factory == null || delta.getTick() <= keyframeTick) {
+            return;
+        }
+
+        if (!factory.applyDelta(delta)) {
+            LOGGER.warning("Delta of tick " + delta.getTick() + " refers to unknown components, waiting for the next keyframe");
+        }
+        modelTick = Math.max(modelTick, delta.getTick());
+    }
 }
@@ -134,6 +134,11 @@ public class SimulatorApplication {
                 /*
                 controller.startRemotePolling(0, 500);
                 */
+
+                /* Uncomment for updates pushed by the remote service, instead of kafka */
+                /*
+                controller.startRemoteStreaming(20);
+                */
                 new Thread () {
                     @Override
                     public void run() {
@@ -14,6 +14,20 @@ public class Battery implements Serializable {
 		this.capacity = capacity;
 		level = capacity;
 	}
+
+	Battery(final float capacity,
+			final float level) {
+		this.capacity = capacity;
+		this.level = level;
+	}
+
+	float getCapacity() {
+		return capacity;
+	}
+
+	float getLevel() {
+		return level;
+	}
 	
 	public float consume(float energy) {
 		level-= energy;
@@ -0,0 +1,99 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+/* Java related packages */
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of the serialized images of the canvases served by the persistence
+ * server, keyed by canvas id and bounded by the total size of the images.
+ *
+ * Images are shared with the callers and must not be modified. An image read from disk is only
+ * cached if no canvas was saved while it was read, so that a load racing with a save never
+ * brings back the previous version.
+ */
+final class CanvasImageCache {
+
+    private final long maxBytes;
+
+    /* Iterated from the least to the most recently used */
+    private final LinkedHashMap<String, byte[]> images = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long bytes;
+
+    /* Incremented by every invalidation */
+    private long generation;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    CanvasImageCache(final long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative.");
+        }
+
+        this.maxBytes = maxBytes;
+    }
+
+    /* Image of the given canvas, null if it is not cached */
+    synchronized byte[] get(final String canvasId) {
+        final byte[] image = images.get(canvasId);
+
+        if (image == null) {
+            misses++;
+        }
+        else {
+            hits++;
+        }
+
+        return image;
+    }
+
+    /* To be read before reading an image from disk and given back to put */
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /* Caches the image of a canvas read from disk while the cache was at the given generation */
+    synchronized void put(final String canvasId,
+                          final byte[] image,
+                          final long readGeneration) {
+        if (readGeneration != generation || image.length > maxBytes) {
+            return;
+        }
+
+        final byte[] previous = images.put(canvasId, image);
+        bytes += image.length - (previous == null ? 0 : previous.length);
+
+        final Iterator<Map.Entry<String, byte[]>> eldest = images.entrySet().iterator();
+        while (bytes > maxBytes) {
+            bytes -= eldest.next().getValue().length;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /* Called when a canvas is saved */
+    synchronized void invalidate(final String canvasId) {
+        generation++;
+
+        final byte[] image = images.remove(canvasId);
+        if (image != null) {
+            bytes -= image.length;
+        }
+    }
+
+    synchronized long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "CanvasImageCache [images=" + images.size() + ", bytes=" + bytes + ", maxBytes=" + maxBytes +
+               ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "]";
+    }
+}
@@ -74,6 +74,7 @@ public abstract class Component implements Figure, Serializable {
 
 	protected boolean setxCoordinate(int xCoordinate) {
 		if ( getPositionedShape().setxCoordinate( xCoordinate ) ) {
+			indexMove();
 			notifyObservers();
 
 			return true;
@@ -90,6 +91,7 @@ public abstract class Component implements Figure, Serializable {
 
 	protected boolean setyCoordinate(final int yCoordinate) {
 		if (getPositionedShape().setyCoordinate(yCoordinate) ) {
+			indexMove();
 			notifyObservers();
 
 			return true;
@@ -98,8 +100,17 @@ public abstract class Component implements Figure, Serializable {
 		return false;
 	}
 
+	/* Flags of the state shown by the style of the component, restored when applying deltas */
+	int getState() {
+		return 0;
+	}
+
+	void setState(final int state) {
+		// Stateless by default
+	}
+
 	protected void notifyObservers() {
-		getFactory().notifyObservers();
+		getFactory().componentChanged(this);
 	}
 
 	public String getName() {
@@ -122,10 +133,29 @@ public abstract class Component implements Figure, Serializable {
 		return getPositionedShape().getHeight();
 	}
 
+	/* Keeps the spatial index of the factory in sync when the component is moved */
+	private void indexMove() {
+		if (getFactory() != null) {
+			getFactory().componentMoved(this);
+		}
+	}
+
+	/* Box enclosing everything the component overlays, used to index it spatially */
+    @JsonIgnore // derived from positionedShape
+	public PositionedShape getBoundingBox() {
+		return getPositionedShape();
+	}
+
 	public boolean behave() {
 		return false;
 	}
 
+	/* Ticks until the component needs to behave again for the event-driven engine, 0 if it has
+	   nothing to do until it is woken up, as static components */
+	int getActivationDelay() {
+		return 0;
+	}
+
     @JsonIgnore // Ignore default value
 	public boolean isMobile() {
 		return false;
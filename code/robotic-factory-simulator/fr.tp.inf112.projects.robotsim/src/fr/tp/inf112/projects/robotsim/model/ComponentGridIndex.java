@@ -0,0 +1,202 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+/* Java related packages */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/* Robotsim related packages */
+import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
+
+/**
+ * Uniform bucket grid over the bounding boxes of the components of a factory.
+ *
+ * Static components are bucketed once in their own grid. Mobile components live in a FleetStore
+ * whose grid is updated incrementally when they move, so that collision queries only look at the
+ * components registered in the few buckets covered by the queried shape instead of scanning the
+ * whole factory. The exact overlay tests of the static components are still done by the
+ * components themselves.
+ *
+ * Not thread safe: queries may run concurrently, updates must not run concurrently with anything.
+ */
+class ComponentGridIndex {
+
+    /* Side of a bucket, in factory coordinates */
+    static final int DEFAULT_CELL_SIZE = 20;
+
+    private final int cellSize;
+
+    private final int columns;
+
+    private final int rows;
+
+    private final List<List<Component>> staticCells;
+
+    /* Buckets each static component is registered in, so that it is moved without scanning the grid */
+    private final Map<Component, int[]> staticRanges;
+
+    private final FleetStore mobileComponents;
+
+    ComponentGridIndex(final int width,
+                       final int height,
+                       final int cellSize) {
+        this.cellSize = cellSize;
+        this.columns  = Math.max(1, (width + cellSize - 1) / cellSize);
+        this.rows     = Math.max(1, (height + cellSize - 1) / cellSize);
+
+        staticCells      = newCells(columns * rows);
+        staticRanges     = new IdentityHashMap<>();
+        mobileComponents = new FleetStore(columns, rows, cellSize);
+    }
+
+    void add(final Component component) {
+        if (component.isMobile()) {
+            mobileComponents.add(component);
+        }
+        else {
+            final int[] range = cellRange(component.getBoundingBox());
+            addToCells(staticCells, component, range);
+            staticRanges.put(component, range);
+        }
+    }
+
+    void remove(final Component component) {
+        if (component.isMobile()) {
+            mobileComponents.remove(component);
+        }
+        else {
+            final int[] range = staticRanges.remove(component);
+
+            if (range != null) {
+                removeFromCells(staticCells, component, range);
+            }
+        }
+    }
+
+    /* Re-buckets a component after its position changed, does nothing if it stays in the same buckets */
+    void update(final Component component) {
+        if (!component.isMobile()) {
+            final int[] oldRange = staticRanges.get(component);
+            final int[] newRange = cellRange(component.getBoundingBox());
+
+            if (Arrays.equals(oldRange, newRange)) {
+                return;
+            }
+
+            if (oldRange != null) {
+                removeFromCells(staticCells, component, oldRange);
+            }
+
+            addToCells(staticCells, component, newRange);
+            staticRanges.put(component, newRange);
+
+            return;
+        }
+
+        mobileComponents.update(component);
+    }
+
+    boolean hasObstacleAt(final PositionedShape shape) {
+        return findStaticObstacle(shape) || mobileComponents.hasObstacleAt(shape);
+    }
+
+    Component getMobileComponentAt(final PositionedShape shape,
+                                   final Component ignoredComponent) {
+        return getMobileComponentAt(shape.getxCoordinate(), shape.getyCoordinate(),
+                                    shape.getWidth(), shape.getHeight(), ignoredComponent);
+    }
+
+    /* Same as with a rectangular shape of the given box, without creating it */
+    Component getMobileComponentAt(final int xCoordinate,
+                                   final int yCoordinate,
+                                   final int width,
+                                   final int height,
+                                   final Component ignoredComponent) {
+        return mobileComponents.getMobileComponentAt(xCoordinate, yCoordinate, width, height, ignoredComponent);
+    }
+
+    private boolean findStaticObstacle(final PositionedShape shape) {
+        final int minColumn = cellIndex(shape.getxCoordinate(), cellSize, columns);
+        final int minRow    = cellIndex(shape.getyCoordinate(), cellSize, rows);
+        final int maxColumn = cellIndex(shape.getxCoordinate() + shape.getWidth(), cellSize, columns);
+        final int maxRow    = cellIndex(shape.getyCoordinate() + shape.getHeight(), cellSize, rows);
+
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+                final List<Component> cell = staticCells.get(row * columns + column);
+
+                if (cell == null) {
+                    continue;
+                }
+
+                for (int index = 0; index < cell.size(); index++) {
+                    final Component component = cell.get(index);
+
+                    if (component.overlays(shape) && !component.canBeOverlayed(shape)) {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private void addToCells(final List<List<Component>> cells,
+                            final Component component,
+                            final int[] range) {
+        for (int row = range[1]; row <= range[3]; row++) {
+            for (int column = range[0]; column <= range[2]; column++) {
+                final int cellIndex = row * columns + column;
+                List<Component> cell = cells.get(cellIndex);
+
+                if (cell == null) {
+                    cell = new ArrayList<>(4);
+                    cells.set(cellIndex, cell);
+                }
+
+                cell.add(component);
+            }
+        }
+    }
+
+    private void removeFromCells(final List<List<Component>> cells,
+                                 final Component component,
+                                 final int[] range) {
+        for (int row = range[1]; row <= range[3]; row++) {
+            for (int column = range[0]; column <= range[2]; column++) {
+                final List<Component> cell = cells.get(row * columns + column);
+
+                if (cell != null) {
+                    cell.remove(component);
+                }
+            }
+        }
+    }
+
+    /* Buckets touched by a shape: {minCol, minRow, maxCol, maxRow} */
+    private int[] cellRange(final PositionedShape shape) {
+        final int xCoordinate = shape.getxCoordinate();
+        final int yCoordinate = shape.getyCoordinate();
+
+        return new int[] { cellIndex(xCoordinate, cellSize, columns),
+                           cellIndex(yCoordinate, cellSize, rows),
+                           cellIndex(xCoordinate + shape.getWidth(), cellSize, columns),
+                           cellIndex(yCoordinate + shape.getHeight(), cellSize, rows) };
+    }
+
+    /* Empty buckets, created when a component is first registered in them */
+    private static List<List<Component>> newCells(final int count) {
+        return new ArrayList<>(Collections.nCopies(count, null));
+    }
+
+    /* Bucket of a coordinate, coordinates outside of the factory are clamped to the border buckets */
+    static int cellIndex(final int coordinate,
+                         final int cellSize,
+                         final int size) {
+        return Math.max(0, Math.min(size - 1, Math.floorDiv(coordinate, cellSize)));
+    }
+}
@@ -0,0 +1,112 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+/* Java related packages */
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of a simulation event consumer, telling how far behind the simulation the viewer is and
+ * how many records it skipped to keep up.
+ *
+ * Counters are updated by the consuming thread and may be read from any other thread.
+ */
+public class ConsumerMetrics {
+
+    private final AtomicLong polls;
+
+    private final AtomicLong receivedRecords;
+
+    private final AtomicLong appliedKeyframes;
+
+    private final AtomicLong droppedKeyframes;
+
+    private final AtomicLong appliedDeltas;
+
+    private final AtomicLong droppedDeltas;
+
+    private final AtomicLong recordLag;
+
+    private final AtomicLong eventAgeMillis;
+
+    public ConsumerMetrics() {
+        polls            = new AtomicLong();
+        receivedRecords  = new AtomicLong();
+        appliedKeyframes = new AtomicLong();
+        droppedKeyframes = new AtomicLong();
+        appliedDeltas    = new AtomicLong();
+        droppedDeltas    = new AtomicLong();
+        recordLag        = new AtomicLong();
+        eventAgeMillis   = new AtomicLong();
+    }
+
+    void polled(final int records) {
+        polls.incrementAndGet();
+        receivedRecords.addAndGet(records);
+    }
+
+    void keyframeApplied() {
+        appliedKeyframes.incrementAndGet();
+    }
+
+    void keyframeDropped() {
+        droppedKeyframes.incrementAndGet();
+    }
+
+    void deltasApplied(final int deltas) {
+        appliedDeltas.addAndGet(deltas);
+    }
+
+    void deltasDropped(final int deltas) {
+        droppedDeltas.addAndGet(deltas);
+    }
+
+    void setLag(final long records,
+                final long ageMillis) {
+        recordLag.set(records);
+        eventAgeMillis.set(ageMillis);
+    }
+
+    public long getPolls() {
+        return polls.get();
+    }
+
+    public long getReceivedRecords() {
+        return receivedRecords.get();
+    }
+
+    public long getAppliedKeyframes() {
+        return appliedKeyframes.get();
+    }
+
+    /* Keyframes superseded by a more recent one of the same poll */
+    public long getDroppedKeyframes() {
+        return droppedKeyframes.get();
+    }
+
+    /* Deltas applied one by one or merged with others */
+    public long getAppliedDeltas() {
+        return appliedDeltas.get();
+    }
+
+    /* Deltas older than a keyframe of the same poll */
+    public long getDroppedDeltas() {
+        return droppedDeltas.get();
+    }
+
+    /* Records still to be read from the broker after the last poll */
+    public long getRecordLag() {
+        return recordLag.get();
+    }
+
+    /* Time elapsed between the publication of the newest record of the last poll and its display */
+    public long getEventAgeMillis() {
+        return eventAgeMillis.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ConsumerMetrics [polls=" + getPolls() + ", receivedRecords=" + getReceivedRecords() +
+               ", appliedKeyframes=" + getAppliedKeyframes() + ", droppedKeyframes=" + getDroppedKeyframes() +
+               ", appliedDeltas=" + getAppliedDeltas() + ", droppedDeltas=" + getDroppedDeltas() +
+               ", recordLag=" + getRecordLag() + ", eventAgeMillis=" + getEventAgeMillis() + "]";
+    }
+}
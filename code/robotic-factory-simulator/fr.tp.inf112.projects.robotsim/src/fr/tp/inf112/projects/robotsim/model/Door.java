@@ -1,5 +1,7 @@
 package fr.tp.inf112.projects.robotsim.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import fr.tp.inf112.projects.canvas.model.Style;
 import fr.tp.inf112.projects.canvas.model.impl.RGBColor;
 import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
@@ -97,15 +99,43 @@ public class Door extends Component {
 		this.open = open;
 	}
 
+	/* Used to rebuild a door whose shape was already computed */
+	Door(final Room room,
+		 final PositionedShape shape,
+		 final boolean open,
+		 final String name) {
+		super(room.getFactory(), shape, name);
+
+		this.room = room;
+		this.room.addDoor(this);
+		this.open = open;
+	}
+
 	@Override
 	public Style getStyle() {
 		return isOpen() ? OPEN_STYLE : ComponentStyle.DEFAULT_BLACK;
 	}
 
-	private boolean isOpen() {
+    @JsonIgnore // the door state is not part of the serialized layout
+	public boolean isOpen() {
 		return open;
 	}
 
+	@Override
+	int getState() {
+		return isOpen() ? 1 : 0;
+	}
+
+	@Override
+	void setState(final int state) {
+		if (state == 1) {
+			open();
+		}
+		else {
+			close();
+		}
+	}
+
 	public boolean open() {
 		if (isOpen()) {
 			return false;
@@ -114,6 +144,7 @@ public class Door extends Component {
 		open = true;
 
 		notifyObservers();
+		getFactory().doorStateChanged(this);
 
 		return true;
 	}
@@ -123,6 +154,7 @@ public class Door extends Component {
 			open = false;
 
 			notifyObservers();
+			getFactory().doorStateChanged(this);
 
 			return true;
 		}
@@ -0,0 +1,263 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+/* Java related packages */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tick engine only running the components which have something to do, for large factories whose
+ * components are mostly idle.
+ *
+ * Components are run by activations kept in a priority queue, ordered by tick and then by the
+ * order of the components in the factory. After behaving, a component tells in how many ticks it
+ * needs to behave again, or that it has nothing to do until it is woken up, as robots without
+ * targets. Static components such as rooms, doors, areas and machines are thus only visited once.
+ * The components activated at a tick behave in the same order as with the sequential loop, so both
+ * give the same simulation, and a tick activating nothing leaves the factory as it was.
+ *
+ * Activations are packed into longs, the tick in the high bits and the order of the component in
+ * the low ones, held in a binary heap so that ticks allocate nothing. The ticks before the next
+ * activation are idle and may be skipped. Components woken up during a tick behave from the next
+ * one. All the components are activated again when components are added
+ * or removed, so an engine is meant to run the ticks of one factory at a time.
+ */
+public class EventDrivenTickEngine implements TickEngine {
+
+    private static final long NOT_SCHEDULED = -1;
+
+    private static final int ORDER_BITS = 32;
+
+    private static final long ORDER_MASK = (1L << ORDER_BITS) - 1;
+
+    private long tickCount;
+
+    private boolean lastTickIdle;
+
+    /* Factory whose components are ordered, ordered again only when its components change */
+    private Factory sortedFactory;
+
+    private int sortedComponentsVersion;
+
+    private Component[] components = new Component[0];
+
+    /* Order of each component */
+    private final Map<Component, Integer> orders = new IdentityHashMap<>();
+
+    /* Tick at which each component is activated, by order */
+    private long[] activationTicks = new long[0];
+
+    /* Binary heap of the activations, activations superseded by an earlier one being skipped */
+    private long[] activations = new long[16];
+
+    private int activationCount;
+
+    /* Components woken up since the last tick, possibly by other threads */
+    private final List<Component> wokenComponents = new ArrayList<>();
+
+    public EventDrivenTickEngine() {
+        tickCount = 0;
+    }
+
+    @Override
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    @Override
+    public boolean tick(final Factory factory) {
+        boolean behaved = false;
+        boolean activated = false;
+
+        sortComponents(factory);
+        scheduleWokenComponents();
+
+        while (activationCount > 0 && activations[0] >>> ORDER_BITS <= tickCount) {
+            final long activation = removeFirstActivation();
+
+            if (isSuperseded(activation)) {
+                continue;
+            }
+
+            final int order = (int) (activation & ORDER_MASK);
+            activationTicks[order] = NOT_SCHEDULED;
+            activated = true;
+
+            final Component component = components[order];
+            behaved = component.behave() || behaved;
+
+            final int delay = component.getActivationDelay();
+            if (delay > 0) {
+                schedule(order, tickCount + delay);
+            }
+        }
+
+        lastTickIdle = !activated;
+        tickCount++;
+
+        return behaved;
+    }
+
+    @Override
+    public void wake(final Component component) {
+        synchronized (wokenComponents) {
+            wokenComponents.add(component);
+        }
+    }
+
+    @Override
+    public boolean isLastTickIdle() {
+        return lastTickIdle;
+    }
+
+    @Override
+    public long getIdleTicks() {
+        synchronized (wokenComponents) {
+            if (!wokenComponents.isEmpty()) {
+                return 0;
+            }
+        }
+
+        // Changed components are all activated by the next tick
+        if (sortedFactory == null || sortedFactory.getComponentsVersion() != sortedComponentsVersion) {
+            return 0;
+        }
+
+        while (activationCount > 0 && isSuperseded(activations[0])) {
+            removeFirstActivation();
+        }
+
+        if (activationCount == 0) {
+            return Long.MAX_VALUE;
+        }
+
+        return Math.max(0, (activations[0] >>> ORDER_BITS) - tickCount);
+    }
+
+    @Override
+    public void skipTicks(final long ticks) {
+        tickCount += ticks;
+    }
+
+    /* Number of activations pending, superseded ones included */
+    public int getPendingActivations() {
+        return activationCount;
+    }
+
+    @Override
+    public void close() {
+        // No thread nor pool to release
+    }
+
+    /* Orders the components and activates them all, unless they did not change since the last tick */
+    private void sortComponents(final Factory factory) {
+        if (factory == sortedFactory && factory.getComponentsVersion() == sortedComponentsVersion) {
+            return;
+        }
+
+        final List<Component> factoryComponents = factory.getComponents();
+
+        components      = factoryComponents.toArray(new Component[0]);
+        activationTicks = new long[components.length];
+        activationCount = 0;
+        orders.clear();
+
+        for (int order = 0; order < components.length; order++) {
+            orders.put(components[order], order);
+            activationTicks[order] = NOT_SCHEDULED;
+            schedule(order, tickCount);
+        }
+
+        synchronized (wokenComponents) {
+            wokenComponents.clear();
+        }
+
+        sortedFactory           = factory;
+        sortedComponentsVersion = factory.getComponentsVersion();
+    }
+
+    private void scheduleWokenComponents() {
+        synchronized (wokenComponents) {
+            for (int index = 0; index < wokenComponents.size(); index++) {
+                final Integer order = orders.get(wokenComponents.get(index));
+
+                if (order != null) {
+                    schedule(order, tickCount);
+                }
+            }
+
+            wokenComponents.clear();
+        }
+    }
+
+    /* Whether the component of the activation was activated at another tick since */
+    private boolean isSuperseded(final long activation) {
+        return activationTicks[(int) (activation & ORDER_MASK)] != activation >>> ORDER_BITS;
+    }
+
+    /* Activates a component at the given tick, unless it is already activated earlier */
+    private void schedule(final int order,
+                          final long tick) {
+        final long scheduledTick = activationTicks[order];
+
+        if (scheduledTick != NOT_SCHEDULED && scheduledTick <= tick) {
+            return;
+        }
+
+        activationTicks[order] = tick;
+        addActivation(tick << ORDER_BITS | order);
+    }
+
+    private void addActivation(final long activation) {
+        if (activationCount == activations.length) {
+            activations = Arrays.copyOf(activations, 2 * activations.length);
+        }
+
+        int index = activationCount++;
+        while (index > 0) {
+            final int parent = (index - 1) >>> 1;
+
+            if (activations[parent] <= activation) {
+                break;
+            }
+
+            activations[index] = activations[parent];
+            index = parent;
+        }
+
+        activations[index] = activation;
+    }
+
+    private long removeFirstActivation() {
+        final long first = activations[0];
+        final long last  = activations[--activationCount];
+
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+
+            if (child >= activationCount) {
+                break;
+            }
+
+            if (child + 1 < activationCount && activations[child + 1] < activations[child]) {
+                child++;
+            }
+
+            if (last <= activations[child]) {
+                break;
+            }
+
+            activations[index] = activations[child];
+            index = child;
+        }
+
+        if (activationCount > 0) {
+            activations[index] = last;
+        }
+
+        return first;
+    }
+}
@@ -2,12 +2,24 @@ package fr.tp.inf112.projects.robotsim.model;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
 import fr.tp.inf112.projects.canvas.controller.Observable;
 import fr.tp.inf112.projects.canvas.controller.Observer;
 import fr.tp.inf112.projects.canvas.model.Canvas;
 import fr.tp.inf112.projects.canvas.model.Figure;
 import fr.tp.inf112.projects.canvas.model.Style;
+import fr.tp.inf112.projects.robotsim.model.path.CachingFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.FactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.PathCache;
+import fr.tp.inf112.projects.robotsim.model.simulation.SimulationClock;
 import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
 import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
 
@@ -21,17 +33,72 @@ public class Factory extends Component implements Canvas, Observable {
 
 	private static final ComponentStyle DEFAULT = new ComponentStyle(5.0f);
 
+	private static final Logger LOGGER = Logger.getLogger(Factory.class.getName());
+
+	/* Idle ticks skipped at once at most, so that components woken meanwhile do not wait longer */
+	private static final long MAX_SKIPPED_TICKS = 10;
+
     @JsonManagedReference // manage bi-directional references during serialization
     private final List<Component> components;
 
     @JsonProperty("simulationStarted")
     @JsonInclude(JsonInclude.Include.ALWAYS) // force presence even when false
-    private boolean simulationStarted;
+    private volatile boolean simulationStarted;
 
     /* Used to notify all oberservers */
     @JsonIgnore // prevent Jackson from serializing it
     private transient FactoryModelChangedNotifier notifier;
 
+    /* Optional engine running the ticks in place of the sequential loop, null for the loop */
+    private transient TickEngine tickEngine;
+
+    /* Paces the ticks of the simulation, real time by default */
+    private transient SimulationClock simulationClock;
+
+    /* Buckets the components by location to answer collision queries, built on first use */
+    private transient volatile ComponentGridIndex spatialIndex;
+
+    /* Incremented when components are added or removed, so that lists derived from them can be kept */
+    private transient int componentsVersion;
+
+    /* Path finders and caches to refresh when doors open or close */
+    private transient List<FactoryLayoutListener> layoutListeners;
+
+    /* Layout listeners also told about every move, kept apart since the robots move at each tick */
+    private transient List<FactoryLayoutListener> motionListeners;
+
+    /* Number of ticks performed since the factory was created or loaded */
+    private transient long tickCount;
+
+    /* State at the end of the last tick, published for the readers of other threads */
+    private transient volatile FactorySnapshot snapshot;
+
+    /* Set when the factory holds components the binary codec cannot encode, no snapshot is published then */
+    private transient volatile boolean snapshotsUnsupported;
+
+    /* Throughput and waiting of the robots */
+    private transient FleetMetrics fleetMetrics;
+
+    /* True while a tick is performed, changes are then batched until its end */
+    private transient boolean batchingChanges;
+
+    /* Components changed since the beginning of the tick */
+    private transient Set<Component> changedComponents;
+
+    /* True if components were added or removed since the beginning of the tick */
+    private transient boolean structuralChange;
+
+    /* Ids given to the components so far, to keep the generated ones unique */
+    private transient Set<String> componentIds;
+
+    private transient int lastComponentId;
+
+    /* Set once all the components were given an id, the components added afterwards get theirs when added */
+    private transient boolean componentIdsAssigned;
+
+    /* Components by id, to apply deltas, built on first use */
+    private transient Map<String, Component> componentsById;
+
     /* Used by Jackson serialization */
     public Factory()
     {
@@ -64,6 +131,77 @@ public class Factory extends Component implements Canvas, Observable {
         this.notifier = notifier;
     }
 
+    @JsonIgnore
+    public TickEngine getTickEngine() {
+        return tickEngine;
+    }
+
+    /* Used to run the robots on a parallel tick engine instead of one after another, or to only
+       run the components having something to do on an event-driven engine */
+    public void setTickEngine(final TickEngine tickEngine) {
+        this.tickEngine = tickEngine;
+    }
+
+    /* Called when an idle component may have something to do again */
+    void wake(final Component component) {
+        final TickEngine engine = tickEngine;
+
+        if (engine != null) {
+            engine.wake(component);
+        }
+    }
+
+    @JsonIgnore // counted again from zero when a factory is loaded
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    @JsonIgnore
+    public synchronized FleetMetrics getFleetMetrics() {
+        if (fleetMetrics == null) {
+            fleetMetrics = new FleetMetrics();
+        }
+
+        return fleetMetrics;
+    }
+
+    @JsonIgnore
+    public SimulationClock getSimulationClock() {
+        if (simulationClock == null) {
+            simulationClock = SimulationClock.realTime(SimulationClock.DEFAULT_TICK_PERIOD_MILLIS);
+        }
+        return simulationClock;
+    }
+
+    /* Used to run the simulation in batch or time-scaled mode instead of real time */
+    public void setSimulationClock(final SimulationClock simulationClock) {
+        this.simulationClock = simulationClock;
+    }
+
+    /**
+     * Makes the robots look up the paths already found before searching, before the simulation is
+     * started. The robots sharing a path finder share one cache. Robots planning cooperatively keep
+     * searching since their paths depend on the reservations of the others, as do the robots whose
+     * path finders repair their searches or give one step at a time, from the state of each robot.
+     *
+     * @param maximumSize maximum number of sources kept in each cache.
+     */
+    public synchronized void cachePaths(final int maximumSize) {
+        final Map<FactoryPathFinder, FactoryPathFinder> cachingPathFinders = new IdentityHashMap<>();
+
+        for (final Component component : components) {
+            if (component instanceof Robot robot) {
+                final FactoryPathFinder pathFinder = robot.getPathFinder();
+
+                if (pathFinder != null && !pathFinder.isCooperative() && !pathFinder.isIncremental() &&
+                    !pathFinder.isStepwise() && !(pathFinder instanceof CachingFactoryPathFinder)) {
+                    robot.setPathFinder(cachingPathFinders.computeIfAbsent(pathFinder, finder ->
+                        new CachingFactoryPathFinder(finder, new PathCache(this, finder.getResolution(), maximumSize))));
+                }
+            }
+        }
+    }
+
 	@Override
 	public boolean addObserver(Observer observer) {
         if (observer == null) return false;
@@ -76,15 +214,282 @@ public class Factory extends Component implements Canvas, Observable {
 		return notifier.removeObserver(observer);
 	}
 
+	public synchronized boolean addLayoutListener(final FactoryLayoutListener listener) {
+		if (listener == null) {
+			return false;
+		}
+
+		if (layoutListeners == null) {
+			layoutListeners = new CopyOnWriteArrayList<>();
+		}
+
+		if (listener.isMotionListener()) {
+			if (motionListeners == null) {
+				motionListeners = new CopyOnWriteArrayList<>();
+			}
+
+			motionListeners.add(listener);
+		}
+
+		return layoutListeners.add(listener);
+	}
+
+	public synchronized boolean removeLayoutListener(final FactoryLayoutListener listener) {
+		if (motionListeners != null) {
+			motionListeners.remove(listener);
+		}
+
+		return layoutListeners != null && layoutListeners.remove(listener);
+	}
+
+	void doorStateChanged(final Door door) {
+		final List<FactoryLayoutListener> listeners = layoutListeners;
+
+		if (listeners != null) {
+			for (final FactoryLayoutListener listener : listeners) {
+				listener.doorStateChanged(door);
+			}
+		}
+	}
+
+	private void layoutComponentMoved(final Component component) {
+		final List<FactoryLayoutListener> listeners = motionListeners;
+
+		if (listeners != null) {
+			for (final FactoryLayoutListener listener : listeners) {
+				listener.componentMoved(component);
+			}
+		}
+	}
+
+	private void layoutComponentRemoved(final Component component) {
+		final List<FactoryLayoutListener> listeners = layoutListeners;
+
+		if (listeners != null) {
+			for (final FactoryLayoutListener listener : listeners) {
+				listener.componentRemoved(component);
+			}
+		}
+	}
+
+	/**
+	 * Notifies the observers that the factory changed as a whole. During a tick, the notification is
+	 * deferred to the end of the tick, together with the changes of the components.
+	 */
 	public void notifyObservers() {
-//		for (final Observer observer : getObservers()) {
-//			observer.modelChanged();
-//		}
-        getNotifier().notifyObservers();
+		synchronized (getChangedComponents()) {
+			structuralChange = true;
+
+			if (batchingChanges) {
+				return;
+			}
+		}
+
+		flushChanges();
+	}
+
+	/* Defers the notifications until endBatch() */
+	private void beginBatch() {
+		synchronized (getChangedComponents()) {
+			batchingChanges = true;
+		}
+	}
+
+	private void endBatch() {
+		synchronized (getChangedComponents()) {
+			batchingChanges = false;
+		}
+
+		flushChanges();
+	}
+
+	/* Records the change of a component, notified at once unless a tick is being performed */
+	void componentChanged(final Component component) {
+		synchronized (getChangedComponents()) {
+			changedComponents.add(component);
+
+			if (batchingChanges) {
+				return;
+			}
+		}
+
+		flushChanges();
+	}
+
+	private synchronized Set<Component> getChangedComponents() {
+		if (changedComponents == null) {
+			changedComponents = new LinkedHashSet<>();
+		}
+
+		return changedComponents;
+	}
+
+	/* Emits one event for all the changes recorded since the previous one, if any */
+	private void flushChanges() {
+		final FactoryChange change;
+
+		synchronized (getChangedComponents()) {
+			if (changedComponents.isEmpty() && !structuralChange) {
+				return;
+			}
+
+			if (structuralChange && !componentIdsAssigned) {
+				// Observers reloading the whole factory must know the ids of all its components, those
+				// loaded without being added may have none
+				assignComponentIds();
+			}
+
+			final List<String> changedComponentIds = new ArrayList<>(changedComponents.size());
+
+			for (final Component component : changedComponents) {
+				assignComponentId(component);
+				changedComponentIds.add(component.getId());
+			}
+
+			change = new FactoryChange(tickCount, changedComponentIds, structuralChange);
+			changedComponents.clear();
+			structuralChange = false;
+		}
+
+		getNotifier().notifyObservers(change);
+	}
+
+	private synchronized void assignComponentIds() {
+		for (final Component component : components) {
+			assignComponentId(component);
+		}
+
+		componentIdsAssigned = true;
+	}
+
+	/* Gives the components without id one which is unique within the factory, to name them in change events */
+	private synchronized void assignComponentId(final Component component) {
+		if (component.getId() != null) {
+			return;
+		}
+
+		if (componentIds == null) {
+			componentIds = new HashSet<>();
+
+			for (final Component otherComponent : components) {
+				if (otherComponent.getId() != null) {
+					componentIds.add(otherComponent.getId());
+				}
+			}
+		}
+
+		String id;
+
+		do {
+			id = component.getClass().getSimpleName() + "-" + ++lastComponentId;
+		}
+		while (!componentIds.add(id));
+
+		component.setId(id);
+		componentsById = null;
+	}
+
+	/**
+	 * @return the component of the factory with the given id, null if there is none.
+	 */
+	public synchronized Component getComponent(final String id) {
+		if (componentsById == null) {
+			componentsById = new HashMap<>();
+
+			for (final Component component : components) {
+				if (component.getId() != null) {
+					componentsById.put(component.getId(), component);
+				}
+			}
+		}
+
+		return componentsById.get(id);
+	}
+
+	/* Forgets the known ids after the ids of the components were set from outside */
+	synchronized void componentIdsChanged() {
+		componentIds = null;
+		componentsById = null;
+		componentIdsAssigned = false;
+	}
+
+	/**
+	 * @return the positions and states of the components listed in the change.
+	 */
+	public FactoryDelta createDelta(final FactoryChange change) {
+		final List<Component> changedComponents = new ArrayList<>();
+
+		for (final String id : change.getChangedComponentIds()) {
+			final Component component = getComponent(id);
+
+			if (component != null) {
+				changedComponents.add(component);
+			}
+		}
+
+		final int size = changedComponents.size();
+		final String[] ids = new String[size];
+		final int[] xCoordinates = new int[size];
+		final int[] yCoordinates = new int[size];
+		final int[] states = new int[size];
+
+		for (int index = 0; index < size; index++) {
+			final Component component = changedComponents.get(index);
+			ids[index]          = component.getId();
+			xCoordinates[index] = component.getxCoordinate();
+			yCoordinates[index] = component.getyCoordinate();
+			states[index]       = component.getState();
+		}
+
+		return new FactoryDelta(change.getTick(), ids, xCoordinates, yCoordinates, states);
+	}
+
+	/**
+	 * Moves the components of the delta and restores their states, with a single notification of the
+	 * observers.
+	 *
+	 * @return false if some components of the delta are unknown, the whole factory should then be
+	 * reloaded.
+	 */
+	public boolean applyDelta(final FactoryDelta delta) {
+		boolean complete = true;
+
+		beginBatch();
+
+		try {
+			for (int index = 0; index < delta.size(); index++) {
+				final Component component = getComponent(delta.getComponentId(index));
+
+				if (component == null) {
+					complete = false;
+
+					continue;
+				}
+
+				component.setxCoordinate(delta.getxCoordinate(index));
+				component.setyCoordinate(delta.getyCoordinate(index));
+				component.setState(delta.getState(index));
+			}
+		}
+		finally {
+			endBatch();
+		}
+
+		return complete;
 	}
 
 	public boolean addComponent(final Component component) {
 		if (components.add(component)) {
+			componentsVersion++;
+
+			if (spatialIndex != null) {
+				spatialIndex.add(component);
+			}
+
+			assignComponentId(component);
+
+			layoutComponentMoved(component);
+
 			notifyObservers();
 
 			return true;
@@ -95,6 +500,16 @@ public class Factory extends Component implements Canvas, Observable {
 
 	public boolean removeComponent(final Component component) {
 		if (components.remove(component)) {
+			componentsVersion++;
+
+			if (spatialIndex != null) {
+				spatialIndex.remove(component);
+			}
+
+			componentsById = null;
+
+			layoutComponentRemoved(component);
+
 			notifyObservers();
 
 			return true;
@@ -107,6 +522,10 @@ public class Factory extends Component implements Canvas, Observable {
 		return components;
 	}
 
+	int getComponentsVersion() {
+		return componentsVersion;
+	}
+
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	@Override
     @JsonIgnore // prevent Jackson from trying to deserialize "figures" (setterless)
@@ -131,28 +550,85 @@ public class Factory extends Component implements Canvas, Observable {
     }
 
 	public void startSimulation() {
-		if (!isSimulationStarted()) {
-			this.simulationStarted = true;
-			notifyObservers();
+		if (beginSimulation()) {
+			final SimulationClock clock = getSimulationClock();
 
 			while (isSimulationStarted()) {
 				behave();
+				skipIdleTicks();
 
 				try {
-					Thread.sleep(100);
+					// The clock may run out of ticks, e.g. in batch mode once the simulated duration is over
+					if (!clock.awaitNextTick()) {
+						stopSimulation();
+					}
 				}
 				catch (final InterruptedException ex) {
 					System.err.println("Simulation was abruptely interrupted");
 				}
 			}
+
+			publishStoppedState();
+		}
+	}
+
+	/**
+	 * Starts the simulation without running it. Its ticks are then run one by one by calling
+	 * behave(), paced by the tryNextTick method of the simulation clock, for instance by a
+	 * scheduler sharing its threads among several factories.
+	 *
+	 * @return false if the simulation was already started.
+	 */
+	public boolean beginSimulation() {
+		if (isSimulationStarted()) {
+			return false;
 		}
+
+		this.simulationStarted = true;
+		/* Told to the observers at the end of the first tick, once its snapshot is published */
+		markStructuralChange();
+		getSimulationClock().start();
+
+		return true;
 	}
 
+	/**
+	 * Stops the simulation at the end of the running tick. The thread running the ticks then calls
+	 * publishStoppedState() to tell the observers.
+	 */
 	public void stopSimulation() {
 		if (isSimulationStarted()) {
 			this.simulationStarted = false;
 
-			notifyObservers();
+			markStructuralChange();
+		}
+	}
+
+	/**
+	 * Publishes the snapshot of the factory while it is not simulated, then notifies the changes
+	 * made since the last tick, such as the simulation stopping. Called by the thread which ran the
+	 * ticks once it saw the simulation stop, or by the thread loading a factory before it is first
+	 * started, so that a snapshot is never taken while a tick is running.
+	 */
+	public void publishStoppedState() {
+		if (isSimulationStarted()) {
+			// Started again meanwhile, the next tick publishes the snapshot
+			return;
+		}
+
+		publishSnapshot(tickCount - 1);
+		flushChanges();
+	}
+
+	private void markStructuralChange() {
+		synchronized (getChangedComponents()) {
+			structuralChange = true;
+		}
+	}
+
+	private boolean hasPendingChanges() {
+		synchronized (getChangedComponents()) {
+			return structuralChange || !changedComponents.isEmpty();
 		}
 	}
 
@@ -160,38 +636,153 @@ public class Factory extends Component implements Canvas, Observable {
 	public boolean behave() {
 		boolean behaved = true;
 
-		for (final Component component : getComponents()) {
-			behaved = component.behave() || behaved;
+		beginBatch();
+
+		try {
+			if (tickEngine != null) {
+				behaved = tickEngine.tick(this);
+			}
+			else {
+				for (final Component component : getComponents()) {
+					behaved = component.behave() || behaved;
+				}
+			}
+		}
+		finally {
+			// Observers notified of the tick read its snapshot, unless it left the factory unchanged
+			if (!getNotifier().isSnapshotReader()) {
+				snapshot = null;
+			}
+			else if (tickEngine == null || !tickEngine.isLastTickIdle() || hasPendingChanges()) {
+				publishSnapshot(tickCount);
+			}
+
+			// One notification for all the changes of the tick
+			endBatch();
+			tickCount++;
 		}
 
 		return behaved;
 	}
 
+	/**
+	 * Skips the ticks following the last one during which the tick engine would run no component,
+	 * as if they were run, since they leave the factory unchanged. The simulation clock counts them
+	 * without pacing them: a real time simulation waits for the end of the stretch at once, a batch
+	 * simulation covers it without computing it. At most MAX_SKIPPED_TICKS ticks are skipped, in
+	 * particular when no component is scheduled, components woken meanwhile behaving after them.
+	 *
+	 * @return the number of ticks skipped.
+	 */
+	public long skipIdleTicks() {
+		if (tickEngine == null || hasPendingChanges()) {
+			return 0;
+		}
+
+		final long ticks = Math.min(tickEngine.getIdleTicks(), MAX_SKIPPED_TICKS);
+
+		if (ticks > 0) {
+			tickEngine.skipTicks(ticks);
+			tickCount += ticks;
+			getSimulationClock().skipTicks(ticks);
+		}
+
+		return ticks;
+	}
+
+	/**
+	 * Retrieves the state of the factory at the end of the last tick. Unlike the factory itself, it
+	 * can be read by any thread while the simulation is running. Observers notified of a change can
+	 * read the snapshot of the tick of the change. Snapshots are only published at every tick for
+	 * the notifiers reading them, encoding the factory at every tick being costly.
+	 *
+	 * @return null if no snapshot was published yet, if the simulation runs with a notifier not
+	 *         reading snapshots, or if the factory holds components the binary codec cannot encode.
+	 */
+	@JsonIgnore
+	public FactorySnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/* Called by the simulation thread at the end of each tick, when no component is changing */
+	private void publishSnapshot(final long tick) {
+		if (snapshotsUnsupported) {
+			return;
+		}
+
+		try {
+			snapshot = new FactorySnapshot(tick, FactoryBinaryCodec.encode(this));
+		}
+		catch (final IllegalArgumentException ex) {
+			snapshotsUnsupported = true;
+			snapshot = null;
+			LOGGER.warning("No snapshot of factory " + getId() + " can be published: " + ex.getMessage());
+		}
+	}
+
 	@Override
     @JsonIgnore // prevent Jackson from trying to deserialize it, it is a constant
 	public Style getStyle() {
 		return DEFAULT;
 	}
 
-	public boolean hasObstacleAt(final PositionedShape shape) {
-		for (final Component component : getComponents()) {
-			if (component.overlays(shape) && !component.canBeOverlayed(shape)) {
-				return true;
+	private ComponentGridIndex getSpatialIndex() {
+		ComponentGridIndex index = spatialIndex;
+
+		if (index == null) {
+			// Robots may query the index concurrently while planning, build it only once
+			synchronized (components) {
+				index = spatialIndex;
+
+				if (index == null) {
+					index = new ComponentGridIndex(getWidth(), getHeight(), ComponentGridIndex.DEFAULT_CELL_SIZE);
+
+					for (final Component component : getComponents()) {
+						index.add(component);
+					}
+
+					spatialIndex = index;
+				}
 			}
 		}
 
-		return false;
+		return index;
+	}
+
+	/* Called when a component changed its position so that it is looked up at the right place */
+	void componentMoved(final Component component) {
+		if (spatialIndex != null) {
+			spatialIndex.update(component);
+		}
+
+		layoutComponentMoved(component);
+	}
+
+	public boolean hasObstacleAt(final PositionedShape shape) {
+		return getSpatialIndex().hasObstacleAt(shape);
 	}
 
 	public boolean hasMobileComponentAt(final PositionedShape shape,
 										final Component movingComponent) {
-		for (final Component component : getComponents()) {
-			if (component != movingComponent && component.isMobile() && component.overlays(shape)) {
-				return true;
-			}
-		}
+		return getSpatialIndex().getMobileComponentAt(shape, movingComponent) != null;
+	}
 
-		return false;
+	/* Same as with a rectangular shape of the given box, without creating it */
+	boolean hasMobileComponentAt(final int xCoordinate,
+								 final int yCoordinate,
+								 final int width,
+								 final int height,
+								 final Component movingComponent) {
+		return getMobileComponentAt(xCoordinate, yCoordinate, width, height, movingComponent) != null;
+	}
+
+	/* Same as with a rectangular shape of the given box, without creating it */
+	Component getMobileComponentAt(final int xCoordinate,
+								   final int yCoordinate,
+								   final int width,
+								   final int height,
+								   final Component ignoredComponent) {
+		return getSpatialIndex().getMobileComponentAt(xCoordinate, yCoordinate, width, height, ignoredComponent);
 	}
 
     @JsonIgnore // prevent Jackson from serializing it
@@ -201,7 +792,7 @@ public class Factory extends Component implements Canvas, Observable {
 			return null;
 		}
 
-		return getMobileComponentAt(new RectangularShape(position.getxCoordinate(), position.getyCoordinate(), 2, 2), ignoredComponent);
+		return getSpatialIndex().getMobileComponentAt(position.getxCoordinate(), position.getyCoordinate(), 2, 2, ignoredComponent);
 	}
 
 	public Component getMobileComponentAt(	final PositionedShape shape,
@@ -210,12 +801,6 @@ public class Factory extends Component implements Canvas, Observable {
 			return null;
 		}
 
-		for (final Component component : getComponents()) {
-			if (component != ignoredComponent && component.isMobile() && component.overlays(shape)) {
-				return component;
-			}
-		}
-
-		return null;
+		return getSpatialIndex().getMobileComponentAt(shape, ignoredComponent);
 	}
 }
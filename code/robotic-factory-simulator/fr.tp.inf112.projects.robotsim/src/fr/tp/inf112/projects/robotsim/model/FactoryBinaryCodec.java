@@ -0,0 +1,796 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+/* Java related packages */
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/* Canvas related packages */
+import fr.tp.inf112.projects.canvas.model.Figure;
+import fr.tp.inf112.projects.canvas.model.Vertex;
+import fr.tp.inf112.projects.canvas.model.impl.BasicVertex;
+
+/* Robotsim related packages */
+import fr.tp.inf112.projects.robotsim.model.path.AStarFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.CachingFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.CooperativeFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.CustomDijkstraFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.DStarLiteFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.DistanceFieldFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.FactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.JGraphTDijkstraFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.PathCache;
+import fr.tp.inf112.projects.robotsim.model.shapes.BasicPolygonShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+/**
+ * Compact binary format of a factory, much smaller and faster to read and write than its Java
+ * serialization or its polymorphic JSON.
+ *
+ * The data starts with a magic number and the version of the schema. Integers are written as
+ * variable length integers, zig-zag encoded when they may be negative, so that coordinates mostly
+ * take one or two bytes. Strings, including the names of the component types, are written once and
+ * then referred to by their index in the order they were first written.
+ *
+ * Components are written in the order of the factory, which is their creation order, so that
+ * rooms come before their areas and doors and areas before their machines. Robots refer to their
+ * targets by index at the end, and to their path finders, which are rebuilt from their class,
+ * resolution and settings. Only the path finders of this project are rebuilt, from a fixed list, so
+ * that the data never names the classes to instantiate. Path caches shared by several path finders are
+ * written once and shared again when read. Transient state such as the planned paths is not
+ * written, as with Java serialization.
+ */
+public final class FactoryBinaryCodec {
+
+    /* Content type of the format, for HTTP and Kafka headers */
+    public static final String MEDIA_TYPE = "application/x-robotsim-factory";
+
+    public static final int VERSION = 3;
+
+    private static final int MAGIC = 0x52534631; // "RSF1"
+
+    private static final int RECTANGLE = 0;
+
+    private static final int CIRCLE = 1;
+
+    private static final int POLYGON = 2;
+
+    /* Path finders which can be rebuilt, by class name */
+    private static final Set<String> PATH_FINDERS = Set.of(
+        JGraphTDijkstraFactoryPathFinder.class.getName(),
+        CustomDijkstraFactoryPathFinder.class.getName(),
+        AStarFactoryPathFinder.class.getName(),
+        DistanceFieldFactoryPathFinder.class.getName(),
+        DStarLiteFactoryPathFinder.class.getName(),
+        CooperativeFactoryPathFinder.class.getName());
+
+    /* String codes, the next ones referring to the strings already written in their order */
+    private static final int NULL_STRING = 0;
+
+    private static final int NEW_STRING = 1;
+
+    /* Writers keep their buffer and tables from one factory to the next, snapshots being encoded at every tick */
+    private static final ThreadLocal<Writer> WRITERS = ThreadLocal.withInitial(Writer::new);
+
+    private FactoryBinaryCodec() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if the factory holds components or shapes unknown to the codec.
+     */
+    public static byte[] encode(final Factory factory) {
+        final Writer writer = WRITERS.get();
+
+        try {
+            writer.writeFactory(factory);
+
+            return writer.toByteArray();
+        }
+        finally {
+            writer.reset();
+        }
+    }
+
+    public static Factory decode(final byte[] data)
+    throws IOException {
+        return new Reader(data).readFactory();
+    }
+
+    public static void write(final Factory factory,
+                             final OutputStream output)
+    throws IOException {
+        output.write(encode(factory));
+    }
+
+    /* Reads the input until its end */
+    public static Factory read(final InputStream input)
+    throws IOException {
+        return decode(input.readAllBytes());
+    }
+
+    /* Writes into an unsynchronized buffer, byte array streams taking a lock for every byte */
+    private static final class Writer {
+
+        private byte[] buffer = new byte[1024];
+
+        private int size;
+
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        private final Map<FactoryPathFinder, Integer> pathFinders = new IdentityHashMap<>();
+
+        private final Map<PathCache, Integer> pathCaches = new IdentityHashMap<>();
+
+        private final Map<Component, Integer> indexes = new IdentityHashMap<>();
+
+        private final List<Component> components = new ArrayList<>();
+
+        private final List<FactoryPathFinder> orderedPathFinders = new ArrayList<>();
+
+        private final List<Robot> robots = new ArrayList<>();
+
+        private final Map<Component, Component> parents = new IdentityHashMap<>();
+
+        /* Forgets the factory written, keeping the allocated capacity */
+        private void reset() {
+            size = 0;
+            strings.clear();
+            pathFinders.clear();
+            pathCaches.clear();
+            indexes.clear();
+            components.clear();
+            orderedPathFinders.clear();
+            robots.clear();
+            parents.clear();
+        }
+
+        private void writeFactory(final Factory factory) {
+            writeInt(MAGIC);
+            writeVarInt(VERSION);
+
+            writeString(factory.getId());
+            writeString(factory.getName());
+            writeVarInt(factory.getWidth());
+            writeVarInt(factory.getHeight());
+            writeBoolean(factory.isSimulationStarted());
+
+            for (final Figure figure : factory.getFigures()) {
+                components.add((Component) figure);
+            }
+
+            for (final Component component : components) {
+                if (component instanceof Robot robot) {
+                    robots.add(robot);
+                    collectPathFinder(robot.getPathFinder(), orderedPathFinders);
+                }
+            }
+
+            writeVarInt(orderedPathFinders.size());
+            for (final FactoryPathFinder pathFinder : orderedPathFinders) {
+                writePathFinder(pathFinder);
+            }
+
+            collectParents();
+
+            writeVarInt(components.size());
+            for (final Component component : components) {
+                writeComponent(component, parents.get(component));
+                indexes.put(component, indexes.size());
+            }
+
+            for (final Robot robot : robots) {
+                final List<Component> targets = robot.getTargetComponents();
+
+                writeVarInt(targets.size());
+                for (final Component target : targets) {
+                    writeVarInt(indexOf(target));
+                }
+
+                writeVarInt(robot.getCurrentTargetComponent() == null ? 0 : indexOf(robot.getCurrentTargetComponent()) + 1);
+            }
+        }
+
+        /* Delegates are listed before the path finders wrapping them */
+        private void collectPathFinder(final FactoryPathFinder pathFinder,
+                                       final List<FactoryPathFinder> orderedPathFinders) {
+            if (pathFinder == null || pathFinders.containsKey(pathFinder)) {
+                return;
+            }
+
+            if (pathFinder instanceof CachingFactoryPathFinder cachingPathFinder) {
+                collectPathFinder(cachingPathFinder.getPathFinder(), orderedPathFinders);
+            }
+
+            pathFinders.put(pathFinder, orderedPathFinders.size());
+            orderedPathFinders.add(pathFinder);
+        }
+
+        /* A cache is written with the first path finder using it, the next ones refer to it by index */
+        private void writePathFinder(final FactoryPathFinder pathFinder) {
+            final String className = pathFinder.getClass().getName();
+
+            if (pathFinder instanceof CachingFactoryPathFinder cachingPathFinder) {
+                writeString(className);
+                writeVarInt(pathFinders.get(cachingPathFinder.getPathFinder()));
+
+                final PathCache pathCache = cachingPathFinder.getPathCache();
+                final Integer cacheIndex = pathCaches.get(pathCache);
+
+                if (cacheIndex != null) {
+                    writeVarInt(cacheIndex);
+                }
+                else {
+                    writeVarInt(pathCaches.size());
+                    writeVarInt(pathCache.getResolution());
+                    writeVarInt(pathCache.getMaximumSize());
+                    pathCaches.put(pathCache, pathCaches.size());
+                }
+            }
+            else if (PATH_FINDERS.contains(className)) {
+                writeString(className);
+                writeVarInt(pathFinder.getResolution());
+                writePathFinderSettings(pathFinder);
+            }
+            else {
+                throw new IllegalArgumentException("Unsupported path finder type " + className + ".");
+            }
+        }
+
+        /* Arguments of the constructors besides the factory and the resolution, the Dijkstra path finders have none */
+        private void writePathFinderSettings(final FactoryPathFinder pathFinder) {
+            if (pathFinder instanceof AStarFactoryPathFinder aStarPathFinder) {
+                writeBoolean(aStarPathFinder.isDiagonalMoves());
+                writeBoolean(aStarPathFinder.isJumpPointSearch());
+            }
+            else if (pathFinder instanceof DStarLiteFactoryPathFinder dStarLitePathFinder) {
+                writeBoolean(dStarLitePathFinder.isDiagonalMoves());
+                writeSignedVarInt(dStarLitePathFinder.getRobotCost());
+            }
+            else if (pathFinder instanceof DistanceFieldFactoryPathFinder distanceFieldPathFinder) {
+                writeBoolean(distanceFieldPathFinder.isDiagonalMoves());
+            }
+            else if (pathFinder instanceof CooperativeFactoryPathFinder cooperativePathFinder) {
+                writeVarInt(cooperativePathFinder.getWindow());
+            }
+        }
+
+        /* Owners are found from the rooms listing their areas and doors and the areas holding their machine */
+        private void collectParents() {
+            for (final Component component : components) {
+                if (component instanceof Room room) {
+                    for (final Area area : room.getAreas()) {
+                        parents.put(area, room);
+
+                        if (area.getMachine() != null) {
+                            parents.put(area.getMachine(), area);
+                        }
+                    }
+
+                    for (final Door door : room.getDoors()) {
+                        parents.put(door, room);
+                    }
+                }
+            }
+        }
+
+        private void writeComponent(final Component component,
+                                    final Component parent) {
+            writeString(component.getClass().getSimpleName());
+            writeString(component.getId());
+            writeString(component.getName());
+
+            if (component instanceof Area || component instanceof Machine || component instanceof Door) {
+                if (parent == null || !indexes.containsKey(parent)) {
+                    throw new IllegalArgumentException("The owner of component " + component.getName() + " must come before it.");
+                }
+
+                writeVarInt(indexes.get(parent));
+            }
+
+            writeShape(component.getPositionedShape());
+
+            if (component instanceof Door door) {
+                writeBoolean(door.isOpen());
+            }
+            else if (component instanceof ChargingStation chargingStation) {
+                writeBoolean(chargingStation.isCharging());
+            }
+            else if (component instanceof Robot robot) {
+                final FactoryPathFinder pathFinder = robot.getPathFinder();
+                writeVarInt(pathFinder == null ? 0 : pathFinders.get(pathFinder) + 1);
+
+                final Battery battery = robot.getBattery();
+                writeBoolean(battery != null);
+                if (battery != null) {
+                    writeFloat(battery.getCapacity());
+                    writeFloat(battery.getLevel());
+                }
+
+                writeVarInt(robot.getSpeed());
+
+                writeBoolean(robot.isTargetMemorized());
+                if (robot.isTargetMemorized()) {
+                    writeSignedVarInt(robot.getMemorizedTargetxCoordinate());
+                    writeSignedVarInt(robot.getMemorizedTargetyCoordinate());
+                }
+            }
+            else if (!(component instanceof Room || component instanceof Area || component instanceof Machine ||
+                       component instanceof Conveyor || component instanceof Puck)) {
+                throw new IllegalArgumentException("Unsupported component type " + component.getClass().getName() + ".");
+            }
+        }
+
+        private void writeShape(final PositionedShape shape) {
+            if (shape instanceof RectangularShape) {
+                writeVarInt(RECTANGLE);
+                writeSignedVarInt(shape.getxCoordinate());
+                writeSignedVarInt(shape.getyCoordinate());
+                writeVarInt(shape.getWidth());
+                writeVarInt(shape.getHeight());
+            }
+            else if (shape instanceof CircularShape circularShape) {
+                writeVarInt(CIRCLE);
+                writeSignedVarInt(shape.getxCoordinate());
+                writeSignedVarInt(shape.getyCoordinate());
+                writeVarInt(circularShape.getRadius());
+            }
+            else if (shape instanceof BasicPolygonShape polygonShape) {
+                writeVarInt(POLYGON);
+                writeVarInt(polygonShape.getVertices().size());
+
+                // Vertices are close to each other, only their offsets from the previous one are written
+                int xCoordinate = 0;
+                int yCoordinate = 0;
+                for (final Vertex vertex : polygonShape.getVertices()) {
+                    writeSignedVarInt(vertex.getxCoordinate() - xCoordinate);
+                    writeSignedVarInt(vertex.getyCoordinate() - yCoordinate);
+                    xCoordinate = vertex.getxCoordinate();
+                    yCoordinate = vertex.getyCoordinate();
+                }
+            }
+            else {
+                throw new IllegalArgumentException("Unsupported shape type " + shape.getClass().getName() + ".");
+            }
+        }
+
+        private int indexOf(final Component component) {
+            final Integer index = indexes.get(component);
+
+            if (index == null) {
+                throw new IllegalArgumentException("Component " + component.getName() + " does not belong to the factory.");
+            }
+
+            return index;
+        }
+
+        private void writeString(final String string) {
+            if (string == null) {
+                writeVarInt(NULL_STRING);
+                return;
+            }
+
+            final Integer index = strings.get(string);
+
+            if (index != null) {
+                writeVarInt(index + NEW_STRING + 1);
+                return;
+            }
+
+            strings.put(string, strings.size());
+
+            final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(NEW_STRING);
+            writeVarInt(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        private void writeSignedVarInt(final int value) {
+            writeVarInt((value << 1) ^ (value >> 31));
+        }
+
+        private void writeVarInt(final int value) {
+            int remaining = value;
+
+            while ((remaining & ~0x7F) != 0) {
+                writeByte((remaining & 0x7F) | 0x80);
+                remaining >>>= 7;
+            }
+
+            writeByte(remaining);
+        }
+
+        private void writeBoolean(final boolean value) {
+            writeByte(value ? 1 : 0);
+        }
+
+        private void writeFloat(final float value) {
+            writeInt(Float.floatToIntBits(value));
+        }
+
+        private void writeInt(final int value) {
+            writeByte(value >>> 24);
+            writeByte(value >>> 16);
+            writeByte(value >>> 8);
+            writeByte(value);
+        }
+
+        private void writeByte(final int value) {
+            ensureCapacity(1);
+            buffer[size++] = (byte) value;
+        }
+
+        private void ensureCapacity(final int length) {
+            if (size + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + length));
+            }
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] data;
+
+        private int offset;
+
+        private final List<String> strings = new ArrayList<>();
+
+        private Reader(final byte[] data) {
+            this.data = data;
+        }
+
+        private Factory readFactory()
+        throws IOException {
+            if (readInt() != MAGIC) {
+                throw new IOException("Not a binary factory.");
+            }
+
+            final int version = readVarInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary factory version " + version + ".");
+            }
+
+            final String id = readString();
+            final String name = readString();
+            final int width = readVarInt();
+            final int height = readVarInt();
+            final boolean simulationStarted = readBoolean();
+
+            final Factory factory = new Factory(width, height, name);
+            factory.setId(id);
+
+            final int pathFindersCount = readVarInt();
+            final List<FactoryPathFinder> pathFinders = new ArrayList<>(pathFindersCount);
+            final List<PathCache> pathCaches = new ArrayList<>();
+            for (int index = 0; index < pathFindersCount; index++) {
+                pathFinders.add(readPathFinder(factory, pathFinders, pathCaches));
+            }
+
+            final int componentsCount = readVarInt();
+            final List<Component> components = new ArrayList<>(componentsCount);
+            final List<String> componentIds = new ArrayList<>(componentsCount);
+            final List<Robot> robots = new ArrayList<>();
+
+            for (int index = 0; index < componentsCount; index++) {
+                final String type = readString();
+                componentIds.add(readString());
+                final Component component = readComponent(factory, type, readString(), components, pathFinders);
+
+                components.add(component);
+                if (component instanceof Robot robot) {
+                    robots.add(robot);
+                }
+            }
+
+            for (final Robot robot : robots) {
+                final int targetsCount = readVarInt();
+
+                for (int index = 0; index < targetsCount; index++) {
+                    robot.addTargetComponent(componentAt(components, readVarInt()));
+                }
+
+                final int currentTarget = readVarInt();
+                if (currentTarget != 0) {
+                    robot.setCurrentTargetComponent(componentAt(components, currentTarget - 1));
+                }
+            }
+
+            // The components were given new ids when added to the factory
+            for (int index = 0; index < componentsCount; index++) {
+                components.get(index).setId(componentIds.get(index));
+            }
+            factory.componentIdsChanged();
+            factory.setSimulationStarted(simulationStarted);
+
+            return factory;
+        }
+
+        private FactoryPathFinder readPathFinder(final Factory factory,
+                                                 final List<FactoryPathFinder> pathFinders,
+                                                 final List<PathCache> pathCaches)
+        throws IOException {
+            final String className = readString();
+
+            if (CachingFactoryPathFinder.class.getName().equals(className)) {
+                final int delegateIndex = readVarInt();
+                if (delegateIndex >= pathFinders.size()) {
+                    throw new IOException("Invalid path finder index " + delegateIndex + ".");
+                }
+
+                final int cacheIndex = readVarInt();
+                if (cacheIndex > pathCaches.size()) {
+                    throw new IOException("Invalid path cache index " + cacheIndex + ".");
+                }
+
+                if (cacheIndex == pathCaches.size()) {
+                    pathCaches.add(new PathCache(factory, readVarInt(), readVarInt()));
+                }
+
+                return new CachingFactoryPathFinder(pathFinders.get(delegateIndex), pathCaches.get(cacheIndex));
+            }
+
+            if (className == null || !PATH_FINDERS.contains(className)) {
+                throw new IOException("Unknown path finder type " + className + ".");
+            }
+
+            final int resolution = readVarInt();
+
+            if (AStarFactoryPathFinder.class.getName().equals(className)) {
+                final boolean diagonalMoves = readBoolean();
+                final boolean jumpPointSearch = readBoolean();
+                if (jumpPointSearch && !diagonalMoves) {
+                    throw new IOException("Jump point search without diagonal moves.");
+                }
+
+                return new AStarFactoryPathFinder(factory, resolution, diagonalMoves, jumpPointSearch);
+            }
+            if (DStarLiteFactoryPathFinder.class.getName().equals(className)) {
+                final boolean diagonalMoves = readBoolean();
+
+                return new DStarLiteFactoryPathFinder(factory, resolution, diagonalMoves, readSignedVarInt());
+            }
+            if (DistanceFieldFactoryPathFinder.class.getName().equals(className)) {
+                return new DistanceFieldFactoryPathFinder(factory, resolution, readBoolean());
+            }
+            if (CooperativeFactoryPathFinder.class.getName().equals(className)) {
+                return new CooperativeFactoryPathFinder(factory, resolution, readVarInt());
+            }
+            if (CustomDijkstraFactoryPathFinder.class.getName().equals(className)) {
+                return new CustomDijkstraFactoryPathFinder(factory, resolution);
+            }
+
+            return new JGraphTDijkstraFactoryPathFinder(factory, resolution);
+        }
+
+        private Component readComponent(final Factory factory,
+                                        final String type,
+                                        final String name,
+                                        final List<Component> components,
+                                        final List<FactoryPathFinder> pathFinders)
+        throws IOException {
+            switch (type == null ? "" : type) {
+                case "Room": {
+                    return new Room(factory, readRectangle(), name);
+                }
+                case "Area": {
+                    final Room room = componentAt(components, readVarInt(), Room.class);
+
+                    return new Area(room, readRectangle(), name);
+                }
+                case "Machine": {
+                    final Area area = componentAt(components, readVarInt(), Area.class);
+
+                    return new Machine(area, readRectangle(), name);
+                }
+                case "Door": {
+                    final Room room = componentAt(components, readVarInt(), Room.class);
+
+                    return new Door(room, readShape(), readBoolean(), name);
+                }
+                case "ChargingStation": {
+                    final ChargingStation chargingStation = new ChargingStation(factory, readRectangle(), name);
+                    chargingStation.setCharging(readBoolean());
+
+                    return chargingStation;
+                }
+                case "Conveyor": {
+                    return new Conveyor(factory, readShape(), name);
+                }
+                case "Puck": {
+                    return new Puck(factory, readCircle(), name);
+                }
+                case "Robot": {
+                    return readRobot(factory, name, pathFinders);
+                }
+                default: {
+                    throw new IOException("Unsupported component type " + type + ".");
+                }
+            }
+        }
+
+        private Robot readRobot(final Factory factory,
+                                final String name,
+                                final List<FactoryPathFinder> pathFinders)
+        throws IOException {
+            final CircularShape shape = readCircle();
+
+            final int pathFinderIndex = readVarInt();
+            if (pathFinderIndex > pathFinders.size()) {
+                throw new IOException("Invalid path finder index " + (pathFinderIndex - 1) + ".");
+            }
+            final FactoryPathFinder pathFinder = pathFinderIndex == 0 ? null : pathFinders.get(pathFinderIndex - 1);
+
+            final Battery battery = readBoolean() ? new Battery(readFloat(), readFloat()) : null;
+
+            final Robot robot = new Robot(factory, pathFinder, shape, battery, name);
+            robot.setSpeed(readVarInt());
+
+            if (readBoolean()) {
+                robot.memorizeTargetPosition(readSignedVarInt(), readSignedVarInt());
+            }
+
+            return robot;
+        }
+
+        private PositionedShape readShape()
+        throws IOException {
+            final int shapeType = readVarInt();
+
+            switch (shapeType) {
+                case RECTANGLE: {
+                    return new RectangularShape(readSignedVarInt(), readSignedVarInt(), readVarInt(), readVarInt());
+                }
+                case CIRCLE: {
+                    return new CircularShape(readSignedVarInt(), readSignedVarInt(), readVarInt());
+                }
+                case POLYGON: {
+                    final BasicPolygonShape shape = new BasicPolygonShape();
+                    final int verticesCount = readVarInt();
+
+                    int xCoordinate = 0;
+                    int yCoordinate = 0;
+                    for (int index = 0; index < verticesCount; index++) {
+                        xCoordinate += readSignedVarInt();
+                        yCoordinate += readSignedVarInt();
+                        shape.addVertex(new BasicVertex(xCoordinate, yCoordinate));
+                    }
+
+                    return shape;
+                }
+                default: {
+                    throw new IOException("Unsupported shape type " + shapeType + ".");
+                }
+            }
+        }
+
+        private RectangularShape readRectangle()
+        throws IOException {
+            return expect(readShape(), RectangularShape.class);
+        }
+
+        private CircularShape readCircle()
+        throws IOException {
+            return expect(readShape(), CircularShape.class);
+        }
+
+        private static <T> T expect(final Object value,
+                                    final Class<T> type)
+        throws IOException {
+            if (!type.isInstance(value)) {
+                throw new IOException("Expected a " + type.getSimpleName() + " but read a " +
+                                      value.getClass().getSimpleName() + ".");
+            }
+
+            return type.cast(value);
+        }
+
+        private static Component componentAt(final List<Component> components,
+                                             final int index)
+        throws IOException {
+            return componentAt(components, index, Component.class);
+        }
+
+        private static <T extends Component> T componentAt(final List<Component> components,
+                                                           final int index,
+                                                           final Class<T> type)
+        throws IOException {
+            if (index < 0 || index >= components.size()) {
+                throw new IOException("Invalid component index " + index + ".");
+            }
+
+            return expect(components.get(index), type);
+        }
+
+        private String readString()
+        throws IOException {
+            final int code = readVarInt();
+
+            if (code == NULL_STRING) {
+                return null;
+            }
+
+            if (code == NEW_STRING) {
+                final int length = readVarInt();
+                if (length < 0 || length > data.length - offset) {
+                    throw new EOFException();
+                }
+
+                final String string = new String(data, offset, length, StandardCharsets.UTF_8);
+                offset += length;
+                strings.add(string);
+
+                return string;
+            }
+
+            final int index = code - NEW_STRING - 1;
+            if (index >= strings.size()) {
+                throw new IOException("Invalid string index " + index + ".");
+            }
+
+            return strings.get(index);
+        }
+
+        private int readSignedVarInt()
+        throws IOException {
+            final int value = readVarInt();
+
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private int readVarInt()
+        throws IOException {
+            int value = 0;
+
+            for (int shift = 0; shift < 32; shift += 7) {
+                final int read = readByte();
+
+                value |= (read & 0x7F) << shift;
+                if ((read & 0x80) == 0) {
+                    return value;
+                }
+            }
+
+            throw new IOException("Malformed variable length integer.");
+        }
+
+        private boolean readBoolean()
+        throws IOException {
+            return readByte() != 0;
+        }
+
+        private float readFloat()
+        throws IOException {
+            return Float.intBitsToFloat(readInt());
+        }
+
+        private int readInt()
+        throws IOException {
+            return readByte() << 24 | readByte() << 16 | readByte() << 8 | readByte();
+        }
+
+        private int readByte()
+        throws IOException {
+            if (offset >= data.length) {
+                throw new EOFException();
+            }
+
+            return data[offset++] & 0xFF;
+        }
+    }
+}
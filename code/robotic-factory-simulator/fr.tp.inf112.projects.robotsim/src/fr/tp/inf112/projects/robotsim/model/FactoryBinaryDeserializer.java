@@ -0,0 +1,27 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+/* Java related packages */
+import java.io.IOException;
+
+/* Kafka related packages */
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+/* Reads the factories written to Kafka by FactoryBinarySerializer */
+public class FactoryBinaryDeserializer implements Deserializer<Factory> {
+
+    @Override
+    public Factory deserialize(final String topic,
+                               final byte[] data) {
+        if (data == null) {
+            return null;
+        }
+
+        try {
+            return FactoryBinaryCodec.decode(data);
+        }
+        catch (final IOException ex) {
+            throw new SerializationException("Invalid binary factory received from topic " + topic + ".", ex);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+/* Java related packages */
+import java.nio.charset.StandardCharsets;
+
+/* Kafka related packages */
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+/* Writes the factories sent to Kafka with the binary codec, marking them with its content type */
+public class FactoryBinarySerializer implements Serializer<Factory> {
+
+    @Override
+    public byte[] serialize(final String topic,
+                            final Factory factory) {
+        if (factory == null) {
+            return null;
+        }
+
+        try {
+            return FactoryBinaryCodec.encode(factory);
+        }
+        catch (final IllegalArgumentException ex) {
+            throw new SerializationException("Cannot write factory " + factory.getId() + " to topic " + topic + ".", ex);
+        }
+    }
+
+    @Override
+    public byte[] serialize(final String topic,
+                            final Headers headers,
+                            final Factory factory) {
+        headers.add(SimulationServiceUtils.CONTENT_TYPE_HEADER,
+                    FactoryBinaryCodec.MEDIA_TYPE.getBytes(StandardCharsets.UTF_8));
+
+        return serialize(topic, factory);
+    }
+}
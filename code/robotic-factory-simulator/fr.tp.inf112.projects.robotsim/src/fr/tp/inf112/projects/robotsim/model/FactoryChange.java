@@ -0,0 +1,54 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+/* Java related packages */
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Batched change event of a factory, emitted once at the end of a tick with the ids of the
+ * components which changed during that tick.
+ *
+ * A structural change means that components were added or removed, or that the simulation was
+ * started or stopped, so that observers should reload the whole factory instead of the listed
+ * components only.
+ */
+public final class FactoryChange implements Serializable {
+
+    private static final long serialVersionUID = 2893362710944651379L;
+
+    private final long tick;
+
+    /* Array rather than list, so that the event only holds serializable fields as the deltas */
+    private final String[] changedComponentIds;
+
+    private final boolean structural;
+
+    public FactoryChange(final long tick,
+                         final List<String> changedComponentIds,
+                         final boolean structural) {
+        this.tick                = tick;
+        this.changedComponentIds = changedComponentIds.toArray(new String[changedComponentIds.size()]);
+        this.structural          = structural;
+    }
+
+    /* Tick during which the changes happened */
+    public long getTick() {
+        return tick;
+    }
+
+    public List<String> getChangedComponentIds() {
+        return Collections.unmodifiableList(Arrays.asList(changedComponentIds));
+    }
+
+    public boolean isStructural() {
+        return structural;
+    }
+
+    @Override
+    public String toString() {
+        return "FactoryChange [tick=" + tick + ", changedComponentIds=" + Arrays.toString(changedComponentIds) + ", structural=" +
+               structural + "]";
+    }
+}
@@ -0,0 +1,161 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+/* Java related packages */
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/* Jackson related packages */
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * New position and state of the components which changed during a tick, so that remote copies of
+ * a factory can be updated in place instead of reloading it.
+ *
+ * Entries hold absolute values, applying a delta twice or after a more recent full copy of the
+ * factory is harmless. Components added or removed are not covered, a full copy must be sent.
+ */
+public final class FactoryDelta implements Serializable {
+
+    private static final long serialVersionUID = -3307153419406431866L;
+
+    private final long tick;
+
+    private final String[] componentIds;
+
+    private final int[] xCoordinates;
+
+    private final int[] yCoordinates;
+
+    /* Component specific flags, such as a robot being blocked or a door being open */
+    private final int[] states;
+
+    @JsonCreator
+    public FactoryDelta(@JsonProperty("tick") final long tick,
+                        @JsonProperty("ids") final String[] componentIds,
+                        @JsonProperty("x") final int[] xCoordinates,
+                        @JsonProperty("y") final int[] yCoordinates,
+                        @JsonProperty("states") final int[] states) {
+        if (xCoordinates.length != componentIds.length || yCoordinates.length != componentIds.length ||
+            states.length != componentIds.length) {
+            throw new IllegalArgumentException("All the entries of a delta must have the same length.");
+        }
+
+        this.tick         = tick;
+        this.componentIds = componentIds;
+        this.xCoordinates = xCoordinates;
+        this.yCoordinates = yCoordinates;
+        this.states       = states;
+    }
+
+    /**
+     * @return one delta holding the latest entry of each component among the given deltas, at the
+     * tick of the most recent one, so that a late viewer can catch up with a single update.
+     */
+    public static FactoryDelta merge(final List<FactoryDelta> deltas) {
+        if (deltas.isEmpty()) {
+            throw new IllegalArgumentException("At least one delta must be merged.");
+        }
+
+        final List<FactoryDelta> orderedDeltas = new ArrayList<>(deltas);
+        orderedDeltas.sort(Comparator.comparingLong(FactoryDelta::getTick));
+
+        // Latest x, y and state of each component, in the order the components first changed
+        final Map<String, int[]> entries = new LinkedHashMap<>();
+
+        for (final FactoryDelta delta : orderedDeltas) {
+            for (int index = 0; index < delta.size(); index++) {
+                entries.put(delta.componentIds[index],
+                            new int[] { delta.xCoordinates[index], delta.yCoordinates[index], delta.states[index] });
+            }
+        }
+
+        final String[] componentIds = new String[entries.size()];
+        final int[] xCoordinates = new int[entries.size()];
+        final int[] yCoordinates = new int[entries.size()];
+        final int[] states = new int[entries.size()];
+        int index = 0;
+
+        for (final Map.Entry<String, int[]> entry : entries.entrySet()) {
+            componentIds[index] = entry.getKey();
+            xCoordinates[index] = entry.getValue()[0];
+            yCoordinates[index] = entry.getValue()[1];
+            states[index]       = entry.getValue()[2];
+            index++;
+        }
+
+        return new FactoryDelta(orderedDeltas.get(orderedDeltas.size() - 1).getTick(), componentIds, xCoordinates,
+                                yCoordinates, states);
+    }
+
+    /**
+     * @return one delta per component of this delta, so that they can be keyed and partitioned by
+     * component.
+     */
+    public List<FactoryDelta> split() {
+        final List<FactoryDelta> deltas = new ArrayList<>(size());
+
+        for (int index = 0; index < size(); index++) {
+            deltas.add(new FactoryDelta(tick, new String[] { componentIds[index] }, new int[] { xCoordinates[index] },
+                                        new int[] { yCoordinates[index] }, new int[] { states[index] }));
+        }
+
+        return deltas;
+    }
+
+    @JsonProperty("tick")
+    public long getTick() {
+        return tick;
+    }
+
+    @JsonIgnore // derived from the entries
+    public int size() {
+        return componentIds.length;
+    }
+
+    @JsonProperty("ids")
+    public String[] getComponentIds() {
+        return componentIds.clone();
+    }
+
+    @JsonProperty("x")
+    public int[] getxCoordinates() {
+        return xCoordinates.clone();
+    }
+
+    @JsonProperty("y")
+    public int[] getyCoordinates() {
+        return yCoordinates.clone();
+    }
+
+    @JsonProperty("states")
+    public int[] getStates() {
+        return states.clone();
+    }
+
+    String getComponentId(final int index) {
+        return componentIds[index];
+    }
+
+    int getxCoordinate(final int index) {
+        return xCoordinates[index];
+    }
+
+    int getyCoordinate(final int index) {
+        return yCoordinates[index];
+    }
+
+    int getState(final int index) {
+        return states[index];
+    }
+
+    @Override
+    public String toString() {
+        return "FactoryDelta [tick=" + tick + ", size=" + size() + "]";
+    }
+}
@@ -0,0 +1,113 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+/* Java related packages */
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+
+/* Jackson related packages */
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
+
+/* Canvas related packages */
+import fr.tp.inf112.projects.canvas.model.impl.BasicVertex;
+
+/* Robotsim related packages */
+import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
+
+/**
+ * JSON mappers of the factories and of their deltas, shared by the simulation service, the viewer
+ * and the tests so that they agree on the format.
+ *
+ * The mappers are built once, building them and warming up their caches costs far more than
+ * reading a message. Readers and writers are immutable and can be used by several threads at once.
+ * The mappers themselves are shared as well and must not be reconfigured.
+ */
+public final class FactoryJsonCodec {
+
+    /* Content type of a delta sent on its own, for HTTP headers */
+    public static final String DELTA_MEDIA_TYPE = "application/x-robotsim-delta+json";
+
+    /* Factories are polymorphic, the concrete type of components and shapes is written with them */
+    private static final ObjectMapper FACTORY_MAPPER = createFactoryMapper();
+
+    /* Deltas only hold ids, coordinates and states, no type information is needed */
+    private static final ObjectMapper DELTA_MAPPER = new ObjectMapper();
+
+    private static final ObjectReader FACTORY_READER = FACTORY_MAPPER.readerFor(Factory.class);
+
+    private static final ObjectWriter FACTORY_WRITER = FACTORY_MAPPER.writerFor(Factory.class);
+
+    private static final ObjectReader DELTA_READER = DELTA_MAPPER.readerFor(FactoryDelta.class);
+
+    private static final ObjectWriter DELTA_WRITER = DELTA_MAPPER.writerFor(FactoryDelta.class);
+
+    private FactoryJsonCodec() {
+    }
+
+    private static ObjectMapper createFactoryMapper() {
+        final PolymorphicTypeValidator typeValidator = BasicPolymorphicTypeValidator.builder()
+            .allowIfSubType(PositionedShape.class.getPackageName())
+            .allowIfSubType(Component.class.getPackageName())
+            .allowIfSubType(BasicVertex.class.getPackageName())
+            .allowIfSubType(ArrayList.class.getName())
+            .allowIfSubType(LinkedHashSet.class.getName())
+            .build();
+
+        final ObjectMapper mapper = new ObjectMapper();
+        mapper.activateDefaultTyping(typeValidator, ObjectMapper.DefaultTyping.NON_FINAL);
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        mapper.setSerializationInclusion(JsonInclude.Include.ALWAYS); // ensure false/0 are written
+
+        return mapper;
+    }
+
+    public static ObjectMapper getFactoryMapper() {
+        return FACTORY_MAPPER;
+    }
+
+    public static ObjectMapper getDeltaMapper() {
+        return DELTA_MAPPER;
+    }
+
+    public static ObjectReader getFactoryReader() {
+        return FACTORY_READER;
+    }
+
+    public static ObjectWriter getFactoryWriter() {
+        return FACTORY_WRITER;
+    }
+
+    public static ObjectReader getDeltaReader() {
+        return DELTA_READER;
+    }
+
+    public static ObjectWriter getDeltaWriter() {
+        return DELTA_WRITER;
+    }
+
+    public static Factory readFactory(final String json)
+    throws IOException {
+        return FACTORY_READER.readValue(json);
+    }
+
+    public static String writeFactory(final Factory factory)
+    throws IOException {
+        return FACTORY_WRITER.writeValueAsString(factory);
+    }
+
+    public static FactoryDelta readDelta(final String json)
+    throws IOException {
+        return DELTA_READER.readValue(json);
+    }
+
+    public static String writeDelta(final FactoryDelta delta)
+    throws IOException {
+        return DELTA_WRITER.writeValueAsString(delta);
+    }
+}
@@ -0,0 +1,36 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+/**
+ * Listener of the changes of the factory which modify where robots can go, so that path finders
+ * and caches built from the layout can be refreshed.
+ *
+ * The components are notified from the thread running the simulation, never while robots plan
+ * their motions concurrently.
+ */
+public interface FactoryLayoutListener {
+
+    /**
+     *  Called after a door of the factory was opened or closed.
+     */
+    void doorStateChanged(Door door);
+
+    /**
+     * Called after a component was added to the factory or moved, only for the motion listeners.
+     */
+    default void componentMoved(Component component) {
+    }
+
+    /**
+     * Whether the listener is told about the moves of the components. Every move of every robot is
+     * dispatched to the motion listeners, so only the listeners tracking the mobile components are.
+     */
+    default boolean isMotionListener() {
+        return false;
+    }
+
+    /**
+     * Called after a component was removed from the factory.
+     */
+    default void componentRemoved(Component component) {
+    }
+}
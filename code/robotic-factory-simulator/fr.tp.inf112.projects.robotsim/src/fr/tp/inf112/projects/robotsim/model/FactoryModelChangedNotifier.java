@@ -15,6 +15,23 @@ public interface FactoryModelChangedNotifier {
      */
     void notifyObservers();
 
+    /**
+     *  Notifies all registered observers about the changes batched during a tick. Notifiers which
+     *  cannot make use of the details notify the observers as for any other change.
+     */
+    default void notifyObservers(final FactoryChange change) {
+        notifyObservers();
+    }
+
+    /**
+     *  @return true if the observers read the snapshot of the factory when notified, so that the
+     *  factory encodes one at the end of every tick. The factories of other notifiers only publish
+     *  their snapshot when the simulation stops.
+     */
+    default boolean isSnapshotReader() {
+        return false;
+    }
+
     /**
      *  Adds observers to the notifier.
      */
@@ -5,52 +5,96 @@ import fr.tp.inf112.projects.robotsim.model.SimulationServiceUtils;
 import fr.tp.inf112.projects.robotsim.app.RemoteSimulatorController;
 
 /* Java related packages */
-import java.util.Collections;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 import java.time.Duration;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /* Spring related packages */
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 
 /* Kafka related packages */
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
 
 /* Class used to:
    1. receive the kafka events from the remote Kafka notifier
-   2. extract the JSON text out of them
-   3. send this text to the remote simulator controller to parse the JSON to factory */
+   2. extract the JSON text or the binary factory out of them
+   3. send them to the remote simulator controller, either as a full factory from the
+      keyframe topic or as a delta to apply to the current factory
+
+   In the LATEST_STATE mode, only the newest keyframe of each poll is parsed and the deltas of the
+   poll are merged into one, so that a viewer slower than the simulation skips intermediate states
+   instead of falling further and further behind. */
 public class FactorySimulationEventConsumer {
 
-    private final KafkaConsumer<String, String> consumer;
+    public enum Mode {
+        /* Every record is applied, in order */
+        EVERY_RECORD,
+        /* Only the latest state of each poll is applied */
+        LATEST_STATE
+    }
+
+    /* Polls after which the metrics are logged */
+    private static final int METRICS_LOG_INTERVAL = 50;
+
+    private final KafkaConsumer<String, byte[]> consumer;
     private final RemoteSimulatorController controller;
+    private final Mode mode;
+    /* Time waited for records, which bounds the number of updates of the viewer per second */
+    private final Duration pollTimeout;
+    private final ConsumerMetrics metrics = new ConsumerMetrics();
     private static final Logger LOGGER = Logger.getLogger(FactorySimulationEventConsumer.class.getName());
 
     public FactorySimulationEventConsumer(final RemoteSimulatorController controller) {
+        this(controller, Mode.LATEST_STATE, Duration.ofMillis(100));
+    }
+
+    public FactorySimulationEventConsumer(final RemoteSimulatorController controller,
+                                          final Mode mode,
+                                          final Duration pollTimeout) {
         this.controller = controller;
+        this.mode = mode;
+        this.pollTimeout = pollTimeout;
         final Properties props = SimulationServiceUtils.getDefaultConsumerProperties();
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG,
             StringDeserializer.class);
         props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG,
-            StringDeserializer.class);
+            ByteArrayDeserializer.class);
 
         this.consumer = new KafkaConsumer<>(props);
-        final String topicName = SimulationServiceUtils.getTopicName((Factory)controller.getCanvas());
-        this.consumer.subscribe(Collections.singletonList(topicName));
+        final Factory factory = (Factory) controller.getCanvas();
+        this.consumer.subscribe(List.of(SimulationServiceUtils.getKeyframeTopicName(factory),
+                                        SimulationServiceUtils.getTopicName(factory)));
     }
 
     public void consumeMessages() {
         try {
             while (true) {
-                final ConsumerRecords<String, String> records =
-                    consumer.poll(Duration.ofMillis(100));
-                LOGGER.info("Polled " + records.count() + " records from Kafka broker.");
-                for (final ConsumerRecord<String, String> record : records) {
-                    LOGGER.info("Received JSON Factory text '" + record.value() + "'.");
-                    controller.setJsonFactoryModel(record.value());
+                final ConsumerRecords<String, byte[]> records =
+                    consumer.poll(pollTimeout);
+                LOGGER.fine("Polled " + records.count() + " records from Kafka broker.");
+                metrics.polled(records.count());
+
+                if (mode == Mode.LATEST_STATE) {
+                    consumeLatestState(records);
+                }
+                else {
+                    consumeEveryRecord(records);
+                }
+
+                updateLag(records);
+                if (metrics.getPolls() % METRICS_LOG_INTERVAL == 0) {
+                    LOGGER.info(metrics.toString());
                 }
             }
         }
@@ -59,4 +103,114 @@ public class FactorySimulationEventConsumer {
         }
     }
 
+    public ConsumerMetrics getMetrics() {
+        return metrics;
+    }
+
+    private void consumeEveryRecord(final ConsumerRecords<String, byte[]> records) {
+        for (final ConsumerRecord<String, byte[]> record : records) {
+            if (SimulationServiceUtils.isKeyframeTopic(record.topic())) {
+                consumeKeyframe(record);
+            }
+            else {
+                controller.applyJsonFactoryDelta(new String(record.value(), StandardCharsets.UTF_8));
+                metrics.deltasApplied(1);
+            }
+        }
+    }
+
+    private void consumeLatestState(final ConsumerRecords<String, byte[]> records) {
+        ConsumerRecord<String, byte[]> keyframe = null;
+        final List<ConsumerRecord<String, byte[]>> deltaRecords = new ArrayList<>();
+
+        for (final ConsumerRecord<String, byte[]> record : records) {
+            if (!SimulationServiceUtils.isKeyframeTopic(record.topic())) {
+                deltaRecords.add(record);
+            }
+            else if (keyframe == null) {
+                keyframe = record;
+            }
+            else {
+                metrics.keyframeDropped();
+
+                if (getTick(record) >= getTick(keyframe)) {
+                    keyframe = record;
+                }
+            }
+        }
+
+        final long keyframeTick = keyframe == null ? -1 : getTick(keyframe);
+        if (keyframe != null) {
+            consumeKeyframe(keyframe);
+        }
+
+        // Deltas only hold the components which changed, they are merged rather than skipped
+        final List<FactoryDelta> deltas = new ArrayList<>(deltaRecords.size());
+        for (final ConsumerRecord<String, byte[]> record : deltaRecords) {
+            try {
+                final FactoryDelta delta = FactoryJsonCodec.readDelta(new String(record.value(), StandardCharsets.UTF_8));
+
+                if (delta.getTick() > keyframeTick) {
+                    deltas.add(delta);
+                }
+                else {
+                    metrics.deltasDropped(1);
+                }
+            }
+            catch (final IOException ex) {
+                LOGGER.log(Level.WARNING, "Received invalid JSON factory delta", ex);
+            }
+        }
+
+        if (!deltas.isEmpty()) {
+            controller.applyFactoryDelta(FactoryDelta.merge(deltas));
+            metrics.deltasApplied(deltas.size());
+        }
+    }
+
+    private void updateLag(final ConsumerRecords<String, byte[]> records) {
+        long recordLag = 0;
+        for (final TopicPartition partition : consumer.assignment()) {
+            recordLag += consumer.currentLag(partition).orElse(0);
+        }
+
+        long newestTimestamp = -1;
+        for (final ConsumerRecord<String, byte[]> record : records) {
+            newestTimestamp = Math.max(newestTimestamp, record.timestamp());
+        }
+
+        metrics.setLag(recordLag, newestTimestamp < 0 ? 0 : System.currentTimeMillis() - newestTimestamp);
+    }
+
+    private void consumeKeyframe(final ConsumerRecord<String, byte[]> record) {
+        final Header contentType = record.headers().lastHeader(SimulationServiceUtils.CONTENT_TYPE_HEADER);
+
+        if (contentType == null ||
+            !FactoryBinaryCodec.MEDIA_TYPE.equals(new String(contentType.value(), StandardCharsets.UTF_8))) {
+            final String jsonFactory = new String(record.value(), StandardCharsets.UTF_8);
+            // Keyframes arrive every few seconds, only their key and tick are worth logging
+            LOGGER.fine(() -> "Received JSON keyframe " + record.key() + " of tick " + getTick(record) + ".");
+            controller.setJsonFactoryKeyframe(jsonFactory, getTick(record));
+            metrics.keyframeApplied();
+            return;
+        }
+
+        try {
+            LOGGER.fine(() -> "Received binary keyframe " + record.key() + " of tick " + getTick(record) + ", " +
+                              record.value().length + " bytes.");
+            controller.setFactoryKeyframe(FactoryBinaryCodec.decode(record.value()), getTick(record));
+            metrics.keyframeApplied();
+        }
+        catch (final IOException ex) {
+            LOGGER.log(Level.WARNING, "Received invalid binary factory keyframe", ex);
+        }
+    }
+
+    /* Keyframes without tick are older than any delta */
+    private static long getTick(final ConsumerRecord<String, byte[]> record) {
+        final Header header = record.headers().lastHeader(SimulationServiceUtils.TICK_HEADER);
+
+        return header == null ? -1 : Long.parseLong(new String(header.value(), StandardCharsets.UTF_8));
+    }
+
 }
@@ -0,0 +1,161 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+/* Robotsim related packages */
+import fr.tp.inf112.projects.robotsim.app.RemoteSimulatorController;
+
+/* Java related packages */
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Iterator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/* Class used to:
+   1. receive the Server-Sent Events of the /simulation/stream endpoint of the simulation service
+   2. send them to the remote simulator controller, either as a full factory for a keyframe event
+      or as a delta to apply to the current factory
+
+   It is an alternative to the Kafka consumer for the viewers which cannot reach the broker. The
+   service merges the deltas for a slow viewer, so the viewer never falls behind the simulation.
+   The stream is opened again after RECONNECT_DELAY_MILLIS when it is closed, starting with a new
+   keyframe. */
+public class FactorySimulationEventStream {
+
+    private static final long RECONNECT_DELAY_MILLIS = 1000;
+
+    private static final String KEYFRAME_EVENT = "keyframe";
+
+    private static final String DELTA_EVENT = "delta";
+
+    private final HttpClient httpClient;
+    private final RemoteSimulatorController controller;
+    private final URI streamURI;
+    private volatile boolean running = true;
+    /* Lines of the open stream, closed to stop reading */
+    private volatile Stream<String> openLines;
+    private static final Logger LOGGER = Logger.getLogger(FactorySimulationEventStream.class.getName());
+
+    /**
+     * @param streamURI URI of the stream of the simulated factory, with its maxFps parameter if any.
+     */
+    public FactorySimulationEventStream(final RemoteSimulatorController controller,
+                                        final URI streamURI) {
+        this.httpClient = HttpClient.newHttpClient();
+        this.controller = controller;
+        this.streamURI = streamURI;
+    }
+
+    public void consumeEvents() {
+        while (running) {
+            try {
+                readStream();
+            } catch (IOException | UncheckedIOException e) {
+                if (running) {
+                    LOGGER.log(Level.WARNING, "Simulation event stream failed", e);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            try {
+                if (running) {
+                    Thread.sleep(RECONNECT_DELAY_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public void stop() {
+        running = false;
+
+        final Stream<String> lines = openLines;
+        if (lines != null) {
+            lines.close();
+        }
+    }
+
+    private void readStream()
+    throws IOException, InterruptedException {
+        final HttpRequest request = HttpRequest.newBuilder()
+                .uri(streamURI)
+                .header("Accept", "text/event-stream")
+                .GET()
+                .build();
+
+        final HttpResponse<Stream<String>> response = httpClient.send(request, HttpResponse.BodyHandlers.ofLines());
+        if (response.statusCode() != 200) {
+            response.body().close();
+            throw new IOException("Simulation service returned status " + response.statusCode());
+        }
+
+        LOGGER.info("Connected to simulation event stream " + streamURI);
+
+        try (Stream<String> lines = response.body()) {
+            openLines = lines;
+            final Iterator<String> iterator = lines.iterator();
+            final StringBuilder data = new StringBuilder();
+            String event = null;
+            String id = null;
+
+            while (running && iterator.hasNext()) {
+                final String line = iterator.next();
+
+                /* An empty line ends the event */
+                if (line.isEmpty()) {
+                    if (data.length() > 0) {
+                        dispatch(event, id, data.toString());
+                    }
+                    data.setLength(0);
+                    event = null;
+                    id = null;
+                }
+                else if (line.startsWith("data:")) {
+                    if (data.length() > 0) {
+                        data.append('\n');
+                    }
+                    data.append(fieldValue(line));
+                }
+                else if (line.startsWith("event:")) {
+                    event = fieldValue(line);
+                }
+                else if (line.startsWith("id:")) {
+                    id = fieldValue(line);
+                }
+            }
+        } finally {
+            openLines = null;
+        }
+    }
+
+    /* Value of a field, without the single space allowed after the colon */
+    private static String fieldValue(final String line) {
+        final int colon = line.indexOf(':');
+        final int start = line.length() > colon + 1 && line.charAt(colon + 1) == ' ' ? colon + 2 : colon + 1;
+
+        return line.substring(start);
+    }
+
+    private void dispatch(final String event, final String id, final String data) {
+        if (KEYFRAME_EVENT.equals(event)) {
+            long tick = 0;
+            try {
+                tick = Long.parseLong(id);
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Keyframe event without tick: " + id);
+            }
+            controller.setJsonFactoryKeyframe(data, tick);
+        }
+        else if (DELTA_EVENT.equals(event)) {
+            controller.applyJsonFactoryDelta(data);
+        }
+    }
+}
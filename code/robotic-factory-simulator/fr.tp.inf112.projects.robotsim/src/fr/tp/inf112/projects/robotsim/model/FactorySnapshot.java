@@ -0,0 +1,82 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+/* Java related packages */
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+/**
+ * Immutable state of a factory at the end of a tick, published by the simulation thread and read
+ * by any number of other threads without locking.
+ *
+ * The state is kept as the compact image written by FactoryBinaryCodec, which binary clients can
+ * be sent as is. Readers needing the object model share a single copy decoded on first use.
+ *
+ * The tick and a checksum of the image make up an entity tag, so that HTTP clients can be told
+ * that the factory they hold is still the current one.
+ */
+public final class FactorySnapshot {
+
+    /* HTTP header carrying the tick of the factory or of the delta sent */
+    public static final String TICK_HEADER = "X-Simulation-Tick";
+
+    private final long tick;
+
+    private final byte[] image;
+
+    private volatile Factory factory;
+
+    private volatile String eTag;
+
+    FactorySnapshot(final long tick,
+                    final byte[] image) {
+        this.tick  = tick;
+        this.image = image;
+    }
+
+    /* Last tick simulated before the snapshot was taken, as in the deltas, -1 if none was */
+    public long getTick() {
+        return tick;
+    }
+
+    /* Binary image of the factory, shared by all the readers and not to be modified */
+    public byte[] getImage() {
+        return image;
+    }
+
+    /* Quoted entity tag of the snapshot, equal for snapshots of the same tick and state */
+    public String getETag() {
+        String tag = eTag;
+
+        if (tag == null) {
+            final CRC32 checksum = new CRC32();
+            checksum.update(image);
+
+            tag  = "\"" + tick + "-" + Long.toHexString(checksum.getValue()) + "\"";
+            eTag = tag;
+        }
+
+        return tag;
+    }
+
+    /* Copy of the factory decoded from the image, shared by all the readers and not to be modified */
+    public Factory getFactory() {
+        Factory decoded = factory;
+
+        if (decoded == null) {
+            try {
+                decoded = FactoryBinaryCodec.decode(image);
+            } catch (IOException ex) {
+                throw new IllegalStateException("Invalid factory snapshot of tick " + tick, ex);
+            }
+
+            factory = decoded;
+        }
+
+        return decoded;
+    }
+
+    @Override
+    public String toString() {
+        return "FactorySnapshot [tick=" + tick + ", bytes=" + image.length + "]";
+    }
+}
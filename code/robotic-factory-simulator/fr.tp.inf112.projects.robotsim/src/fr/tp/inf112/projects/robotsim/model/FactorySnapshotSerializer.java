@@ -0,0 +1,58 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+/* Java related packages */
+import java.nio.charset.StandardCharsets;
+
+/* Kafka related packages */
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Writes the keyframes sent to Kafka from the snapshots of the factories. Binary keyframes are the
+ * image of the snapshot as is, marked with the content type of the binary codec. Keyframes of other
+ * formats are written by the given serializer from the factory decoded from the snapshot.
+ */
+public class FactorySnapshotSerializer implements Serializer<FactorySnapshot> {
+
+    /* Null for binary keyframes */
+    private final Serializer<Factory> factorySerializer;
+
+    public FactorySnapshotSerializer() {
+        this(null);
+    }
+
+    public FactorySnapshotSerializer(final Serializer<Factory> factorySerializer) {
+        this.factorySerializer = factorySerializer;
+    }
+
+    @Override
+    public byte[] serialize(final String topic,
+                            final FactorySnapshot snapshot) {
+        if (snapshot == null) {
+            return null;
+        }
+
+        return factorySerializer == null ? snapshot.getImage() : factorySerializer.serialize(topic, snapshot.getFactory());
+    }
+
+    @Override
+    public byte[] serialize(final String topic,
+                            final Headers headers,
+                            final FactorySnapshot snapshot) {
+        if (factorySerializer != null) {
+            return snapshot == null ? null : factorySerializer.serialize(topic, headers, snapshot.getFactory());
+        }
+
+        headers.add(SimulationServiceUtils.CONTENT_TYPE_HEADER,
+                    FactoryBinaryCodec.MEDIA_TYPE.getBytes(StandardCharsets.UTF_8));
+
+        return serialize(topic, snapshot);
+    }
+
+    @Override
+    public void close() {
+        if (factorySerializer != null) {
+            factorySerializer.close();
+        }
+    }
+}
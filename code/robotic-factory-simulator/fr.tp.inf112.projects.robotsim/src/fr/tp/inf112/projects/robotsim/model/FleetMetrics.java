@@ -0,0 +1,77 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+/* Java related packages */
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters measuring how well the robots of a factory share the floor.
+ *
+ * Robots count the targets they visit and, for each tick in which they have a target, whether they
+ * moved or had to wait. Counters may be updated concurrently during the planning phase of a tick.
+ */
+public class FleetMetrics {
+
+    private static final double MILLIS_PER_HOUR = 3_600_000.0;
+
+    private final AtomicLong visitedTargets;
+
+    private final AtomicLong moveTicks;
+
+    private final AtomicLong waitTicks;
+
+    public FleetMetrics() {
+        visitedTargets = new AtomicLong();
+        moveTicks      = new AtomicLong();
+        waitTicks      = new AtomicLong();
+    }
+
+    void targetVisited() {
+        visitedTargets.incrementAndGet();
+    }
+
+    void robotMoved() {
+        moveTicks.incrementAndGet();
+    }
+
+    void robotWaited() {
+        waitTicks.incrementAndGet();
+    }
+
+    public long getVisitedTargets() {
+        return visitedTargets.get();
+    }
+
+    /* Robot ticks spent moving towards a target */
+    public long getMoveTicks() {
+        return moveTicks.get();
+    }
+
+    /* Robot ticks wasted without moving while having a target */
+    public long getWaitTicks() {
+        return waitTicks.get();
+    }
+
+    /* Share of the robot ticks wasted waiting */
+    public double getWaitRatio() {
+        final long ticks = getMoveTicks() + getWaitTicks();
+
+        return ticks == 0 ? 0.0 : (double) getWaitTicks() / ticks;
+    }
+
+    /* Throughput of the fleet over the given simulated duration */
+    public double getVisitedTargetsPerHour(final long simulatedTimeMillis) {
+        return simulatedTimeMillis == 0 ? 0.0 : getVisitedTargets() * MILLIS_PER_HOUR / simulatedTimeMillis;
+    }
+
+    public void reset() {
+        visitedTargets.set(0);
+        moveTicks.set(0);
+        waitTicks.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "FleetMetrics [visitedTargets=" + getVisitedTargets() + ", moveTicks=" + getMoveTicks() +
+               ", waitTicks=" + getWaitTicks() + ", waitRatio=" + getWaitRatio() + "]";
+    }
+}
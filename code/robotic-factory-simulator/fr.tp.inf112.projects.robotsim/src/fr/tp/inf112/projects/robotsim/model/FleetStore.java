@@ -0,0 +1,275 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+/* Java related packages */
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/* Robotsim related packages */
+import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
+
+/**
+ * Structure of arrays holding the mobile components of a factory for the collision queries the
+ * robots make at every tick.
+ *
+ * Each mobile component is given a slot. Its bounding box and the range of grid buckets it covers
+ * are copied into primitive arrays whenever it moves, and each bucket lists its slots in an int
+ * array, in the order they were added. Queries thus scan a few contiguous arrays instead of
+ * following the components to their shapes and positions, and allocate nothing. Mobile components
+ * are expected to overlay shapes by their bounding box, as robots do.
+ *
+ * Not thread safe: queries may run concurrently, updates must not run concurrently with anything.
+ */
+final class FleetStore {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final int INITIAL_CELL_CAPACITY = 4;
+
+    private final int cellSize;
+
+    private final int columns;
+
+    private final int rows;
+
+    /* Slot of each component */
+    private final Map<Component, Integer> slots = new IdentityHashMap<>();
+
+    private Component[] components = new Component[INITIAL_CAPACITY];
+
+    private int[] xCoordinates = new int[INITIAL_CAPACITY];
+
+    private int[] yCoordinates = new int[INITIAL_CAPACITY];
+
+    private int[] widths = new int[INITIAL_CAPACITY];
+
+    private int[] heights = new int[INITIAL_CAPACITY];
+
+    /* Range of buckets each slot is registered in */
+    private int[] minColumns = new int[INITIAL_CAPACITY];
+
+    private int[] minRows = new int[INITIAL_CAPACITY];
+
+    private int[] maxColumns = new int[INITIAL_CAPACITY];
+
+    private int[] maxRows = new int[INITIAL_CAPACITY];
+
+    private int slotCount;
+
+    /* Slots of the removed components, reused first */
+    private int[] freeSlots = new int[INITIAL_CAPACITY];
+
+    private int freeSlotCount;
+
+    /* Slots of each bucket, only the first cellSizes[cell] ones being used */
+    private final int[][] cellSlots;
+
+    private final int[] cellSizes;
+
+    FleetStore(final int columns,
+               final int rows,
+               final int cellSize) {
+        this.cellSize = cellSize;
+        this.columns  = columns;
+        this.rows     = rows;
+
+        cellSlots = new int[columns * rows][];
+        cellSizes = new int[columns * rows];
+    }
+
+    void add(final Component component) {
+        if (slots.containsKey(component)) {
+            return;
+        }
+
+        final int slot = freeSlotCount > 0 ? freeSlots[--freeSlotCount] : newSlot();
+
+        slots.put(component, slot);
+        components[slot] = component;
+        storeBox(slot, component.getBoundingBox());
+        addToCells(slot);
+    }
+
+    void remove(final Component component) {
+        final Integer slot = slots.remove(component);
+
+        if (slot == null) {
+            return;
+        }
+
+        removeFromCells(slot);
+        components[slot] = null;
+
+        if (freeSlotCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, 2 * freeSlots.length);
+        }
+        freeSlots[freeSlotCount++] = slot;
+    }
+
+    /* Copies the box of a component after it moved, re-buckets it only if it changed buckets */
+    void update(final Component component) {
+        final Integer slot = slots.get(component);
+
+        if (slot == null) {
+            add(component);
+
+            return;
+        }
+
+        final PositionedShape box = component.getBoundingBox();
+        final int minColumn = ComponentGridIndex.cellIndex(box.getxCoordinate(), cellSize, columns);
+        final int minRow    = ComponentGridIndex.cellIndex(box.getyCoordinate(), cellSize, rows);
+        final int maxColumn = ComponentGridIndex.cellIndex(box.getxCoordinate() + box.getWidth(), cellSize, columns);
+        final int maxRow    = ComponentGridIndex.cellIndex(box.getyCoordinate() + box.getHeight(), cellSize, rows);
+
+        if (minColumn == minColumns[slot] && minRow == minRows[slot] &&
+            maxColumn == maxColumns[slot] && maxRow == maxRows[slot]) {
+            storeCoordinates(slot, box);
+
+            return;
+        }
+
+        removeFromCells(slot);
+        storeBox(slot, box);
+        addToCells(slot);
+    }
+
+    /* First mobile component overlaying the given box, other than the ignored one */
+    Component getMobileComponentAt(final int xCoordinate,
+                                   final int yCoordinate,
+                                   final int width,
+                                   final int height,
+                                   final Component ignoredComponent) {
+        final int minColumn = ComponentGridIndex.cellIndex(xCoordinate, cellSize, columns);
+        final int minRow    = ComponentGridIndex.cellIndex(yCoordinate, cellSize, rows);
+        final int maxColumn = ComponentGridIndex.cellIndex(xCoordinate + width, cellSize, columns);
+        final int maxRow    = ComponentGridIndex.cellIndex(yCoordinate + height, cellSize, rows);
+
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+                final int cell = row * columns + column;
+                final int[] cellSlotsOfCell = cellSlots[cell];
+
+                for (int index = 0; index < cellSizes[cell]; index++) {
+                    final int slot = cellSlotsOfCell[index];
+
+                    if (components[slot] != ignoredComponent &&
+                        intersectionLength(xCoordinates[slot], widths[slot], xCoordinate, width) > 0 &&
+                        intersectionLength(yCoordinates[slot], heights[slot], yCoordinate, height) > 0) {
+                        return components[slot];
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /* Whether a mobile component overlays the shape and cannot be overlayed by it */
+    boolean hasObstacleAt(final PositionedShape shape) {
+        final int minColumn = ComponentGridIndex.cellIndex(shape.getxCoordinate(), cellSize, columns);
+        final int minRow    = ComponentGridIndex.cellIndex(shape.getyCoordinate(), cellSize, rows);
+        final int maxColumn = ComponentGridIndex.cellIndex(shape.getxCoordinate() + shape.getWidth(), cellSize, columns);
+        final int maxRow    = ComponentGridIndex.cellIndex(shape.getyCoordinate() + shape.getHeight(), cellSize, rows);
+
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+                final int cell = row * columns + column;
+
+                for (int index = 0; index < cellSizes[cell]; index++) {
+                    final Component component = components[cellSlots[cell][index]];
+
+                    if (component.overlays(shape) && !component.canBeOverlayed(shape)) {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /* Same as the intersection length of PositionedShape, overlaying needs both to be positive */
+    private static int intersectionLength(final int coordinate1,
+                                          final int width1,
+                                          final int coordinate2,
+                                          final int width2) {
+        if (coordinate1 <= coordinate2) {
+            return coordinate1 + width1 >= coordinate2 ? coordinate1 + width1 - coordinate2 : 0;
+        }
+
+        return coordinate2 + width2 >= coordinate1 ? coordinate2 + width2 - coordinate1 : 0;
+    }
+
+    private int newSlot() {
+        if (slotCount == components.length) {
+            final int capacity = 2 * components.length;
+
+            components   = Arrays.copyOf(components, capacity);
+            xCoordinates = Arrays.copyOf(xCoordinates, capacity);
+            yCoordinates = Arrays.copyOf(yCoordinates, capacity);
+            widths       = Arrays.copyOf(widths, capacity);
+            heights      = Arrays.copyOf(heights, capacity);
+            minColumns   = Arrays.copyOf(minColumns, capacity);
+            minRows      = Arrays.copyOf(minRows, capacity);
+            maxColumns   = Arrays.copyOf(maxColumns, capacity);
+            maxRows      = Arrays.copyOf(maxRows, capacity);
+        }
+
+        return slotCount++;
+    }
+
+    private void storeCoordinates(final int slot,
+                                  final PositionedShape box) {
+        xCoordinates[slot] = box.getxCoordinate();
+        yCoordinates[slot] = box.getyCoordinate();
+        widths[slot]       = box.getWidth();
+        heights[slot]      = box.getHeight();
+    }
+
+    private void storeBox(final int slot,
+                          final PositionedShape box) {
+        storeCoordinates(slot, box);
+
+        minColumns[slot] = ComponentGridIndex.cellIndex(xCoordinates[slot], cellSize, columns);
+        minRows[slot]    = ComponentGridIndex.cellIndex(yCoordinates[slot], cellSize, rows);
+        maxColumns[slot] = ComponentGridIndex.cellIndex(xCoordinates[slot] + widths[slot], cellSize, columns);
+        maxRows[slot]    = ComponentGridIndex.cellIndex(yCoordinates[slot] + heights[slot], cellSize, rows);
+    }
+
+    private void addToCells(final int slot) {
+        for (int row = minRows[slot]; row <= maxRows[slot]; row++) {
+            for (int column = minColumns[slot]; column <= maxColumns[slot]; column++) {
+                final int cell = row * columns + column;
+
+                if (cellSlots[cell] == null) {
+                    cellSlots[cell] = new int[INITIAL_CELL_CAPACITY];
+                }
+                else if (cellSizes[cell] == cellSlots[cell].length) {
+                    cellSlots[cell] = Arrays.copyOf(cellSlots[cell], 2 * cellSlots[cell].length);
+                }
+
+                cellSlots[cell][cellSizes[cell]++] = slot;
+            }
+        }
+    }
+
+    /* Keeps the order of the other slots of the buckets */
+    private void removeFromCells(final int slot) {
+        for (int row = minRows[slot]; row <= maxRows[slot]; row++) {
+            for (int column = minColumns[slot]; column <= maxColumns[slot]; column++) {
+                final int cell = row * columns + column;
+                final int[] cellSlotsOfCell = cellSlots[cell];
+
+                for (int index = 0; index < cellSizes[cell]; index++) {
+                    if (cellSlotsOfCell[index] == slot) {
+                        System.arraycopy(cellSlotsOfCell, index + 1, cellSlotsOfCell, index, cellSizes[cell] - index - 1);
+                        cellSizes[cell]--;
+
+                        break;
+                    }
+                }
+            }
+        }
+    }
+}
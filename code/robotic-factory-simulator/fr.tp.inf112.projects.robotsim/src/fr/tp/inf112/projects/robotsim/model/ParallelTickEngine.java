@@ -0,0 +1,228 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+/* Java related packages */
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Tick engine running the robots of a factory in two phases.
+ *
+ * During the planning phase, every robot computes its next motion on a ForkJoin pool. Positions
+ * are not modified during this phase, so each robot sees the same read-only state of the factory.
+ * During the commit phase, the planned motions are applied one robot at a time in a deterministic
+ * order: when two robots want to take the same position, the first one in that order moves and
+ * the other one waits.
+ *
+ * The simulation differs from the sequential loop, where each robot sees the moves of the robots
+ * before it: robots plan against the positions at the beginning of the tick, so a robot cannot move
+ * into a position vacated by another robot during the same tick and waits one more tick instead.
+ * It does not depend on the number of threads either, as long as the paths found do not depend on
+ * the order of the searches, which does not hold for robots sharing a path cache.
+ *
+ * Robots whose path finder is not thread safe, and robots using a cooperative path finder which
+ * reserve their trajectories while planning, are planned first, one after the other in the commit
+ * order, which is also the priority order of the reservations.
+ *
+ * The robots are sorted out of the components of the factory again only when components are added
+ * or removed, so an engine is meant to run the ticks of one factory at a time.
+ */
+public class ParallelTickEngine implements TickEngine {
+
+    /* Number of robots below which planning is not split any further */
+    private static final int PLANNING_THRESHOLD = 8;
+
+    private final ForkJoinPool pool;
+
+    /* Only pools created by the engine are shut down when it is closed */
+    private final boolean ownsPool;
+
+    /* Seed used to rotate the commit priorities, null to always commit in insertion order */
+    private final Long seed;
+
+    private long tickCount;
+
+    /* Components of the factory last ticked, sorted out again only when its components change */
+    private Factory sortedFactory;
+
+    private int sortedComponentsVersion;
+
+    private final List<Component> otherComponents = new ArrayList<>();
+
+    private final List<Robot> robots = new ArrayList<>();
+
+    /* Robots planned on the pool, the other ones are planned one after the other */
+    private final List<Robot> concurrentRobots = new ArrayList<>();
+
+    /* Reused by every tick committing in a shuffled order */
+    private final List<Robot> shuffledOrder = new ArrayList<>();
+
+    private final Random random = new Random();
+
+    /* Uses the common ForkJoin pool and commits robots in insertion order */
+    public ParallelTickEngine() {
+        this(ForkJoinPool.commonPool(), false, null);
+    }
+
+    /* Uses a dedicated pool and commits robots in insertion order */
+    public ParallelTickEngine(final int parallelism) {
+        this(new ForkJoinPool(parallelism), true, null);
+    }
+
+    /* Uses a dedicated pool and commits robots in an order derived from the seed and the tick number */
+    public ParallelTickEngine(final int parallelism,
+                              final long seed) {
+        this(new ForkJoinPool(parallelism), true, seed);
+    }
+
+    /**
+     * Uses a pool shared with other engines, which is not shut down when the engine is closed.
+     *
+     * @param seed seed of the commit order, null to commit robots in insertion order.
+     */
+    public ParallelTickEngine(final ForkJoinPool pool,
+                              final Long seed) {
+        this(pool, false, seed);
+    }
+
+    private ParallelTickEngine(final ForkJoinPool pool,
+                               final boolean ownsPool,
+                               final Long seed) {
+        this.pool     = pool;
+        this.ownsPool = ownsPool;
+        this.seed     = seed;
+        tickCount     = 0;
+    }
+
+    @Override
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    /**
+     * Performs one tick of the simulation of the given factory.
+     *
+     * @return true if at least one component behaved during the tick.
+     */
+    @Override
+    public boolean tick(final Factory factory) {
+        boolean behaved = false;
+
+        sortComponents(factory);
+
+        /* Non robot components do not move, let them behave first */
+        for (int index = 0; index < otherComponents.size(); index++) {
+            behaved = otherComponents.get(index).behave() || behaved;
+        }
+
+        final List<Robot> order = commitOrder(robots);
+
+        /* Phase 1: every robot plans its motion against the unchanged positions */
+        for (int index = 0; index < order.size(); index++) {
+            final Robot robot = order.get(index);
+
+            if (!robot.isPlanningConcurrently()) {
+                robot.planMotion();
+            }
+        }
+
+        pool.invoke(new PlanningTask(concurrentRobots, 0, concurrentRobots.size()));
+
+        /* Phase 2: apply the motions sequentially, conflicts are settled by the commit order */
+        for (int index = 0; index < order.size(); index++) {
+            behaved = order.get(index).commitMotion() != 0 || behaved;
+        }
+
+        tickCount++;
+
+        return behaved;
+    }
+
+    /* Lists the robots and the other components, unless they did not change since the last tick */
+    private void sortComponents(final Factory factory) {
+        if (factory == sortedFactory && factory.getComponentsVersion() == sortedComponentsVersion) {
+            return;
+        }
+
+        otherComponents.clear();
+        robots.clear();
+        concurrentRobots.clear();
+
+        for (final Component component : factory.getComponents()) {
+            if (component instanceof Robot) {
+                robots.add((Robot) component);
+            }
+            else {
+                otherComponents.add(component);
+            }
+        }
+
+        for (final Robot robot : robots) {
+            if (robot.isPlanningConcurrently()) {
+                concurrentRobots.add(robot);
+            }
+        }
+
+        sortedFactory           = factory;
+        sortedComponentsVersion = factory.getComponentsVersion();
+    }
+
+    private List<Robot> commitOrder(final List<Robot> robots) {
+        if (seed == null) {
+            return robots;
+        }
+
+        /* Rotate priorities so that the same robot does not always win, while staying reproducible */
+        shuffledOrder.clear();
+        shuffledOrder.addAll(robots);
+        random.setSeed(seed ^ (tickCount * 0x9E3779B97F4A7C15L));
+        Collections.shuffle(shuffledOrder, random);
+
+        return shuffledOrder;
+    }
+
+    @Override
+    public void close() {
+        if (ownsPool) {
+            pool.shutdown();
+        }
+    }
+
+    /* Splits the planning of a range of robots until it is small enough to be done directly */
+    private static class PlanningTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 2967331254839418204L;
+
+        private final transient List<Robot> robots;
+
+        private final int from;
+
+        private final int to;
+
+        PlanningTask(final List<Robot> robots,
+                     final int from,
+                     final int to) {
+            this.robots = robots;
+            this.from   = from;
+            this.to     = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PLANNING_THRESHOLD) {
+                for (int index = from; index < to; index++) {
+                    robots.get(index).planMotion();
+                }
+
+                return;
+            }
+
+            final int middle = (from + to) >>> 1;
+            invokeAll(new PlanningTask(robots, from, middle),
+                      new PlanningTask(robots, middle, to));
+        }
+    }
+}
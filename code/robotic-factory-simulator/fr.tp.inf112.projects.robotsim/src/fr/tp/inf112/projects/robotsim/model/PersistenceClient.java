@@ -2,25 +2,58 @@ package fr.tp.inf112.projects.robotsim.model;
 
 /* Java related packages */
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.OutputStream;
+import java.io.InterruptedIOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 /* Robotsim related packages */
 import fr.tp.inf112.projects.canvas.model.Canvas;
+import fr.tp.inf112.projects.robotsim.model.PersistenceProtocol.Frame;
 
-public class PersistenceClient {
+/**
+ * Loads and saves canvases on the persistence server.
+ *
+ * The client keeps a small pool of persistent connections speaking the framed PersistenceProtocol.
+ * Requests are spread over the connections and sent without waiting for the responses of the
+ * previous ones, so concurrent loads and saves do not pay a TCP handshake or a round trip each.
+ * The responses of each connection are read by a single virtual thread. A broken connection fails
+ * its pending requests and is opened again by the next request.
+ */
+public class PersistenceClient implements AutoCloseable {
+
+    private static final int DEFAULT_POOL_SIZE = 4;
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+
+    private static final long RESPONSE_TIMEOUT_MILLIS = 10_000;
 
     private int           port          = -1;
     private InetAddress   netAddr       = null;
     private SocketAddress socketAddr    = null;
 
+    private final Connection[] connections;
+
+    private final AtomicInteger nextConnection = new AtomicInteger();
+
+    private final AtomicInteger nextRequestId = new AtomicInteger();
+
     Logger LOGGER = Logger.getLogger(PersistenceManager.class.getName());
 
     /* Constructor for the PersistenceClient
@@ -29,11 +62,24 @@ public class PersistenceClient {
      *  @param port    The port number of the server
      */
     public PersistenceClient(String netAddr, int port) {
+        this(netAddr, port, DEFAULT_POOL_SIZE);
+    }
+
+    /* Constructor for the PersistenceClient
+     *
+     *  @param netAddr  The network address of the server
+     *  @param port     The port number of the server
+     *  @param poolSize The number of connections kept open to the server
+     */
+    public PersistenceClient(String netAddr, int port, int poolSize) {
 
         // setup the port number
         if (port < 0 || port > 65535) {
             throw new IllegalArgumentException("Port number must be between 0 and 65535.");
         }
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive.");
+        }
         this.port = port;
 
         // try to get the InetAddress from the provided string
@@ -45,18 +91,11 @@ public class PersistenceClient {
 
         // setup the socket address
         this.socketAddr = new InetSocketAddress(netAddr, port);
-    }
 
-    /*  Close an open socket
-     *
-     *  @param socket The socket to close
-     */
-    private void closeSocket(Socket socket)
-    {
-        try {
-            socket.close();
-        } catch (IOException ex) {
-            throw new RuntimeException(ex);
+        // connections are opened by their first request
+        this.connections = new Connection[poolSize];
+        for (int index = 0; index < poolSize; index++) {
+            connections[index] = new Connection();
         }
     }
 
@@ -67,37 +106,28 @@ public class PersistenceClient {
      */
     public Canvas retrieveCanvas(final String canvasId)
     throws IOException {
-        OutputStream outStream    = null;
-        Socket       serverSocket = new Socket();
-        Canvas       canvas       = null;
+        final Canvas canvas = await(retrieveCanvasAsync(canvasId));
+        LOGGER.info("Canvas with id " + canvasId + " received.");
 
-        // Should be working since the socket is connected in the constructor
-        LOGGER.info("Connecting to server " + this.netAddr.toString() + " on port " + this.port + "...");
-        serverSocket.connect(this.socketAddr, 1000);
-        outStream = serverSocket.getOutputStream();
-        LOGGER.info("Connected to server.");
+        return canvas;
+    }
 
-        // send the canvasId to the server
+    /* Retrieve a canvas from the server by id without waiting for it
+     *
+     * @param canvasId The id of the canvas to retrieve
+     * @return The future canvas, failed with an IOException if it could not be retrieved
+     */
+    public CompletableFuture<Canvas> retrieveCanvasAsync(final String canvasId) {
         LOGGER.info("Requesting canvas with id " + canvasId + "...");
-        final ObjectOutputStream objOutStream = new ObjectOutputStream(outStream);
-        objOutStream.writeObject(canvasId);
-        objOutStream.flush();
-
-        // connect to the input stream of the socket
-        ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(serverSocket.getInputStream()));
 
-        // try to read the object
-        try {
-            canvas = (Canvas) ois.readObject();
-        }
-        catch (ClassNotFoundException e) {
-            closeSocket(serverSocket);
-            throw new RuntimeException(e);
-        }
-        LOGGER.info("Canvas with id " + canvasId + " received.");
-
-        closeSocket(serverSocket);
-        return canvas;
+        return send(PersistenceProtocol.OP_LOAD, canvasId.getBytes(StandardCharsets.UTF_8))
+            .thenApply(payload -> {
+                try {
+                    return (Canvas) PersistenceProtocol.deserialize(payload);
+                } catch (IOException ex) {
+                    throw new CompletionException(ex);
+                }
+            });
     }
 
     /*
@@ -122,23 +152,163 @@ public class PersistenceClient {
      * @return true if the canvas was saved successfully, false otherwise
      */
     public boolean saveCanvas(Canvas canvasModel) {
-        try (Socket serverSocket = new Socket()) {
-            LOGGER.info("Connecting to server " + this.netAddr.toString() + " on port " + this.port + "...");
-            serverSocket.connect(this.socketAddr, 1000);
+        try {
+            await(saveCanvasAsync(canvasModel));
+            LOGGER.info("Canvas with id " + canvasModel.getId() + " sent to server.");
+            return true;
+        } catch (IOException e) {
+            LOGGER.severe("Failed to save canvas " + canvasModel.getId() + " to server");
+            return false;
+        }
+    }
+
+    /* Save a canvas to the server without waiting for it
+     *
+     * @param canvasModel The canvas model to save
+     * @return A future completed once the server persisted the canvas
+     */
+    public CompletableFuture<Void> saveCanvasAsync(Canvas canvasModel) {
+        LOGGER.info("Sending canvas with id " + canvasModel.getId() + " to server...");
+
+        try {
+            return send(PersistenceProtocol.OP_SAVE, PersistenceProtocol.serialize(canvasModel))
+                .thenApply(payload -> null);
+        } catch (IOException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+    }
+
+    /* Close the connections to the server, pending requests fail */
+    @Override
+    public void close() {
+        for (final Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    private CompletableFuture<byte[]> send(final byte type, final byte[] payload) {
+        final Connection connection =
+            connections[Math.floorMod(nextConnection.getAndIncrement(), connections.length)];
+
+        return connection.send(new Frame(type, nextRequestId.incrementAndGet(), payload));
+    }
+
+    private static <T> T await(final CompletableFuture<T> response)
+    throws IOException {
+        try {
+            return response.get(RESPONSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException(ex.getCause());
+        } catch (TimeoutException ex) {
+            throw new IOException("No response from the persistence server after " + RESPONSE_TIMEOUT_MILLIS + " ms");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the persistence server");
+        }
+    }
+
+    /* Persistent connection to the server, requests are written by the callers and responses read by a virtual thread */
+    private class Connection {
+
+        private Socket socket;
+
+        private DataOutputStream outStream;
+
+        /* Requests waiting for their response, by id */
+        private final Map<Integer, CompletableFuture<byte[]>> pendingRequests = new ConcurrentHashMap<>();
+
+        synchronized CompletableFuture<byte[]> send(final Frame request) {
+            final CompletableFuture<byte[]> response = new CompletableFuture<>();
+
+            try {
+                if (socket == null) {
+                    connect();
+                }
+
+                pendingRequests.put(request.requestId(), response);
+                PersistenceProtocol.writeFrame(outStream, request);
+                outStream.flush();
+            } catch (IOException ex) {
+                LOGGER.severe("Failed to send request to server: " + ex.getMessage());
+                fail(socket, ex);
+                response.completeExceptionally(ex);
+            }
+
+            return response;
+        }
+
+        private void connect()
+        throws IOException {
+            LOGGER.info("Connecting to server " + netAddr + " on port " + port + "...");
+            final Socket connectedSocket = new Socket();
+            connectedSocket.connect(socketAddr, CONNECT_TIMEOUT_MILLIS);
+            connectedSocket.setTcpNoDelay(true);
             LOGGER.info("Connected to server.");
 
-            try (OutputStream outStream = serverSocket.getOutputStream();
-                ObjectOutputStream objOutputStream = new ObjectOutputStream(outStream)) {
+            final DataOutputStream connectedOutStream =
+                new DataOutputStream(new BufferedOutputStream(connectedSocket.getOutputStream()));
+            PersistenceProtocol.writeMagic(connectedOutStream);
 
-                LOGGER.info("Sending canvas with id " + canvasModel.getId() + " to server...");
-                objOutputStream.writeObject(canvasModel);
-                objOutputStream.flush();
-                LOGGER.info("Canvas with id " + canvasModel.getId() + " sent to server.");
-                return true;
+            final DataInputStream inStream =
+                new DataInputStream(new BufferedInputStream(connectedSocket.getInputStream()));
+
+            socket    = connectedSocket;
+            outStream = connectedOutStream;
+
+            Thread.ofVirtual().name("persistence-client-reader").start(() -> readResponses(connectedSocket, inStream));
+        }
+
+        private void readResponses(final Socket connectedSocket, final DataInputStream inStream) {
+            try {
+                while (true) {
+                    final Frame response = PersistenceProtocol.readFrame(inStream);
+                    if (response == null) {
+                        throw new EOFException("Connection closed by the server");
+                    }
+
+                    final CompletableFuture<byte[]> pendingRequest = pendingRequests.remove(response.requestId());
+                    if (pendingRequest == null) {
+                        continue;
+                    }
+
+                    if (response.type() == PersistenceProtocol.STATUS_OK) {
+                        pendingRequest.complete(response.payload());
+                    } else {
+                        pendingRequest.completeExceptionally(
+                            new IOException(new String(response.payload(), StandardCharsets.UTF_8)));
+                    }
+                }
+            } catch (IOException ex) {
+                synchronized (this) {
+                    fail(connectedSocket, ex);
+                }
             }
-        } catch (IOException e) {
-            LOGGER.severe("Failed to save canvas " + canvasModel.getId() + " to server");
-            return false;
+        }
+
+        /* Close the given socket if it is still the current one and fail its pending requests */
+        private void fail(final Socket failedSocket, final IOException ex) {
+            if (failedSocket == null || failedSocket != socket) {
+                return;
+            }
+
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+            socket    = null;
+            outStream = null;
+
+            for (final CompletableFuture<byte[]> pendingRequest : pendingRequests.values()) {
+                pendingRequest.completeExceptionally(ex);
+            }
+            pendingRequests.clear();
+        }
+
+        synchronized void close() {
+            fail(socket, new IOException("Persistence client closed"));
         }
     }
 }
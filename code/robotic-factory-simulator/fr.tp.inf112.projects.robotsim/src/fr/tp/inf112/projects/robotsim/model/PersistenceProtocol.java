@@ -0,0 +1,129 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+/* Java related packages */
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Framed protocol spoken between the persistence clients and server.
+ *
+ * A connection starts with the MAGIC preface sent by the client, then carries any number of
+ * frames in both directions. Each frame is a type byte, a request id and a length prefixed
+ * payload. Requests are LOAD with the UTF-8 id of a canvas or SAVE with a serialized canvas.
+ * Responses carry the id of their request and are OK, with the serialized canvas for a LOAD, or
+ * ERROR with a UTF-8 message. A client may send several requests without waiting for their
+ * responses, the server answers them in order.
+ *
+ * Legacy clients send a single serialized object per connection, whose stream starts with the
+ * Java serialization magic bytes 0xACED instead of the preface.
+ */
+final class PersistenceProtocol {
+
+    /* "RSP1", sent once by the client when it connects */
+    static final int MAGIC = 0x52535031;
+
+    /* First two bytes of a Java serialization stream */
+    static final int LEGACY_MAGIC = 0xACED;
+
+    static final byte OP_LOAD = 1;
+
+    static final byte OP_SAVE = 2;
+
+    static final byte STATUS_OK = 0;
+
+    static final byte STATUS_ERROR = 1;
+
+    /* Guards against reading garbage as a huge payload */
+    private static final int MAX_PAYLOAD_LENGTH = 64 * 1024 * 1024;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private PersistenceProtocol() {
+    }
+
+    static void writeMagic(final DataOutputStream output)
+    throws IOException {
+        output.writeInt(MAGIC);
+    }
+
+    static void readMagic(final DataInputStream input)
+    throws IOException {
+        final int magic = input.readInt();
+        if (magic != MAGIC) {
+            throw new IOException("Unknown persistence protocol 0x" + Integer.toHexString(magic));
+        }
+    }
+
+    static void writeFrame(final DataOutputStream output,
+                           final Frame frame)
+    throws IOException {
+        output.writeByte(frame.type());
+        output.writeInt(frame.requestId());
+        output.writeInt(frame.payload().length);
+        output.write(frame.payload());
+    }
+
+    /**
+     * Reads the next frame.
+     *
+     * @return null if the connection was closed between two frames.
+     */
+    static Frame readFrame(final DataInputStream input)
+    throws IOException {
+        final int type = input.read();
+        if (type < 0) {
+            return null;
+        }
+
+        final int requestId = input.readInt();
+        final int length    = input.readInt();
+        if (length < 0 || length > MAX_PAYLOAD_LENGTH) {
+            throw new IOException("Invalid frame length " + length);
+        }
+
+        final byte[] payload = length == 0 ? EMPTY : new byte[length];
+        input.readFully(payload);
+
+        return new Frame((byte) type, requestId, payload);
+    }
+
+    static byte[] serialize(final Object object)
+    throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(object);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    static Object deserialize(final byte[] bytes)
+    throws IOException {
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return input.readObject();
+        }
+        catch (final ClassNotFoundException ex) {
+            throw new IOException("Invalid serialized object", ex);
+        }
+    }
+
+    static Frame ok(final int requestId,
+                    final byte[] payload) {
+        return new Frame(STATUS_OK, requestId, payload == null ? EMPTY : payload);
+    }
+
+    static Frame error(final int requestId,
+                       final String message) {
+        return new Frame(STATUS_ERROR, requestId, String.valueOf(message).getBytes(StandardCharsets.UTF_8));
+    }
+
+    record Frame(byte type, int requestId, byte[] payload) {
+    }
+}
@@ -2,29 +2,62 @@ package fr.tp.inf112.projects.robotsim.model;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Logger;
 import fr.tp.inf112.projects.canvas.model.Canvas;
+import fr.tp.inf112.projects.robotsim.model.PersistenceProtocol.Frame;
 import java.io.File;
 
 import java.lang.Runnable;
 
+/**
+ * Serves the canvases persisted in baseDir.
+ *
+ * Each connection is handled on its own virtual thread, so idle persistent connections cost
+ * almost nothing. Connections opened with the framed PersistenceProtocol stay open for any number
+ * of requests, legacy connections carry a single serialized object as before.
+ *
+ * Loaded canvases are kept serialized in an LRU cache, so that hot models are sent straight from
+ * memory without reading the disk or serializing them again. Saving a canvas evicts its image.
+ */
 public class PersistenceServer implements Runnable {
+    /* Total size of the canvas images kept in memory when none is specified */
+    public static final long DEFAULT_CACHE_BYTES = 64L * 1024 * 1024;
+
     private final int port;
     private volatile boolean running = true;
     private ServerSocket serverSocket;
     private FactoryPersistenceManager FactoryPersistenceManager;
     private final String baseDir;
+    private final CanvasImageCache imageCache;
+
+    /* One virtual thread per connection */
+    private final ExecutorService connectionExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /* Open connections, closed when the server stops */
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
 
     Logger LOGGER = Logger.getLogger(PersistenceServer.class.getName());
 
     public PersistenceServer(final int port, final String baseDir) {
-        this.port    = port;
-        this.baseDir = baseDir;
+        this(port, baseDir, DEFAULT_CACHE_BYTES);
+    }
+
+    public PersistenceServer(final int port, final String baseDir, final long cacheBytes) {
+        this.port       = port;
+        this.baseDir    = baseDir;
+        this.imageCache = new CanvasImageCache(cacheBytes);
 
         /* Create the directory for persistance */
         File dir = new File(baseDir);
@@ -41,6 +74,14 @@ public class PersistenceServer implements Runnable {
             if (serverSocket != null) serverSocket.close();
         } catch (IOException ignored) {
         }
+
+        for (final Socket client : clients) {
+            try {
+                client.close();
+            } catch (IOException ignored) {
+            }
+        }
+        connectionExecutor.shutdown();
     }
 
     @Override
@@ -53,9 +94,8 @@ public class PersistenceServer implements Runnable {
                 try {
                     LOGGER.info("Waiting for client connection...");
                     Socket client = serverSocket.accept();
-                    // handle each connection in its own short-lived thread
                     LOGGER.info("Client connected from " + client.getInetAddress().toString() + ":" + client.getPort());
-                    new Thread(() -> handleClient(client)).start();
+                    connectionExecutor.execute(() -> handleClient(client));
                 } catch (IOException e) {
                     if (running) e.printStackTrace();
                 }
@@ -66,46 +106,140 @@ public class PersistenceServer implements Runnable {
     }
 
     private void handleClient(final Socket client) {
-        /* Try with data */
-        try (Socket             clientSocket = client;
-             ObjectInputStream  objInStream  = new ObjectInputStream (new BufferedInputStream (clientSocket.getInputStream()));
-             ObjectOutputStream objOutStream = new ObjectOutputStream(new BufferedOutputStream(clientSocket.getOutputStream()));
-        ) {
-            Object obj = null;
+        clients.add(client);
 
-            try {
-                obj = objInStream.readObject();
-            } catch (ClassNotFoundException e) {
-                e.printStackTrace();
+        try (Socket clientSocket = client) {
+            clientSocket.setTcpNoDelay(true);
+
+            final DataInputStream  inStream  = new DataInputStream (new BufferedInputStream (clientSocket.getInputStream()));
+            final DataOutputStream outStream = new DataOutputStream(new BufferedOutputStream(clientSocket.getOutputStream()));
+
+            /* Legacy clients start with a serialized object instead of the protocol preface */
+            inStream.mark(2);
+            final boolean legacy = inStream.read() == (PersistenceProtocol.LEGACY_MAGIC >>> 8) &&
+                                   inStream.read() == (PersistenceProtocol.LEGACY_MAGIC & 0xFF);
+            inStream.reset();
+
+            if (legacy) {
+                handleLegacyClient(inStream, outStream);
+            } else {
+                handleFramedClient(inStream, outStream);
             }
-            LOGGER.info("Received object of type " + obj.getClass().getName());
-
-            /* If a String was received, retrieve the Canvas with that name */
-            if (obj instanceof String)
-            {
-                final String canvasId = (String) obj;
-                final Canvas canvas   = FactoryPersistenceManager.read(baseDir+"/"+canvasId);
-                LOGGER.info("Sending canvas with id " + canvasId + " to client...");
-                objOutStream.writeObject(canvas);
-                objOutStream.flush();
-                LOGGER.info("Canvas with id " + canvasId + " sent to client.");
+        } catch (SocketException e) {
+            /* Connection closed by the client or when stopping the server */
+            if (running) LOGGER.info("Connection closed: " + e.getMessage());
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            clients.remove(client);
+        }
+    }
+
+    private void handleFramedClient(final DataInputStream inStream, final DataOutputStream outStream)
+    throws IOException {
+        PersistenceProtocol.readMagic(inStream);
+
+        Frame request;
+        while (running && (request = PersistenceProtocol.readFrame(inStream)) != null) {
+            PersistenceProtocol.writeFrame(outStream, handleRequest(request));
+
+            /* Pipelined requests already received are answered before flushing, in a single write */
+            if (inStream.available() == 0) {
+                outStream.flush();
             }
+        }
+    }
 
-            /* If a Canvas was received, persist it */
-            else if (obj instanceof Canvas)
-            {
-                LOGGER.info("Persisting received canvas...");
-                final Canvas canvas = (Canvas) obj;
+    private Frame handleRequest(final Frame request) {
+        try {
+            switch (request.type()) {
+                case PersistenceProtocol.OP_LOAD: {
+                    final String canvasId = new String(request.payload(), StandardCharsets.UTF_8);
+                    LOGGER.info("Sending canvas with id " + canvasId + " to client...");
+                    return PersistenceProtocol.ok(request.requestId(), loadImage(canvasId));
+                }
 
-                /* Change the path of the save to the baseDir + canvas name */
-                String canvasId = canvas.getId();
-                canvas.setId(baseDir+"/"+canvasId);
+                case PersistenceProtocol.OP_SAVE: {
+                    final Object obj = PersistenceProtocol.deserialize(request.payload());
+                    if (!(obj instanceof Canvas)) {
+                        return PersistenceProtocol.error(request.requestId(), "Not a canvas: " + obj.getClass().getName());
+                    }
 
-                FactoryPersistenceManager.persist(canvas);
-                LOGGER.info("Canvas with id " + canvasId + " persisted.");
+                    save((Canvas) obj);
+                    return PersistenceProtocol.ok(request.requestId(), null);
+                }
+
+                default:
+                    return PersistenceProtocol.error(request.requestId(), "Unknown request type " + request.type());
             }
         } catch (IOException e) {
+            LOGGER.severe("Request " + request.requestId() + " failed: " + e.getMessage());
+            return PersistenceProtocol.error(request.requestId(), e.getMessage());
+        }
+    }
+
+    /* One serialized object per connection, as sent by clients predating the framed protocol */
+    private void handleLegacyClient(final DataInputStream inStream, final DataOutputStream outStream)
+    throws IOException {
+        final ObjectInputStream objInStream = new ObjectInputStream(inStream);
+        Object obj = null;
+
+        try {
+            obj = objInStream.readObject();
+        } catch (ClassNotFoundException e) {
             e.printStackTrace();
         }
+        LOGGER.info("Received object of type " + obj.getClass().getName());
+
+        /* If a String was received, retrieve the Canvas with that name */
+        if (obj instanceof String)
+        {
+            final String canvasId = (String) obj;
+            final byte[] image    = loadImage(canvasId);
+            LOGGER.info("Sending canvas with id " + canvasId + " to client...");
+
+            /* The image is a complete serialization stream, as the client expects */
+            outStream.write(image);
+            outStream.flush();
+            LOGGER.info("Canvas with id " + canvasId + " sent to client.");
+        }
+
+        /* If a Canvas was received, persist it */
+        else if (obj instanceof Canvas)
+        {
+            save((Canvas) obj);
+        }
+    }
+
+    /* Serialized canvas, from the cache or read from disk */
+    private byte[] loadImage(final String canvasId)
+    throws IOException {
+        byte[] image = imageCache.get(canvasId);
+
+        if (image == null) {
+            final long generation = imageCache.getGeneration();
+            image = PersistenceProtocol.serialize(FactoryPersistenceManager.read(baseDir+"/"+canvasId));
+            imageCache.put(canvasId, image, generation);
+        }
+
+        return image;
+    }
+
+    /* Statistics of the cache of canvas images */
+    public String getCacheStatistics() {
+        return imageCache.toString();
+    }
+
+    private void save(final Canvas canvas)
+    throws IOException {
+        LOGGER.info("Persisting received canvas...");
+
+        /* Change the path of the save to the baseDir + canvas name */
+        String canvasId = canvas.getId();
+        canvas.setId(baseDir+"/"+canvasId);
+
+        FactoryPersistenceManager.persist(canvas);
+        imageCache.invalidate(canvasId);
+        LOGGER.info("Canvas with id " + canvasId + " persisted.");
     }
 }
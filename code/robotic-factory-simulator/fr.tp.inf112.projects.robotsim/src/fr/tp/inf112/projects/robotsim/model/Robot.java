@@ -10,7 +10,6 @@ import fr.tp.inf112.projects.robotsim.model.motion.Motion;
 import fr.tp.inf112.projects.robotsim.model.path.FactoryPathFinder;
 import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
 import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
-import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
 
 public class Robot extends Component {
 
@@ -20,6 +19,14 @@ public class Robot extends Component {
 
 	private static final Style BLOCKED_STYLE = new ComponentStyle(RGBColor.RED, RGBColor.BLACK, 3.0f, new float[]{4.0f});
 
+	/* Directions of the neighbouring positions tried to escape a live lock, in robot sizes */
+	private static final int[] NEIGHBOUR_X_DIRECTIONS = { 1, 1, -1, -1 };
+
+	private static final int[] NEIGHBOUR_Y_DIRECTIONS = { 1, -1, -1, 1 };
+
+	/* Side of the probe used to test whether a position is taken */
+	private static final int PROBE_SIZE = 2;
+
 	private final Battery battery;
 
 	private int speed;
@@ -30,14 +37,37 @@ public class Robot extends Component {
 
 	private Component currTargetComponent;
 
-	private transient Iterator<Position> currentPathPositionsIter;
+	/* Coordinates of the positions of the current path, x then y, copied in a buffer reused from one
+	   path to the next */
+	private transient int[] pathCoordinates;
+
+	/* Number of positions of the current path */
+	private transient int pathLength;
+
+	/* Index of the next position of the path to go to */
+	private transient int pathCursor;
 
 	private transient boolean blocked;
 
-	private Position memorizedTargetPosition;
+	/* No path to the target was found while planning, shown by the style once the motion is committed */
+	private transient boolean pathBlocked;
+
+	/* Position taken by another robot, tried again at the next tick */
+	private boolean targetMemorized;
+
+	private int memorizedTargetxCoordinate;
+
+	private int memorizedTargetyCoordinate;
 
 	private FactoryPathFinder pathFinder;
 
+	/* Position chosen during the planning phase of a tick, moved to during the commit phase */
+	private transient boolean motionPlanned;
+
+	private transient int plannedTargetxCoordinate;
+
+	private transient int plannedTargetyCoordinate;
+
     /* Used by Jackson to deserialize */
     public Robot() {
         super();
@@ -57,10 +87,11 @@ public class Robot extends Component {
 
 		targetComponents = new ArrayList<>();
 		currTargetComponent = null;
-		currentPathPositionsIter = null;
+		pathLength = 0;
+		pathCursor = 0;
 		speed = 5;
 		blocked = false;
-		memorizedTargetPosition = null;
+		targetMemorized = false;
 	}
 
 	@Override
@@ -76,11 +107,79 @@ public class Robot extends Component {
 		this.speed = speed;
 	}
 
+	@Override
+	int getState() {
+		return blocked ? 1 : 0;
+	}
+
+	@Override
+	void setState(final int state) {
+		setBlocked(state == 1);
+	}
+
+	/* The style shows whether the robot is blocked, notify when it changes */
+	private void setBlocked(final boolean blocked) {
+		if (this.blocked != blocked) {
+			this.blocked = blocked;
+
+			notifyObservers();
+		}
+	}
+
+	/* Created for the codecs, the ticks read the coordinates */
 	public Position getMemorizedTargetPosition() {
-		return memorizedTargetPosition;
+		return targetMemorized ? new Position(memorizedTargetxCoordinate, memorizedTargetyCoordinate) : null;
+	}
+
+	void setMemorizedTargetPosition(final Position memorizedTargetPosition) {
+		if (memorizedTargetPosition == null) {
+			targetMemorized = false;
+		}
+		else {
+			memorizeTargetPosition(memorizedTargetPosition.getxCoordinate(), memorizedTargetPosition.getyCoordinate());
+		}
+	}
+
+	boolean isTargetMemorized() {
+		return targetMemorized;
+	}
+
+	int getMemorizedTargetxCoordinate() {
+		return memorizedTargetxCoordinate;
 	}
 
-	private List<Component> getTargetComponents() {
+	int getMemorizedTargetyCoordinate() {
+		return memorizedTargetyCoordinate;
+	}
+
+	void memorizeTargetPosition(final int xCoordinate,
+								final int yCoordinate) {
+		targetMemorized = true;
+		memorizedTargetxCoordinate = xCoordinate;
+		memorizedTargetyCoordinate = yCoordinate;
+	}
+
+	Battery getBattery() {
+		return battery;
+	}
+
+	FactoryPathFinder getPathFinder() {
+		return pathFinder;
+	}
+
+	void setPathFinder(final FactoryPathFinder pathFinder) {
+		this.pathFinder = pathFinder;
+	}
+
+	Component getCurrentTargetComponent() {
+		return currTargetComponent;
+	}
+
+	void setCurrentTargetComponent(final Component currTargetComponent) {
+		this.currTargetComponent = currTargetComponent;
+	}
+
+	List<Component> getTargetComponents() {
 		if (targetComponents == null) {
 			targetComponents = new ArrayList<>();
 		}
@@ -89,7 +188,14 @@ public class Robot extends Component {
 	}
 
 	public boolean addTargetComponent(final Component targetComponent) {
-		return getTargetComponents().add(targetComponent);
+		final boolean added = getTargetComponents().add(targetComponent);
+
+		// An idle robot has to be run again by event-driven engines
+		if (added && getFactory() != null) {
+			getFactory().wake(this);
+		}
+
+		return added;
 	}
 
 	public boolean removeTargetComponent(final Component targetComponent) {
@@ -101,19 +207,84 @@ public class Robot extends Component {
 		return true;
 	}
 
+	/* Robots with targets move or retry at every tick, the others wait for a target */
+	@Override
+	int getActivationDelay() {
+		return getTargetComponents().isEmpty() ? 0 : 1;
+	}
+
 	@Override
 	public boolean behave() {
+		if (!planMotion()) {
+			return false;
+		}
+
+		return commitMotion() != 0;
+	}
+
+	/**
+	 * First phase of a tick: selects the next target component if needed and computes the motion
+	 * the robot intends to perform. Only the positions of the other components are read, and only
+	 * the state of the robot itself is written, the observers being notified when the motion is
+	 * committed. The planning phases of robots whose path finders are thread safe can thus run
+	 * concurrently. The memorized target position is read by the other robots during their commit
+	 * phases only.
+	 *
+	 * @return false if the robot has nothing to do during this tick.
+	 */
+	public boolean planMotion() {
+		motionPlanned = false;
+
 		if (getTargetComponents().isEmpty()) {
 			return false;
 		}
 
 		if (currTargetComponent == null || hasReachedCurrentTarget()) {
+			if (currTargetComponent != null) {
+				getFactory().getFleetMetrics().targetVisited();
+			}
+
 			currTargetComponent = nextTargetComponentToVisit();
 
 			computePathToCurrentTargetComponent();
 		}
 
-		return moveToNextPathPosition() != 0;
+		motionPlanned = computeMotion();
+
+		return true;
+	}
+
+	/**
+	 * Second phase of a tick: applies the planned motion, unless another mobile component took the
+	 * target position since the planning phase. Must be called sequentially for all robots, the
+	 * calling order deciding which robot wins a contended position.
+	 *
+	 * @return the displacement performed by the robot.
+	 */
+	public int commitMotion() {
+		final boolean planned = motionPlanned;
+		motionPlanned = false;
+
+		final int displacement = moveToPlannedPosition(planned);
+
+		setBlocked(pathBlocked);
+
+		if (currTargetComponent != null) {
+			if (displacement != 0) {
+				getFactory().getFleetMetrics().robotMoved();
+			}
+			else {
+				getFactory().getFleetMetrics().robotWaited();
+			}
+		}
+
+		return displacement;
+	}
+
+	/* Robots reserving their trajectories or sharing a path finder which is not thread safe must plan
+	   one after the other */
+	boolean isPlanningConcurrently() {
+		return pathFinder == null || pathFinder.isThreadSafe() && !pathFinder.isCooperative();
 	}
 
 	private Component nextTargetComponentToVisit() {
@@ -126,45 +297,48 @@ public class Robot extends Component {
 
 
 	// Should check for all neighboring locations
-	private Position findFreeNeighbouringPosition() {
-
-
-		int nextXCoordinate[] = { this.getWidth(), this.getWidth(), -this.getWidth(), -this.getWidth()};
-		int nextYCoordinate[] = { this.getHeight(), -this.getHeight(), -this.getHeight(), this.getHeight()};
-
-		for(int i = 0; i < 4; i++)
+	private boolean memorizeFreeNeighbouringPosition() {
+		for (int i = 0; i < NEIGHBOUR_X_DIRECTIONS.length; i++)
 		{
-			Position position = new Position(getxCoordinate() + nextXCoordinate[i], getyCoordinate() + nextYCoordinate[i]);
-			final PositionedShape shape = new RectangularShape(getxCoordinate(),
-					   getyCoordinate(),
-					   2,
-					   2);
+			final int xCoordinate = getxCoordinate() + NEIGHBOUR_X_DIRECTIONS[i] * getWidth();
+			final int yCoordinate = getyCoordinate() + NEIGHBOUR_Y_DIRECTIONS[i] * getHeight();
 
-			// If there is another robot, memorize the target position for the next run
-			if (!(getFactory().hasMobileComponentAt(shape, this))) {
-				this.memorizedTargetPosition = position;
+			// Test the neighbouring position itself, otherwise an occupied one may be returned and the
+			// robot keeps trying to escape to it without ever moving
+			if (!hasMobileComponentAt(xCoordinate, yCoordinate)) {
+				memorizeTargetPosition(xCoordinate, yCoordinate);
 
-				return position;
+				return true;
 			}
 		}
 
-
-		return null;
+		return false;
 	}
 
-	private int moveToNextPathPosition() {
-		final Motion motion = computeMotion();
+	/* Moves to the planned target position, if the motion was planned */
+	private int moveToPlannedPosition(final boolean planned) {
+		int displacement = 0;
 
-		int displacement = motion == null ? 0 : motion.moveToTarget();
+		if (planned) {
+			// Another robot may have committed a move to the same position during this tick
+			if (hasMobileComponentAt(plannedTargetxCoordinate, plannedTargetyCoordinate)) {
+				memorizeTargetPosition(plannedTargetxCoordinate, plannedTargetyCoordinate);
+			}
+			else {
+				displacement = Motion.move(getPosition(), plannedTargetxCoordinate, plannedTargetyCoordinate);
+
+				if (displacement != 0) {
+					getFactory().componentMoved(this);
+				}
+			}
+		}
 
 		if (displacement != 0) {
 			notifyObservers();
 		}
 		else if (isLivelyLocked()) {
-			final Position freeNeighbouringPosition = findFreeNeighbouringPosition();
-			if (freeNeighbouringPosition != null) {
-				this.memorizedTargetPosition = freeNeighbouringPosition;
-				displacement = moveToNextPathPosition();
+			if (memorizeFreeNeighbouringPosition()) {
+				displacement = moveToPlannedPosition(computeMotion());
 				computePathToCurrentTargetComponent();
 			}
 		}
@@ -172,60 +346,140 @@ public class Robot extends Component {
 	}
 
 	private void computePathToCurrentTargetComponent() {
+		if (pathFinder.isStepwise()) {
+			computeNextStepToCurrentTargetComponent();
+
+			return;
+		}
+
 		final List<Position> currentPathPositions = pathFinder.findPath(this, currTargetComponent);
-		currentPathPositionsIter = currentPathPositions.iterator();
+
+		if (pathCoordinates == null || pathCoordinates.length < 2 * currentPathPositions.size()) {
+			pathCoordinates = new int[2 * Math.max(16, currentPathPositions.size())];
+		}
+
+		// Copied once, path finders may return linked or shared lists
+		pathLength = 0;
+		for (final Position position : currentPathPositions) {
+			addPathPosition(position);
+		}
+		pathCursor = 0;
 	}
 
-	private Motion computeMotion() {
-		if (!currentPathPositionsIter.hasNext()) {
+	/* The path is then made of the next step only */
+	private void computeNextStepToCurrentTargetComponent() {
+		final Position nextStep = pathFinder.nextStep(this, currTargetComponent);
+
+		if (pathCoordinates == null) {
+			pathCoordinates = new int[2 * 16];
+		}
+
+		pathLength = 0;
+		if (nextStep != null) {
+			addPathPosition(nextStep);
+		}
+		pathCursor = 0;
+	}
+
+	private void addPathPosition(final Position position) {
+		pathCoordinates[2 * pathLength]     = position.getxCoordinate();
+		pathCoordinates[2 * pathLength + 1] = position.getyCoordinate();
+		pathLength++;
+	}
+
+	private boolean hasNextPathPosition() {
+		return pathCursor < pathLength;
+	}
+
+	/* Plans the motion to the next position of the path */
+	private void planNextPathPosition() {
+		plannedTargetxCoordinate = pathCoordinates[2 * pathCursor];
+		plannedTargetyCoordinate = pathCoordinates[2 * pathCursor + 1];
+		pathCursor++;
+	}
+
+	/* Plans the position to move to during this tick, false if the robot cannot move */
+	private boolean computeMotion() {
+		// Stepwise path finders give the next step from the current position at every tick
+		if (pathFinder.isStepwise()) {
+			computeNextStepToCurrentTargetComponent();
+		}
+		// Incremental path finders may find a way around the robots which blocked the previous path
+		else if (!hasNextPathPosition() && pathFinder.isIncremental()) {
+			computePathToCurrentTargetComponent();
+		}
+
+		if (!hasNextPathPosition()) {
 
 			// There is no free path to the target
-			blocked = true;
+			pathBlocked = true;
 
-			return null;
+			return false;
 		}
 
+		pathBlocked = false;
 
-		final Position targetPosition = getTargetPosition();
-		final PositionedShape shape = new RectangularShape(targetPosition.getxCoordinate(),
-														   targetPosition.getyCoordinate(),
-				   										   2,
-				   										   2);
+		planTargetPosition();
+
+		// Let incremental path finders repair the path, they decide whether to wait or to go around
+		if (hasMobileComponentAt(plannedTargetxCoordinate, plannedTargetyCoordinate) && pathFinder.isIncremental()) {
+			computePathToCurrentTargetComponent();
+
+			if (hasNextPathPosition()) {
+				targetMemorized = false;
+				planNextPathPosition();
+			}
+		}
 
 		// If there is another robot, memorize the target position for the next run
-		if (getFactory().hasMobileComponentAt(shape, this)) {
-			this.memorizedTargetPosition = targetPosition;
+		if (hasMobileComponentAt(plannedTargetxCoordinate, plannedTargetyCoordinate)) {
+			memorizeTargetPosition(plannedTargetxCoordinate, plannedTargetyCoordinate);
 
-			return null;
+			return false;
 		}
 
 		// Reset the memorized position
-		this.memorizedTargetPosition = null;
+		targetMemorized = false;
+
+		return true;
+	}
 
-		return new Motion(getPosition(), targetPosition);
+	private boolean hasMobileComponentAt(final int xCoordinate,
+										 final int yCoordinate) {
+		return getFactory().hasMobileComponentAt(xCoordinate, yCoordinate, PROBE_SIZE, PROBE_SIZE, this);
 	}
 
-	private Position getTargetPosition() {
+	private void planTargetPosition() {
 		// If a target position was memorized, it means that the robot was blocked during the last iteration
 		// so it waited for another robot to pass. So try to move to this memorized position otherwise move to
 		// the next position from the path
-		return this.memorizedTargetPosition == null ? currentPathPositionsIter.next() : this.memorizedTargetPosition;
+		if (targetMemorized) {
+			plannedTargetxCoordinate = memorizedTargetxCoordinate;
+			plannedTargetyCoordinate = memorizedTargetyCoordinate;
+		}
+		else {
+			planNextPathPosition();
+		}
 	}
 
 	public boolean isLivelyLocked() {
-	    if (memorizedTargetPosition == null) {
+	    if (!targetMemorized) {
 	        return false;
 	    }
 
-	    final Component otherComponent = getFactory().getMobileComponentAt(memorizedTargetPosition,
-	                                                                   this);
+	    final Component otherComponent = getFactory().getMobileComponentAt(memorizedTargetxCoordinate, memorizedTargetyCoordinate,
+	                                                                   PROBE_SIZE, PROBE_SIZE, this);
 
+	    // Each robot waits for the position of the other one
 	    if (otherComponent instanceof Robot)  {
-		    return getPosition().equals(((Robot) otherComponent).getMemorizedTargetPosition());
+		    final Robot otherRobot = (Robot) otherComponent;
+
+		    return otherRobot.isTargetMemorized() &&
+		           otherRobot.getMemorizedTargetxCoordinate() == getxCoordinate() &&
+		           otherRobot.getMemorizedTargetyCoordinate() == getyCoordinate();
 	    }
 
-	    return otherComponent != null &&
-	    getPosition().equals(((Robot) otherComponent).getMemorizedTargetPosition());
+	    return false;
 	}
 
 	private boolean hasReachedCurrentTarget() {
@@ -3,6 +3,8 @@ package fr.tp.inf112.projects.robotsim.model;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
 import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
 
@@ -68,6 +70,13 @@ public class Room extends Component {
 		return doors;
 	}
 
+	@Override
+    @JsonIgnore // derived from positionedShape
+	public PositionedShape getBoundingBox() {
+		// The right and bottom walls stick out of the room shape
+		return new RectangularShape(getxCoordinate(), getyCoordinate(), getWidth() + WALL_THICKNESS, getHeight() + WALL_THICKNESS);
+	}
+
 	@Override
 	public boolean overlays(final PositionedShape shape) {
 		return leftWall.overlays(shape) || rightWall.overlays(shape) ||
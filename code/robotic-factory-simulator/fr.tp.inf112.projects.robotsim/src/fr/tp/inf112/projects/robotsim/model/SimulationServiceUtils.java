@@ -11,6 +11,13 @@ public class SimulationServiceUtils {
     private static final String GROUP_ID = "Factory-Simulation-Group";
     private static final String AUTO_OFFSET_RESET = "earliest";
     private static final String TOPIC = "simulation-";
+    private static final String KEYFRAME_TOPIC_SUFFIX = "-keyframes";
+
+    /* Header holding the tick of the keyframes, as decimal text */
+    public static final String TICK_HEADER = "tick";
+
+    /* Header holding the format of the keyframes, JSON when missing */
+    public static final String CONTENT_TYPE_HEADER = "content-type";
 
     public static String getTopicName(final Factory factoryModel) {
         String rawId = factoryModel.getId();
@@ -18,6 +25,15 @@ public class SimulationServiceUtils {
         return TOPIC + baseId;
     }
 
+    /* Compacted topic holding the latest full copy of the factory, the other topic holding deltas */
+    public static String getKeyframeTopicName(final Factory factoryModel) {
+        return getTopicName(factoryModel) + KEYFRAME_TOPIC_SUFFIX;
+    }
+
+    public static boolean isKeyframeTopic(final String topicName) {
+        return topicName.endsWith(KEYFRAME_TOPIC_SUFFIX);
+    }
+
     public static Properties getDefaultConsumerProperties() {
         final Properties props = new Properties();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, BOOTSTRAP_SERVERS);
@@ -0,0 +1,52 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+/**
+ * Runs the ticks of a factory in place of the sequential loop of Factory.behave.
+ */
+public interface TickEngine extends AutoCloseable {
+
+    /**
+     * Performs one tick of the simulation of the given factory.
+     *
+     * @return true if at least one component behaved during the tick.
+     */
+    boolean tick(Factory factory);
+
+    long getTickCount();
+
+    /**
+     * Called when a component which had nothing to do may have something to do again, for
+     * engines which do not visit every component at every tick.
+     */
+    default void wake(final Component component) {
+        // Every component is visited at every tick by default
+    }
+
+    /**
+     * Whether no component was visited during the last tick, the factory being left unchanged.
+     */
+    default boolean isLastTickIdle() {
+        return false;
+    }
+
+    /**
+     * Number of ticks following the last one during which no component would be visited, and
+     * which can thus be skipped without changing the simulation.
+     *
+     * @return 0 if the next tick may visit a component, Long.MAX_VALUE if no component is visited
+     *         until one is woken up.
+     */
+    default long getIdleTicks() {
+        return 0;
+    }
+
+    /**
+     * Counts the given number of ticks as run without running them, at most getIdleTicks().
+     */
+    default void skipTicks(final long ticks) {
+        // No tick is ever idle by default
+    }
+
+    @Override
+    void close();
+}
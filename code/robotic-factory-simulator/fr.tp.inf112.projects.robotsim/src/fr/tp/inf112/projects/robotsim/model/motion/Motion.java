@@ -23,12 +23,25 @@ public class Motion {
 	}
 	
 	public int moveToTarget() {
-		final int xDisplacement = Math.abs(targetPosition.getxCoordinate() - currentPosition.getxCoordinate());
-		final int yDisplacement = Math.abs(targetPosition.getyCoordinate() - currentPosition.getyCoordinate());
+		return move(currentPosition, targetPosition);
+	}
+
+	/* Moves the current position to the target one, without creating a motion */
+	public static int move(final Position currentPosition,
+						   final Position targetPosition) {
+		return move(currentPosition, targetPosition.getxCoordinate(), targetPosition.getyCoordinate());
+	}
+
+	/* Same with the coordinates of the target position */
+	public static int move(final Position currentPosition,
+						   final int targetxCoordinate,
+						   final int targetyCoordinate) {
+		final int xDisplacement = Math.abs(targetxCoordinate - currentPosition.getxCoordinate());
+		final int yDisplacement = Math.abs(targetyCoordinate - currentPosition.getyCoordinate());
 		final int displacement = (int) Math.round(Math.sqrt(xDisplacement * xDisplacement + yDisplacement * yDisplacement));
 		
-		currentPosition.setxCoordinate(targetPosition.getxCoordinate());
-		currentPosition.setyCoordinate(targetPosition.getyCoordinate());
+		currentPosition.setxCoordinate(targetxCoordinate);
+		currentPosition.setyCoordinate(targetyCoordinate);
 		
 		return displacement;
 	}
@@ -0,0 +1,527 @@
+package fr.tp.inf112.projects.robotsim.model.path;
+
+/* Java related packages */
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/* Robotsim related packages */
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Door;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.FactoryLayoutListener;
+import fr.tp.inf112.projects.robotsim.model.Position;
+
+/**
+ * Path finder running A* directly on the occupancy grid of the factory, without building a graph.
+ *
+ * Robots move from cell to cell, either in 4-connectivity with the Manhattan heuristic or in
+ * 8-connectivity with the octile heuristic. Diagonal moves never cut the corner of a blocked cell.
+ * In 8-connectivity, jump point search can be enabled: only the jump points are pushed on the open
+ * list and the path between them is expanded back into cells, since robots move one cell per tick.
+ *
+ * Searches only read the grid, each thread keeps its own search state so that robots sharing a
+ * path finder can plan concurrently.
+ */
+public class AStarFactoryPathFinder implements FactoryPathFinder, FactoryLayoutListener, Serializable {
+
+    private static final long serialVersionUID = -3542378119463357027L;
+
+    /* Integer costs keep the octile heuristic consistent while avoiding floating point comparisons */
+    private static final int STRAIGHT_COST = 10;
+
+    private static final int DIAGONAL_COST = 14;
+
+    private static final int[] STRAIGHT_MOVES = { 0, -1, 1, 0, 0, 1, -1, 0 };
+
+    private static final int[] DIAGONAL_MOVES = { 1, -1, 1, 1, -1, 1, -1, -1 };
+
+    /* Directions searched from the source cell by jump point search, which has no parent to prune them */
+    private static final int[] ALL_MOVES = { 0, -1, 1, 0, 0, 1, -1, 0, 1, -1, 1, 1, -1, 1, -1, -1 };
+
+    /* Scratch arrays of the searches run by each thread, shared by all the finders since a thread runs
+       one search at a time */
+    private static final ThreadLocal<SearchState> SEARCH_STATES = new ThreadLocal<>();
+
+    private final Factory factoryModel;
+
+    private final int resolution;
+
+    private final boolean diagonalMoves;
+
+    private final boolean jumpPointSearch;
+
+    private transient OccupancyGrid occupancyGrid;
+
+    private transient boolean listeningLayout;
+
+    /* 8-connected A* */
+    public AStarFactoryPathFinder(final Factory factoryModel,
+                                  final int resolution) {
+        this(factoryModel, resolution, true, false);
+    }
+
+    public AStarFactoryPathFinder(final Factory factoryModel,
+                                  final int resolution,
+                                  final boolean diagonalMoves,
+                                  final boolean jumpPointSearch) {
+        if (jumpPointSearch && !diagonalMoves) {
+            throw new IllegalArgumentException("Jump point search requires diagonal moves.");
+        }
+
+        this.factoryModel    = factoryModel;
+        this.resolution      = resolution;
+        this.diagonalMoves   = diagonalMoves;
+        this.jumpPointSearch = jumpPointSearch;
+    }
+
+    public Factory getFactoryModel() {
+        return factoryModel;
+    }
+
+    public int getResolution() {
+        return resolution;
+    }
+
+    public boolean isDiagonalMoves() {
+        return diagonalMoves;
+    }
+
+    public boolean isJumpPointSearch() {
+        return jumpPointSearch;
+    }
+
+    protected synchronized OccupancyGrid getOccupancyGrid() {
+        if (occupancyGrid == null) {
+            if (!listeningLayout) {
+                listeningLayout = getFactoryModel().addLayoutListener(this);
+            }
+
+            occupancyGrid = OccupancyGrid.rasterise(getFactoryModel(), getResolution());
+        }
+
+        return occupancyGrid;
+    }
+
+    /* Searches already running keep the grid they started with, the next ones rasterise it again */
+    @Override
+    public synchronized void doorStateChanged(final Door door) {
+        occupancyGrid = null;
+    }
+
+    /* Arrays larger than the grid are kept, the cells past its end are never read */
+    private static SearchState getSearchState(final OccupancyGrid grid) {
+        final int cellsCount = grid.getColumns() * grid.getRows();
+        SearchState state = SEARCH_STATES.get();
+
+        if (state == null || state.costs.length < cellsCount) {
+            state = new SearchState(cellsCount);
+            SEARCH_STATES.set(state);
+        }
+
+        return state;
+    }
+
+    /* Searches only share the grid, which is never modified once rasterised */
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    @Override
+    public List<Position> findPath(final Component sourceComponent,
+                                   final Component targetComponent) {
+        final OccupancyGrid grid = getOccupancyGrid();
+        final Position sourcePosition = sourceComponent.getPosition();
+        final Position targetPosition = targetComponent.getPosition();
+
+        final int columns = grid.getColumns();
+        final int sourceCell = grid.toyIndex(sourcePosition.getyCoordinate()) * columns +
+                               grid.toxIndex(sourcePosition.getxCoordinate());
+        final int targetCell = grid.toyIndex(targetPosition.getyCoordinate()) * columns +
+                               grid.toxIndex(targetPosition.getxCoordinate());
+
+        if (sourceCell == targetCell || grid.isBlocked(targetCell % columns, targetCell / columns)) {
+            return new ArrayList<>();
+        }
+
+        final SearchState state = getSearchState(grid);
+
+        if (!search(grid, state, sourceCell, targetCell)) {
+            return new ArrayList<>();
+        }
+
+        return toPositions(grid, state, sourceCell, targetCell);
+    }
+
+    private boolean search(final OccupancyGrid grid,
+                           final SearchState state,
+                           final int sourceCell,
+                           final int targetCell) {
+        final int columns = grid.getColumns();
+        final int targetxIndex = targetCell % columns;
+        final int targetyIndex = targetCell / columns;
+
+        state.reset();
+        state.open(sourceCell, 0, sourceCell, heuristic(sourceCell % columns, sourceCell / columns, targetxIndex, targetyIndex));
+
+        while (!state.openCells.isEmpty()) {
+            final int cell = (int) state.openCells.pop();
+
+            if (state.isClosed(cell)) {
+                continue;
+            }
+
+            if (cell == targetCell) {
+                return true;
+            }
+
+            state.close(cell);
+
+            final int xIndex = cell % columns;
+            final int yIndex = cell / columns;
+
+            if (jumpPointSearch) {
+                expandJumpPoints(grid, state, xIndex, yIndex, targetxIndex, targetyIndex);
+            }
+            else {
+                expandNeighbours(grid, state, xIndex, yIndex, targetxIndex, targetyIndex);
+            }
+        }
+
+        return false;
+    }
+
+    private void expandNeighbours(final OccupancyGrid grid,
+                                  final SearchState state,
+                                  final int xIndex,
+                                  final int yIndex,
+                                  final int targetxIndex,
+                                  final int targetyIndex) {
+        for (int move = 0; move < STRAIGHT_MOVES.length; move += 2) {
+            relax(grid, state, xIndex, yIndex, xIndex + STRAIGHT_MOVES[move], yIndex + STRAIGHT_MOVES[move + 1],
+                  STRAIGHT_COST, targetxIndex, targetyIndex);
+        }
+
+        if (!diagonalMoves) {
+            return;
+        }
+
+        for (int move = 0; move < DIAGONAL_MOVES.length; move += 2) {
+            final int xDirection = DIAGONAL_MOVES[move];
+            final int yDirection = DIAGONAL_MOVES[move + 1];
+
+            if (canMoveDiagonally(grid, xIndex, yIndex, xDirection, yDirection)) {
+                relax(grid, state, xIndex, yIndex, xIndex + xDirection, yIndex + yDirection,
+                      DIAGONAL_COST, targetxIndex, targetyIndex);
+            }
+        }
+    }
+
+    /* Pushes the jump points reachable from the cell in the directions not pruned by its parent */
+    private void expandJumpPoints(final OccupancyGrid grid,
+                                  final SearchState state,
+                                  final int xIndex,
+                                  final int yIndex,
+                                  final int targetxIndex,
+                                  final int targetyIndex) {
+        final int columns = grid.getColumns();
+        final int cell = yIndex * columns + xIndex;
+        final int parent = state.parents[cell];
+
+        final int[] directions;
+        final int directionsLength;
+
+        if (parent == cell) {
+            directions       = ALL_MOVES;
+            directionsLength = ALL_MOVES.length;
+        }
+        else {
+            directions       = state.directions;
+            directionsLength = prunedDirections(grid, xIndex, yIndex,
+                                                Integer.signum(xIndex - parent % columns),
+                                                Integer.signum(yIndex - parent / columns),
+                                                directions);
+        }
+
+        for (int move = 0; move < directionsLength; move += 2) {
+            final int xDirection = directions[move];
+            final int yDirection = directions[move + 1];
+
+            if (xDirection != 0 && yDirection != 0 && !canMoveDiagonally(grid, xIndex, yIndex, xDirection, yDirection)) {
+                continue;
+            }
+
+            final int jumpPoint = jump(grid, xIndex + xDirection, yIndex + yDirection, xDirection, yDirection,
+                                       targetxIndex, targetyIndex);
+
+            if (jumpPoint >= 0) {
+                final int jumpxIndex = jumpPoint % columns;
+                final int jumpyIndex = jumpPoint / columns;
+
+                relax(grid, state, xIndex, yIndex, jumpxIndex, jumpyIndex,
+                      octile(Math.abs(jumpxIndex - xIndex), Math.abs(jumpyIndex - yIndex)),
+                      targetxIndex, targetyIndex);
+            }
+        }
+    }
+
+    /**
+     * Writes the natural and forced neighbours of a cell reached in the given direction, as direction pairs.
+     *
+     * @return the number of values written in the directions.
+     */
+    private int prunedDirections(final OccupancyGrid grid,
+                                 final int xIndex,
+                                 final int yIndex,
+                                 final int xDirection,
+                                 final int yDirection,
+                                 final int[] directions) {
+        int length = 0;
+
+        if (xDirection != 0 && yDirection != 0) {
+            length = put(directions, length, 0, yDirection);
+            length = put(directions, length, xDirection, 0);
+            length = put(directions, length, xDirection, yDirection);
+        }
+        else if (xDirection != 0) {
+            length = put(directions, length, xDirection, 0);
+            length = put(directions, length, 0, 1);
+            length = put(directions, length, 0, -1);
+
+            if (grid.isFree(xIndex + xDirection, yIndex)) {
+                length = put(directions, length, xDirection, 1);
+                length = put(directions, length, xDirection, -1);
+            }
+        }
+        else {
+            length = put(directions, length, 0, yDirection);
+            length = put(directions, length, 1, 0);
+            length = put(directions, length, -1, 0);
+
+            if (grid.isFree(xIndex, yIndex + yDirection)) {
+                length = put(directions, length, 1, yDirection);
+                length = put(directions, length, -1, yDirection);
+            }
+        }
+
+        return length;
+    }
+
+    /* Writes a direction pair at the given offset, returns the offset following it */
+    private static int put(final int[] directions,
+                           final int offset,
+                           final int xDirection,
+                           final int yDirection) {
+        directions[offset]     = xDirection;
+        directions[offset + 1] = yDirection;
+
+        return offset + 2;
+    }
+
+    /**
+     * Moves from the given cell in the given direction until a jump point is found.
+     *
+     * @return the cell of the jump point, or -1 if a blocked cell or the border was reached first.
+     */
+    private int jump(final OccupancyGrid grid,
+                     final int startxIndex,
+                     final int startyIndex,
+                     final int xDirection,
+                     final int yDirection,
+                     final int targetxIndex,
+                     final int targetyIndex) {
+        int xIndex = startxIndex;
+        int yIndex = startyIndex;
+
+        while (grid.isFree(xIndex, yIndex)) {
+            if (xIndex == targetxIndex && yIndex == targetyIndex) {
+                return yIndex * grid.getColumns() + xIndex;
+            }
+
+            if (xDirection != 0 && yDirection != 0) {
+                // A diagonal move stops where one of its straight components finds a jump point
+                if (jump(grid, xIndex + xDirection, yIndex, xDirection, 0, targetxIndex, targetyIndex) >= 0 ||
+                    jump(grid, xIndex, yIndex + yDirection, 0, yDirection, targetxIndex, targetyIndex) >= 0) {
+                    return yIndex * grid.getColumns() + xIndex;
+                }
+            }
+            else if (xDirection != 0) {
+                if ((grid.isFree(xIndex, yIndex - 1) && grid.isBlocked(xIndex - xDirection, yIndex - 1)) ||
+                    (grid.isFree(xIndex, yIndex + 1) && grid.isBlocked(xIndex - xDirection, yIndex + 1))) {
+                    return yIndex * grid.getColumns() + xIndex;
+                }
+            }
+            else {
+                if ((grid.isFree(xIndex - 1, yIndex) && grid.isBlocked(xIndex - 1, yIndex - yDirection)) ||
+                    (grid.isFree(xIndex + 1, yIndex) && grid.isBlocked(xIndex + 1, yIndex - yDirection))) {
+                    return yIndex * grid.getColumns() + xIndex;
+                }
+            }
+
+            if (!canMoveDiagonally(grid, xIndex, yIndex, xDirection, yDirection)) {
+                return -1;
+            }
+
+            xIndex += xDirection;
+            yIndex += yDirection;
+        }
+
+        return -1;
+    }
+
+    /* Diagonal moves need both straight neighbours to be free, straight moves are always allowed here */
+    private boolean canMoveDiagonally(final OccupancyGrid grid,
+                                      final int xIndex,
+                                      final int yIndex,
+                                      final int xDirection,
+                                      final int yDirection) {
+        return grid.isFree(xIndex + xDirection, yIndex) && grid.isFree(xIndex, yIndex + yDirection);
+    }
+
+    private void relax(final OccupancyGrid grid,
+                       final SearchState state,
+                       final int xIndex,
+                       final int yIndex,
+                       final int nextxIndex,
+                       final int nextyIndex,
+                       final int moveCost,
+                       final int targetxIndex,
+                       final int targetyIndex) {
+        if (grid.isBlocked(nextxIndex, nextyIndex)) {
+            return;
+        }
+
+        final int columns = grid.getColumns();
+        final int nextCell = nextyIndex * columns + nextxIndex;
+
+        if (state.isClosed(nextCell)) {
+            return;
+        }
+
+        final int cost = state.costs[yIndex * columns + xIndex] + moveCost;
+
+        if (!state.isSeen(nextCell) || cost < state.costs[nextCell]) {
+            state.open(nextCell, cost, yIndex * columns + xIndex,
+                       cost + heuristic(nextxIndex, nextyIndex, targetxIndex, targetyIndex));
+        }
+    }
+
+    private int heuristic(final int xIndex,
+                          final int yIndex,
+                          final int targetxIndex,
+                          final int targetyIndex) {
+        final int xDistance = Math.abs(targetxIndex - xIndex);
+        final int yDistance = Math.abs(targetyIndex - yIndex);
+
+        if (diagonalMoves) {
+            return octile(xDistance, yDistance);
+        }
+
+        return STRAIGHT_COST * (xDistance + yDistance);
+    }
+
+    private static int octile(final int xDistance,
+                              final int yDistance) {
+        return STRAIGHT_COST * Math.max(xDistance, yDistance) +
+               (DIAGONAL_COST - STRAIGHT_COST) * Math.min(xDistance, yDistance);
+    }
+
+    /* Follows the parents back to the source, expanding jump point segments into single cells */
+    private List<Position> toPositions(final OccupancyGrid grid,
+                                       final SearchState state,
+                                       final int sourceCell,
+                                       final int targetCell) {
+        final int columns = grid.getColumns();
+        final List<Position> positions = new ArrayList<>();
+        int cell = targetCell;
+
+        while (cell != sourceCell) {
+            final int parent = state.parents[cell];
+            final int xDirection = Integer.signum(parent % columns - cell % columns);
+            final int yDirection = Integer.signum(parent / columns - cell / columns);
+            int xIndex = cell % columns;
+            int yIndex = cell / columns;
+
+            while (yIndex * columns + xIndex != parent) {
+                positions.add(new Position(xIndex * resolution, yIndex * resolution));
+                xIndex += xDirection;
+                yIndex += yDirection;
+            }
+
+            cell = parent;
+        }
+
+        Collections.reverse(positions);
+
+        return positions;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " [resolution=" + resolution + ", diagonalMoves=" + diagonalMoves +
+               ", jumpPointSearch=" + jumpPointSearch + "]";
+    }
+
+    /* Per thread arrays of a search, stamped with a generation so that they are not cleared between searches */
+    private static class SearchState {
+
+        private final int[] costs;
+
+        private final int[] parents;
+
+        private final int[] seen;
+
+        private final int[] closed;
+
+        private final LongMinHeap openCells;
+
+        /* Pruned jump point directions of the cell being expanded, at most five pairs */
+        private final int[] directions = new int[10];
+
+        private int generation;
+
+        SearchState(final int cellsCount) {
+            costs     = new int[cellsCount];
+            parents   = new int[cellsCount];
+            seen      = new int[cellsCount];
+            closed    = new int[cellsCount];
+            openCells = new LongMinHeap(256);
+        }
+
+        void reset() {
+            openCells.clear();
+
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(seen, 0);
+                Arrays.fill(closed, 0);
+                generation = 1;
+            }
+        }
+
+        boolean isSeen(final int cell) {
+            return seen[cell] == generation;
+        }
+
+        boolean isClosed(final int cell) {
+            return closed[cell] == generation;
+        }
+
+        void close(final int cell) {
+            closed[cell] = generation;
+        }
+
+        /* The estimated cost is the priority, ties are broken on the cell number to stay reproducible */
+        void open(final int cell,
+                  final int cost,
+                  final int parent,
+                  final int estimatedCost) {
+            seen[cell]    = generation;
+            costs[cell]   = cost;
+            parents[cell] = parent;
+            openCells.push(((long) estimatedCost << 32) | cell);
+        }
+    }
+}
@@ -1,18 +1,19 @@
 package fr.tp.inf112.projects.robotsim.model.path;
 
 import java.io.Serializable;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Set;
 import java.util.logging.Logger;
 
 import fr.tp.inf112.projects.robotsim.app.SimulatorApplication;
+import fr.tp.inf112.projects.robotsim.model.Door;
 import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.FactoryLayoutListener;
 import fr.tp.inf112.projects.robotsim.model.Position;
 import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
 import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
 
-public abstract class AbstractFactoryPathFinder<Graph, Vertex> implements FactoryPathFinder, Serializable {
+public abstract class AbstractFactoryPathFinder<Graph, Vertex> implements FactoryPathFinder, FactoryLayoutListener, Serializable {
 
 	/**
 	 * 
@@ -25,6 +26,19 @@ public abstract class AbstractFactoryPathFinder<Graph, Vertex> implements Factor
 	
 	private transient Graph graph;
 	
+	/* Blocked cells of the factory, rasterised once instead of testing each cell against all components */
+	private transient OccupancyGrid occupancyGrid;
+	
+	/* Vertexes indexed by cell, row after row, so that they are found without scanning the graph */
+	private transient Object[] vertexes;
+	
+	private transient int columns;
+	
+	private transient int rows;
+	
+	/* The occupancy grid is dropped when a door opens or closes, registered when it is first rasterised */
+	private transient boolean listeningLayout;
+	
 	private static transient final Logger LOGGER = Logger.getLogger(AbstractFactoryPathFinder.class.getName());
 
 	public AbstractFactoryPathFinder(final Factory factoryModel,
@@ -46,28 +60,44 @@ public abstract class AbstractFactoryPathFinder<Graph, Vertex> implements Factor
 		return graph;
 	}
 	
-	protected void buildGraph() {
+	protected synchronized OccupancyGrid getOccupancyGrid() {
+		if (occupancyGrid == null) {
+			if (!listeningLayout) {
+				listeningLayout = getFactoryModel().addLayoutListener(this);
+			}
+			
+			occupancyGrid = OccupancyGrid.rasterise(getFactoryModel(), getResolution());
+			
+			LOGGER.fine(occupancyGrid::toString);
+		}
+		
+		return occupancyGrid;
+	}
+	
+	/* Synchronized since robots sharing a path finder may plan their paths concurrently */
+	protected synchronized void buildGraph() {
 		if (getGraph() == null) {
 			graph = newGraph();
-			final int xSize = getFactoryModel().getWidth() / getResolution();
-			final int ySize = getFactoryModel().getHeight() / getResolution();
+			columns = getFactoryModel().getWidth() / getResolution();
+			rows = getFactoryModel().getHeight() / getResolution();
+			vertexes = new Object[columns * rows];
 	
-			for (int xIndex = 0; xIndex < xSize; xIndex++) {
-				for (int yIndex = 0; yIndex < ySize; yIndex++) {
+			for (int xIndex = 0; xIndex < columns; xIndex++) {
+				for (int yIndex = 0; yIndex < rows; yIndex++) {
 					final int xCoordinate = xIndex * getResolution();
 					final int yCoordinate = yIndex * getResolution();
-					addVertex(xCoordinate, yCoordinate);
+					vertexes[yIndex * columns + xIndex] = addVertex(xCoordinate, yCoordinate);
 				}
 			}
 			
-			final Iterator<? extends Vertex> vertexesIterator = getGraphVertexesIterator();
-			
-			while (vertexesIterator.hasNext()) {
-				final Vertex vertex = vertexesIterator.next();
-				final Set<Vertex> successors = getSuccessors(getxCoordinate(vertex), getyCoordinate(vertex));
-
-				for (final Vertex succVertex : successors) {
-					addEdge(vertex, succVertex);
+			for (int xIndex = 0; xIndex < columns; xIndex++) {
+				for (int yIndex = 0; yIndex < rows; yIndex++) {
+					final Vertex vertex = getVertex(xIndex, yIndex);
+					final Set<Vertex> successors = getSuccessors(getxCoordinate(vertex), getyCoordinate(vertex));
+	
+					for (final Vertex succVertex : successors) {
+						addEdge(vertex, succVertex);
+					}
 				}
 			}
 			
@@ -75,10 +105,19 @@ public abstract class AbstractFactoryPathFinder<Graph, Vertex> implements Factor
 		}
 	}
 	
+	/* Opening or closing a door changes the free cells, the graph is built again on the next search */
+	@Override
+	public synchronized void doorStateChanged(final Door door) {
+		graph = null;
+		occupancyGrid = null;
+		vertexes = null;
+	}
+	
 	protected abstract Graph newGraph();
 
-	protected abstract boolean addVertex(int xCoordinate,
-										 int yCoordinate);
+	/* Adds a vertex for the cell at the given coordinates to the graph and returns it */
+	protected abstract Vertex addVertex(int xCoordinate,
+										int yCoordinate);
 
 	protected abstract boolean addEdge(Vertex vertex1,
 									   Vertex vertex2);
@@ -92,7 +131,8 @@ public abstract class AbstractFactoryPathFinder<Graph, Vertex> implements Factor
 		final int xIndex = xCoordinate / getResolution();
 		final int yIndex = yCoordinate / getResolution();
 		
-		final Set<Vertex> successors = new HashSet<>();
+		// Vertexes use identity hash codes, keep the insertion order so that searches are reproducible
+		final Set<Vertex> successors = new LinkedHashSet<>();
 
 		Vertex succVertex = getBackwardyVertex(xIndex, yIndex);
 		
@@ -171,7 +211,7 @@ public abstract class AbstractFactoryPathFinder<Graph, Vertex> implements Factor
 									 final int yIndex) {
 		final int searchedxIndex = xIndex + 1;
 		
-		if (searchedxIndex < getFactoryModel().getWidth() / getResolution()) {
+		if (searchedxIndex < columns) {
 			return getFreeVertex(searchedxIndex, yIndex);
 		}
 		
@@ -182,7 +222,7 @@ public abstract class AbstractFactoryPathFinder<Graph, Vertex> implements Factor
 									 final int yIndex) {
 		final int searchedyIndex = yIndex + 1;
 			
-		if (searchedyIndex < getFactoryModel().getHeight() / getResolution()) {
+		if (searchedyIndex < rows) {
 			return getFreeVertex(xIndex, searchedyIndex);
 		}
 		
@@ -191,21 +231,22 @@ public abstract class AbstractFactoryPathFinder<Graph, Vertex> implements Factor
 	
 	protected Vertex getFreeVertex(final int xIndex,
 								   final int yIndex) {
-		final int resolution = getResolution();
-		final int xCoordinate = xIndex * resolution;
-		final int yCoordinate = yIndex * resolution;
-		
-		final PositionedShape shape = new RectangularShape(xCoordinate, yCoordinate, resolution, resolution);
-		
-		if (!getFactoryModel().hasObstacleAt(shape)) {
+		if (getOccupancyGrid().isFree(xIndex, yIndex)) {
 			return getVertex(xIndex, yIndex);
 		}
 		
 		return null;
 	}
 	
-	protected abstract Vertex getVertex(final int xIndex,
-								 		final int yIndex);
+	@SuppressWarnings("unchecked")
+	protected Vertex getVertex(final int xIndex,
+							   final int yIndex) {
+		if (vertexes == null || xIndex < 0 || xIndex >= columns || yIndex < 0 || yIndex >= rows) {
+			return null;
+		}
+		
+		return (Vertex) vertexes[yIndex * columns + xIndex];
+	}
 	
 	protected Vertex getVertex(final Position position) {
 		float currentMaxOverlayedSurface = 0.0f;
@@ -215,15 +256,24 @@ public abstract class AbstractFactoryPathFinder<Graph, Vertex> implements Factor
 														   resolution,
 														   resolution);
 		
-		final  Iterator<? extends Vertex> vertexesIterator = getGraphVertexesIterator();
+		// A square of one cell can only overlay the cell it starts in and the next ones on each axis
+		final int xIndex = Math.floorDiv(position.getxCoordinate(), resolution);
+		final int yIndex = Math.floorDiv(position.getyCoordinate(), resolution);
 		
-		while (vertexesIterator.hasNext()) {
-			final Vertex vertex = vertexesIterator.next();
-			final float overlayedSurface = overlayedSurface(vertex, shape);
-			
-			if (overlayedSurface  > currentMaxOverlayedSurface) {
-				currentMaxOverlayedSurface = overlayedSurface;
-				maxOverlayedSurfaceVertex = vertex;
+		for (int candidatexIndex = xIndex; candidatexIndex <= xIndex + 1; candidatexIndex++) {
+			for (int candidateyIndex = yIndex; candidateyIndex <= yIndex + 1; candidateyIndex++) {
+				final Vertex vertex = getVertex(candidatexIndex, candidateyIndex);
+				
+				if (vertex == null) {
+					continue;
+				}
+				
+				final float overlayedSurface = overlayedSurface(vertex, shape);
+				
+				if (overlayedSurface  > currentMaxOverlayedSurface) {
+					currentMaxOverlayedSurface = overlayedSurface;
+					maxOverlayedSurfaceVertex = vertex;
+				}
 			}
 		}
 		
@@ -232,6 +282,4 @@ public abstract class AbstractFactoryPathFinder<Graph, Vertex> implements Factor
 	
 	protected abstract float overlayedSurface(Vertex vertex, 
 											  PositionedShape shape);
-	
-	protected abstract Iterator<? extends Vertex> getGraphVertexesIterator();
 }
@@ -0,0 +1,91 @@
+package fr.tp.inf112.projects.robotsim.model.path;
+
+/* Java related packages */
+import java.io.Serializable;
+import java.util.List;
+
+/* Robotsim related packages */
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Position;
+
+/**
+ * Path finder looking up a shared PathCache before delegating the search to another path finder.
+ * Robots following the same routes share one cache and mostly stop searching.
+ *
+ * Incremental and stepwise path finders answer from the state of each robot, their answers are
+ * forwarded without being cached.
+ */
+public class CachingFactoryPathFinder implements FactoryPathFinder, Serializable {
+
+    private static final long serialVersionUID = -4290811530785317644L;
+
+    private final FactoryPathFinder pathFinder;
+
+    private final PathCache pathCache;
+
+    public CachingFactoryPathFinder(final FactoryPathFinder pathFinder,
+                                    final PathCache pathCache) {
+        this.pathFinder = pathFinder;
+        this.pathCache  = pathCache;
+    }
+
+    public FactoryPathFinder getPathFinder() {
+        return pathFinder;
+    }
+
+    public PathCache getPathCache() {
+        return pathCache;
+    }
+
+    @Override
+    public int getResolution() {
+        return pathFinder.getResolution();
+    }
+
+    /* The cache is synchronized, the searches are as safe as those of the path finder */
+    @Override
+    public boolean isThreadSafe() {
+        return pathFinder.isThreadSafe();
+    }
+
+    @Override
+    public boolean isIncremental() {
+        return pathFinder.isIncremental();
+    }
+
+    @Override
+    public boolean isCooperative() {
+        return pathFinder.isCooperative();
+    }
+
+    @Override
+    public boolean isStepwise() {
+        return pathFinder.isStepwise();
+    }
+
+    @Override
+    public Position nextStep(final Component sourceComponent,
+                             final Component targetComponent) {
+        return pathFinder.nextStep(sourceComponent, targetComponent);
+    }
+
+    @Override
+    public List<Position> findPath(final Component sourceComponent,
+                                   final Component targetComponent) {
+        if (pathFinder.isIncremental() || pathFinder.isStepwise()) {
+            return pathFinder.findPath(sourceComponent, targetComponent);
+        }
+
+        final Position sourcePosition = sourceComponent.getPosition();
+        final List<Position> cachedPath = pathCache.get(sourcePosition, targetComponent);
+
+        if (cachedPath != null) {
+            return cachedPath;
+        }
+
+        final List<Position> path = pathFinder.findPath(sourceComponent, targetComponent);
+        pathCache.put(sourcePosition, targetComponent, path);
+
+        return path;
+    }
+}
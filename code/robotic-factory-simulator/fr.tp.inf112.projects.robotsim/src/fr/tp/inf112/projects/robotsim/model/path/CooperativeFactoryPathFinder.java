@@ -0,0 +1,315 @@
+package fr.tp.inf112.projects.robotsim.model.path;
+
+/* Java related packages */
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/* Canvas related packages */
+import fr.tp.inf112.projects.canvas.model.Figure;
+
+/* Robotsim related packages */
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Position;
+
+/**
+ * Cooperative path finder based on Windowed Hierarchical Cooperative A*, shared by all the robots
+ * of a factory.
+ *
+ * Each robot searches the cells and ticks of the next window with a space-time A*, guided by the
+ * exact distances to its target given by a distance field, and reserves the cells of its trajectory
+ * in a reservation table. The robots planning afterwards avoid these reservations, by waiting or
+ * going around, so that the planned trajectories do not conflict. A robot may not enter a cell
+ * reserved at the previous tick by another robot, which forbids swapping and following robots
+ * whatever the order the motions are committed in.
+ *
+ * Trajectories last one window at most, robots plan again when they reach its end or their target.
+ *
+ * The states of the search are the cells of each tick of the window, numbered step * cells + cell,
+ * so that the search runs on arrays reused from one request to the next.
+ */
+public class CooperativeFactoryPathFinder implements FactoryPathFinder, Serializable {
+
+    private static final long serialVersionUID = 3514418623040936187L;
+
+    /* Number of ticks planned ahead */
+    public static final int DEFAULT_WINDOW = 16;
+
+    /* Waiting first, then straight moves as (x, y) pairs */
+    private static final int[] MOVES = { 0, 0, 0, -1, 1, 0, 0, 1, -1, 0 };
+
+    private static final int MOVE_COST = 10;
+
+    private final Factory factoryModel;
+
+    private final int resolution;
+
+    private final int window;
+
+    private final DistanceFieldFactoryPathFinder distanceFinder;
+
+    private transient ReservationTable reservationTable;
+
+    private transient SearchState searchState;
+
+    public CooperativeFactoryPathFinder(final Factory factoryModel,
+                                        final int resolution) {
+        this(factoryModel, resolution, DEFAULT_WINDOW);
+    }
+
+    public CooperativeFactoryPathFinder(final Factory factoryModel,
+                                        final int resolution,
+                                        final int window) {
+        this.factoryModel   = factoryModel;
+        this.resolution     = resolution;
+        this.window         = window;
+        this.distanceFinder = new DistanceFieldFactoryPathFinder(factoryModel, resolution);
+    }
+
+    public Factory getFactoryModel() {
+        return factoryModel;
+    }
+
+    public int getResolution() {
+        return resolution;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    public synchronized ReservationTable getReservationTable() {
+        if (reservationTable == null) {
+            reservationTable = new ReservationTable();
+        }
+
+        return reservationTable;
+    }
+
+    @Override
+    public boolean isIncremental() {
+        return true;
+    }
+
+    @Override
+    public boolean isCooperative() {
+        return true;
+    }
+
+    private SearchState getSearchState(final OccupancyGrid grid) {
+        final int cellsCount = grid.getColumns() * grid.getRows();
+
+        if (searchState == null || searchState.cellsCount != cellsCount) {
+            searchState = new SearchState(cellsCount, window);
+        }
+
+        return searchState;
+    }
+
+    /**
+     * Plans the trajectory of the source component for the next window and reserves it, in place of
+     * its previous one. Waiting ticks are returned as repeated positions.
+     */
+    @Override
+    public synchronized List<Position> findPath(final Component sourceComponent,
+                                                final Component targetComponent) {
+        final ReservationTable reservations = getReservationTable();
+        reservations.release(sourceComponent);
+
+        final OccupancyGrid grid = distanceFinder.getOccupancyGrid();
+        final int[] distances = distanceFinder.getDistances(targetComponent);
+        final long tick = getFactoryModel().getTickCount();
+        final int startCell = cellOf(grid, sourceComponent.getPosition());
+        reservations.reserve(tick, startCell, sourceComponent);
+
+        if (distances[startCell] == DistanceFieldFactoryPathFinder.UNREACHABLE) {
+            // The target cannot be reached from the source
+            return new ArrayList<>();
+        }
+
+        final SearchState state = getSearchState(grid);
+        fillOccupiedCells(grid, sourceComponent, state.occupiedCells);
+
+        final int last = search(grid, state, distances, tick, startCell, sourceComponent);
+
+        if (last < 0) {
+            return new ArrayList<>();
+        }
+
+        final int cellsCount = state.cellsCount;
+        final List<Position> positions = new ArrayList<>(last / cellsCount);
+
+        for (int current = last; current >= cellsCount; current = state.parents[current]) {
+            reservations.reserve(tick + current / cellsCount, current % cellsCount, sourceComponent);
+            positions.add(toPosition(grid, current % cellsCount));
+        }
+
+        Collections.reverse(positions);
+
+        // Keep the last cell until the end of the window, the robot stays there until it plans again
+        for (int step = last / cellsCount + 1; step <= window; step++) {
+            reservations.reserve(tick + step, last % cellsCount, sourceComponent);
+        }
+
+        return positions;
+    }
+
+    /**
+     * Space-time A*, returns the state of the target or the best state at the end of the window, -1
+     * if no state can be reached. As every move or wait costs the same, the cost of a state is its
+     * step and the first time it is opened is as good as any.
+     */
+    private int search(final OccupancyGrid grid,
+                       final SearchState state,
+                       final int[] distances,
+                       final long tick,
+                       final int startCell,
+                       final Component sourceComponent) {
+        final ReservationTable reservations = getReservationTable();
+        final BitSet occupiedCells = state.occupiedCells;
+        final int columns = grid.getColumns();
+        final int cellsCount = state.cellsCount;
+
+        state.reset();
+        state.open(startCell, startCell, distances[startCell]);
+
+        while (!state.openStates.isEmpty()) {
+            final int current = state.pop();
+            final int step = current / cellsCount;
+            final int cell = current % cellsCount;
+
+            if (distances[cell] == 0 || step == window) {
+                return current;
+            }
+
+            final int xIndex = cell % columns;
+            final int yIndex = cell / columns;
+
+            for (int move = 0; move < MOVES.length; move += 2) {
+                final int nextxIndex = xIndex + MOVES[move];
+                final int nextyIndex = yIndex + MOVES[move + 1];
+                final int nextCell = nextyIndex * columns + nextxIndex;
+                final int nextState = (step + 1) * cellsCount + nextCell;
+                final boolean waiting = move == 0;
+
+                if (state.isSeen(nextState)) {
+                    continue;
+                }
+
+                if (!waiting && (!grid.isFree(nextxIndex, nextyIndex) ||
+                                 distances[nextCell] == DistanceFieldFactoryPathFinder.UNREACHABLE)) {
+                    continue;
+                }
+
+                // The cell must be free at the next tick and, to enter it, at the current tick as well
+                if (reservations.isReservedByOther(tick + step + 1, nextCell, sourceComponent)) {
+                    continue;
+                }
+
+                if (!waiting && (reservations.isReservedByOther(tick + step, nextCell, sourceComponent) ||
+                                 step == 0 && occupiedCells.get(nextCell))) {
+                    continue;
+                }
+
+                state.open(nextState, current, (step + 1) * MOVE_COST + distances[nextCell]);
+            }
+        }
+
+        return -1;
+    }
+
+    /* Cells of the other mobile components, which may not move if they do not plan cooperatively */
+    private void fillOccupiedCells(final OccupancyGrid grid,
+                                   final Component sourceComponent,
+                                   final BitSet occupiedCells) {
+        occupiedCells.clear();
+
+        for (final Figure figure : getFactoryModel().getFigures()) {
+            final Component component = (Component) figure;
+
+            if (component != sourceComponent && component.isMobile()) {
+                occupiedCells.set(cellOf(grid, component.getPosition()));
+            }
+        }
+    }
+
+    private static int cellOf(final OccupancyGrid grid,
+                              final Position position) {
+        return grid.toyIndex(position.getyCoordinate()) * grid.getColumns() + grid.toxIndex(position.getxCoordinate());
+    }
+
+    private Position toPosition(final OccupancyGrid grid,
+                                final int cell) {
+        return new Position(cell % grid.getColumns() * resolution, cell / grid.getColumns() * resolution);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " [resolution=" + resolution + ", window=" + window + ", " +
+               getReservationTable() + "]";
+    }
+
+    /**
+     * Arrays of the states of a search, stamped with a generation so that they are not cleared between
+     * searches. States closer to the end of the window are popped first on equal estimates, then the
+     * lowest cells, so that the plans are reproducible.
+     */
+    private static final class SearchState {
+
+        private final int cellsCount;
+
+        private final int window;
+
+        private final int[] parents;
+
+        private final int[] seen;
+
+        private final LongMinHeap openStates;
+
+        private final BitSet occupiedCells;
+
+        private int generation;
+
+        SearchState(final int cellsCount,
+                    final int window) {
+            this.cellsCount = cellsCount;
+            this.window     = window;
+            parents         = new int[(window + 1) * cellsCount];
+            seen            = new int[(window + 1) * cellsCount];
+            openStates      = new LongMinHeap(256);
+            occupiedCells   = new BitSet(cellsCount);
+        }
+
+        void reset() {
+            openStates.clear();
+
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(seen, 0);
+                generation = 1;
+            }
+        }
+
+        boolean isSeen(final int state) {
+            return seen[state] == generation;
+        }
+
+        /* The low bits count the steps backwards from the end of the window */
+        void open(final int state,
+                  final int parent,
+                  final int estimatedCost) {
+            seen[state]    = generation;
+            parents[state] = parent;
+            openStates.push(((long) estimatedCost << 32) | ((window - state / cellsCount) * cellsCount + state % cellsCount));
+        }
+
+        int pop() {
+            final int reversedState = (int) openStates.pop();
+
+            return (window - reversedState / cellsCount) * cellsCount + reversedState % cellsCount;
+        }
+    }
+}
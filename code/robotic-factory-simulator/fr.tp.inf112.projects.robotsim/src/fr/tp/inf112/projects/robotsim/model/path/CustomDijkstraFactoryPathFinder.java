@@ -2,7 +2,6 @@ package fr.tp.inf112.projects.robotsim.model.path;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 import fr.tp.inf112.projects.graph.DijkstraAlgorithm;
@@ -28,8 +27,9 @@ public class CustomDijkstraFactoryPathFinder extends AbstractFactoryPathFinder<G
 		super(factoryModel, resolution);
 	}
 
+	/* Synchronized since the target vertex is stored in the graph, which is shared by all searches */
 	@Override
-	public List<Position> findPath(final Component sourceComponent,
+	public synchronized List<Position> findPath(final Component sourceComponent,
 								   final Component targetComponent) {
 		buildGraph();
 		
@@ -57,50 +57,28 @@ public class CustomDijkstraFactoryPathFinder extends AbstractFactoryPathFinder<G
 		return shortestPathPositions;
 	}
 
-	@Override
-	protected SquareVertex getVertex(final int xIndex, 
-									 final int yIndex) {
-		final Iterator<SquareVertex> iterator = getGraphVertexesIterator();
-		final int resolution = getResolution();
-		final Position position = new Position(xIndex * resolution, yIndex * resolution);
-
-		while (iterator.hasNext()) {
-			final SquareVertex squareVertex = iterator.next();
-			
-			if (position.equals(squareVertex.getPosition())) {
-				return squareVertex;
-			}
-		}
-		
-		return null;
-	}
-
 	@Override
 	protected float overlayedSurface(final SquareVertex vertex, 
 									 final PositionedShape shape) {
 		return vertex.getShape().getOverlayedSurface(shape);
 	}
 
-	@SuppressWarnings({ "rawtypes", "unchecked" })
-	@Override
-	protected Iterator<SquareVertex> getGraphVertexesIterator() {
-		return (Iterator) getGraph().getVertexes().iterator();
-	}
-
 	@Override
 	protected GridGraph newGraph() {
 		return new GridGraph();
 	}
 
 	@Override
-	protected boolean addVertex(final int xCoordinate,
-								final int yCoordinate) {
+	protected SquareVertex addVertex(final int xCoordinate,
+									 final int yCoordinate) {
 		final int resolution = getResolution();
-		final Vertex vertex = new SquareVertex("(" + xCoordinate / resolution + ", "+ yCoordinate / resolution + ")",
+		final SquareVertex vertex = new SquareVertex("(" + xCoordinate / resolution + ", "+ yCoordinate / resolution + ")",
 											   xCoordinate,
 											   yCoordinate,
 											   resolution);
-		return getGraph().addVertex(vertex);
+		getGraph().addVertex(vertex);
+		
+		return vertex;
 	}
 
 	@Override
@@ -0,0 +1,749 @@
+package fr.tp.inf112.projects.robotsim.model.path;
+
+/* Java related packages */
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/* Canvas related packages */
+import fr.tp.inf112.projects.canvas.model.Figure;
+
+/* Robotsim related packages */
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Door;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.FactoryLayoutListener;
+import fr.tp.inf112.projects.robotsim.model.Position;
+
+/**
+ * Incremental path finder based on D* Lite, keeping one search per robot.
+ *
+ * Static obstacles come from the occupancy grid. Cells occupied by other mobile components are not
+ * blocked but cost more to enter, so that a robot either waits for a robot in the way or goes around
+ * it, whichever is cheaper. Each new request for the same target only repairs the search from the
+ * cells whose occupation changed since the previous request, instead of searching again from scratch.
+ *
+ * The search runs backwards from the target, so that moving robots keep their search state. Opening
+ * or closing a door resets the searches of all robots.
+ *
+ * The cells of the mobile components are tracked as they move, in a journal of the cells whose
+ * occupation changed. The journal is shared by all the path finders of a factory searching at the
+ * same resolution, each search only reads the entries added since its previous request and a search
+ * left behind by the trimmed journal starts again from scratch.
+ */
+public class DStarLiteFactoryPathFinder implements FactoryPathFinder, FactoryLayoutListener, Serializable {
+
+    private static final long serialVersionUID = -8151969744587926415L;
+
+    /* Extra cost to enter a cell occupied by another robot, in tenths of cell */
+    public static final int DEFAULT_ROBOT_COST = 50;
+
+    private static final int INFINITY = Integer.MAX_VALUE / 4;
+
+    private static final int STRAIGHT_COST = 10;
+
+    private static final int DIAGONAL_COST = 14;
+
+    /* Straight moves first, then diagonal ones, as (x, y) pairs */
+    private static final int[] MOVES = { 0, -1, 1, 0, 0, 1, -1, 0, 1, -1, 1, 1, -1, 1, -1, -1 };
+
+    /* Journal entries kept before the entries already read by all the searches are dropped */
+    private static final int JOURNAL_CAPACITY = 4096;
+
+    /* Occupancies shared by the path finders of each factory, by resolution */
+    private static final Map<Factory, Map<Integer, Occupancy>> OCCUPANCIES = new WeakHashMap<>();
+
+    private final Factory factoryModel;
+
+    private final int resolution;
+
+    private final boolean diagonalMoves;
+
+    private final int robotCost;
+
+    private transient volatile OccupancyGrid occupancyGrid;
+
+    /* Read without lock when the shared journal is trimmed */
+    private transient volatile Map<Component, Search> searches;
+
+    private transient volatile Occupancy occupancy;
+
+    private transient boolean listeningLayout;
+
+    /* 4-connected, as the graph based path finders */
+    public DStarLiteFactoryPathFinder(final Factory factoryModel,
+                                      final int resolution) {
+        this(factoryModel, resolution, false, DEFAULT_ROBOT_COST);
+    }
+
+    public DStarLiteFactoryPathFinder(final Factory factoryModel,
+                                      final int resolution,
+                                      final boolean diagonalMoves,
+                                      final int robotCost) {
+        this.factoryModel  = factoryModel;
+        this.resolution    = resolution;
+        this.diagonalMoves = diagonalMoves;
+        this.robotCost     = robotCost;
+    }
+
+    public Factory getFactoryModel() {
+        return factoryModel;
+    }
+
+    public int getResolution() {
+        return resolution;
+    }
+
+    public boolean isDiagonalMoves() {
+        return diagonalMoves;
+    }
+
+    public int getRobotCost() {
+        return robotCost;
+    }
+
+    @Override
+    public boolean isIncremental() {
+        return true;
+    }
+
+    /* Each robot only repairs its own search, the searches of other robots are left alone */
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    protected synchronized OccupancyGrid getOccupancyGrid() {
+        if (occupancyGrid == null) {
+            if (!listeningLayout) {
+                listeningLayout = getFactoryModel().addLayoutListener(this);
+            }
+
+            occupancyGrid = OccupancyGrid.rasterise(getFactoryModel(), getResolution());
+        }
+
+        return occupancyGrid;
+    }
+
+    private synchronized Map<Component, Search> getSearches() {
+        if (searches == null) {
+            searches = new ConcurrentHashMap<>();
+        }
+
+        return searches;
+    }
+
+    private Occupancy getOccupancy(final OccupancyGrid grid) {
+        Occupancy currentOccupancy = occupancy;
+
+        if (currentOccupancy == null) {
+            currentOccupancy = sharedOccupancy(getFactoryModel(), grid);
+            currentOccupancy.addReader(this);
+            occupancy = currentOccupancy;
+        }
+
+        return currentOccupancy;
+    }
+
+    /* The occupancy is registered once as a motion listener, whatever the number of path finders */
+    private static Occupancy sharedOccupancy(final Factory factory,
+                                             final OccupancyGrid grid) {
+        synchronized (OCCUPANCIES) {
+            final Map<Integer, Occupancy> occupancies = OCCUPANCIES.computeIfAbsent(factory, key -> new HashMap<>());
+            Occupancy sharedOccupancy = occupancies.get(grid.getResolution());
+
+            if (sharedOccupancy == null) {
+                sharedOccupancy = new Occupancy(factory, grid);
+                factory.addLayoutListener(sharedOccupancy);
+                occupancies.put(grid.getResolution(), sharedOccupancy);
+            }
+
+            return sharedOccupancy;
+        }
+    }
+
+    @Override
+    public synchronized void doorStateChanged(final Door door) {
+        occupancyGrid = null;
+        getSearches().clear();
+    }
+
+    /* Searches of a removed robot or towards a removed target are never asked for again */
+    @Override
+    public void componentRemoved(final Component component) {
+        final Map<Component, Search> currentSearches = getSearches();
+        currentSearches.remove(component);
+        currentSearches.values().removeIf(search -> search.target == component);
+    }
+
+    public int getSearchesCount() {
+        return getSearches().size();
+    }
+
+    @Override
+    public List<Position> findPath(final Component sourceComponent,
+                                   final Component targetComponent) {
+        final OccupancyGrid grid = getOccupancyGrid();
+        final Occupancy cells = getOccupancy(grid);
+        final int sourceCell = cellOf(grid, sourceComponent.getPosition());
+        final int targetCell = cellOf(grid, targetComponent.getPosition());
+
+        Search search = getSearches().get(sourceComponent);
+
+        if (search == null || search.grid != grid || search.target != targetComponent || search.goal != targetCell ||
+            !cells.readChanges(sourceComponent, search)) {
+            search = new Search(grid, targetComponent, targetCell, sourceCell);
+            cells.initialise(sourceComponent, search);
+            search.computeShortestPath();
+            getSearches().put(sourceComponent, search);
+        }
+        else {
+            search.update(sourceCell);
+        }
+
+        return search.extractPath();
+    }
+
+    private static int cellOf(final OccupancyGrid grid,
+                              final Position position) {
+        return grid.toyIndex(position.getyCoordinate()) * grid.getColumns() + grid.toxIndex(position.getxCoordinate());
+    }
+
+    private static int add(final int value1,
+                           final int value2) {
+        return Math.min(INFINITY, value1 + value2);
+    }
+
+    private static int moveCost(final int move) {
+        return move < MOVES.length / 2 ? STRAIGHT_COST : DIAGONAL_COST;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " [resolution=" + resolution + ", diagonalMoves=" + diagonalMoves +
+               ", robotCost=" + robotCost + "]";
+    }
+
+    /**
+     * Number of mobile components in each cell, and journal of the cells whose count changed. The
+     * journal entry of index i is the change of version journalStart + i. The version of each search
+     * is its read cursor in the journal.
+     *
+     * The factory is not kept, so that the occupancies registered for it do not keep it alive.
+     */
+    private static final class Occupancy implements FactoryLayoutListener {
+
+        /* Only the dimensions of the grid are used, they do not change when doors open or close */
+        private final OccupancyGrid grid;
+
+        private final int[] counts;
+
+        private final Map<Component, Integer> componentCells;
+
+        /* Path finders reading the journal, whose searches decide which entries can be dropped */
+        private final Set<DStarLiteFactoryPathFinder> readers;
+
+        private int[] journal;
+
+        private int journalLength;
+
+        private long journalStart;
+
+        Occupancy(final Factory factory,
+                  final OccupancyGrid grid) {
+            this.grid      = grid;
+            counts         = new int[grid.getColumns() * grid.getRows()];
+            componentCells = new IdentityHashMap<>();
+            readers        = Collections.newSetFromMap(new WeakHashMap<>());
+            journal        = new int[64];
+
+            for (final Figure figure : factory.getFigures()) {
+                final Component component = (Component) figure;
+
+                if (component.isMobile()) {
+                    final int cell = cellOf(grid, component.getPosition());
+                    componentCells.put(component, cell);
+                    counts[cell]++;
+                }
+            }
+        }
+
+        synchronized void addReader(final DStarLiteFactoryPathFinder reader) {
+            readers.add(reader);
+        }
+
+        @Override
+        public boolean isMotionListener() {
+            return true;
+        }
+
+        /* Mobile components do not change the static obstacles */
+        @Override
+        public void doorStateChanged(final Door door) {
+        }
+
+        @Override
+        public void componentMoved(final Component component) {
+            if (component.isMobile()) {
+                move(component);
+            }
+        }
+
+        @Override
+        public void componentRemoved(final Component component) {
+            if (component.isMobile()) {
+                remove(component);
+            }
+        }
+
+        private synchronized void move(final Component component) {
+            final int cell = cellOf(grid, component.getPosition());
+            final Integer previousCell = componentCells.put(component, cell);
+
+            if (previousCell == null || previousCell != cell) {
+                if (previousCell != null) {
+                    counts[previousCell]--;
+                    log(previousCell);
+                }
+
+                counts[cell]++;
+                log(cell);
+            }
+        }
+
+        private synchronized void remove(final Component component) {
+            final Integer cell = componentCells.remove(component);
+
+            if (cell != null) {
+                counts[cell]--;
+                log(cell);
+            }
+        }
+
+        /* Cells of the mobile components other than the source, as seen from the current version */
+        synchronized void initialise(final Component sourceComponent,
+                                     final Search search) {
+            final Integer sourceCell = componentCells.get(sourceComponent);
+
+            for (final int cell : componentCells.values()) {
+                if (isOccupied(cell, sourceCell)) {
+                    search.occupiedCells.set(cell);
+                }
+            }
+
+            search.version = journalStart + journalLength;
+        }
+
+        /**
+         * Gives the search the cells whose occupation changed for its robot since its last request.
+         *
+         * @return false if some of these changes were dropped from the journal.
+         */
+        synchronized boolean readChanges(final Component sourceComponent,
+                                         final Search search) {
+            if (search.version < journalStart) {
+                return false;
+            }
+
+            final Integer sourceCell = componentCells.get(sourceComponent);
+            search.changedCellsCount = 0;
+
+            for (long version = search.version; version < journalStart + journalLength; version++) {
+                final int cell = journal[(int) (version - journalStart)];
+                final boolean occupied = isOccupied(cell, sourceCell);
+
+                if (occupied != search.occupiedCells.get(cell)) {
+                    search.occupiedCells.set(cell, occupied);
+                    search.addChangedCell(cell);
+                }
+            }
+
+            search.version = journalStart + journalLength;
+
+            return true;
+        }
+
+        private boolean isOccupied(final int cell,
+                                   final Integer sourceCell) {
+            return counts[cell] > (sourceCell != null && sourceCell == cell ? 1 : 0);
+        }
+
+        private void log(final int cell) {
+            if (journalLength == journal.length) {
+                trimJournal();
+            }
+
+            journal[journalLength++] = cell;
+        }
+
+        /* Drops the entries read by all the searches, or the older half once the journal is full */
+        private void trimJournal() {
+            long oldestVersion = journalStart + journalLength;
+
+            for (final DStarLiteFactoryPathFinder reader : readers) {
+                final Map<Component, Search> readerSearches = reader.searches;
+
+                if (readerSearches != null) {
+                    for (final Search search : readerSearches.values()) {
+                        oldestVersion = Math.min(oldestVersion, search.version);
+                    }
+                }
+            }
+
+            int dropped = (int) Math.max(0, oldestVersion - journalStart);
+
+            if (dropped == 0 && journal.length >= JOURNAL_CAPACITY) {
+                dropped = journalLength / 2;
+            }
+
+            if (dropped > 0) {
+                System.arraycopy(journal, dropped, journal, 0, journalLength - dropped);
+                journalLength -= dropped;
+                journalStart  += dropped;
+            }
+            else {
+                journal = Arrays.copyOf(journal, journal.length * 2);
+            }
+        }
+    }
+
+    /* D* Lite search of one robot towards one target, see Koenig and Likhachev */
+    private final class Search {
+
+        private final OccupancyGrid grid;
+
+        private final Component target;
+
+        private final int goal;
+
+        private final int columns;
+
+        private final int movesLength;
+
+        private final int[] costs;
+
+        private final int[] lookAheadCosts;
+
+        /* Key each cell is queued with, -1 when it is not queued */
+        private final long[] queuedKeys;
+
+        private final KeyHeap queue;
+
+        /* Cells of the other mobile components, as of the version of the occupancy */
+        private final BitSet occupiedCells;
+
+        private long version;
+
+        /* Cells whose occupation changed since the previous request, filled by the occupancy */
+        private int[] changedCells = new int[16];
+
+        private int changedCellsCount;
+
+        private int start;
+
+        private int lastStart;
+
+        private int keyModifier;
+
+        /* The occupied cells are set by the occupancy before the first computation */
+        Search(final OccupancyGrid grid,
+               final Component target,
+               final int goal,
+               final int start) {
+            this.grid      = grid;
+            this.target    = target;
+            this.goal      = goal;
+            this.start     = start;
+            this.lastStart = start;
+            columns        = grid.getColumns();
+            movesLength    = diagonalMoves ? MOVES.length : MOVES.length / 2;
+
+            final int cellsCount = columns * grid.getRows();
+            costs          = new int[cellsCount];
+            lookAheadCosts = new int[cellsCount];
+            queuedKeys     = new long[cellsCount];
+            queue          = new KeyHeap();
+            occupiedCells  = new BitSet(cellsCount);
+
+            Arrays.fill(costs, INFINITY);
+            Arrays.fill(lookAheadCosts, INFINITY);
+            Arrays.fill(queuedKeys, -1);
+
+            lookAheadCosts[goal] = 0;
+            enqueue(goal);
+        }
+
+        void addChangedCell(final int cell) {
+            if (changedCellsCount == changedCells.length) {
+                changedCells = Arrays.copyOf(changedCells, changedCellsCount * 2);
+            }
+
+            changedCells[changedCellsCount++] = cell;
+        }
+
+        /* Moves the start and repairs the search around the cells whose occupation changed */
+        void update(final int newStart) {
+            if (newStart != start) {
+                keyModifier = add(keyModifier, heuristic(lastStart, newStart));
+                lastStart = newStart;
+                start = newStart;
+            }
+
+            for (int index = 0; index < changedCellsCount; index++) {
+                updatePredecessors(changedCells[index]);
+            }
+
+            changedCellsCount = 0;
+
+            computeShortestPath();
+        }
+
+        List<Position> extractPath() {
+            final List<Position> positions = new ArrayList<>();
+            int cell = start;
+
+            while (cell != goal) {
+                int bestCell = -1;
+                int bestCost = INFINITY;
+
+                for (int move = 0; move < movesLength; move += 2) {
+                    final int nextCell = neighbour(cell, move);
+
+                    if (nextCell >= 0 && canMove(cell, move)) {
+                        final int cost = add(cost(nextCell, move), costs[nextCell]);
+
+                        if (cost < bestCost) {
+                            bestCost = cost;
+                            bestCell = nextCell;
+                        }
+                    }
+                }
+
+                if (bestCell < 0 || positions.size() > costs.length) {
+                    // The target cannot be reached from the start
+                    return new ArrayList<>();
+                }
+
+                cell = bestCell;
+                positions.add(new Position(cell % columns * resolution, cell / columns * resolution));
+            }
+
+            return positions;
+        }
+
+        void computeShortestPath() {
+            while (true) {
+                final int cell = queue.peekValid(queuedKeys);
+
+                if (cell < 0 || (queue.peekKey() >= key(start) && lookAheadCosts[start] == costs[start])) {
+                    return;
+                }
+
+                final long oldKey = queue.peekKey();
+                final long newKey = key(cell);
+
+                if (oldKey < newKey) {
+                    enqueue(cell);
+                }
+                else if (costs[cell] > lookAheadCosts[cell]) {
+                    costs[cell] = lookAheadCosts[cell];
+                    dequeue(cell);
+                    updatePredecessors(cell);
+                }
+                else {
+                    costs[cell] = INFINITY;
+                    updateVertex(cell);
+                    updatePredecessors(cell);
+                }
+            }
+        }
+
+        private void updatePredecessors(final int cell) {
+            for (int move = 0; move < movesLength; move += 2) {
+                final int predecessor = neighbour(cell, move);
+
+                // Moves are symmetric, the predecessor reaches the cell with the opposite move
+                if (predecessor >= 0 && canMove(predecessor, opposite(move))) {
+                    updateVertex(predecessor);
+                }
+            }
+        }
+
+        private void updateVertex(final int cell) {
+            if (cell != goal) {
+                int lookAheadCost = INFINITY;
+
+                for (int move = 0; move < movesLength; move += 2) {
+                    final int nextCell = neighbour(cell, move);
+
+                    if (nextCell >= 0 && canMove(cell, move)) {
+                        lookAheadCost = Math.min(lookAheadCost, add(cost(nextCell, move), costs[nextCell]));
+                    }
+                }
+
+                lookAheadCosts[cell] = lookAheadCost;
+            }
+
+            if (costs[cell] != lookAheadCosts[cell]) {
+                enqueue(cell);
+            }
+            else {
+                dequeue(cell);
+            }
+        }
+
+        private void enqueue(final int cell) {
+            final long key = key(cell);
+            queuedKeys[cell] = key;
+            queue.push(key, cell);
+        }
+
+        /* The entry stays in the heap and is skipped when it reaches the top */
+        private void dequeue(final int cell) {
+            queuedKeys[cell] = -1;
+        }
+
+        /* Both parts of the D* Lite key packed so that longs compare lexicographically */
+        private long key(final int cell) {
+            final int cost = Math.min(costs[cell], lookAheadCosts[cell]);
+
+            return ((long) add(add(cost, heuristic(start, cell)), keyModifier) << 32) | cost;
+        }
+
+        private int heuristic(final int cell1,
+                              final int cell2) {
+            final int xDistance = Math.abs(cell1 % columns - cell2 % columns);
+            final int yDistance = Math.abs(cell1 / columns - cell2 / columns);
+
+            if (diagonalMoves) {
+                return STRAIGHT_COST * Math.max(xDistance, yDistance) +
+                       (DIAGONAL_COST - STRAIGHT_COST) * Math.min(xDistance, yDistance);
+            }
+
+            return STRAIGHT_COST * (xDistance + yDistance);
+        }
+
+        /* Cost of the move ending in the cell */
+        private int cost(final int cell,
+                         final int move) {
+            return occupiedCells.get(cell) ? moveCost(move) + robotCost : moveCost(move);
+        }
+
+        private int neighbour(final int cell,
+                              final int move) {
+            final int xIndex = cell % columns + MOVES[move];
+            final int yIndex = cell / columns + MOVES[move + 1];
+
+            return grid.contains(xIndex, yIndex) ? yIndex * columns + xIndex : -1;
+        }
+
+        /* The destination must be free and diagonals may not cut blocked corners */
+        private boolean canMove(final int cell,
+                                final int move) {
+            final int xIndex = cell % columns;
+            final int yIndex = cell / columns;
+            final int xDirection = MOVES[move];
+            final int yDirection = MOVES[move + 1];
+
+            if (grid.isBlocked(xIndex + xDirection, yIndex + yDirection)) {
+                return false;
+            }
+
+            return xDirection == 0 || yDirection == 0 ||
+                   grid.isFree(xIndex + xDirection, yIndex) && grid.isFree(xIndex, yIndex + yDirection);
+        }
+
+        /* Straight moves are listed as up, right, down, left and diagonal ones clockwise as well */
+        private int opposite(final int move) {
+            final int group = move < MOVES.length / 2 ? 0 : MOVES.length / 2;
+
+            return group + (move - group + 4) % 8;
+        }
+    }
+
+    /* Binary heap of (key, cell) pairs, entries whose key is outdated are skipped lazily */
+    private static final class KeyHeap {
+
+        private long[] keys = new long[64];
+
+        private int[] cells = new int[64];
+
+        private int size;
+
+        void push(final long key,
+                  final int cell) {
+            if (size == keys.length) {
+                keys  = Arrays.copyOf(keys, size * 2);
+                cells = Arrays.copyOf(cells, size * 2);
+            }
+
+            int index = size++;
+
+            while (index > 0) {
+                final int parent = (index - 1) >>> 1;
+
+                if (keys[parent] <= key) {
+                    break;
+                }
+
+                keys[index]  = keys[parent];
+                cells[index] = cells[parent];
+                index = parent;
+            }
+
+            keys[index]  = key;
+            cells[index] = cell;
+        }
+
+        /* Drops the outdated entries from the top, returns the top cell or -1 if the heap is empty */
+        int peekValid(final long[] queuedKeys) {
+            while (size > 0 && queuedKeys[cells[0]] != keys[0]) {
+                pop();
+            }
+
+            return size > 0 ? cells[0] : -1;
+        }
+
+        long peekKey() {
+            return keys[0];
+        }
+
+        private void pop() {
+            final long lastKey = keys[--size];
+            final int lastCell = cells[size];
+            int index = 0;
+
+            while (true) {
+                int child = 2 * index + 1;
+
+                if (child >= size) {
+                    break;
+                }
+
+                if (child + 1 < size && keys[child + 1] < keys[child]) {
+                    child++;
+                }
+
+                if (lastKey <= keys[child]) {
+                    break;
+                }
+
+                keys[index]  = keys[child];
+                cells[index] = cells[child];
+                index = child;
+            }
+
+            keys[index]  = lastKey;
+            cells[index] = lastCell;
+        }
+    }
+}
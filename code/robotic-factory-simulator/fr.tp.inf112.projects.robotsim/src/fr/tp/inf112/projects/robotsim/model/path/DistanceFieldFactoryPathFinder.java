@@ -0,0 +1,497 @@
+package fr.tp.inf112.projects.robotsim.model.path;
+
+/* Java related packages */
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/* Robotsim related packages */
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Door;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.FactoryLayoutListener;
+import fr.tp.inf112.projects.robotsim.model.Position;
+import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
+
+/**
+ * Path finder computing, once per target component, the distance from every cell of the factory
+ * to the target with a reverse Dijkstra over the occupancy grid.
+ *
+ * Robots then follow the gradient of the field of their target: the next step from any cell is
+ * found by looking at its neighbours only, whatever the number of robots heading to the target.
+ * Robots ask for their next step at every tick, so they follow the refreshed fields as soon as
+ * they are published.
+ *
+ * When a door opens or closes, only the fields whose distances change are refreshed, on a
+ * background thread. Opening a door can only shorten distances, which are propagated from the
+ * freed cells. Closing a door recomputes the field. Meanwhile, the previous field is still used
+ * but steps into cells which became blocked are never taken.
+ */
+public class DistanceFieldFactoryPathFinder implements FactoryPathFinder, FactoryLayoutListener, Serializable {
+
+    private static final long serialVersionUID = 1638225081906334754L;
+
+    private static final Logger LOGGER = Logger.getLogger(DistanceFieldFactoryPathFinder.class.getName());
+
+    static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private static final int STRAIGHT_COST = 10;
+
+    private static final int DIAGONAL_COST = 14;
+
+    /* The rebuild thread ends when no door changed for that long, a new one is started on demand */
+    private static final long REBUILD_THREAD_KEEP_ALIVE_SECONDS = 5;
+
+    /* Straight moves first, then diagonal ones, as (x, y) pairs */
+    private static final int[] MOVES = { 0, -1, 1, 0, 0, 1, -1, 0, 1, -1, 1, 1, -1, 1, -1, -1 };
+
+    private final Factory factoryModel;
+
+    private final int resolution;
+
+    private final boolean diagonalMoves;
+
+    private transient volatile OccupancyGrid occupancyGrid;
+
+    private transient Map<Component, DistanceField> fields;
+
+    private transient ExecutorService rebuildExecutor;
+
+    private transient boolean listeningLayout;
+
+    /* 4-connected fields, as the graph based path finders */
+    public DistanceFieldFactoryPathFinder(final Factory factoryModel,
+                                          final int resolution) {
+        this(factoryModel, resolution, false);
+    }
+
+    public DistanceFieldFactoryPathFinder(final Factory factoryModel,
+                                          final int resolution,
+                                          final boolean diagonalMoves) {
+        this.factoryModel  = factoryModel;
+        this.resolution    = resolution;
+        this.diagonalMoves = diagonalMoves;
+    }
+
+    public Factory getFactoryModel() {
+        return factoryModel;
+    }
+
+    public int getResolution() {
+        return resolution;
+    }
+
+    public boolean isDiagonalMoves() {
+        return diagonalMoves;
+    }
+
+    protected synchronized OccupancyGrid getOccupancyGrid() {
+        if (occupancyGrid == null) {
+            if (!listeningLayout) {
+                listeningLayout = getFactoryModel().addLayoutListener(this);
+            }
+
+            occupancyGrid = OccupancyGrid.rasterise(getFactoryModel(), getResolution());
+        }
+
+        return occupancyGrid;
+    }
+
+    private synchronized Map<Component, DistanceField> getFields() {
+        if (fields == null) {
+            fields = new ConcurrentHashMap<>();
+        }
+
+        return fields;
+    }
+
+    private synchronized ExecutorService getRebuildExecutor() {
+        if (rebuildExecutor == null) {
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1,
+                                                                       REBUILD_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                                                                       new LinkedBlockingQueue<>(), runnable -> {
+                final Thread thread = new Thread(runnable, "distance-fields-" + getFactoryModel().getName());
+                thread.setDaemon(true);
+
+                return thread;
+            });
+            executor.allowCoreThreadTimeOut(true);
+
+            rebuildExecutor = executor;
+        }
+
+        return rebuildExecutor;
+    }
+
+    public int getFieldsCount() {
+        return getFields().size();
+    }
+
+    /* Field of the target, computed on first use or when the target moved to another cell */
+    private DistanceField getField(final Component targetComponent) {
+        final OccupancyGrid grid = getOccupancyGrid();
+        final int targetCell = cellOf(grid, targetComponent.getPosition());
+
+        return getFields().compute(targetComponent, (target, field) -> {
+            if (field != null && field.targetCell == targetCell) {
+                return field;
+            }
+
+            return new DistanceField(targetCell, computeDistances(grid, targetCell));
+        });
+    }
+
+    /* Distances from each cell of the occupancy grid to the target, never modified once returned */
+    int[] getDistances(final Component targetComponent) {
+        return getField(targetComponent).distances;
+    }
+
+    /* Fields are never modified once published, and published through a concurrent map */
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    @Override
+    public List<Position> findPath(final Component sourceComponent,
+                                   final Component targetComponent) {
+        final DistanceField field = getField(targetComponent);
+        final OccupancyGrid grid = getOccupancyGrid();
+        final List<Position> positions = new ArrayList<>();
+        int cell = cellOf(grid, sourceComponent.getPosition());
+
+        while (cell != field.targetCell) {
+            cell = nextCell(grid, field, cell);
+
+            if (cell < 0) {
+                // The target cannot be reached from the source
+                return new ArrayList<>();
+            }
+
+            positions.add(toPosition(grid, cell));
+        }
+
+        return positions;
+    }
+
+    @Override
+    public boolean isStepwise() {
+        return true;
+    }
+
+    /* Found in constant time once the field of the target is known */
+    @Override
+    public Position nextStep(final Component sourceComponent,
+                             final Component targetComponent) {
+        final DistanceField field = getField(targetComponent);
+        final OccupancyGrid grid = getOccupancyGrid();
+        final int cell = cellOf(grid, sourceComponent.getPosition());
+
+        if (cell == field.targetCell) {
+            return null;
+        }
+
+        final int nextCell = nextCell(grid, field, cell);
+
+        return nextCell < 0 ? null : toPosition(grid, nextCell);
+    }
+
+    /**
+     * Neighbour with the smallest distance through it, -1 if none is reachable. Only neighbours closer
+     * to the target than the cell are considered, unless the cell is not in the field, as a source
+     * on a blocked cell, so that following the steps always ends.
+     */
+    private int nextCell(final OccupancyGrid grid,
+                         final DistanceField field,
+                         final int cell) {
+        final int columns = grid.getColumns();
+        final int xIndex = cell % columns;
+        final int yIndex = cell / columns;
+        final int movesLength = diagonalMoves ? MOVES.length : MOVES.length / 2;
+        final int cellDistance = field.distances[cell];
+        long bestDistance = Long.MAX_VALUE;
+        int bestCell = -1;
+
+        for (int move = 0; move < movesLength; move += 2) {
+            if (!canMove(grid, xIndex, yIndex, MOVES[move], MOVES[move + 1])) {
+                continue;
+            }
+
+            final int nextCell = (yIndex + MOVES[move + 1]) * columns + xIndex + MOVES[move];
+            final int distance = field.distances[nextCell];
+
+            if (distance == UNREACHABLE || distance >= cellDistance) {
+                continue;
+            }
+
+            final long distanceThrough = (long) distance + moveCost(move);
+
+            if (distanceThrough < bestDistance) {
+                bestDistance = distanceThrough;
+                bestCell = nextCell;
+            }
+        }
+
+        return bestCell;
+    }
+
+    private int[] computeDistances(final OccupancyGrid grid,
+                                   final int targetCell) {
+        final int[] distances = new int[grid.getColumns() * grid.getRows()];
+        Arrays.fill(distances, UNREACHABLE);
+
+        if (grid.isFree(targetCell % grid.getColumns(), targetCell / grid.getColumns())) {
+            distances[targetCell] = 0;
+
+            final LongMinHeap openCells = new LongMinHeap(256);
+            openCells.push(targetCell);
+            propagate(grid, distances, openCells);
+        }
+
+        return distances;
+    }
+
+    /* Dijkstra from the cells of the heap, only lowering the distances */
+    private void propagate(final OccupancyGrid grid,
+                           final int[] distances,
+                           final LongMinHeap openCells) {
+        final int columns = grid.getColumns();
+        final int movesLength = diagonalMoves ? MOVES.length : MOVES.length / 2;
+
+        while (!openCells.isEmpty()) {
+            final long entry = openCells.pop();
+            final int cell = (int) entry;
+            final int distance = (int) (entry >>> 32);
+
+            if (distance > distances[cell]) {
+                continue;
+            }
+
+            final int xIndex = cell % columns;
+            final int yIndex = cell / columns;
+
+            for (int move = 0; move < movesLength; move += 2) {
+                if (!canMove(grid, xIndex, yIndex, MOVES[move], MOVES[move + 1])) {
+                    continue;
+                }
+
+                final int nextCell = (yIndex + MOVES[move + 1]) * columns + xIndex + MOVES[move];
+                final int nextDistance = distance + moveCost(move);
+
+                if (nextDistance < distances[nextCell]) {
+                    distances[nextCell] = nextDistance;
+                    openCells.push(((long) nextDistance << 32) | nextCell);
+                }
+            }
+        }
+    }
+
+    /* Moves are symmetric: the destination must be free and diagonals may not cut blocked corners */
+    private boolean canMove(final OccupancyGrid grid,
+                            final int xIndex,
+                            final int yIndex,
+                            final int xDirection,
+                            final int yDirection) {
+        if (grid.isBlocked(xIndex + xDirection, yIndex + yDirection)) {
+            return false;
+        }
+
+        return xDirection == 0 || yDirection == 0 ||
+               grid.isFree(xIndex + xDirection, yIndex) && grid.isFree(xIndex, yIndex + yDirection);
+    }
+
+    private static int moveCost(final int move) {
+        return move < MOVES.length / 2 ? STRAIGHT_COST : DIAGONAL_COST;
+    }
+
+    private static int cellOf(final OccupancyGrid grid,
+                              final Position position) {
+        return grid.toyIndex(position.getyCoordinate()) * grid.getColumns() + grid.toxIndex(position.getxCoordinate());
+    }
+
+    private Position toPosition(final OccupancyGrid grid,
+                                final int cell) {
+        return new Position(cell % grid.getColumns() * resolution, cell / grid.getColumns() * resolution);
+    }
+
+    @Override
+    public void doorStateChanged(final Door door) {
+        final OccupancyGrid previousGrid;
+        final OccupancyGrid grid;
+
+        synchronized (this) {
+            previousGrid  = occupancyGrid;
+            occupancyGrid = null;
+            grid          = getOccupancyGrid();
+        }
+
+        if (previousGrid == null) {
+            return;
+        }
+
+        final List<Integer> freedCells = new ArrayList<>();
+        final List<Integer> blockedCells = new ArrayList<>();
+        collectChangedCells(previousGrid, grid, door.getPositionedShape(), freedCells, blockedCells);
+
+        for (final Map.Entry<Component, DistanceField> entry : getFields().entrySet()) {
+            final Component target = entry.getKey();
+            final DistanceField field = entry.getValue();
+
+            if (isAffected(grid, field, blockedCells, freedCells)) {
+                getRebuildExecutor().execute(() -> rebuild(target, field, blockedCells.isEmpty() ? freedCells : null));
+            }
+        }
+    }
+
+    /* Cells around the door whose state changed between the two grids */
+    private void collectChangedCells(final OccupancyGrid previousGrid,
+                                     final OccupancyGrid grid,
+                                     final PositionedShape doorShape,
+                                     final List<Integer> freedCells,
+                                     final List<Integer> blockedCells) {
+        final int minxIndex = Math.max(0, doorShape.getxCoordinate() / resolution - 1);
+        final int minyIndex = Math.max(0, doorShape.getyCoordinate() / resolution - 1);
+        final int maxxIndex = Math.min(grid.getColumns() - 1, (doorShape.getxCoordinate() + doorShape.getWidth()) / resolution + 1);
+        final int maxyIndex = Math.min(grid.getRows() - 1, (doorShape.getyCoordinate() + doorShape.getHeight()) / resolution + 1);
+
+        for (int yIndex = minyIndex; yIndex <= maxyIndex; yIndex++) {
+            for (int xIndex = minxIndex; xIndex <= maxxIndex; xIndex++) {
+                final boolean wasBlocked = previousGrid.isBlocked(xIndex, yIndex);
+
+                if (wasBlocked != grid.isBlocked(xIndex, yIndex)) {
+                    (wasBlocked ? freedCells : blockedCells).add(yIndex * grid.getColumns() + xIndex);
+                }
+            }
+        }
+    }
+
+    /* A field changes if a blocked cell was reached, or if a freed cell touches a reached one */
+    private boolean isAffected(final OccupancyGrid grid,
+                               final DistanceField field,
+                               final List<Integer> blockedCells,
+                               final List<Integer> freedCells) {
+        for (final int cell : blockedCells) {
+            if (field.distances[cell] != UNREACHABLE) {
+                return true;
+            }
+        }
+
+        final int columns = grid.getColumns();
+
+        for (final int cell : freedCells) {
+            for (int move = 0; move < MOVES.length; move += 2) {
+                final int xIndex = cell % columns + MOVES[move];
+                final int yIndex = cell / columns + MOVES[move + 1];
+
+                if (grid.contains(xIndex, yIndex) && field.distances[yIndex * columns + xIndex] != UNREACHABLE) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Runs on the rebuild thread. The field is replaced only if it was not replaced meanwhile.
+     *
+     * @param freedCells cells to propagate lower distances from, null to recompute the whole field.
+     */
+    private void rebuild(final Component target,
+                         final DistanceField field,
+                         final List<Integer> freedCells) {
+        try {
+            final OccupancyGrid grid = getOccupancyGrid();
+            final int[] distances;
+
+            if (freedCells == null) {
+                distances = computeDistances(grid, field.targetCell);
+            }
+            else {
+                distances = field.distances.clone();
+                final LongMinHeap openCells = new LongMinHeap(freedCells.size());
+
+                for (final int cell : freedCells) {
+                    final int distance = distanceFromNeighbours(grid, distances, cell);
+
+                    if (distance < distances[cell]) {
+                        distances[cell] = distance;
+                        openCells.push(((long) distance << 32) | cell);
+                    }
+                }
+
+                propagate(grid, distances, openCells);
+            }
+
+            getFields().replace(target, field, new DistanceField(field.targetCell, distances));
+        }
+        catch (final RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Could not rebuild the distance field of " + target.getName(), ex);
+        }
+    }
+
+    private int distanceFromNeighbours(final OccupancyGrid grid,
+                                       final int[] distances,
+                                       final int cell) {
+        final int columns = grid.getColumns();
+        final int xIndex = cell % columns;
+        final int yIndex = cell / columns;
+        final int movesLength = diagonalMoves ? MOVES.length : MOVES.length / 2;
+        int bestDistance = UNREACHABLE;
+
+        for (int move = 0; move < movesLength; move += 2) {
+            if (!canMove(grid, xIndex, yIndex, MOVES[move], MOVES[move + 1])) {
+                continue;
+            }
+
+            final int distance = distances[(yIndex + MOVES[move + 1]) * columns + xIndex + MOVES[move]];
+
+            if (distance != UNREACHABLE) {
+                bestDistance = Math.min(bestDistance, distance + moveCost(move));
+            }
+        }
+
+        return bestDistance;
+    }
+
+    /* Waits for the fields being rebuilt after door changes, mostly useful for tests and batch runs */
+    public void awaitRebuilds()
+    throws InterruptedException {
+        try {
+            getRebuildExecutor().submit(() -> { }).get();
+        }
+        catch (final ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " [resolution=" + resolution + ", diagonalMoves=" + diagonalMoves +
+               ", fields=" + getFieldsCount() + "]";
+    }
+
+    /* Distances in tenths of cell from each cell to the target cell, never modified once published */
+    private static final class DistanceField {
+
+        private final int targetCell;
+
+        private final int[] distances;
+
+        DistanceField(final int targetCell,
+                      final int[] distances) {
+            this.targetCell = targetCell;
+            this.distances  = distances;
+        }
+    }
+}
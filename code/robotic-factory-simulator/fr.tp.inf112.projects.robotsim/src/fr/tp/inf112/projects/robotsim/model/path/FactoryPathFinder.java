@@ -1,12 +1,65 @@
 package fr.tp.inf112.projects.robotsim.model.path;
 
+import java.io.Serializable;
 import java.util.List;
 
 import fr.tp.inf112.projects.robotsim.model.Component;
 import fr.tp.inf112.projects.robotsim.model.Position;
 
-public interface FactoryPathFinder {
+/**
+ * Finds the paths of the robots. Path finders are saved with the robots using them, hence serializable.
+ */
+public interface FactoryPathFinder extends Serializable {
 
 	List<Position> findPath(Component sourceComponent,
 							Component targetComponent);
+
+	/**
+	 * @return the size of the square cells in which the factory is searched.
+	 */
+	int getResolution();
+
+	/**
+	 * @return true if the path finder keeps the search state of each robot and only repairs it when
+	 * asked again, so that robots may ask for a new path whenever they are blocked.
+	 */
+	default boolean isIncremental() {
+		return false;
+	}
+
+	/**
+	 * @return true if the paths found reserve their cells tick by tick, so that the robots using the
+	 * path finder must plan one after the other.
+	 */
+	default boolean isCooperative() {
+		return false;
+	}
+
+	/**
+	 * @return true if findPath may be called by several threads at once, so that the robots using the
+	 * path finder can plan their motions concurrently. Robots using other path finders plan one after
+	 * the other.
+	 */
+	default boolean isThreadSafe() {
+		return false;
+	}
+
+	/**
+	 * @return true if nextStep answers without searching the whole path, so that the robots using the
+	 * path finder ask for their next step at every tick instead of following a path found once.
+	 */
+	default boolean isStepwise() {
+		return false;
+	}
+
+	/**
+	 * @return the first position of the path from the source to the target, null if the target is
+	 * reached or cannot be reached.
+	 */
+	default Position nextStep(final Component sourceComponent,
+							  final Component targetComponent) {
+		final List<Position> path = findPath(sourceComponent, targetComponent);
+
+		return path.isEmpty() ? null : path.get(0);
+	}
 }
@@ -2,7 +2,6 @@ package fr.tp.inf112.projects.robotsim.model.path;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 import org.jgrapht.GraphPath;
@@ -10,7 +9,6 @@ import org.jgrapht.alg.shortestpath.DijkstraShortestPath;
 import org.jgrapht.graph.AbstractBaseGraph;
 import org.jgrapht.graph.DefaultDirectedGraph;
 import org.jgrapht.graph.DefaultEdge;
-import org.jgrapht.traverse.DepthFirstIterator;
 
 import fr.tp.inf112.projects.robotsim.model.Component;
 import fr.tp.inf112.projects.robotsim.model.Factory;
@@ -32,16 +30,23 @@ public class JGraphTDijkstraFactoryPathFinder extends AbstractFactoryPathFinder<
 
 	@Override
 	public List<Position> findPath(final Component sourceComponent,
-								   final Component targetComponent) {
-		buildGraph();
+							   final Component targetComponent) {
+		final AbstractBaseGraph<PositionedShape, DefaultEdge> graph;
+		final PositionedShape sourceVertex;
+		final PositionedShape targetVertex;
 		
-		final PositionedShape sourceVertex = getVertex(sourceComponent.getPosition());
+		// Opening or closing a door replaces the graph without changing it, the search runs on the
+		// graph read here and keeps its state in its own objects
+		synchronized (this) {
+			buildGraph();
+			
+			graph = getGraph();
+			sourceVertex = getVertex(sourceComponent.getPosition());
+			targetVertex = getVertex(targetComponent.getPosition());
+		}
 		assert sourceVertex != null : "Start vertex should never be null!";
-
-		final PositionedShape targetVertex = getVertex(targetComponent.getPosition());
 		assert targetVertex != null : "Target vertex should never be null!";
 		
-		final AbstractBaseGraph<PositionedShape, DefaultEdge> graph = getGraph(); 
 		final GraphPath<PositionedShape, DefaultEdge> shortestPath = DijkstraShortestPath.findPathBetween(graph, sourceVertex, targetVertex);
 		final List<Position> shortestPathPositions = new ArrayList<>();
 		
@@ -56,22 +61,10 @@ public class JGraphTDijkstraFactoryPathFinder extends AbstractFactoryPathFinder<
 		return shortestPathPositions;
 	}
 
+	/* Searches run concurrently, only reading the graph */
 	@Override
-	protected PositionedShape getVertex(final int xIndex,
-										final int yIndex) {
-		final Iterator<PositionedShape> iterator = getGraphVertexesIterator();
-		final int resolution = getResolution();
-		final Position position = new Position(xIndex * resolution, yIndex * resolution);
-
-		while (iterator.hasNext()) {
-			final PositionedShape shape = iterator.next();
-			
-			if (position.equals(shape.getPosition())) {
-				return shape;
-			}
-		}
-		
-		return null;
+	public boolean isThreadSafe() {
+		return true;
 	}
 
 	@Override
@@ -80,24 +73,21 @@ public class JGraphTDijkstraFactoryPathFinder extends AbstractFactoryPathFinder<
 		return vertex.getOverlayedSurface(shape);
 	}
 
-	@Override
-	protected Iterator<PositionedShape> getGraphVertexesIterator() {
-		return new DepthFirstIterator<>(getGraph());
-	}
-
 	@Override
 	protected DefaultDirectedGraph<PositionedShape, DefaultEdge> newGraph() {
 		return new DefaultDirectedGraph<PositionedShape, DefaultEdge>(DefaultEdge.class);
 	}
 
 	@Override
-	protected boolean addVertex(final int xCoordinate,
-								final int yCoordinate) {
+	protected PositionedShape addVertex(final int xCoordinate,
+										final int yCoordinate) {
 		final PositionedShape vertex = new RectangularShape(xCoordinate,
 															yCoordinate,
 															getResolution(),
 															getResolution());
-		return getGraph().addVertex(vertex);
+		getGraph().addVertex(vertex);
+		
+		return vertex;
 	}
 
 	@Override
@@ -0,0 +1,79 @@
+package fr.tp.inf112.projects.robotsim.model.path;
+
+/* Java related packages */
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of primitive longs, used as open list by the grid path finders so that no
+ * node object is allocated per pushed cell. Callers pack the priority in the high bits and the
+ * cell in the low bits.
+ */
+class LongMinHeap {
+
+    private long[] heap;
+
+    private int size;
+
+    LongMinHeap(final int initialCapacity) {
+        heap = new long[Math.max(16, initialCapacity)];
+        size = 0;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    void push(final long value) {
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+        }
+
+        int index = size++;
+
+        while (index > 0) {
+            final int parent = (index - 1) >>> 1;
+
+            if (heap[parent] <= value) {
+                break;
+            }
+
+            heap[index] = heap[parent];
+            index = parent;
+        }
+
+        heap[index] = value;
+    }
+
+    long pop() {
+        final long top  = heap[0];
+        final long last = heap[--size];
+        int index = 0;
+
+        while (true) {
+            int child = 2 * index + 1;
+
+            if (child >= size) {
+                break;
+            }
+
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+
+            if (last <= heap[child]) {
+                break;
+            }
+
+            heap[index] = heap[child];
+            index = child;
+        }
+
+        heap[index] = last;
+
+        return top;
+    }
+}
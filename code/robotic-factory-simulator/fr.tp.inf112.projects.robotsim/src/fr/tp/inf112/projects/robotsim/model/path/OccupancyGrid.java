@@ -0,0 +1,158 @@
+package fr.tp.inf112.projects.robotsim.model.path;
+
+/* Canvas related packages */
+import fr.tp.inf112.projects.canvas.model.Figure;
+
+/* Robotsim related packages */
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+/**
+ * Bitmap of the cells of a factory which cannot be crossed by a robot.
+ *
+ * Cell (xIndex, yIndex) is the square of side resolution at (xIndex * resolution, yIndex * resolution),
+ * which is also where the path finders put their vertexes. The grid is rasterised in a single pass
+ * over the static components: each of them only tests the cells covered by its bounding box, using
+ * the same overlay rules as Factory.hasObstacleAt. Mobile components are ignored since they do not
+ * stay in the same cells.
+ */
+public class OccupancyGrid {
+
+    private final int resolution;
+
+    private final int columns;
+
+    private final int rows;
+
+    /* One bit per cell, row after row, set when the cell is blocked */
+    private final long[] blockedCells;
+
+    private OccupancyGrid(final int resolution,
+                          final int columns,
+                          final int rows) {
+        this.resolution = resolution;
+        this.columns    = columns;
+        this.rows       = rows;
+
+        blockedCells = new long[(columns * rows + Long.SIZE - 1) / Long.SIZE];
+    }
+
+    public static OccupancyGrid rasterise(final Factory factory,
+                                          final int resolution) {
+        final OccupancyGrid grid = new OccupancyGrid(resolution,
+                                                     factory.getWidth() / resolution,
+                                                     factory.getHeight() / resolution);
+
+        // A single probe is moved from cell to cell instead of allocating one shape per test
+        final RectangularShape probe = new RectangularShape(0, 0, resolution, resolution);
+
+        for (final Figure figure : factory.getFigures()) {
+            final Component component = (Component) figure;
+
+            if (!component.isMobile()) {
+                grid.rasterise(component, probe);
+            }
+        }
+
+        return grid;
+    }
+
+    private void rasterise(final Component component,
+                           final RectangularShape probe) {
+        final PositionedShape box = component.getBoundingBox();
+
+        // Widened by one cell on each side since touching shapes may still overlay
+        final int minxIndex = Math.max(0, Math.floorDiv(box.getxCoordinate(), resolution) - 1);
+        final int minyIndex = Math.max(0, Math.floorDiv(box.getyCoordinate(), resolution) - 1);
+        final int maxxIndex = Math.min(columns - 1, Math.floorDiv(box.getxCoordinate() + box.getWidth(), resolution) + 1);
+        final int maxyIndex = Math.min(rows - 1, Math.floorDiv(box.getyCoordinate() + box.getHeight(), resolution) + 1);
+
+        for (int yIndex = minyIndex; yIndex <= maxyIndex; yIndex++) {
+            for (int xIndex = minxIndex; xIndex <= maxxIndex; xIndex++) {
+                if (isBlocked(xIndex, yIndex)) {
+                    continue;
+                }
+
+                probe.setxCoordinate(xIndex * resolution);
+                probe.setyCoordinate(yIndex * resolution);
+
+                if (component.overlays(probe) && !component.canBeOverlayed(probe)) {
+                    final int cell = yIndex * columns + xIndex;
+                    blockedCells[cell >>> 6] |= 1L << cell;
+                }
+            }
+        }
+    }
+
+    public int getResolution() {
+        return resolution;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /* Column of the cell most overlayed by a square of one cell starting at the given x coordinate */
+    public int toxIndex(final int xCoordinate) {
+        return toIndex(xCoordinate, columns);
+    }
+
+    /* Row of the cell most overlayed by a square of one cell starting at the given y coordinate */
+    public int toyIndex(final int yCoordinate) {
+        return toIndex(yCoordinate, rows);
+    }
+
+    /* Same choice as AbstractFactoryPathFinder.getVertex(Position), ties go to the lower cell */
+    private int toIndex(final int coordinate,
+                        final int size) {
+        final int index  = Math.floorDiv(coordinate, resolution);
+        final int offset = Math.floorMod(coordinate, resolution);
+        final int best   = offset > resolution - offset ? index + 1 : index;
+
+        return Math.max(0, Math.min(size - 1, best));
+    }
+
+    public boolean contains(final int xIndex,
+                            final int yIndex) {
+        return xIndex >= 0 && xIndex < columns && yIndex >= 0 && yIndex < rows;
+    }
+
+    /* Cells outside of the factory are considered blocked */
+    public boolean isBlocked(final int xIndex,
+                             final int yIndex) {
+        if (!contains(xIndex, yIndex)) {
+            return true;
+        }
+
+        final int cell = yIndex * columns + xIndex;
+
+        return (blockedCells[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    public boolean isFree(final int xIndex,
+                          final int yIndex) {
+        return !isBlocked(xIndex, yIndex);
+    }
+
+    public int getBlockedCellsCount() {
+        int count = 0;
+
+        for (final long word : blockedCells) {
+            count += Long.bitCount(word);
+        }
+
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "OccupancyGrid [" + columns + "x" + rows + " cells of " + resolution +
+               ", blocked=" + getBlockedCellsCount() + "]";
+    }
+}
@@ -0,0 +1,339 @@
+package fr.tp.inf112.projects.robotsim.model.path;
+
+/* Java related packages */
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/* Robotsim related packages */
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Door;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.FactoryLayoutListener;
+import fr.tp.inf112.projects.robotsim.model.Position;
+import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+/**
+ * Bounded LRU cache of paths, shared by the path finders of the robots of a factory.
+ *
+ * Paths are stored by source cell and target component, so that robots anywhere in the cell of a
+ * known source reuse its path, as the path finders would have searched from that cell anyway.
+ * Every position of a stored path is also registered as a source, with the rest of the path as
+ * value, so that a robot standing on a known path reuses its suffix instead of searching again.
+ *
+ * When a door closes, the paths crossing it are dropped. When a door opens, known paths stay
+ * valid but may no longer be the shortest ones, so a path is dropped only if going through the
+ * door could be shorter, which is checked with the straight line distances to the door.
+ *
+ * Paths computed by different kinds of path finders should not be mixed in the same cache.
+ */
+public class PathCache implements FactoryLayoutListener, Serializable {
+
+    private static final long serialVersionUID = 5630241657389120384L;
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 10_000;
+
+    private final Factory factoryModel;
+
+    private final int resolution;
+
+    private final int maximumSize;
+
+    private transient Map<Key, Route> routes;
+
+    private transient boolean listeningLayout;
+
+    private transient long hitCount;
+
+    private transient long missCount;
+
+    public PathCache(final Factory factoryModel,
+                     final int resolution) {
+        this(factoryModel, resolution, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * @param resolution  size of the cells of the path finders using the cache.
+     * @param maximumSize maximum number of sources kept in the cache.
+     */
+    public PathCache(final Factory factoryModel,
+                     final int resolution,
+                     final int maximumSize) {
+        this.factoryModel = factoryModel;
+        this.resolution   = resolution;
+        this.maximumSize  = maximumSize;
+    }
+
+    public int getResolution() {
+        return resolution;
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    private Map<Key, Route> getRoutes() {
+        if (routes == null) {
+            routes = new LinkedHashMap<>(16, 0.75f, true) {
+
+                private static final long serialVersionUID = -1950407153457389286L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<Key, Route> eldest) {
+                    return size() > maximumSize;
+                }
+            };
+        }
+
+        if (!listeningLayout) {
+            listeningLayout = factoryModel.addLayoutListener(this);
+        }
+
+        return routes;
+    }
+
+    /**
+     * @return a copy of the cached path from the source position to the target, null if unknown.
+     */
+    public synchronized List<Position> get(final Position sourcePosition,
+                                           final Component targetComponent) {
+        final Route route = getRoutes().get(key(sourcePosition, targetComponent));
+
+        if (route == null) {
+            missCount++;
+
+            return null;
+        }
+
+        hitCount++;
+
+        return new ArrayList<>(route.path.positions.subList(route.from, route.path.positions.size()));
+    }
+
+    public synchronized void put(final Position sourcePosition,
+                                 final Component targetComponent,
+                                 final List<Position> positions) {
+        if (positions.isEmpty()) {
+            // Unreachable targets may become reachable when a door opens, do not remember them
+            return;
+        }
+
+        final CachedPath path = new CachedPath(positions);
+        final Map<Key, Route> routes = getRoutes();
+
+        routes.put(key(sourcePosition, targetComponent),
+                   new Route(path, 0, sourcePosition.getxCoordinate(), sourcePosition.getyCoordinate()));
+
+        for (int index = 0; index < path.positions.size() - 1; index++) {
+            final Position position = path.positions.get(index);
+            routes.put(key(position, targetComponent),
+                       new Route(path, index + 1, position.getxCoordinate(), position.getyCoordinate()));
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        getRoutes().clear();
+    }
+
+    public synchronized int size() {
+        return getRoutes().size();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    @Override
+    public synchronized void doorStateChanged(final Door door) {
+        final PositionedShape doorShape = door.getPositionedShape();
+        final Iterator<Route> iterator = getRoutes().values().iterator();
+
+        while (iterator.hasNext()) {
+            final Route route = iterator.next();
+            final boolean affected = door.isOpen() ? route.mayBeShortenedBy(doorShape)
+                                                   : route.crosses(doorShape);
+
+            if (affected) {
+                iterator.remove();
+            }
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PathCache [size=" + getRoutes().size() + ", hits=" + hitCount + ", misses=" + missCount + "]";
+    }
+
+    private Key key(final Position source,
+                    final Component target) {
+        return new Key(toIndex(source.getxCoordinate()), toIndex(source.getyCoordinate()),
+                       target,
+                       toIndex(target.getxCoordinate()), toIndex(target.getyCoordinate()));
+    }
+
+    /* Cell the path finders search from, same choice as OccupancyGrid.toxIndex, ties go to the lower cell */
+    private int toIndex(final int coordinate) {
+        final int index  = Math.floorDiv(coordinate, resolution);
+        final int offset = Math.floorMod(coordinate, resolution);
+
+        return offset > resolution - offset ? index + 1 : index;
+    }
+
+    private static double distance(final int xCoordinate1,
+                                   final int yCoordinate1,
+                                   final int xCoordinate2,
+                                   final int yCoordinate2) {
+        return Math.hypot(xCoordinate2 - xCoordinate1, yCoordinate2 - yCoordinate1);
+    }
+
+    private static double distance(final int xCoordinate,
+                                   final int yCoordinate,
+                                   final PositionedShape shape) {
+        final int xDistance = Math.max(0, Math.max(shape.getxCoordinate() - xCoordinate,
+                                                   xCoordinate - shape.getxCoordinate() - shape.getWidth()));
+        final int yDistance = Math.max(0, Math.max(shape.getyCoordinate() - yCoordinate,
+                                                   yCoordinate - shape.getyCoordinate() - shape.getHeight()));
+
+        return Math.hypot(xDistance, yDistance);
+    }
+
+    /* The target is compared by identity and by cell, in case it was moved */
+    private static final class Key {
+
+        private final int sourcexIndex;
+
+        private final int sourceyIndex;
+
+        private final Component target;
+
+        private final int targetxIndex;
+
+        private final int targetyIndex;
+
+        Key(final int sourcexIndex,
+            final int sourceyIndex,
+            final Component target,
+            final int targetxIndex,
+            final int targetyIndex) {
+            this.sourcexIndex = sourcexIndex;
+            this.sourceyIndex = sourceyIndex;
+            this.target       = target;
+            this.targetxIndex = targetxIndex;
+            this.targetyIndex = targetyIndex;
+        }
+
+        @Override
+        public boolean equals(final Object object) {
+            if (!(object instanceof Key)) {
+                return false;
+            }
+
+            final Key key = (Key) object;
+
+            return key.target == target &&
+                   key.sourcexIndex == sourcexIndex && key.sourceyIndex == sourceyIndex &&
+                   key.targetxIndex == targetxIndex && key.targetyIndex == targetyIndex;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = System.identityHashCode(target);
+            hash = 31 * hash + sourcexIndex;
+            hash = 31 * hash + sourceyIndex;
+            hash = 31 * hash + targetxIndex;
+
+            return 31 * hash + targetyIndex;
+        }
+    }
+
+    /* Stored path, with the length from each of its positions to its end */
+    private static final class CachedPath {
+
+        private final List<Position> positions;
+
+        private final double[] remainingLengths;
+
+        CachedPath(final List<Position> positions) {
+            this.positions   = Collections.unmodifiableList(new ArrayList<>(positions));
+            remainingLengths = new double[positions.size()];
+
+            for (int index = positions.size() - 2; index >= 0; index--) {
+                final Position position = positions.get(index);
+                final Position next = positions.get(index + 1);
+
+                remainingLengths[index] = remainingLengths[index + 1] +
+                                          distance(position.getxCoordinate(), position.getyCoordinate(),
+                                                   next.getxCoordinate(), next.getyCoordinate());
+            }
+        }
+
+        Position getLast() {
+            return positions.get(positions.size() - 1);
+        }
+    }
+
+    /* Suffix of a cached path starting at index from, reached from the given source coordinates */
+    private final class Route {
+
+        private final CachedPath path;
+
+        private final int from;
+
+        private final int sourcexCoordinate;
+
+        private final int sourceyCoordinate;
+
+        Route(final CachedPath path,
+              final int from,
+              final int sourcexCoordinate,
+              final int sourceyCoordinate) {
+            this.path              = path;
+            this.from              = from;
+            this.sourcexCoordinate = sourcexCoordinate;
+            this.sourceyCoordinate = sourceyCoordinate;
+        }
+
+        double getLength() {
+            final Position first = path.positions.get(from);
+
+            return distance(sourcexCoordinate, sourceyCoordinate, first.getxCoordinate(), first.getyCoordinate()) +
+                   path.remainingLengths[from];
+        }
+
+        /* True if one of the cells of the route overlays the shape, the cell of the source excepted */
+        boolean crosses(final PositionedShape shape) {
+            final RectangularShape cell = new RectangularShape(0, 0, resolution, resolution);
+
+            for (int index = from; index < path.positions.size(); index++) {
+                final Position position = path.positions.get(index);
+                cell.setxCoordinate(position.getxCoordinate());
+                cell.setyCoordinate(position.getyCoordinate());
+
+                if (cell.overlays(shape)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /* Lower bound of a path through the shape, cells may touch it up to one diagonal away */
+        boolean mayBeShortenedBy(final PositionedShape shape) {
+            final Position last = path.getLast();
+            final double lowerBound = distance(sourcexCoordinate, sourceyCoordinate, shape) +
+                                      distance(last.getxCoordinate(), last.getyCoordinate(), shape) -
+                                      2 * Math.sqrt(2) * resolution;
+
+            return lowerBound < getLength();
+        }
+    }
+}
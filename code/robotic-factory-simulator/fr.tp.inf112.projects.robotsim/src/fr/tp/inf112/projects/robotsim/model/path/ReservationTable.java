@@ -0,0 +1,87 @@
+package fr.tp.inf112.projects.robotsim.model.path;
+
+/* Java related packages */
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/* Robotsim related packages */
+import fr.tp.inf112.projects.robotsim.model.Component;
+
+/**
+ * Space-time reservations of the cells of an occupancy grid, keyed by tick and cell.
+ *
+ * A cell can be reserved by a single component at a given tick. Components release all their
+ * reservations before planning again, so the table only holds the current plans of the robots.
+ */
+public class ReservationTable {
+
+    /* Owner of each reserved (tick, cell) pair */
+    private final Map<Long, Component> owners;
+
+    /* Reserved (tick, cell) pairs of each owner, to release them without scanning the table */
+    private final Map<Component, List<Long>> keysByOwner;
+
+    public ReservationTable() {
+        owners      = new HashMap<>();
+        keysByOwner = new IdentityHashMap<>();
+    }
+
+    private static long key(final long tick,
+                            final int cell) {
+        return (tick << 32) | cell;
+    }
+
+    /**
+     * @return false if the cell is already reserved by another component at that tick.
+     */
+    public synchronized boolean reserve(final long tick,
+                                        final int cell,
+                                        final Component owner) {
+        final long key = key(tick, cell);
+        final Component currentOwner = owners.putIfAbsent(key, owner);
+
+        if (currentOwner == null) {
+            keysByOwner.computeIfAbsent(owner, component -> new ArrayList<>()).add(key);
+
+            return true;
+        }
+
+        return currentOwner == owner;
+    }
+
+    /* True if a component other than the given one reserved the cell at that tick */
+    public synchronized boolean isReservedByOther(final long tick,
+                                                  final int cell,
+                                                  final Component component) {
+        final Component owner = owners.get(key(tick, cell));
+
+        return owner != null && owner != component;
+    }
+
+    public synchronized void release(final Component owner) {
+        final List<Long> keys = keysByOwner.remove(owner);
+
+        if (keys != null) {
+            for (final Long key : keys) {
+                owners.remove(key);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        owners.clear();
+        keysByOwner.clear();
+    }
+
+    public synchronized int size() {
+        return owners.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ReservationTable [reservations=" + owners.size() + ", owners=" + keysByOwner.size() + "]";
+    }
+}
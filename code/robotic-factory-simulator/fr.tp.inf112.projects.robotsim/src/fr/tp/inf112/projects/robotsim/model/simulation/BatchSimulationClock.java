@@ -0,0 +1,80 @@
+package fr.tp.inf112.projects.robotsim.model.simulation;
+
+/**
+ * Clock giving the ticks as fast as the simulation can compute them, for instance to simulate a
+ * full shift in a few seconds for capacity planning. It never waits, hence never overruns.
+ */
+public final class BatchSimulationClock implements SimulationClock {
+
+    private final long tickPeriodMillis;
+
+    /* Simulated time after which the clock stops giving ticks, a negative value for no limit */
+    private final long simulatedDurationMillis;
+
+    private long startNanos;
+
+    private volatile long ticks;
+
+    /* Ticks skipped by the simulation, counted in the simulated time only */
+    private volatile long idleTicks;
+
+    public BatchSimulationClock(final long tickPeriodMillis) {
+        this(tickPeriodMillis, -1);
+    }
+
+    public BatchSimulationClock(final long tickPeriodMillis,
+                                final long simulatedDurationMillis) {
+        if (tickPeriodMillis <= 0) {
+            throw new IllegalArgumentException("Tick period must be positive.");
+        }
+
+        this.tickPeriodMillis        = tickPeriodMillis;
+        this.simulatedDurationMillis = simulatedDurationMillis;
+        start();
+    }
+
+    @Override
+    public void start() {
+        startNanos = System.nanoTime();
+        ticks      = 0;
+        idleTicks  = 0;
+    }
+
+    @Override
+    public boolean awaitNextTick() throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+
+        ticks++;
+
+        return simulatedDurationMillis < 0 || getSimulatedTimeMillis() < simulatedDurationMillis;
+    }
+
+    @Override
+    public long tryNextTick() {
+        ticks++;
+
+        return simulatedDurationMillis < 0 || getSimulatedTimeMillis() < simulatedDurationMillis ? 0 : -1;
+    }
+
+    @Override
+    public void skipTicks(final long ticks) {
+        idleTicks += ticks;
+    }
+
+    @Override
+    public long getTickPeriodMillis() {
+        return tickPeriodMillis;
+    }
+
+    @Override
+    public long getSimulatedTimeMillis() {
+        return (ticks + idleTicks) * tickPeriodMillis;
+    }
+
+    @Override
+    public ClockStatistics getStatistics() {
+        return new ClockStatistics(ticks, 0, 0, 0, 0, System.nanoTime() - startNanos);
+    }
+}
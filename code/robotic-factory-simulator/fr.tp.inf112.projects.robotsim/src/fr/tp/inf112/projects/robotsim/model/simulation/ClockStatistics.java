@@ -0,0 +1,74 @@
+package fr.tp.inf112.projects.robotsim.model.simulation;
+
+/**
+ * Immutable view of the pacing statistics of a {@link SimulationClock}.
+ */
+public final class ClockStatistics {
+
+    private final long ticks;
+
+    private final long overruns;
+
+    private final long catchUpTicks;
+
+    private final long skippedTicks;
+
+    private final long maxLatenessNanos;
+
+    private final long elapsedNanos;
+
+    public ClockStatistics(final long ticks,
+                           final long overruns,
+                           final long catchUpTicks,
+                           final long skippedTicks,
+                           final long maxLatenessNanos,
+                           final long elapsedNanos) {
+        this.ticks            = ticks;
+        this.overruns         = overruns;
+        this.catchUpTicks     = catchUpTicks;
+        this.skippedTicks     = skippedTicks;
+        this.maxLatenessNanos = maxLatenessNanos;
+        this.elapsedNanos     = elapsedNanos;
+    }
+
+    /* Number of ticks given since the clock was started */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /* Number of ticks which ended after the deadline of the next one */
+    public long getOverruns() {
+        return overruns;
+    }
+
+    /* Number of ticks started without waiting to make up for an overrun */
+    public long getCatchUpTicks() {
+        return catchUpTicks;
+    }
+
+    /* Number of ticks dropped because the simulation was too far behind to catch up */
+    public long getSkippedTicks() {
+        return skippedTicks;
+    }
+
+    public long getMaxLatenessNanos() {
+        return maxLatenessNanos;
+    }
+
+    /* Wall clock time elapsed since the clock was started */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /* Number of ticks per second of wall clock time */
+    public double getTickRate() {
+        return elapsedNanos == 0 ? 0.0 : ticks * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "ClockStatistics [ticks=" + ticks + ", overruns=" + overruns + ", catchUpTicks=" + catchUpTicks
+                + ", skippedTicks=" + skippedTicks + ", maxLatenessNanos=" + maxLatenessNanos
+                + ", tickRate=" + getTickRate() + "]";
+    }
+}
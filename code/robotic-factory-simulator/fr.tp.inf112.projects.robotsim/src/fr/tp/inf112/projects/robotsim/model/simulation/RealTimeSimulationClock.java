@@ -0,0 +1,161 @@
+package fr.tp.inf112.projects.robotsim.model.simulation;
+
+/* Java related packages */
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fixed-rate clock. Tick n is due at start + n * period whatever the time spent computing the
+ * previous ticks, so the tick rate does not drift as the factory grows.
+ *
+ * When a tick ends after the deadline of the next one, the next tick starts right away to catch
+ * up. If the simulation falls more than a few periods behind, the missed ticks are dropped and
+ * the schedule restarts from the current time instead of bursting.
+ */
+public final class RealTimeSimulationClock implements SimulationClock {
+
+    /* Number of periods the simulation may fall behind before ticks are dropped */
+    private static final int MAX_CATCH_UP_PERIODS = 5;
+
+    private final long tickPeriodMillis;
+
+    private final long periodNanos;
+
+    private long startNanos;
+
+    private long nextDeadlineNanos;
+
+    /* Statistics are written by the simulation thread only and may be read by any thread */
+    private volatile long ticks;
+
+    private volatile long overruns;
+
+    private volatile long catchUpTicks;
+
+    private volatile long skippedTicks;
+
+    /* Ticks skipped by the simulation, waited for at once */
+    private volatile long idleTicks;
+
+    private volatile long maxLatenessNanos;
+
+    /**
+     * @param tickPeriodMillis simulated time covered by one tick.
+     * @param timeScale        ratio between simulated and wall clock time, 10 runs ten times faster than real time.
+     */
+    public RealTimeSimulationClock(final long tickPeriodMillis,
+                                   final double timeScale) {
+        if (tickPeriodMillis <= 0) {
+            throw new IllegalArgumentException("Tick period must be positive.");
+        }
+        if (timeScale <= 0.0) {
+            throw new IllegalArgumentException("Time scale must be positive.");
+        }
+
+        this.tickPeriodMillis = tickPeriodMillis;
+        this.periodNanos      = Math.max(1L, Math.round(tickPeriodMillis * 1_000_000L / timeScale));
+        start();
+    }
+
+    @Override
+    public void start() {
+        startNanos        = System.nanoTime();
+        nextDeadlineNanos = startNanos + periodNanos;
+        ticks             = 0;
+        overruns          = 0;
+        catchUpTicks      = 0;
+        skippedTicks      = 0;
+        idleTicks         = 0;
+        maxLatenessNanos  = 0;
+    }
+
+    @Override
+    public boolean awaitNextTick() throws InterruptedException {
+        ticks++;
+
+        final long now      = System.nanoTime();
+        final long lateness = now - nextDeadlineNanos;
+
+        if (lateness > 0) {
+            lateTick(lateness);
+        }
+        else {
+            parkUntil(nextDeadlineNanos);
+        }
+
+        nextDeadlineNanos += periodNanos;
+
+        return true;
+    }
+
+    @Override
+    public long tryNextTick() {
+        final long lateness = System.nanoTime() - nextDeadlineNanos;
+
+        if (lateness < 0) {
+            return -lateness;
+        }
+
+        ticks++;
+
+        if (lateness > 0) {
+            lateTick(lateness);
+        }
+
+        nextDeadlineNanos += periodNanos;
+
+        return 0;
+    }
+
+    @Override
+    public void skipTicks(final long ticks) {
+        idleTicks         += ticks;
+        nextDeadlineNanos += ticks * periodNanos;
+    }
+
+    private void lateTick(final long lateness) {
+        overruns++;
+        maxLatenessNanos = Math.max(maxLatenessNanos, lateness);
+
+        if (lateness > MAX_CATCH_UP_PERIODS * periodNanos) {
+            /* Too far behind, drop the missed ticks and restart the schedule from now */
+            final long missedTicks = lateness / periodNanos;
+            skippedTicks      += missedTicks;
+            nextDeadlineNanos += missedTicks * periodNanos;
+        }
+        else {
+            catchUpTicks++;
+        }
+    }
+
+    private static void parkUntil(final long deadlineNanos) throws InterruptedException {
+        long remaining = deadlineNanos - System.nanoTime();
+
+        /* parkNanos may return early, park again for the remaining time */
+        while (remaining > 0) {
+            LockSupport.parkNanos(remaining);
+
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+
+            remaining = deadlineNanos - System.nanoTime();
+        }
+    }
+
+    @Override
+    public long getTickPeriodMillis() {
+        return tickPeriodMillis;
+    }
+
+    /* Dropped ticks are never simulated, only the ticks handed out and the idle ones covered count */
+    @Override
+    public long getSimulatedTimeMillis() {
+        return (ticks + idleTicks) * tickPeriodMillis;
+    }
+
+    @Override
+    public ClockStatistics getStatistics() {
+        return new ClockStatistics(ticks, overruns, catchUpTicks, skippedTicks, maxLatenessNanos,
+                                   System.nanoTime() - startNanos);
+    }
+}
@@ -0,0 +1,73 @@
+package fr.tp.inf112.projects.robotsim.model.simulation;
+
+/**
+ * Paces the ticks of a simulation.
+ *
+ * Each tick stands for a fixed amount of simulated time. Implementations decide how much wall
+ * clock time elapses between two ticks: none in batch mode, the tick period divided by a time
+ * scale in real time mode.
+ */
+public interface SimulationClock {
+
+    /* Simulated time covered by one tick when none is specified */
+    long DEFAULT_TICK_PERIOD_MILLIS = 100;
+
+    /**
+     *  Resets the clock, the first tick starts right away.
+     */
+    void start();
+
+    /**
+     *  Waits until the next tick is due.
+     *
+     *  @return false if the clock has no more ticks to give and the simulation should stop.
+     */
+    boolean awaitNextTick() throws InterruptedException;
+
+    /**
+     *  Non blocking variant of awaitNextTick, for simulations whose ticks are run by a scheduler.
+     *  The next tick is only given if it is due.
+     *
+     *  @return 0 if the next tick is given, the wall clock time in nanoseconds until it is due
+     *          otherwise, or a negative value if the clock has no more ticks to give.
+     */
+    long tryNextTick();
+
+    /**
+     *  Counts the given number of ticks as given without pacing them, for simulations skipping
+     *  the ticks during which nothing happens. The next tick is due once they are over.
+     */
+    void skipTicks(long ticks);
+
+    /**
+     *  Simulated time covered by one tick.
+     */
+    long getTickPeriodMillis();
+
+    /**
+     *  Simulated time elapsed since the clock was started.
+     */
+    long getSimulatedTimeMillis();
+
+    /**
+     *  Retrieves the pacing statistics since the clock was started.
+     */
+    ClockStatistics getStatistics();
+
+    /* Fixed-rate clock following the wall clock */
+    static SimulationClock realTime(final long tickPeriodMillis) {
+        return new RealTimeSimulationClock(tickPeriodMillis, 1.0);
+    }
+
+    /* Fixed-rate clock running timeScale times faster than the wall clock */
+    static SimulationClock scaled(final long tickPeriodMillis,
+                                  final double timeScale) {
+        return new RealTimeSimulationClock(tickPeriodMillis, timeScale);
+    }
+
+    /* Clock running the ticks as fast as possible until the simulated duration is over */
+    static SimulationClock batch(final long tickPeriodMillis,
+                                 final long simulatedDurationMillis) {
+        return new BatchSimulationClock(tickPeriodMillis, simulatedDurationMillis);
+    }
+}
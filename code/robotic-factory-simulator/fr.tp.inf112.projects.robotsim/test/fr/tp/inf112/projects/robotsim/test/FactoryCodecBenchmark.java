@@ -0,0 +1,171 @@
+package fr.tp.inf112.projects.robotsim.test;
+
+/* Java related packages */
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.logging.Logger;
+
+/* RobotSim related packages */
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.FactoryBinaryCodec;
+import fr.tp.inf112.projects.robotsim.model.FactoryJsonCodec;
+import fr.tp.inf112.projects.robotsim.model.path.FactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.JGraphTDijkstraFactoryPathFinder;
+
+/**
+ * Compares the binary codec of the factories with the polymorphic JSON sent to Kafka and with the
+ * Java serialization used by the persistence server, on the demo factory with a growing number of
+ * robots sharing one path finder.
+ *
+ * Run as a plain Java application: FactoryCodecBenchmark [iterations]. Each codec is warmed up on
+ * a quarter of the iterations before being timed.
+ */
+public class FactoryCodecBenchmark {
+
+    private final static Logger LOGGER = Logger.getLogger(FactoryCodecBenchmark.class.getName());
+
+    private static final int[] ROBOTS = { 2, 12, 50 };
+
+    public static void main(final String[] args)
+    throws IOException, ClassNotFoundException {
+        final int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+
+        for (final int robots : ROBOTS) {
+            final Factory factory = createFactory(robots);
+            final byte[] binaryFactory = FactoryBinaryCodec.encode(factory);
+            final byte[] jsonFactory = FactoryJsonCodec.getFactoryWriter().writeValueAsBytes(factory);
+            final byte[] serializedFactory = serialize(factory);
+
+            LOGGER.info(String.format("%d robots: binary %d bytes, JSON %d bytes, Java serialization %d bytes",
+                                      robots, binaryFactory.length, jsonFactory.length, serializedFactory.length));
+
+            benchmark("Binary", factory, binaryFactory, iterations, Codec.BINARY);
+            benchmark("JSON", factory, jsonFactory, iterations, Codec.JSON);
+            benchmark("Java serialization", factory, serializedFactory, iterations, Codec.JAVA_SERIALIZATION);
+        }
+    }
+
+    private static void benchmark(final String name,
+                                  final Factory factory,
+                                  final byte[] encodedFactory,
+                                  final int iterations,
+                                  final Codec codec)
+    throws IOException, ClassNotFoundException {
+        run(factory, encodedFactory, iterations / 4, codec);
+
+        final long[] times = run(factory, encodedFactory, iterations, codec);
+
+        LOGGER.info(String.format("%-20s encode %8.1f us, decode %8.1f us",
+                                  name, times[0] / 1e3 / iterations, times[1] / 1e3 / iterations));
+    }
+
+    /* Total encoding and decoding times, in nanoseconds */
+    private static long[] run(final Factory factory,
+                              final byte[] encodedFactory,
+                              final int iterations,
+                              final Codec codec)
+    throws IOException, ClassNotFoundException {
+        long encodedBytes = 0;
+        long startTime = System.nanoTime();
+
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            encodedBytes += codec.encode(factory).length;
+        }
+
+        final long encodeTime = System.nanoTime() - startTime;
+        startTime = System.nanoTime();
+
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            if (codec.decode(encodedFactory) == null) {
+                throw new IllegalStateException("No factory decoded");
+            }
+        }
+
+        final long decodeTime = System.nanoTime() - startTime;
+
+        if (encodedBytes != (long) encodedFactory.length * iterations) {
+            throw new IllegalStateException("Encoded size changed between iterations");
+        }
+
+        return new long[] { encodeTime, decodeTime };
+    }
+
+    private enum Codec {
+
+        BINARY {
+            @Override
+            byte[] encode(final Factory factory) {
+                return FactoryBinaryCodec.encode(factory);
+            }
+
+            @Override
+            Factory decode(final byte[] bytes)
+            throws IOException {
+                return FactoryBinaryCodec.decode(bytes);
+            }
+        },
+
+        JSON {
+            @Override
+            byte[] encode(final Factory factory)
+            throws IOException {
+                return FactoryJsonCodec.getFactoryWriter().writeValueAsBytes(factory);
+            }
+
+            @Override
+            Factory decode(final byte[] bytes)
+            throws IOException {
+                return FactoryJsonCodec.getFactoryReader().readValue(bytes);
+            }
+        },
+
+        JAVA_SERIALIZATION {
+            @Override
+            byte[] encode(final Factory factory)
+            throws IOException {
+                return serialize(factory);
+            }
+
+            @Override
+            Factory decode(final byte[] bytes)
+            throws IOException, ClassNotFoundException {
+                try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    return (Factory) input.readObject();
+                }
+            }
+        };
+
+        abstract byte[] encode(Factory factory)
+        throws IOException;
+
+        abstract Factory decode(byte[] bytes)
+        throws IOException, ClassNotFoundException;
+    }
+
+    private static byte[] serialize(final Factory factory)
+    throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(factory);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /* Demo factory whose robots all share the same path finder, as in the simulator application */
+    private static Factory createFactory(final int robots) {
+        final FactoryPathFinder[] pathFinder = new FactoryPathFinder[1];
+
+        return TestFactories.createPuckFactory(robots, (factory, index) -> {
+            if (pathFinder[0] == null) {
+                pathFinder[0] = new JGraphTDijkstraFactoryPathFinder(factory, TestFactories.RESOLUTION);
+            }
+
+            return pathFinder[0];
+        });
+    }
+}
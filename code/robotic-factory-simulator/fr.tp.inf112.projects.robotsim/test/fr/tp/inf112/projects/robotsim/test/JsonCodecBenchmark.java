@@ -0,0 +1,84 @@
+package fr.tp.inf112.projects.robotsim.test;
+
+/* Java related packages */
+import java.io.IOException;
+import java.util.logging.Logger;
+
+/* Jackson related packages */
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
+
+/* RobotSim related packages */
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.FactoryJsonCodec;
+import fr.tp.inf112.projects.robotsim.model.path.CustomDijkstraFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
+
+/**
+ * Measures how many factory messages per second the viewer can parse, building a new mapper for
+ * each message as it used to, then with the shared reader of FactoryJsonCodec.
+ *
+ * Run as a plain Java application: JsonCodecBenchmark [messages] [robots].
+ */
+public class JsonCodecBenchmark {
+
+    private final static Logger LOGGER = Logger.getLogger(JsonCodecBenchmark.class.getName());
+
+    public static void main(final String[] args)
+    throws IOException {
+        final int messages = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        final int robots   = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+
+        final Factory factory = TestFactories.createPuckFactory(robots, (model, index) ->
+            new CustomDijkstraFactoryPathFinder(model, TestFactories.RESOLUTION));
+
+        final String message = FactoryJsonCodec.writeFactory(factory);
+        LOGGER.info("Factory message of " + message.length() + " characters");
+
+        // Warm up the code paths of both variants before timing them
+        benchmark("New mapper per message", message, messages / 4, true);
+        benchmark("Shared reader", message, messages / 4, false);
+
+        benchmark("New mapper per message", message, messages, true);
+        benchmark("Shared reader", message, messages, false);
+    }
+
+    private static void benchmark(final String name,
+                                  final String message,
+                                  final int messages,
+                                  final boolean newMapper)
+    throws IOException {
+        final long start = System.nanoTime();
+
+        for (int index = 0; index < messages; index++) {
+            final Factory factory = newMapper ? createMapper().readValue(message, Factory.class)
+                                              : FactoryJsonCodec.readFactory(message);
+
+            if (factory == null) {
+                throw new IllegalStateException("No factory read");
+            }
+        }
+
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        LOGGER.info(String.format("%-24s %8.0f messages/s", name, messages / seconds));
+    }
+
+    /* Mapper built for every message by the viewer before the shared codec */
+    private static ObjectMapper createMapper() {
+        final PolymorphicTypeValidator typeValidator = BasicPolymorphicTypeValidator.builder()
+            .allowIfSubType(PositionedShape.class.getPackageName())
+            .allowIfSubType(Component.class.getPackageName())
+            .allowIfSubType("fr.tp.inf112.projects.canvas.model.impl")
+            .allowIfSubType("java.util")
+            .build();
+
+        final ObjectMapper mapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        mapper.activateDefaultTyping(typeValidator, ObjectMapper.DefaultTyping.NON_FINAL);
+
+        return mapper;
+    }
+}
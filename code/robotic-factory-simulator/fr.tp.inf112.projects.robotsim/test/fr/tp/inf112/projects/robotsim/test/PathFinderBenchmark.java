@@ -0,0 +1,125 @@
+package fr.tp.inf112.projects.robotsim.test;
+
+/* Java related packages */
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Logger;
+
+/* RobotSim related packages */
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Position;
+import fr.tp.inf112.projects.robotsim.model.path.AStarFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.CustomDijkstraFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.DStarLiteFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.DistanceFieldFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.FactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.JGraphTDijkstraFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
+
+/**
+ * Compares the path finders on a factory made of a grid of rooms with one door each.
+ *
+ * Run as a plain Java application: PathFinderBenchmark [factorySize] [queries]. The first path
+ * search of each finder is timed separately since it includes building its graph or grid.
+ * Replanning is then timed by asking again for the path after each step along it.
+ */
+public class PathFinderBenchmark {
+
+    private final static Logger LOGGER = Logger.getLogger(PathFinderBenchmark.class.getName());
+
+    private static final int RESOLUTION = TestFactories.RESOLUTION;
+
+    public static void main(final String[] args) {
+        final int factorySize = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        final int queries     = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        final Factory factory = TestFactories.createRoomGrid(factorySize);
+        final List<Component[]> endPoints = randomEndPoints(factorySize, queries, new Random(42));
+
+        benchmark("CustomDijkstra", new CustomDijkstraFactoryPathFinder(factory, RESOLUTION), endPoints);
+        benchmark("JGraphTDijkstra", new JGraphTDijkstraFactoryPathFinder(factory, RESOLUTION), endPoints);
+        benchmark("A* 4-connected", new AStarFactoryPathFinder(factory, RESOLUTION, false, false), endPoints);
+        benchmark("A* 8-connected", new AStarFactoryPathFinder(factory, RESOLUTION, true, false), endPoints);
+        benchmark("JPS 8-connected", new AStarFactoryPathFinder(factory, RESOLUTION, true, true), endPoints);
+        benchmark("Distance field", new DistanceFieldFactoryPathFinder(factory, RESOLUTION), endPoints);
+        benchmark("D* Lite", new DStarLiteFactoryPathFinder(factory, RESOLUTION), endPoints);
+
+        benchmarkReplanning("A* 4-connected", new AStarFactoryPathFinder(factory, RESOLUTION, false, false), endPoints);
+        benchmarkReplanning("D* Lite", new DStarLiteFactoryPathFinder(factory, RESOLUTION), endPoints);
+    }
+
+    private static List<Component[]> randomEndPoints(final int factorySize,
+                                                     final int queries,
+                                                     final Random random) {
+        final List<Component[]> endPoints = new ArrayList<>();
+        final int cells = factorySize / RESOLUTION;
+
+        for (int query = 0; query < queries; query++) {
+            endPoints.add(new Component[] { endPoint(random, cells), endPoint(random, cells) });
+        }
+
+        return endPoints;
+    }
+
+    private static Component endPoint(final Random random,
+                                      final int cells) {
+        return TestFactories.endPoint(random.nextInt(cells) * RESOLUTION, random.nextInt(cells) * RESOLUTION);
+    }
+
+    private static void benchmark(final String name,
+                                  final FactoryPathFinder pathFinder,
+                                  final List<Component[]> endPoints) {
+        long startTime = System.nanoTime();
+        pathFinder.findPath(endPoints.get(0)[0], endPoints.get(0)[1]);
+        final long firstSearchTime = System.nanoTime() - startTime;
+
+        long pathCells = 0;
+        startTime = System.nanoTime();
+
+        for (final Component[] endPoint : endPoints) {
+            final List<Position> path = pathFinder.findPath(endPoint[0], endPoint[1]);
+            pathCells += path.size();
+        }
+
+        final long searchTime = System.nanoTime() - startTime;
+
+        LOGGER.info(String.format("%-16s first search %8.1f ms, then %8.3f ms per search (%d path cells)",
+                                  name,
+                                  firstSearchTime / 1e6,
+                                  searchTime / 1e6 / endPoints.size(),
+                                  pathCells));
+    }
+
+    private static void benchmarkReplanning(final String name,
+                                            final FactoryPathFinder pathFinder,
+                                            final List<Component[]> endPoints) {
+        long replansCount = 0;
+        final long startTime = System.nanoTime();
+
+        for (final Component[] endPoint : endPoints) {
+            final PositionedShape sourceShape = endPoint[0].getPositionedShape();
+            final int sourcexCoordinate = sourceShape.getxCoordinate();
+            final int sourceyCoordinate = sourceShape.getyCoordinate();
+            List<Position> path = pathFinder.findPath(endPoint[0], endPoint[1]);
+
+            while (!path.isEmpty()) {
+                sourceShape.setxCoordinate(path.get(0).getxCoordinate());
+                sourceShape.setyCoordinate(path.get(0).getyCoordinate());
+                path = pathFinder.findPath(endPoint[0], endPoint[1]);
+                replansCount++;
+            }
+
+            sourceShape.setxCoordinate(sourcexCoordinate);
+            sourceShape.setyCoordinate(sourceyCoordinate);
+        }
+
+        final long replanTime = System.nanoTime() - startTime;
+
+        LOGGER.info(String.format("%-16s %8.3f ms per replanning after a step (%d replannings)",
+                                  name,
+                                  replanTime / 1e6 / Math.max(1, replansCount),
+                                  replansCount));
+    }
+}
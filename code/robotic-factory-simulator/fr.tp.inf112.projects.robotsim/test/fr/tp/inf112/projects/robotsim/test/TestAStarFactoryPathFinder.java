@@ -0,0 +1,197 @@
+package fr.tp.inf112.projects.robotsim.test;
+
+/* Java related packages */
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+
+/* JUnit related packages */
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/* RobotSim related packages */
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Door;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Position;
+import fr.tp.inf112.projects.robotsim.model.Room;
+import fr.tp.inf112.projects.robotsim.model.path.AStarFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.OccupancyGrid;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+import static fr.tp.inf112.projects.robotsim.test.TestFactories.RESOLUTION;
+
+public class TestAStarFactoryPathFinder {
+
+    private static final int STRAIGHT_COST = 10;
+
+    private static final int DIAGONAL_COST = 14;
+
+    @Test
+    public void testOptimalLengthInEmptyFactory() {
+        final Factory factory = new Factory(100, 100, "Empty Factory");
+        final Component source = TestFactories.endPoint(0, 0);
+        final Component target = TestFactories.endPoint(50, 30);
+
+        final List<Position> straightPath = new AStarFactoryPathFinder(factory, RESOLUTION, false, false)
+            .findPath(source, target);
+        final List<Position> diagonalPath = new AStarFactoryPathFinder(factory, RESOLUTION, true, false)
+            .findPath(source, target);
+        final List<Position> jumpPointPath = new AStarFactoryPathFinder(factory, RESOLUTION, true, true)
+            .findPath(source, target);
+
+        assertEquals(16, straightPath.size());
+        assertEquals(10, diagonalPath.size());
+        assertEquals(10, jumpPointPath.size());
+        assertEquals(STRAIGHT_COST * 4 + DIAGONAL_COST * 6, cost(source, diagonalPath));
+        assertEquals(cost(source, diagonalPath), cost(source, jumpPointPath));
+        assertEquals(new Position(50, 30), jumpPointPath.get(jumpPointPath.size() - 1));
+    }
+
+    /* Compares the searches with a breadth first search of the grid, and jump point search with A* */
+    @Test
+    public void testOptimalLengthAroundRooms() {
+        final Factory factory = TestFactories.createRoomGrid(300);
+        final OccupancyGrid grid = OccupancyGrid.rasterise(factory, RESOLUTION);
+        final AStarFactoryPathFinder straightFinder = new AStarFactoryPathFinder(factory, RESOLUTION, false, false);
+        final AStarFactoryPathFinder diagonalFinder = new AStarFactoryPathFinder(factory, RESOLUTION, true, false);
+        final AStarFactoryPathFinder jumpPointFinder = new AStarFactoryPathFinder(factory, RESOLUTION, true, true);
+        final Random random = new Random(42);
+        int searches = 0;
+
+        while (searches < 50) {
+            final int sourceCell = random.nextInt(grid.getColumns() * grid.getRows());
+            final int targetCell = random.nextInt(grid.getColumns() * grid.getRows());
+
+            if (sourceCell == targetCell || !isFree(grid, sourceCell) || !isFree(grid, targetCell)) {
+                continue;
+            }
+
+            final Component source = endPoint(grid, sourceCell);
+            final Component target = endPoint(grid, targetCell);
+            final int distance = straightDistance(grid, sourceCell, targetCell);
+            final List<Position> straightPath = straightFinder.findPath(source, target);
+
+            assertEquals(Math.max(distance, 0), straightPath.size());
+
+            if (distance > 0) {
+                final List<Position> diagonalPath = diagonalFinder.findPath(source, target);
+                final List<Position> jumpPointPath = jumpPointFinder.findPath(source, target);
+
+                assertEquals(cost(source, diagonalPath), cost(source, jumpPointPath));
+                assertTrue(cost(source, diagonalPath) <= STRAIGHT_COST * distance);
+            }
+
+            searches++;
+        }
+    }
+
+    @Test
+    public void testNoPathToEnclosedTarget() {
+        final Factory factory = new Factory(100, 100, "Closed Room Factory");
+        final Room room = new Room(factory, new RectangularShape(20, 20, 60, 60), "Closed Room");
+        new Door(room, Room.WALL.BOTTOM, 20, 20, false, "Entrance");
+
+        final Component source = TestFactories.endPoint(5, 5);
+        final Component target = TestFactories.endPoint(50, 50);
+
+        assertTrue(new AStarFactoryPathFinder(factory, RESOLUTION, false, false).findPath(source, target).isEmpty());
+        assertTrue(new AStarFactoryPathFinder(factory, RESOLUTION, true, false).findPath(source, target).isEmpty());
+        assertTrue(new AStarFactoryPathFinder(factory, RESOLUTION, true, true).findPath(source, target).isEmpty());
+    }
+
+    @Test
+    public void testClosedDoor() {
+        final Factory factory = new Factory(100, 100, "Door Factory");
+        final Room room = new Room(factory, new RectangularShape(20, 20, 60, 60), "Room");
+        final Door door = new Door(room, Room.WALL.BOTTOM, 20, 20, true, "Entrance");
+
+        final Component source = TestFactories.endPoint(50, 95);
+        final Component target = TestFactories.endPoint(50, 50);
+        final AStarFactoryPathFinder pathFinder = new AStarFactoryPathFinder(factory, RESOLUTION, true, true);
+
+        final List<Position> path = pathFinder.findPath(source, target);
+        assertFalse(path.isEmpty());
+        assertTrue(path.stream().anyMatch(position -> door.overlays(
+            new RectangularShape(position.getxCoordinate(), position.getyCoordinate(), 1, 1))));
+
+        door.close();
+        assertTrue(pathFinder.findPath(source, target).isEmpty());
+
+        door.open();
+        assertEquals(path, pathFinder.findPath(source, target));
+    }
+
+    /* Cost of a path made of moves to one of the eight neighbouring cells */
+    private static int cost(final Component source,
+                            final List<Position> path) {
+        int xCoordinate = source.getxCoordinate();
+        int yCoordinate = source.getyCoordinate();
+        int cost = 0;
+
+        for (final Position position : path) {
+            final int xDistance = Math.abs(position.getxCoordinate() - xCoordinate);
+            final int yDistance = Math.abs(position.getyCoordinate() - yCoordinate);
+
+            assertTrue(xDistance <= RESOLUTION && yDistance <= RESOLUTION && xDistance + yDistance > 0,
+                       "Not a move to a neighbouring cell: " + position);
+
+            cost += xDistance > 0 && yDistance > 0 ? DIAGONAL_COST : STRAIGHT_COST;
+            xCoordinate = position.getxCoordinate();
+            yCoordinate = position.getyCoordinate();
+        }
+
+        return cost;
+    }
+
+    /* Number of moves of a shortest 4-connected path, -1 if the target cannot be reached */
+    private static int straightDistance(final OccupancyGrid grid,
+                                        final int sourceCell,
+                                        final int targetCell) {
+        final int columns = grid.getColumns();
+        final int[] distances = new int[columns * grid.getRows()];
+        Arrays.fill(distances, -1);
+        distances[sourceCell] = 0;
+
+        final Queue<Integer> cells = new ArrayDeque<>();
+        cells.add(sourceCell);
+
+        while (!cells.isEmpty()) {
+            final int cell = cells.remove();
+
+            if (cell == targetCell) {
+                return distances[cell];
+            }
+
+            final int xIndex = cell % columns;
+            final int yIndex = cell / columns;
+            final int[][] neighbours = { { xIndex + 1, yIndex }, { xIndex - 1, yIndex },
+                                         { xIndex, yIndex + 1 }, { xIndex, yIndex - 1 } };
+
+            for (final int[] neighbour : neighbours) {
+                final int nextCell = neighbour[1] * columns + neighbour[0];
+
+                if (grid.isFree(neighbour[0], neighbour[1]) && distances[nextCell] < 0) {
+                    distances[nextCell] = distances[cell] + 1;
+                    cells.add(nextCell);
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    private static boolean isFree(final OccupancyGrid grid,
+                                  final int cell) {
+        return grid.isFree(cell % grid.getColumns(), cell / grid.getColumns());
+    }
+
+    private static Component endPoint(final OccupancyGrid grid,
+                                      final int cell) {
+        return TestFactories.endPoint(cell % grid.getColumns() * RESOLUTION, cell / grid.getColumns() * RESOLUTION);
+    }
+}
@@ -0,0 +1,64 @@
+package fr.tp.inf112.projects.robotsim.test;
+
+/* Java related packages */
+import java.util.List;
+
+/* JUnit related packages */
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/* RobotSim related packages */
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Position;
+import fr.tp.inf112.projects.robotsim.model.path.AStarFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.CachingFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.DStarLiteFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.DistanceFieldFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.PathCache;
+
+import static fr.tp.inf112.projects.robotsim.test.TestFactories.RESOLUTION;
+
+public class TestCachingFactoryPathFinder {
+
+    /* Incremental and stepwise path finders keep their modes and their answers are not cached */
+    @Test
+    public void testIncrementalAndStepwiseForwarded() {
+        final Factory factory = new Factory(100, 100, "Open Factory");
+        final Component source = TestFactories.endPoint(0, 50);
+        final Component target = TestFactories.endPoint(95, 50);
+
+        final PathCache incrementalCache = new PathCache(factory, RESOLUTION);
+        final CachingFactoryPathFinder incrementalFinder =
+            new CachingFactoryPathFinder(new DStarLiteFactoryPathFinder(factory, RESOLUTION), incrementalCache);
+        assertTrue(incrementalFinder.isIncremental());
+        assertFalse(incrementalFinder.findPath(source, target).isEmpty());
+        assertEquals(0, incrementalCache.size());
+
+        final PathCache stepwiseCache = new PathCache(factory, RESOLUTION);
+        final CachingFactoryPathFinder stepwiseFinder =
+            new CachingFactoryPathFinder(new DistanceFieldFactoryPathFinder(factory, RESOLUTION), stepwiseCache);
+        assertTrue(stepwiseFinder.isStepwise());
+        assertNotNull(stepwiseFinder.nextStep(source, target));
+        assertEquals(0, stepwiseCache.size());
+    }
+
+    /* Sources are looked up in the cell the path finders search from, the nearest one */
+    @Test
+    public void testSourceRoundedToNearestCell() {
+        final Factory factory = new Factory(100, 100, "Open Factory");
+        final Component target = TestFactories.endPoint(95, 50);
+        final List<Position> path = new AStarFactoryPathFinder(factory, RESOLUTION).findPath(TestFactories.endPoint(10, 50), target);
+
+        final PathCache cache = new PathCache(factory, RESOLUTION);
+        cache.put(new Position(10, 50), target, path);
+
+        assertNotNull(cache.get(new Position(8, 50), target));
+        assertNotNull(cache.get(new Position(12, 52), target));
+        assertNull(cache.get(new Position(7, 50), target));
+    }
+}
@@ -0,0 +1,95 @@
+package fr.tp.inf112.projects.robotsim.test;
+
+/* Java related packages */
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/* JUnit related packages */
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/* RobotSim related packages */
+import fr.tp.inf112.projects.canvas.model.Figure;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.FleetMetrics;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.path.CooperativeFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.FactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.JGraphTDijkstraFactoryPathFinder;
+
+import static fr.tp.inf112.projects.robotsim.test.TestFactories.RESOLUTION;
+
+/**
+ * Compares the cooperative path finder with the graph path finder on the demo factory, where the
+ * robots of both rooms cross each other at the doors.
+ */
+public class TestCooperativeFactoryPathFinder {
+
+    private final static Logger LOGGER = Logger.getLogger(TestCooperativeFactoryPathFinder.class.getName());
+
+    private static final int ROBOTS = 12;
+
+    private static final int TICKS = 600;
+
+    /* Simulated duration of a tick of the default real time clock */
+    private static final long TICK_PERIOD_MILLIS = 100;
+
+    @Test
+    public void testNoTwoRobotsInSameCell() {
+        final Factory factory = createCooperativeFactory();
+
+        for (int tick = 0; tick < TICKS; tick++) {
+            factory.behave();
+
+            final Set<Integer> cells = new HashSet<>();
+
+            for (final Figure figure : factory.getFigures()) {
+                if (figure instanceof Robot) {
+                    final Robot robot = (Robot) figure;
+                    final int cell = robot.getyCoordinate() / RESOLUTION * factory.getWidth() + robot.getxCoordinate() / RESOLUTION;
+
+                    assertTrue(cells.add(cell), "Two robots in the cell of " + robot + " at tick " + tick);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFewerWaitsThanGraphPathFinder() {
+        final FleetMetrics graphMetrics = run(TestFactories.createPuckFactory(ROBOTS, (factory, index) ->
+            new JGraphTDijkstraFactoryPathFinder(factory, RESOLUTION)));
+        final FleetMetrics cooperativeMetrics = run(createCooperativeFactory());
+
+        LOGGER.info(String.format("Graph: %.0f targets per hour, wait ratio %.2f",
+                                  graphMetrics.getVisitedTargetsPerHour(TICKS * TICK_PERIOD_MILLIS),
+                                  graphMetrics.getWaitRatio()));
+        LOGGER.info(String.format("Cooperative: %.0f targets per hour, wait ratio %.2f",
+                                  cooperativeMetrics.getVisitedTargetsPerHour(TICKS * TICK_PERIOD_MILLIS),
+                                  cooperativeMetrics.getWaitRatio()));
+
+        assertTrue(cooperativeMetrics.getVisitedTargets() >= graphMetrics.getVisitedTargets());
+        assertTrue(cooperativeMetrics.getWaitRatio() < graphMetrics.getWaitRatio());
+    }
+
+    private static FleetMetrics run(final Factory factory) {
+        for (int tick = 0; tick < TICKS; tick++) {
+            factory.behave();
+        }
+
+        return factory.getFleetMetrics();
+    }
+
+    /* One path finder shared by all the robots, so that they see each other's reservations */
+    private static Factory createCooperativeFactory() {
+        final FactoryPathFinder[] pathFinder = new FactoryPathFinder[1];
+
+        return TestFactories.createPuckFactory(ROBOTS, (factory, index) -> {
+            if (pathFinder[0] == null) {
+                pathFinder[0] = new CooperativeFactoryPathFinder(factory, RESOLUTION);
+            }
+
+            return pathFinder[0];
+        });
+    }
+}
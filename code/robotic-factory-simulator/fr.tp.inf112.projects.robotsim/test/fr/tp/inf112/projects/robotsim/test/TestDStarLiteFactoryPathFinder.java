@@ -0,0 +1,155 @@
+package fr.tp.inf112.projects.robotsim.test;
+
+/* Java related packages */
+import java.util.List;
+import java.util.Random;
+
+/* JUnit related packages */
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/* RobotSim related packages */
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Position;
+import fr.tp.inf112.projects.robotsim.model.path.AStarFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.DStarLiteFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.OccupancyGrid;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+import static fr.tp.inf112.projects.robotsim.test.TestFactories.RESOLUTION;
+
+public class TestDStarLiteFactoryPathFinder {
+
+    /* Without other robots, the 4-connected search finds paths as short as A* */
+    @Test
+    public void testSameLengthAsAStar() {
+        final Factory factory = TestFactories.createRoomGrid(300);
+        final OccupancyGrid grid = OccupancyGrid.rasterise(factory, RESOLUTION);
+        final DStarLiteFactoryPathFinder pathFinder = new DStarLiteFactoryPathFinder(factory, RESOLUTION);
+        final AStarFactoryPathFinder referenceFinder = new AStarFactoryPathFinder(factory, RESOLUTION, false, false);
+        final Random random = new Random(42);
+        int searches = 0;
+
+        while (searches < 50) {
+            final int sourceX = random.nextInt(grid.getColumns());
+            final int sourceY = random.nextInt(grid.getRows());
+            final int targetX = random.nextInt(grid.getColumns());
+            final int targetY = random.nextInt(grid.getRows());
+
+            if (!grid.isFree(sourceX, sourceY) || !grid.isFree(targetX, targetY)) {
+                continue;
+            }
+
+            final Component source = TestFactories.endPoint(sourceX * RESOLUTION, sourceY * RESOLUTION);
+            final Component target = TestFactories.endPoint(targetX * RESOLUTION, targetY * RESOLUTION);
+
+            assertEquals(referenceFinder.findPath(source, target).size(), pathFinder.findPath(source, target).size());
+
+            searches++;
+        }
+    }
+
+    /* A repaired search finds paths as short as a new search, around the robots in the way */
+    @Test
+    public void testRepairAroundMovingRobot() {
+        final Factory factory = new Factory(100, 100, "Open Factory");
+        final MobileComponent source = new MobileComponent(factory, 0, 50, "Source");
+        final MobileComponent blocker = new MobileComponent(factory, 50, 0, "Blocker");
+        final Component target = TestFactories.endPoint(95, 50);
+        final DStarLiteFactoryPathFinder pathFinder = new DStarLiteFactoryPathFinder(factory, RESOLUTION);
+
+        assertEquals(19, pathFinder.findPath(source, target).size());
+
+        blocker.moveTo(50, 50);
+
+        final List<Position> detour = pathFinder.findPath(source, target);
+        assertEquals(21, detour.size());
+        assertFalse(detour.contains(new Position(50, 50)));
+        assertEquals(newSearch(factory, source, target).size(), detour.size());
+
+        source.moveTo(detour.get(0).getxCoordinate(), detour.get(0).getyCoordinate());
+        blocker.moveTo(50, 0);
+
+        final List<Position> path = pathFinder.findPath(source, target);
+        assertEquals(newSearch(factory, source, target).size(), path.size());
+        assertEquals(new Position(95, 50), path.get(path.size() - 1));
+    }
+
+    /* Path finders of the same factory read the moves from one journal, each from its own cursor */
+    @Test
+    public void testRepairFromSharedJournal() {
+        final Factory factory = new Factory(100, 100, "Open Factory");
+        final MobileComponent source1 = new MobileComponent(factory, 0, 50, "Source 1");
+        final MobileComponent source2 = new MobileComponent(factory, 0, 45, "Source 2");
+        final MobileComponent blocker = new MobileComponent(factory, 50, 0, "Blocker");
+        final Component target = TestFactories.endPoint(95, 50);
+        final DStarLiteFactoryPathFinder pathFinder1 = new DStarLiteFactoryPathFinder(factory, RESOLUTION);
+        final DStarLiteFactoryPathFinder pathFinder2 = new DStarLiteFactoryPathFinder(factory, RESOLUTION);
+
+        pathFinder1.findPath(source1, target);
+        blocker.moveTo(50, 50);
+        pathFinder2.findPath(source2, target);
+
+        final List<Position> detour = pathFinder1.findPath(source1, target);
+        assertFalse(detour.contains(new Position(50, 50)));
+        assertEquals(newSearch(factory, source1, target).size(), detour.size());
+
+        blocker.moveTo(50, 45);
+
+        final List<Position> path = pathFinder2.findPath(source2, target);
+        assertFalse(path.contains(new Position(50, 45)));
+        assertEquals(newSearch(factory, source2, target).size(), path.size());
+    }
+
+    @Test
+    public void testSearchesPrunedWithComponents() {
+        final Factory factory = new Factory(100, 100, "Open Factory");
+        final MobileComponent robot1 = new MobileComponent(factory, 0, 0, "Robot 1");
+        final MobileComponent robot2 = new MobileComponent(factory, 0, 95, "Robot 2");
+        final MobileComponent target = new MobileComponent(factory, 95, 50, "Target");
+        final DStarLiteFactoryPathFinder pathFinder = new DStarLiteFactoryPathFinder(factory, RESOLUTION);
+
+        pathFinder.findPath(robot1, target);
+        pathFinder.findPath(robot2, target);
+        pathFinder.findPath(robot2, robot1);
+        assertEquals(2, pathFinder.getSearchesCount());
+
+        factory.removeComponent(robot2);
+        assertEquals(1, pathFinder.getSearchesCount());
+
+        factory.removeComponent(target);
+        assertEquals(0, pathFinder.getSearchesCount());
+    }
+
+    private static List<Position> newSearch(final Factory factory,
+                                            final Component source,
+                                            final Component target) {
+        return new DStarLiteFactoryPathFinder(factory, RESOLUTION).findPath(source, target);
+    }
+
+    /* Mobile component of one cell, moved by the test instead of by a simulation */
+    private static final class MobileComponent extends Component {
+
+        private static final long serialVersionUID = 1L;
+
+        MobileComponent(final Factory factory,
+                        final int xCoordinate,
+                        final int yCoordinate,
+                        final String name) {
+            super(factory, new RectangularShape(xCoordinate, yCoordinate, RESOLUTION, RESOLUTION), name);
+        }
+
+        @Override
+        public boolean isMobile() {
+            return true;
+        }
+
+        void moveTo(final int xCoordinate,
+                    final int yCoordinate) {
+            setxCoordinate(xCoordinate);
+            setyCoordinate(yCoordinate);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package fr.tp.inf112.projects.robotsim.test;
+
+/* Java related packages */
+import java.util.ArrayList;
+import java.util.List;
+
+/* JUnit related packages */
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/* RobotSim related packages */
+import fr.tp.inf112.projects.canvas.model.Figure;
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.EventDrivenTickEngine;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.path.AStarFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.simulation.SimulationClock;
+
+public class TestEventDrivenTickEngine {
+
+    private static final int ROBOTS = 24;
+
+    private static final int TICKS = 300;
+
+    /* Tick at which the first robot, idle until then, is given its targets */
+    private static final int WAKE_TICK = 100;
+
+    /* Same state as the sequential loop at every tick, a robot having no target for a while */
+    @Test
+    public void testSameStateAsSequentialLoop() {
+        final Factory sequentialFactory = createFactory();
+        final Factory eventFactory = createFactory();
+        eventFactory.setTickEngine(new EventDrivenTickEngine());
+
+        for (int tick = 0; tick < TICKS; tick++) {
+            if (tick == WAKE_TICK) {
+                setTargets(sequentialFactory, true);
+                setTargets(eventFactory, true);
+            }
+
+            sequentialFactory.behave();
+            eventFactory.behave();
+
+            assertEquals(state(sequentialFactory), state(eventFactory), "State of tick " + tick);
+        }
+
+        assertEquals(sequentialFactory.getTickCount(), eventFactory.getTickCount());
+    }
+
+    /* Robots without targets leave every tick idle, the simulation covers them without running them */
+    @Test
+    public void testIdleTicksSkipped() {
+        final Factory factory = createIdleFactory();
+        final SimulationClock clock = SimulationClock.batch(SimulationClock.DEFAULT_TICK_PERIOD_MILLIS,
+                                                            TICKS * SimulationClock.DEFAULT_TICK_PERIOD_MILLIS);
+        factory.setTickEngine(new EventDrivenTickEngine());
+        factory.setSimulationClock(clock);
+
+        factory.startSimulation();
+
+        assertTrue(factory.getTickCount() >= TICKS);
+        assertTrue(clock.getSimulatedTimeMillis() >= TICKS * SimulationClock.DEFAULT_TICK_PERIOD_MILLIS);
+        assertTrue(clock.getStatistics().getTicks() < TICKS / 5, "Ticks run: " + clock.getStatistics().getTicks());
+    }
+
+    /* A robot given a target after idle ticks were skipped moves at the next tick */
+    @Test
+    public void testWokenRobotMovesAfterSkippedTicks() {
+        final Factory factory = createIdleFactory();
+        factory.setTickEngine(new EventDrivenTickEngine());
+
+        factory.behave();
+
+        final long skippedTicks = factory.skipIdleTicks();
+        assertTrue(skippedTicks > 0);
+        assertEquals(1 + skippedTicks, factory.getTickCount());
+
+        final String idleState = state(factory);
+        setTargets(factory, true);
+        assertEquals(0, factory.skipIdleTicks());
+
+        factory.behave();
+        assertNotEquals(idleState, state(factory));
+    }
+
+    /* Factory whose first robot has no target */
+    private static Factory createFactory() {
+        final Factory factory = TestFactories.createPuckFactory(ROBOTS, (puckFactory, index) ->
+            new AStarFactoryPathFinder(puckFactory, TestFactories.RESOLUTION));
+        setTargets(factory, false);
+
+        return factory;
+    }
+
+    /* Factory of a single robot, without target */
+    private static Factory createIdleFactory() {
+        final Factory factory = TestFactories.createPuckFactory(1, (puckFactory, index) ->
+            new AStarFactoryPathFinder(puckFactory, TestFactories.RESOLUTION));
+        setTargets(factory, false);
+
+        return factory;
+    }
+
+    /* Gives the first robot the two machines as targets, or none, before it visited any */
+    private static void setTargets(final Factory factory,
+                                   final boolean targets) {
+        final Robot robot = robot(factory);
+        final List<Component> machines = machines(factory);
+
+        for (final Component machine : machines) {
+            robot.removeTargetComponent(machine);
+        }
+
+        if (targets) {
+            for (final Component machine : machines) {
+                robot.addTargetComponent(machine);
+            }
+        }
+    }
+
+    private static Robot robot(final Factory factory) {
+        for (final Figure figure : factory.getFigures()) {
+            if (figure instanceof Robot) {
+                return (Robot) figure;
+            }
+        }
+
+        throw new IllegalStateException("No robot in " + factory.getName());
+    }
+
+    private static List<Component> machines(final Factory factory) {
+        final List<Component> machines = new ArrayList<>();
+
+        for (final Figure figure : factory.getFigures()) {
+            if (figure.getName().startsWith("Machine")) {
+                machines.add((Component) figure);
+            }
+        }
+
+        return machines;
+    }
+
+    /* Positions and states of all the components, in insertion order */
+    private static String state(final Factory factory) {
+        final List<String> components = new ArrayList<>();
+
+        for (final Figure figure : factory.getFigures()) {
+            final Component component = (Component) figure;
+            components.add(component.getName() + "@" + component.getxCoordinate() + "," + component.getyCoordinate() +
+                           ":" + component.getStyle());
+        }
+
+        return components.toString();
+    }
+}
@@ -0,0 +1,110 @@
+package fr.tp.inf112.projects.robotsim.test;
+
+/* Java related packages */
+import java.util.function.BiFunction;
+
+/* RobotSim related packages */
+import fr.tp.inf112.projects.canvas.model.impl.BasicVertex;
+import fr.tp.inf112.projects.robotsim.model.Area;
+import fr.tp.inf112.projects.robotsim.model.Battery;
+import fr.tp.inf112.projects.robotsim.model.ChargingStation;
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Conveyor;
+import fr.tp.inf112.projects.robotsim.model.Door;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Machine;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.Room;
+import fr.tp.inf112.projects.robotsim.model.path.FactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.shapes.BasicPolygonShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+/**
+ * Factories shared by the tests and the benchmarks.
+ */
+final class TestFactories {
+
+    static final int RESOLUTION = 5;
+
+    static final int ROOM_SIZE = 60;
+
+    static final int ROOM_SPACING = 100;
+
+    private TestFactories() {
+    }
+
+    /**
+     * Demo factory of the simulator application: two production rooms, a conveyor and a closed
+     * charging room. Robots are laid out in rows from the top left corner and go back and forth
+     * between the two machines, every other robot starting with the second one.
+     *
+     * @param pathFinders gives the path finder of each robot, from the factory and the robot index.
+     */
+    static Factory createPuckFactory(final int robots,
+                                     final BiFunction<Factory, Integer, FactoryPathFinder> pathFinders) {
+        final Factory factory = new Factory(200, 200, "Simple Test Puck Factory");
+        factory.setId("Simple_Test_Puck_Factory.factory");
+
+        final Room room1 = new Room(factory, new RectangularShape(20, 20, 75, 75), "Production Room 1");
+        new Door(room1, Room.WALL.BOTTOM, 10, 20, true, "Entrance");
+        final Area area1 = new Area(room1, new RectangularShape(35, 35, 50, 50), "Production Area 1");
+        final Machine machine1 = new Machine(area1, new RectangularShape(50, 50, 15, 15), "Machine 1");
+
+        final Room room2 = new Room(factory, new RectangularShape(120, 22, 75, 75), "Production Room 2");
+        new Door(room2, Room.WALL.LEFT, 10, 20, true, "Entrance");
+        final Area area2 = new Area(room2, new RectangularShape(135, 35, 50, 50), "Production Area 1");
+        final Machine machine2 = new Machine(area2, new RectangularShape(150, 50, 15, 15), "Machine 1");
+
+        final BasicPolygonShape conveyorShape = new BasicPolygonShape();
+        conveyorShape.addVertex(new BasicVertex(10, 165));
+        conveyorShape.addVertex(new BasicVertex(20, 165));
+        conveyorShape.addVertex(new BasicVertex(20, 192));
+        conveyorShape.addVertex(new BasicVertex(23, 192));
+        conveyorShape.addVertex(new BasicVertex(23, 195));
+        conveyorShape.addVertex(new BasicVertex(7, 195));
+        conveyorShape.addVertex(new BasicVertex(7, 192));
+        conveyorShape.addVertex(new BasicVertex(10, 192));
+        new Conveyor(factory, conveyorShape, "Conveyor 1");
+
+        final Room chargingRoom = new Room(factory, new RectangularShape(125, 125, 50, 50), "Charging Room");
+        new Door(chargingRoom, Room.WALL.RIGHT, 10, 20, false, "Entrance");
+        new ChargingStation(factory, new RectangularShape(150, 145, 15, 15), "Charging Station");
+
+        for (int index = 0; index < robots; index++) {
+            final Robot robot = new Robot(factory, pathFinders.apply(factory, index),
+                                          new CircularShape(5 + 10 * (index % 18), 5 + 10 * (index / 18), 2),
+                                          new Battery(10), "Robot " + index);
+            robot.addTargetComponent(index % 2 == 0 ? machine1 : machine2);
+            robot.addTargetComponent(index % 2 == 0 ? machine2 : machine1);
+        }
+
+        return factory;
+    }
+
+    /* Square factory filled with a grid of empty rooms, each with an open door on a different wall */
+    static Factory createRoomGrid(final int factorySize) {
+        final Factory factory = new Factory(factorySize, factorySize, "Room Grid Factory");
+        final Room.WALL[] walls = Room.WALL.values();
+        int roomIndex = 0;
+
+        for (int xCoordinate = 20; xCoordinate + ROOM_SIZE < factorySize; xCoordinate += ROOM_SPACING) {
+            for (int yCoordinate = 20; yCoordinate + ROOM_SIZE < factorySize; yCoordinate += ROOM_SPACING) {
+                final Room room = new Room(factory, new RectangularShape(xCoordinate, yCoordinate, ROOM_SIZE, ROOM_SIZE),
+                                           "Room " + roomIndex);
+                new Door(room, walls[roomIndex % walls.length], 20, 35, true, "Door " + roomIndex);
+                roomIndex++;
+            }
+        }
+
+        return factory;
+    }
+
+    /* Component of one pixel outside of any factory, to ask for paths between arbitrary points */
+    static Component endPoint(final int xCoordinate,
+                              final int yCoordinate) {
+        return new Component(null, new RectangularShape(xCoordinate, yCoordinate, 1, 1), "End point") {
+            private static final long serialVersionUID = 1L;
+        };
+    }
+}
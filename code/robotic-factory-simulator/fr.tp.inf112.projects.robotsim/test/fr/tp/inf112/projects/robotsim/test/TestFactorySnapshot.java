@@ -0,0 +1,168 @@
+package fr.tp.inf112.projects.robotsim.test;
+
+/* Java related packages */
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/* Kafka related packages */
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+
+/* JUnit related packages */
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/* RobotSim related packages */
+import fr.tp.inf112.projects.canvas.controller.Observer;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.FactoryBinaryCodec;
+import fr.tp.inf112.projects.robotsim.model.FactoryChange;
+import fr.tp.inf112.projects.robotsim.model.FactoryModelChangedNotifier;
+import fr.tp.inf112.projects.robotsim.model.FactorySnapshot;
+import fr.tp.inf112.projects.robotsim.model.FactorySnapshotSerializer;
+import fr.tp.inf112.projects.robotsim.model.SimulationServiceUtils;
+import fr.tp.inf112.projects.robotsim.model.path.AStarFactoryPathFinder;
+
+public class TestFactorySnapshot {
+
+    private static final int TICKS = 50;
+
+    /* Each observer reads the snapshot of the tick it is notified of, holding the live state of that tick */
+    @Test
+    public void testSnapshotOfNotifiedTick() {
+        final Factory factory = TestFactories.createPuckFactory(6, (puckFactory, index) ->
+            new AStarFactoryPathFinder(puckFactory, TestFactories.RESOLUTION));
+        final SnapshotRecorder recorder = new SnapshotRecorder(factory);
+        factory.setNotifier(recorder);
+
+        assertNull(factory.getSnapshot());
+
+        factory.beginSimulation();
+
+        for (int tick = 0; tick < TICKS; tick++) {
+            factory.behave();
+        }
+
+        factory.stopSimulation();
+        factory.publishStoppedState();
+
+        final int changesCount = recorder.changes.size();
+        assertTrue(changesCount > 2);
+
+        for (int index = 0; index < changesCount; index++) {
+            assertEquals(recorder.states.get(index), recorder.snapshotStates.get(index));
+        }
+
+        // Changes notified within a tick read the snapshot of that tick
+        for (int index = 0; index < changesCount - 1; index++) {
+            assertEquals(recorder.changes.get(index).getTick(), recorder.snapshots.get(index).getTick());
+        }
+
+        // Started at the first tick, stopped after the last one
+        assertTrue(recorder.changes.get(0).isStructural());
+        assertEquals(0, recorder.changes.get(0).getTick());
+        assertTrue(recorder.snapshots.get(0).getFactory().isSimulationStarted());
+
+        assertTrue(recorder.changes.get(changesCount - 1).isStructural());
+        assertEquals(TICKS, recorder.changes.get(changesCount - 1).getTick());
+        assertEquals(TICKS - 1, recorder.snapshots.get(changesCount - 1).getTick());
+        assertFalse(factory.getSnapshot().getFactory().isSimulationStarted());
+    }
+
+    /* Factories of notifiers not reading snapshots are only encoded when the simulation stops */
+    @Test
+    public void testSnapshotOnlyForReaders() {
+        final Factory factory = TestFactories.createPuckFactory(2, (puckFactory, index) ->
+            new AStarFactoryPathFinder(puckFactory, TestFactories.RESOLUTION));
+
+        factory.beginSimulation();
+        factory.behave();
+        assertNull(factory.getSnapshot());
+
+        factory.stopSimulation();
+        factory.publishStoppedState();
+        assertNotNull(factory.getSnapshot());
+    }
+
+    /* Binary keyframes are sent as the image of the snapshot, the other formats are written from its factory */
+    @Test
+    public void testKeyframeSerialization() {
+        final Factory factory = TestFactories.createPuckFactory(2, (puckFactory, index) ->
+            new AStarFactoryPathFinder(puckFactory, TestFactories.RESOLUTION));
+        factory.publishStoppedState();
+        final FactorySnapshot snapshot = factory.getSnapshot();
+
+        final Headers headers = new RecordHeaders();
+        try (final FactorySnapshotSerializer serializer = new FactorySnapshotSerializer()) {
+            assertSame(snapshot.getImage(), serializer.serialize("keyframes", headers, snapshot));
+        }
+        assertArrayEquals(FactoryBinaryCodec.MEDIA_TYPE.getBytes(StandardCharsets.UTF_8),
+                          headers.lastHeader(SimulationServiceUtils.CONTENT_TYPE_HEADER).value());
+
+        try (final FactorySnapshotSerializer serializer = new FactorySnapshotSerializer((topic, decoded) ->
+                 decoded.getName().getBytes(StandardCharsets.UTF_8))) {
+            assertArrayEquals(factory.getName().getBytes(StandardCharsets.UTF_8),
+                              serializer.serialize("keyframes", new RecordHeaders(), snapshot));
+        }
+    }
+
+    /* Notifier checking the snapshot against the factory when a change is notified */
+    private static final class SnapshotRecorder implements FactoryModelChangedNotifier {
+
+        private final Factory factory;
+
+        private final List<FactoryChange> changes = new ArrayList<>();
+
+        private final List<FactorySnapshot> snapshots = new ArrayList<>();
+
+        private final List<String> states = new ArrayList<>();
+
+        private final List<String> snapshotStates = new ArrayList<>();
+
+        SnapshotRecorder(final Factory factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public boolean isSnapshotReader() {
+            return true;
+        }
+
+        @Override
+        public void notifyObservers() {
+        }
+
+        @Override
+        public void notifyObservers(final FactoryChange change) {
+            final FactorySnapshot snapshot = factory.getSnapshot();
+            assertNotNull(snapshot);
+
+            changes.add(change);
+            snapshots.add(snapshot);
+            states.add(factory.getFigures().toString());
+            snapshotStates.add(snapshot.getFactory().getFigures().toString());
+        }
+
+        @Override
+        public boolean addObserver(final Observer observer) {
+            return false;
+        }
+
+        @Override
+        public boolean removeObserver(final Observer observer) {
+            return false;
+        }
+
+        @Override
+        public List<Observer> getObservers() {
+            return List.of();
+        }
+    }
+}
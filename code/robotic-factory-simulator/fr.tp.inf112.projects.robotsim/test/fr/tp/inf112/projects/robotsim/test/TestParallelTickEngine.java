@@ -0,0 +1,99 @@
+package fr.tp.inf112.projects.robotsim.test;
+
+/* Java related packages */
+import java.util.ArrayList;
+import java.util.List;
+
+/* JUnit related packages */
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/* RobotSim related packages */
+import fr.tp.inf112.projects.canvas.model.Figure;
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.ParallelTickEngine;
+import fr.tp.inf112.projects.robotsim.model.path.AStarFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.FactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.JGraphTDijkstraFactoryPathFinder;
+
+public class TestParallelTickEngine {
+
+    private static final int ROBOTS = 24;
+
+    private static final int TICKS = 300;
+
+    private static final long SEED = 42;
+
+    @Test
+    public void testSameStateWhateverTheParallelism() {
+        final String singleThreaded = run(new ParallelTickEngine(1, SEED));
+
+        assertEquals(singleThreaded, run(new ParallelTickEngine(4, SEED)));
+        assertEquals(singleThreaded, run(new ParallelTickEngine(4, SEED)));
+    }
+
+    @Test
+    public void testSameStateInInsertionOrder() {
+        assertEquals(run(new ParallelTickEngine(1)), run(new ParallelTickEngine(4)));
+    }
+
+    @Test
+    public void testRobotsMove() {
+        final Factory factory = createFactory();
+        final String initialState = state(factory);
+
+        try (ParallelTickEngine engine = new ParallelTickEngine(4, SEED)) {
+            factory.setTickEngine(engine);
+
+            for (int tick = 0; tick < TICKS; tick++) {
+                factory.behave();
+            }
+        }
+
+        assertNotEquals(initialState, state(factory));
+        assertEquals(TICKS, factory.getTickCount());
+    }
+
+    private static String run(final ParallelTickEngine engine) {
+        final Factory factory = createFactory();
+
+        try (engine) {
+            factory.setTickEngine(engine);
+
+            for (int tick = 0; tick < TICKS; tick++) {
+                factory.behave();
+            }
+        }
+
+        return state(factory);
+    }
+
+    /* Positions and states of all the components, in insertion order */
+    private static String state(final Factory factory) {
+        final List<String> components = new ArrayList<>();
+
+        for (final Figure figure : factory.getFigures()) {
+            final Component component = (Component) figure;
+            components.add(component.getName() + "@" + component.getxCoordinate() + "," + component.getyCoordinate() +
+                           ":" + component.getStyle());
+        }
+
+        return components.toString();
+    }
+
+    /* Robots of both rooms, half of them sharing a path finder which is not thread safe */
+    private static Factory createFactory() {
+        final FactoryPathFinder[] pathFinders = new FactoryPathFinder[2];
+
+        return TestFactories.createPuckFactory(ROBOTS, (factory, index) -> {
+            if (pathFinders[0] == null) {
+                pathFinders[0] = new AStarFactoryPathFinder(factory, TestFactories.RESOLUTION);
+                pathFinders[1] = new JGraphTDijkstraFactoryPathFinder(factory, TestFactories.RESOLUTION);
+            }
+
+            return pathFinders[index % 2];
+        });
+    }
+}
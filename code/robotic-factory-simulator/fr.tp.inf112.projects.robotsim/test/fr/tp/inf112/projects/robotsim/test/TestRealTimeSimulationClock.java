@@ -0,0 +1,43 @@
+package fr.tp.inf112.projects.robotsim.test;
+
+/* JUnit related packages */
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/* RobotSim related packages */
+import fr.tp.inf112.projects.robotsim.model.simulation.ClockStatistics;
+import fr.tp.inf112.projects.robotsim.model.simulation.SimulationClock;
+
+public class TestRealTimeSimulationClock {
+
+    private static final long TICK_PERIOD_MILLIS = 1;
+
+    /* Wall clock time the simulation falls behind, well over the periods it may catch up */
+    private static final long STALL_MILLIS = 50;
+
+    /* Ticks dropped after a stall are not simulated time, only the ticks handed out are */
+    @Test
+    public void testSkippedTicksNotSimulated() throws InterruptedException {
+        final SimulationClock clock = SimulationClock.realTime(TICK_PERIOD_MILLIS);
+
+        clock.awaitNextTick();
+        Thread.sleep(STALL_MILLIS);
+        clock.awaitNextTick();
+
+        final ClockStatistics statistics = clock.getStatistics();
+        assertTrue(statistics.getSkippedTicks() > 0);
+        assertEquals(statistics.getTicks() * TICK_PERIOD_MILLIS, clock.getSimulatedTimeMillis());
+    }
+
+    /* Idle ticks skipped by the simulation are covered, so they count */
+    @Test
+    public void testIdleTicksSimulated() throws InterruptedException {
+        final SimulationClock clock = SimulationClock.realTime(TICK_PERIOD_MILLIS);
+
+        clock.awaitNextTick();
+        clock.skipTicks(3);
+
+        assertEquals(4 * TICK_PERIOD_MILLIS, clock.getSimulatedTimeMillis());
+    }
+}
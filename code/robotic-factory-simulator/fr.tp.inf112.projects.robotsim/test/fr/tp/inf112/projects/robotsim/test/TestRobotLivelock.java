@@ -0,0 +1,55 @@
+package fr.tp.inf112.projects.robotsim.test;
+
+/* JUnit related packages */
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/* RobotSim related packages */
+import fr.tp.inf112.projects.robotsim.model.Battery;
+import fr.tp.inf112.projects.robotsim.model.ChargingStation;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.path.AStarFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+public class TestRobotLivelock {
+
+    private static final int TICKS = 100;
+
+    /* Two robots heading for each other's position escape to a free neighbouring position, even when
+       the first neighbouring position tried is taken by a parked robot */
+    @Test
+    public void testEscapeSkipsOccupiedNeighbour() {
+        final Factory factory = new Factory(100, 50, "Livelock Test Factory");
+        final ChargingStation eastStation = new ChargingStation(factory, new RectangularShape(80, 20, 10, 10), "East Station");
+        final ChargingStation westStation = new ChargingStation(factory, new RectangularShape(5, 20, 10, 10), "West Station");
+
+        final Robot eastbound = createRobot(factory, 40, 20, "Eastbound Robot");
+        eastbound.addTargetComponent(eastStation);
+
+        final Robot westbound = createRobot(factory, 45, 20, "Westbound Robot");
+        westbound.addTargetComponent(westStation);
+
+        // First position the westbound robot tries to escape to, below on its right
+        createRobot(factory, 45 + westbound.getWidth(), 20 + westbound.getHeight(), "Parked Robot");
+
+        boolean crossed = false;
+
+        for (int tick = 0; tick < TICKS && !crossed; tick++) {
+            factory.behave();
+
+            crossed = eastbound.getxCoordinate() > 45 && westbound.getxCoordinate() < 40;
+        }
+
+        assertTrue(crossed, "Eastbound robot at " + eastbound.getPosition() + ", westbound robot at " + westbound.getPosition());
+    }
+
+    private static Robot createRobot(final Factory factory,
+                                     final int xCoordinate,
+                                     final int yCoordinate,
+                                     final String name) {
+        return new Robot(factory, new AStarFactoryPathFinder(factory, TestFactories.RESOLUTION, false, false),
+                         new CircularShape(xCoordinate, yCoordinate, 2), new Battery(10), name);
+    }
+}
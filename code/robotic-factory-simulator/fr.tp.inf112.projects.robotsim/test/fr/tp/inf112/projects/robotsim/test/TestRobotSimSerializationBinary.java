@@ -0,0 +1,132 @@
+package fr.tp.inf112.projects.robotsim.test;
+
+/* Java related packages */
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/* JUnit related packages */
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/* RobotSim related packages */
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.FactoryBinaryCodec;
+import fr.tp.inf112.projects.robotsim.model.FactoryJsonCodec;
+import fr.tp.inf112.projects.robotsim.model.path.AStarFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.CachingFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.CooperativeFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.CustomDijkstraFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.DStarLiteFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.DistanceFieldFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.FactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.JGraphTDijkstraFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.PathCache;
+
+public class TestRobotSimSerializationBinary {
+
+    private final static Logger LOGGER = Logger.getLogger(TestRobotSimSerializationBinary.class.getName());
+
+    private static Factory createFactory() {
+        return TestFactories.createPuckFactory(1, (factory, index) ->
+            new CustomDijkstraFactoryPathFinder(factory, TestFactories.RESOLUTION));
+    }
+
+    @Test
+    public void testSerialization()
+    throws IOException {
+        final Factory factory = createFactory();
+
+        // Move the robot so that its position is not the initial one
+        for (int tick = 0; tick < 10; tick++) {
+            factory.behave();
+        }
+
+        final byte[] factoryAsBytes = FactoryBinaryCodec.encode(factory);
+        LOGGER.info("Binary factory of " + factoryAsBytes.length + " bytes");
+
+        final Factory roundTrip = FactoryBinaryCodec.decode(factoryAsBytes);
+        LOGGER.info(roundTrip.toString());
+
+        assertEquals(factory.getId(), roundTrip.getId());
+        assertEquals(factory.getFigures().size(), roundTrip.getFigures().size());
+        assertEquals(factory.getFigures().toString(), roundTrip.getFigures().toString());
+        assertArrayEquals(factoryAsBytes, FactoryBinaryCodec.encode(roundTrip));
+    }
+
+    @Test
+    public void testSmallerThanJson()
+    throws IOException {
+        final Factory factory = TestFactories.createPuckFactory(12, (puckFactory, index) ->
+            new CustomDijkstraFactoryPathFinder(puckFactory, TestFactories.RESOLUTION));
+        final byte[] factoryAsBytes = FactoryBinaryCodec.encode(factory);
+        final byte[] factoryAsJson = FactoryJsonCodec.getFactoryWriter().writeValueAsBytes(factory);
+
+        LOGGER.info("Binary factory of " + factoryAsBytes.length + " bytes, JSON factory of " + factoryAsJson.length + " bytes");
+
+        assertTrue(factoryAsBytes.length * 4 < factoryAsJson.length);
+    }
+
+    /* Re-encoding the decoded factory gives the same bytes only if its path finders share one cache again */
+    @Test
+    public void testSharedPathCache()
+    throws IOException {
+        final PathCache[] pathCache = new PathCache[1];
+        final Factory factory = TestFactories.createPuckFactory(4, (puckFactory, index) -> {
+            if (pathCache[0] == null) {
+                pathCache[0] = new PathCache(puckFactory, TestFactories.RESOLUTION, 100);
+            }
+
+            return new CachingFactoryPathFinder(index % 2 == 0
+                ? new JGraphTDijkstraFactoryPathFinder(puckFactory, TestFactories.RESOLUTION)
+                : new CustomDijkstraFactoryPathFinder(puckFactory, TestFactories.RESOLUTION), pathCache[0]);
+        });
+
+        final byte[] factoryAsBytes = FactoryBinaryCodec.encode(factory);
+
+        assertArrayEquals(factoryAsBytes, FactoryBinaryCodec.encode(FactoryBinaryCodec.decode(factoryAsBytes)));
+    }
+
+    /* Path finders are rebuilt with their settings, not with those of their two arguments constructors */
+    @Test
+    public void testPathFinderSettings()
+    throws IOException {
+        final Factory factory = TestFactories.createPuckFactory(5, (puckFactory, index) -> {
+            final FactoryPathFinder[] pathFinders = {
+                new AStarFactoryPathFinder(puckFactory, TestFactories.RESOLUTION, true, true),
+                new AStarFactoryPathFinder(puckFactory, TestFactories.RESOLUTION, false, false),
+                new DStarLiteFactoryPathFinder(puckFactory, TestFactories.RESOLUTION, true, 30),
+                new DistanceFieldFactoryPathFinder(puckFactory, TestFactories.RESOLUTION, true),
+                new CooperativeFactoryPathFinder(puckFactory, TestFactories.RESOLUTION, 7)
+            };
+
+            return pathFinders[index];
+        });
+
+        final byte[] factoryAsBytes = FactoryBinaryCodec.encode(factory);
+
+        assertArrayEquals(factoryAsBytes, FactoryBinaryCodec.encode(FactoryBinaryCodec.decode(factoryAsBytes)));
+    }
+
+    /* Only the path finders of the model are rebuilt, never a class named by the data */
+    @Test
+    public void testUnknownPathFinder() {
+        final Factory factory = TestFactories.createPuckFactory(1, (puckFactory, index) ->
+            new CustomDijkstraFactoryPathFinder(puckFactory, TestFactories.RESOLUTION) {
+                private static final long serialVersionUID = 1L;
+            });
+
+        assertThrows(IllegalArgumentException.class, () -> FactoryBinaryCodec.encode(factory));
+    }
+
+    @Test
+    public void testTruncatedData() {
+        final byte[] factoryAsBytes = FactoryBinaryCodec.encode(createFactory());
+
+        assertThrows(IOException.class,
+                     () -> FactoryBinaryCodec.decode(Arrays.copyOf(factoryAsBytes, factoryAsBytes.length / 2)));
+    }
+}
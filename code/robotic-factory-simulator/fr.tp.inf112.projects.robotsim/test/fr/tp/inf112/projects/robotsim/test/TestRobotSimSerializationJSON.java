@@ -1,52 +1,28 @@
 package fr.tp.inf112.projects.robotsim.test;
 
 /* Java related packages */
-import java.util.ArrayList;
-import java.util.LinkedHashSet;
+import java.io.IOException;
 import java.util.logging.Logger;
 
 /* JUnit related packages */
 import org.junit.jupiter.api.Test;
 
-/* Jackson related packages */
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
-import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
-import com.fasterxml.jackson.core.JsonProcessingException;
-
 /* RobotSim related packages */
-import fr.tp.inf112.projects.canvas.model.impl.BasicVertex;
 import fr.tp.inf112.projects.robotsim.model.Area;
-import fr.tp.inf112.projects.robotsim.model.Component;
 import fr.tp.inf112.projects.robotsim.model.Door;
-import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
 import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
 import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.FactoryJsonCodec;
 import fr.tp.inf112.projects.robotsim.model.Machine;
 import fr.tp.inf112.projects.robotsim.model.Room;
 
 public class TestRobotSimSerializationJSON {
 
-	private final ObjectMapper objectMapper;
     private final static Logger LOGGER = Logger.getLogger(TestRobotSimSerializationJSON.class.getName());
 
-	public TestRobotSimSerializationJSON() {
-		this.objectMapper = new ObjectMapper();
-
-        PolymorphicTypeValidator typeValidator = BasicPolymorphicTypeValidator.builder()
-            .allowIfSubType(PositionedShape.class.getPackageName())
-            .allowIfSubType(Component.class.getPackageName())
-            .allowIfSubType(BasicVertex.class.getPackageName())
-            .allowIfSubType(ArrayList.class.getName())
-            .allowIfSubType(LinkedHashSet.class.getName())
-            .build();
-
-        this.objectMapper.activateDefaultTyping(typeValidator, ObjectMapper.DefaultTyping.NON_FINAL);
-	}
-
 	@Test
 	public void testSerialization()
-	throws JsonProcessingException {
+	throws IOException {
 
         /* Create factory with rooms model */
         final Factory factory  = new Factory(200, 200, "Simple Test Puck Factory");
@@ -71,9 +47,9 @@ public class TestRobotSimSerializationJSON {
         final Machine machine2 = new Machine(area2, new RectangularShape( 150, 50,
                                           15, 15 ), "Machine 1");
 
-	    final String factoryAsJsonString = objectMapper.writeValueAsString(factory);
+	    final String factoryAsJsonString = FactoryJsonCodec.writeFactory(factory);
 	    LOGGER.info(factoryAsJsonString);
-	    final Factory roundTrip = objectMapper.readValue(factoryAsJsonString, Factory.class);
+	    final Factory roundTrip = FactoryJsonCodec.readFactory(factoryAsJsonString);
         LOGGER.info(roundTrip.toString());
 	}
 }
@@ -1,45 +1,88 @@
 package com.example.controller;
 
 import fr.tp.inf112.projects.robotsim.model.FactoryModelChangedNotifier;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.CompletableFuture;
-import org.apache.kafka.clients.admin.AdminClient;
-import org.apache.kafka.clients.admin.AdminClientConfig;
-import org.apache.kafka.clients.admin.NewTopic;
-import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.messaging.support.MessageBuilder;
 import fr.tp.inf112.projects.canvas.controller.Observer;
 import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.FactoryChange;
+import fr.tp.inf112.projects.robotsim.model.FactoryDelta;
+import fr.tp.inf112.projects.robotsim.model.FactorySnapshot;
+import fr.tp.inf112.projects.robotsim.model.SimulationServiceUtils;
 import org.springframework.messaging.Message;
 import org.springframework.kafka.support.SendResult;
 import java.util.List;
-import java.util.Map;
 
+/**
+ * Publishes the changes of a simulated factory to Kafka.
+ *
+ * The whole factory is only published as a keyframe, on a compacted topic, when the simulation
+ * starts, when components are added or removed and every KEYFRAME_INTERVAL ticks. Other ticks are
+ * published on the simulation topic as deltas holding the new positions and states of the changed
+ * components only.
+ *
+ * Keyframes are written from the snapshot published by the factory and carry its tick, never from
+ * the live model, which the simulation thread may be changing while a web thread starts or stops
+ * the simulation. Binary keyframes are the image of the snapshot as is.
+ *
+ * Records are keyed by factory, or deltas by component when the topic settings ask for it, and the
+ * simulation topic is created with the configured number of partitions.
+ *
+ * The topics are requested from the shared topic manager without waiting for them. Changes
+ * happening before the topics exist are not published, the first change afterwards is published
+ * as a keyframe.
+ *
+ * Every change is also handed to the stream hub, which pushes it to the Server-Sent Event clients
+ * of the factory whether or not Kafka is reachable.
+ */
 public class KafkaFactoryModelChangeNotifier implements FactoryModelChangedNotifier {
 
+    /* Number of ticks after which a new keyframe is published */
+    private static final long KEYFRAME_INTERVAL = 100;
+
     /* Store a factory model inside the notifier */
     private Factory factoryModel;
     private String baseId;
-    private KafkaTemplate<String, Factory> simulationEventTemplate;
+    private String topicName;
+    private String keyframeTopicName;
+    private KafkaTemplate<String, FactorySnapshot> simulationEventTemplate;
+    private KafkaTemplate<String, FactoryDelta> deltaEventTemplate;
+    private KafkaTopicSettings topicSettings;
+    private SimulationTopicManager topicManager;
+    private SimulationStreamHub streamHub;
+    /* Completed once the topics of the factory exist, requested again by any thread if it failed */
+    private volatile CompletableFuture<Void> topicsCreated;
+    /* Tick of the last published keyframe, negative if none was published yet or if a record was
+       lost. Written by the simulation thread, by the threads starting or stopping the simulation
+       and by the producer thread when a send fails */
+    private volatile long lastKeyframeTick = -1;
     private static final java.util.logging.Logger LOGGER = java.util.logging.Logger.getLogger(KafkaFactoryModelChangeNotifier.class.getName());
 
-    public KafkaFactoryModelChangeNotifier(Factory factoryModel, KafkaTemplate<String, Factory> simulationEventTemplate) {
+    public KafkaFactoryModelChangeNotifier(Factory factoryModel,
+                                           KafkaTemplate<String, FactorySnapshot> simulationEventTemplate,
+                                           KafkaTemplate<String, FactoryDelta> deltaEventTemplate,
+                                           KafkaTopicSettings topicSettings,
+                                           SimulationTopicManager topicManager,
+                                           SimulationStreamHub streamHub) {
         this.factoryModel = factoryModel;
+        this.topicSettings = topicSettings;
+        this.topicManager = topicManager;
+        this.streamHub = streamHub;
+        this.topicName = SimulationServiceUtils.getTopicName(factoryModel);
+        this.keyframeTopicName = SimulationServiceUtils.getKeyframeTopicName(factoryModel);
 
-        /* Create a Kafka topic to which changes in factory are published */
-        try (AdminClient admin = AdminClient.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092"))) {
-            String rawId = factoryModel.getId();
-            this.baseId = rawId.substring(rawId.lastIndexOf('/') + 1).replaceFirst("\\.factory$", ""); // Puck_Factory_1764007783815
+        String rawId = factoryModel.getId();
+        this.baseId = rawId.substring(rawId.lastIndexOf('/') + 1).replaceFirst("\\.factory$", ""); // Puck_Factory_1764007783815
 
-            admin.createTopics(java.util.List.of(new NewTopic("simulation-" + this.baseId, 1, (short)1)))
-            .all().get();
-        } catch (Exception e) {
-            LOGGER.severe("Failed to create Kafka topic for simulation-" + this.baseId + ": " + e.getMessage());
-        }
+        /* Request the Kafka topics to which changes in factory are published, without waiting */
+        this.topicsCreated = topicManager.ensureTopics(factoryModel);
 
-        /* Store the Kafka template used to publish events */
+        /* Store the Kafka templates used to publish events */
         this.simulationEventTemplate = simulationEventTemplate;
+        this.deltaEventTemplate = deltaEventTemplate;
     }
 
     @Override
@@ -59,23 +102,110 @@ public class KafkaFactoryModelChangeNotifier implements FactoryModelChangedNotif
         return null;
     }
 
+    /* Keyframes and the stream clients are sent the snapshot of the tick, as are the web clients */
+    @Override
+    public boolean isSnapshotReader() {
+        return true;
+    }
+
     @Override
     public void notifyObservers() {
-        /* Create a message to be send to the kafka broker */
-        final Message<Factory> factoryMessage = MessageBuilder.withPayload(factoryModel)
-            .setHeader(KafkaHeaders.TOPIC, "simulation-" + this.baseId)
+        /* Started or stopped, the streams need the whole factory */
+        streamHub.publish(factoryModel.getId(), null);
+
+        if (!topicsExist()) {
+            return;
+        }
+
+        publishKeyframe();
+    }
+
+    @Override
+    public void notifyObservers(final FactoryChange change) {
+        /* Structural changes cannot be described by a delta, the streams then send a keyframe */
+        final FactoryDelta delta = change.isStructural() ? null : factoryModel.createDelta(change);
+        streamHub.publish(factoryModel.getId(), delta);
+
+        if (!topicsExist()) {
+            return;
+        }
+
+        if (change.isStructural() || lastKeyframeTick < 0 || change.getTick() - lastKeyframeTick >= KEYFRAME_INTERVAL) {
+            /* A keyframe older than the change does not hold it, the delta is then published as well */
+            if (publishKeyframe() >= change.getTick() || delta == null) {
+                return;
+            }
+        }
+
+        if (delta.size() == 0) {
+            return;
+        }
+
+        if (!topicSettings.isKeyByComponent()) {
+            publishDelta(delta, baseId);
+            return;
+        }
+
+        /* Each component keeps its partition, so that its own changes stay in order */
+        for (final FactoryDelta componentDelta : delta.split()) {
+            publishDelta(componentDelta, baseId + "/" + componentDelta.getComponentIds()[0]);
+        }
+    }
+
+    private void publishDelta(final FactoryDelta delta, final String key) {
+        /* Create a message holding the delta of the tick */
+        final Message<FactoryDelta> deltaMessage = MessageBuilder.withPayload(delta)
+            .setHeader(KafkaHeaders.TOPIC, topicName)
+            .setHeader(KafkaHeaders.KEY, key)
             .build();
 
-        /* Create completable future variable and register callback
-           for when the broker responds */
-        final CompletableFuture<SendResult<String, Factory>> sendResult =
-            simulationEventTemplate.send(factoryMessage);
+        checkSendResult(deltaEventTemplate.send(deltaMessage));
+    }
+
+    /* Returns the tick of the published keyframe, negative if the factory publishes no snapshot */
+    private long publishKeyframe() {
+        final FactorySnapshot snapshot = factoryModel.getSnapshot();
+
+        if (snapshot == null) {
+            return -1;
+        }
+
+        /* Create a message to be send to the kafka broker, keyed so that compaction keeps the last one */
+        final Message<FactorySnapshot> factoryMessage = MessageBuilder.withPayload(snapshot)
+            .setHeader(KafkaHeaders.TOPIC, keyframeTopicName)
+            .setHeader(KafkaHeaders.KEY, baseId)
+            .setHeader(SimulationServiceUtils.TICK_HEADER, Long.toString(snapshot.getTick()).getBytes(StandardCharsets.UTF_8))
+            .build();
+
+        /* Set before sending, a send failing at once resets it */
+        lastKeyframeTick = snapshot.getTick();
+        checkSendResult(simulationEventTemplate.send(factoryMessage));
+
+        return snapshot.getTick();
+    }
+
+    /* Tells whether the topics can be published to, requesting them again if their creation failed */
+    private boolean topicsExist() {
+        if (!topicsCreated.isDone()) {
+            return false;
+        }
+
+        if (topicsCreated.isCompletedExceptionally()) {
+            topicsCreated = topicManager.ensureTopics(factoryModel);
+            return false;
+        }
+
+        return true;
+    }
 
-        /* Check if broker returned an error */
+    /* Register a callback for when the broker responds */
+    private void checkSendResult(final CompletableFuture<? extends SendResult<String, ?>> sendResult) {
+        /* Nobody waits for the send, an exception thrown from here would be lost. The consumers
+           missed a keyframe or a delta, the next change is then published as a keyframe */
         sendResult.whenComplete((result, ex) -> {
             if (ex != null) {
                 LOGGER.severe("Failed to notify observers via Kafka: " + ex.getMessage());
-                throw new RuntimeException(ex);
+                lastKeyframeTick = -1;
             }
         });
     }
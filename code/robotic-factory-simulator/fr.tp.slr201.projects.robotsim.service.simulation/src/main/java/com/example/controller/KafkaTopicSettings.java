@@ -0,0 +1,68 @@
+package com.example.controller;
+
+/**
+ * Layout of the Kafka topics of the simulations and keys of their records.
+ *
+ * Records are keyed by factory so that the events of a factory keep their order, each factory then
+ * has a single partition. Deltas may be keyed by component instead, which spreads the deltas of one
+ * factory over all the partitions of its topic. Only the changes of each component then keep their
+ * order: the deltas of one tick are split across partitions and a consumer may apply the changes of
+ * a component for a tick before those of another component for an earlier tick.
+ *
+ * Deltas are only useful until the next keyframe, they are deleted after the retention time.
+ */
+public class KafkaTopicSettings {
+
+    private final String bootstrapServers;
+
+    private final int partitions;
+
+    private final short replicationFactor;
+
+    private final boolean keyByComponent;
+
+    private final long deltaRetentionMs;
+
+    public KafkaTopicSettings(final String bootstrapServers,
+                              final int partitions,
+                              final short replicationFactor,
+                              final boolean keyByComponent,
+                              final long deltaRetentionMs) {
+        if (partitions < 1 || replicationFactor < 1) {
+            throw new IllegalArgumentException("Topics need at least one partition and one replica.");
+        }
+
+        this.bootstrapServers  = bootstrapServers;
+        this.partitions        = partitions;
+        this.replicationFactor = replicationFactor;
+        this.keyByComponent    = keyByComponent;
+        this.deltaRetentionMs  = deltaRetentionMs;
+    }
+
+    public String getBootstrapServers() {
+        return bootstrapServers;
+    }
+
+    /* Records keyed by factory all go to the same partition, the others would stay idle */
+    public int getPartitions() {
+        return keyByComponent ? partitions : 1;
+    }
+
+    public short getReplicationFactor() {
+        return replicationFactor;
+    }
+
+    public boolean isKeyByComponent() {
+        return keyByComponent;
+    }
+
+    public long getDeltaRetentionMs() {
+        return deltaRetentionMs;
+    }
+
+    @Override
+    public String toString() {
+        return "KafkaTopicSettings [bootstrapServers=" + bootstrapServers + ", partitions=" + partitions +
+               ", replicationFactor=" + replicationFactor + ", keyByComponent=" + keyByComponent + ", deltaRetentionMs=" + deltaRetentionMs + "]";
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.controller;
+
+/* Java related packets */
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+
+/* Spring related packets */
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/* RobotSim related packets */
+import fr.tp.inf112.projects.robotsim.model.EventDrivenTickEngine;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.ParallelTickEngine;
+import fr.tp.inf112.projects.robotsim.model.simulation.SimulationClock;
+
+/**
+ * Selects how the ticks of the simulated factories are run and paced.
+ *
+ * The sequential engine runs the components one after the other, as the factory does on its own.
+ * The parallel engine plans the motions of the robots concurrently and commits them in a fixed
+ * order, on one pool shared by all the factories, the common pool unless a parallelism is given.
+ * Its commit order is rotated from the seed at every tick when a seed is given. The event engine
+ * only runs the components which have something to do, and skips the ticks during which none has,
+ * for large factories whose robots are mostly idle.
+ *
+ * The real time clock gives one tick per tick period, divided by the time scale. The batch clock
+ * gives the ticks as fast as they are computed, until the simulated duration is over if one is
+ * given, for instance to simulate a shift in a few seconds.
+ *
+ * When a path cache size is given, the robots sharing a path finder reuse the paths it already
+ * found instead of searching again.
+ */
+@Component
+public class SimulationEngineSettings {
+
+    private static final Logger LOGGER = Logger.getLogger(SimulationEngineSettings.class.getName());
+
+    public static final String SEQUENTIAL_ENGINE = "sequential";
+
+    public static final String PARALLEL_ENGINE = "parallel";
+
+    public static final String EVENT_ENGINE = "event";
+
+    public static final String REAL_TIME_CLOCK = "real-time";
+
+    public static final String BATCH_CLOCK = "batch";
+
+    private final String tickEngine;
+
+    private final Long seed;
+
+    /* Pool of the parallel engines, null to use the common pool */
+    private final ForkJoinPool pool;
+
+    private final String clock;
+
+    private final long tickPeriodMillis;
+
+    private final double timeScale;
+
+    /* Simulated time after which batch simulations stop, a negative value for no limit */
+    private final long simulatedDurationMillis;
+
+    /* Maximum number of sources of each path cache, 0 to search every path */
+    private final int pathCacheSize;
+
+    public SimulationEngineSettings(@Value("${simulation.tick-engine:sequential}") final String tickEngine,
+                                    @Value("${simulation.tick-engine.parallelism:0}") final int parallelism,
+                                    @Value("${simulation.tick-engine.seed:}") final String seed,
+                                    @Value("${simulation.clock:real-time}") final String clock,
+                                    @Value("${simulation.clock.tick-period-ms:100}") final long tickPeriodMillis,
+                                    @Value("${simulation.clock.time-scale:1.0}") final double timeScale,
+                                    @Value("${simulation.clock.simulated-duration-ms:-1}") final long simulatedDurationMillis,
+                                    @Value("${simulation.path-cache.maximum-size:0}") final int pathCacheSize) {
+        this.tickEngine = tickEngine.trim().toLowerCase(Locale.ROOT);
+        this.clock      = clock.trim().toLowerCase(Locale.ROOT);
+
+        if (!SEQUENTIAL_ENGINE.equals(this.tickEngine) && !PARALLEL_ENGINE.equals(this.tickEngine) &&
+            !EVENT_ENGINE.equals(this.tickEngine)) {
+            throw new IllegalArgumentException("Unknown tick engine " + tickEngine + ".");
+        }
+
+        if (!REAL_TIME_CLOCK.equals(this.clock) && !BATCH_CLOCK.equals(this.clock)) {
+            throw new IllegalArgumentException("Unknown simulation clock " + clock + ".");
+        }
+
+        this.tickPeriodMillis        = tickPeriodMillis;
+        this.timeScale               = timeScale;
+        this.simulatedDurationMillis = simulatedDurationMillis;
+        this.pathCacheSize           = pathCacheSize;
+
+        /* Fail at startup rather than when the first simulation starts */
+        newClock();
+
+        this.seed = seed.isBlank() ? null : Long.valueOf(seed.trim());
+        this.pool = PARALLEL_ENGINE.equals(this.tickEngine) && parallelism > 0 ? new ForkJoinPool(parallelism) : null;
+
+        LOGGER.info("Simulations run with the " + this.tickEngine + " tick engine and the " + this.clock + " clock.");
+    }
+
+    public String getTickEngine() {
+        return tickEngine;
+    }
+
+    public String getClock() {
+        return clock;
+    }
+
+    /* Gives the factory its own engine, clock and path caches, before its simulation is started */
+    public void configure(final Factory factory) {
+        if (PARALLEL_ENGINE.equals(tickEngine)) {
+            factory.setTickEngine(new ParallelTickEngine(pool != null ? pool : ForkJoinPool.commonPool(), seed));
+        }
+        else if (EVENT_ENGINE.equals(tickEngine)) {
+            factory.setTickEngine(new EventDrivenTickEngine());
+        }
+
+        factory.setSimulationClock(newClock());
+
+        if (pathCacheSize > 0) {
+            factory.cachePaths(pathCacheSize);
+        }
+    }
+
+    private SimulationClock newClock() {
+        if (BATCH_CLOCK.equals(clock)) {
+            return SimulationClock.batch(tickPeriodMillis, simulatedDurationMillis);
+        }
+
+        return SimulationClock.scaled(tickPeriodMillis, timeScale);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+}
@@ -1,66 +1,127 @@
 package com.example.controller;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedHashSet;
 import java.util.Map;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
-import com.fasterxml.jackson.annotation.JsonInclude;
-import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
-import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
 
-import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
-import fr.tp.inf112.projects.robotsim.model.Component;
-import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.FactoryDelta;
+import fr.tp.inf112.projects.robotsim.model.FactoryJsonCodec;
+import fr.tp.inf112.projects.robotsim.model.FactorySnapshot;
+import fr.tp.inf112.projects.robotsim.model.FactorySnapshotSerializer;
 import org.springframework.kafka.support.serializer.JsonSerializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 
 @Configuration
 public class SimulationRegisterModuleConfig {
 
+    /* Format of the keyframes published to Kafka, either json or binary */
+    @Value("${simulation.kafka.keyframe-format:binary}")
+    private String keyframeFormat;
+
+    @Value("${simulation.kafka.bootstrap-servers:localhost:9092}")
+    private String bootstrapServers;
+
+    /* Producer profile, batching and compressing the records of the ticks */
+    @Value("${simulation.kafka.producer.linger-ms:10}")
+    private int lingerMs;
+
+    @Value("${simulation.kafka.producer.batch-size:65536}")
+    private int batchSize;
+
+    @Value("${simulation.kafka.producer.compression-type:lz4}")
+    private String compressionType;
+
+    /* Idempotence requires acks=all */
+    @Value("${simulation.kafka.producer.acks:all}")
+    private String acks;
+
+    /* Retried sends are neither duplicated nor reordered, which the deltas of a factory rely on */
+    @Value("${simulation.kafka.producer.enable-idempotence:true}")
+    private boolean enableIdempotence;
+
+    /* Only used when deltas are keyed by component */
+    @Value("${simulation.kafka.partitions:1}")
+    private int partitions;
+
+    @Value("${simulation.kafka.replication-factor:1}")
+    private short replicationFactor;
+
+    @Value("${simulation.kafka.key-by-component:false}")
+    private boolean keyByComponent;
+
+    @Value("${simulation.kafka.delta-retention-ms:600000}")
+    private long deltaRetentionMs;
+
+    /* Same mapper as the viewer, so that both sides agree on the polymorphic format */
     @Bean
     @Primary
     public ObjectMapper objectMapper() {
-        PolymorphicTypeValidator typeValidator = BasicPolymorphicTypeValidator.builder()
-                .allowIfSubType(PositionedShape.class.getPackageName())
-                .allowIfSubType(Component.class.getPackageName())
-                .allowIfSubType(ArrayList.class.getName())
-                .allowIfSubType(LinkedHashSet.class.getName())
-                .allowIfSubType("fr.tp.inf112.projects.canvas.model.impl.BasicVertex")
-                .build();
-
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.activateDefaultTyping(typeValidator, ObjectMapper.DefaultTyping.NON_FINAL);
-        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-        mapper.setSerializationInclusion(JsonInclude.Include.ALWAYS); // ensure false/0 are written
-        return mapper;
+        return FactoryJsonCodec.getFactoryMapper();
     }
 
     @Bean
-    ProducerFactory<String, Factory> producerFactory(){
+    KafkaTopicSettings kafkaTopicSettings() {
+        return new KafkaTopicSettings(bootstrapServers, partitions, replicationFactor, keyByComponent,
+                                      deltaRetentionMs);
+    }
+
+    /* Settings shared by the producers of keyframes and deltas */
+    private Map<String, Object> producerConfig() {
         final Map<String, Object> config = new HashMap<>();
-        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG,
-                   "localhost:9092");
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        config.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        config.put(ProducerConfig.ACKS_CONFIG, acks);
+        config.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, enableIdempotence);
 
-        final JsonSerializer<Factory> factorySerializer = new
-            JsonSerializer<>(objectMapper());
+        return config;
+    }
+
+    @Bean
+    ProducerFactory<String, FactorySnapshot> producerFactory(){
+        final Map<String, Object> config = producerConfig();
+
+        /* Binary keyframes are the snapshot images as is and carry a content type header, so that
+           consumers can still read JSON ones, which are written from the decoded factory */
+        final FactorySnapshotSerializer snapshotSerializer = "binary".equalsIgnoreCase(keyframeFormat)
+            ? new FactorySnapshotSerializer()
+            : new FactorySnapshotSerializer(new JsonSerializer<>(objectMapper()));
 
         return new DefaultKafkaProducerFactory<>(config,
                                                  new StringSerializer(),
-                                                 factorySerializer);
+                                                 snapshotSerializer);
     }
 
     @Bean
     @Primary
-    KafkaTemplate<String, Factory> kafkaTemplate(){
+    KafkaTemplate<String, FactorySnapshot> kafkaTemplate(){
         return new KafkaTemplate<>(producerFactory());
     }
+
+    /* Deltas only hold ids, coordinates and states, no polymorphic type information is needed */
+    @Bean
+    ProducerFactory<String, FactoryDelta> deltaProducerFactory(){
+        final Map<String, Object> config = producerConfig();
+
+        final JsonSerializer<FactoryDelta> deltaSerializer = new
+            JsonSerializer<FactoryDelta>(FactoryJsonCodec.getDeltaMapper()).noTypeInfo();
+
+        return new DefaultKafkaProducerFactory<>(config,
+                                                 new StringSerializer(),
+                                                 deltaSerializer);
+    }
+
+    @Bean
+    KafkaTemplate<String, FactoryDelta> deltaKafkaTemplate(){
+        return new KafkaTemplate<>(deltaProducerFactory());
+    }
 }
\ No newline at end of file
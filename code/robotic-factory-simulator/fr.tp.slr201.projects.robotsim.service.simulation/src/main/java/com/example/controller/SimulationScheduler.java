@@ -0,0 +1,203 @@
+package com.example.controller;
+
+/* Java related packets */
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/* Spring related packets */
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/* RobotSim related packets */
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.simulation.SimulationClock;
+
+/**
+ * Runs the active simulations of the service on a bounded pool of worker threads.
+ *
+ * Each simulation is a single task which runs the ticks that are due, at most tickBudget of them
+ * in a row, then schedules itself again for its next tick. A task never waits for its next tick
+ * on a worker thread, and a simulation in batch mode or late on its clock gives its worker back
+ * after its budget, so that the ticks of all the simulations are interleaved fairly.
+ *
+ * Each simulation has at most one task waiting in the pool. When there are more simulations than
+ * workers can keep up with, the real time clocks of the simulations drop the ticks they are too
+ * late for instead of queueing them, and no more than maxSimulations simulations are accepted.
+ */
+@Component
+public class SimulationScheduler {
+
+    private static final Logger LOGGER = Logger.getLogger(SimulationScheduler.class.getName());
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    /* Ticks a simulation may run in a row before letting the other ones run */
+    private final int tickBudget;
+
+    private final int maxSimulations;
+
+    /* Scheduled simulations, by model id */
+    private final ConcurrentMap<String, ScheduledSimulation> simulations = new ConcurrentHashMap<>();
+
+    public SimulationScheduler(@Value("${simulation.scheduler.workers:0}") final int workers,
+                               @Value("${simulation.scheduler.tick-budget:10}") final int tickBudget,
+                               @Value("${simulation.scheduler.max-simulations:64}") final int maxSimulations) {
+        if (tickBudget <= 0) {
+            throw new IllegalArgumentException("Tick budget must be positive.");
+        }
+
+        /* One worker per core unless configured otherwise, ticks are CPU bound */
+        final int poolSize = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+
+        this.executor       = new ScheduledThreadPoolExecutor(poolSize, new WorkerThreadFactory());
+        this.tickBudget     = tickBudget;
+        this.maxSimulations = maxSimulations;
+
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Starts the simulation of the given factory, unless it is already running.
+     *
+     * @return false if the simulation could not be started because the scheduler is full.
+     */
+    public synchronized boolean schedule(final String id,
+                                         final Factory factory) {
+        final ScheduledSimulation scheduled = simulations.get(id);
+
+        if (scheduled == null && simulations.size() >= maxSimulations) {
+            LOGGER.warning("Cannot start simulation " + id + ", " + maxSimulations + " simulations are already running.");
+            return false;
+        }
+
+        /* A stopped simulation whose task did not end yet is simply picked up again by that task */
+        if (!factory.beginSimulation() || scheduled != null) {
+            return true;
+        }
+
+        final ScheduledSimulation simulation = new ScheduledSimulation(id, factory);
+        simulations.put(id, simulation);
+        executor.execute(simulation);
+
+        return true;
+    }
+
+    public int getActiveSimulations() {
+        return simulations.size();
+    }
+
+    public int getMaxSimulations() {
+        return maxSimulations;
+    }
+
+    /* Removes the task of a stopped simulation, unless the simulation was started again meanwhile */
+    private synchronized boolean end(final ScheduledSimulation simulation) {
+        if (simulation.factory.isSimulationStarted()) {
+            return false;
+        }
+
+        simulations.remove(simulation.id, simulation);
+        /* The task ran the ticks, it tells that the simulation stopped */
+        simulation.factory.publishStoppedState();
+
+        return true;
+    }
+
+    @PreDestroy
+    public void close() {
+        simulations.values().forEach(simulation -> simulation.factory.stopSimulation());
+        executor.shutdownNow();
+    }
+
+    private class ScheduledSimulation implements Runnable {
+
+        private final String id;
+
+        private final Factory factory;
+
+        /* The clock already gave the next tick but the budget of the last run was spent */
+        private boolean tickDue;
+
+        private ScheduledSimulation(final String id,
+                                    final Factory factory) {
+            this.id      = id;
+            this.factory = factory;
+
+            /* The first tick starts right away */
+            this.tickDue = true;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (runTicks()) {
+                    return;
+                }
+            } catch (RuntimeException ex) {
+                LOGGER.severe("Simulation " + id + " failed: " + ex.getMessage());
+                factory.stopSimulation();
+            }
+
+            if (!end(this)) {
+                executor.execute(this);
+            }
+        }
+
+        /* Runs the due ticks, returns true if the simulation was scheduled again */
+        private boolean runTicks() {
+            final SimulationClock clock = factory.getSimulationClock();
+            int ticks = 0;
+
+            while (factory.isSimulationStarted()) {
+                if (!tickDue) {
+                    final long waitNanos = clock.tryNextTick();
+
+                    if (waitNanos < 0) {
+                        /* The clock ran out of ticks, e.g. in batch mode once the simulated duration is over */
+                        factory.stopSimulation();
+                        return false;
+                    }
+
+                    if (waitNanos > 0) {
+                        executor.schedule(this, waitNanos, TimeUnit.NANOSECONDS);
+                        return true;
+                    }
+
+                    tickDue = true;
+                }
+
+                if (ticks == tickBudget) {
+                    /* Let the other simulations run, this one is queued behind them */
+                    executor.execute(this);
+                    return true;
+                }
+
+                tickDue = false;
+                factory.behave();
+                /* The clock then gives the tick following the idle ones later */
+                factory.skipIdleTicks();
+                ticks++;
+            }
+
+            return false;
+        }
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threads = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "simulation-worker-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -13,10 +13,11 @@ import org.springframework.web.client.RestTemplate;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Logger;
-import javax.swing.SwingUtilities;
 
 /* RobotSim related packets */
 import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.FactoryDelta;
+import fr.tp.inf112.projects.robotsim.model.FactorySnapshot;
 import fr.tp.inf112.projects.robotsim.model.PersistenceClient;
 import fr.tp.inf112.projects.robotsim.model.FactoryModelChangedNotifier;
 
@@ -30,7 +31,25 @@ public class SimulationService {
     private PersistenceClient persistenceClient = null;
 
     @Autowired /* Attribute obtained from Config Bean */
-    private KafkaTemplate<String, Factory> simulationEventTemplate;
+    private KafkaTemplate<String, FactorySnapshot> simulationEventTemplate;
+
+    @Autowired /* Attribute obtained from Config Bean, publishes the per-tick deltas */
+    private KafkaTemplate<String, FactoryDelta> deltaEventTemplate;
+
+    @Autowired /* Attribute obtained from Config Bean, partitions and keys of the topics */
+    private KafkaTopicSettings topicSettings;
+
+    @Autowired /* Creates the topics of the simulations, shared by all the notifiers */
+    private SimulationTopicManager topicManager;
+
+    @Autowired /* Pushes the changes of the simulations to the stream clients */
+    private SimulationStreamHub streamHub;
+
+    @Autowired /* Runs the ticks of all the active simulations on a bounded pool of threads */
+    private SimulationScheduler simulationScheduler;
+
+    @Autowired /* Engine running the ticks of each simulation */
+    private SimulationEngineSettings engineSettings;
 
     public SimulationService(@Value("${persistence.addr}") String persistanceAddr, @Value("${persistence.port}") int persistancePort) {
         // ensure trailing slash for simple concatenation
@@ -48,7 +67,9 @@ public class SimulationService {
         if (activeSimulations.containsKey(id)) {
             logger.info("Model ID: " + id + " already loaded. Attempting to start simulation.");
             try {
-                activeSimulations.get(id).startSimulation();
+                if (!simulationScheduler.schedule(id, activeSimulations.get(id))) {
+                    return false;
+                }
                 logger.info("Simulation for model ID: " + id + " started successfully.");
                 return true;
             } catch (Exception e) {
@@ -66,20 +87,14 @@ public class SimulationService {
             }
             logger.info("Successfully fetched model ID: " + id + " from persistence server.");
 
-            /* Set notifier of factory class to KafkaFactoryModelChangeNotifier */
-            final FactoryModelChangedNotifier notifier =
-                new KafkaFactoryModelChangeNotifier(factory, simulationEventTemplate);
-            factory.setNotifier(notifier);
-
-            /* Do not block the springboot app */
-            SwingUtilities.invokeLater(new Runnable() {
-                @Override
-                public void run() {
-                    factory.startSimulation();
-                }
-            });
+            prepare(factory);
 
+            /* Keep the model even if the scheduler is full, so that it can be retrieved and started later */
             activeSimulations.put(id, factory);
+            if (!simulationScheduler.schedule(id, factory)) {
+                return false;
+            }
+
             logger.info("Simulation for model ID: " + id + " started successfully after fetching.");
             return true;
 
@@ -109,10 +124,7 @@ public class SimulationService {
             }
             logger.info("Successfully fetched model ID: " + id + " from persistence server.");
 
-            /* Set notifier of factory class to KafkaFactoryModelChangeNotifier */
-            final FactoryModelChangedNotifier notifier =
-                new KafkaFactoryModelChangeNotifier(factory, simulationEventTemplate);
-            factory.setNotifier(notifier);
+            prepare(factory);
 
             activeSimulations.put(id, factory);
             return factory;
@@ -123,6 +135,18 @@ public class SimulationService {
         }
     }
 
+    /* Publishes the changes of a fetched factory to Kafka and sets how its ticks are run */
+    private void prepare(final Factory factory) {
+        final FactoryModelChangedNotifier notifier =
+            new KafkaFactoryModelChangeNotifier(factory, simulationEventTemplate, deltaEventTemplate,
+                                             topicSettings, topicManager, streamHub);
+        factory.setNotifier(notifier);
+        engineSettings.configure(factory);
+
+        /* No simulation runs yet, the snapshot of the fetched factory can be published from here */
+        factory.publishStoppedState();
+    }
+
     /**
      * Stop simulation for given id. Returns true if stopped, false if not found or error.
      */
@@ -0,0 +1,297 @@
+package com.example.controller;
+
+/* Java related packets */
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/* Spring related packets */
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+
+/* Reactor related packets */
+import reactor.core.publisher.Flux;
+
+/* RobotSim related packets */
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.FactoryDelta;
+import fr.tp.inf112.projects.robotsim.model.FactoryJsonCodec;
+import fr.tp.inf112.projects.robotsim.model.FactorySnapshot;
+
+/**
+ * Pushes the changes of the simulated factories to the clients of the stream endpoint as
+ * Server-Sent Events.
+ *
+ * A stream starts with a "keyframe" event holding the whole factory, followed by "delta" events.
+ * The id of each event is the tick of the simulation it describes. The deltas published while a
+ * frame is pending are merged into it, and frames are sent at most maxFps times per second and
+ * only when the client asks for more. A slow client thus skips intermediate states instead of
+ * buffering them. Structural changes, which deltas cannot describe, send a new keyframe. The deltas
+ * published while a keyframe is due are kept as well, and sent after it if they are more recent than
+ * the snapshot it was taken from.
+ *
+ * The deltas of the last CHANGE_LOG_TICKS ticks of each factory are also kept, so that a client
+ * polling the retrieve endpoint is only sent what changed since the tick it holds, and can wait
+ * for the next change instead of polling again.
+ */
+@Component
+public class SimulationStreamHub {
+
+    public static final String KEYFRAME_EVENT = "keyframe";
+
+    public static final String DELTA_EVENT = "delta";
+
+    public static final int DEFAULT_MAX_FPS = 20;
+
+    private static final int MAX_FPS = 60;
+
+    private static final int CHANGE_LOG_TICKS = 256;
+
+    /* Streams of each factory, by factory id */
+    private final ConcurrentMap<String, Set<FactoryStream>> streams = new ConcurrentHashMap<>();
+
+    /* Recent changes of each factory, by factory id */
+    private final ConcurrentMap<String, ChangeLog> changeLogs = new ConcurrentHashMap<>();
+
+    /**
+     * Opens a stream of the changes of the given factory.
+     *
+     * @param maxFps maximum number of events per second, clamped to [1, MAX_FPS].
+     */
+    public Flux<ServerSentEvent<String>> stream(final Factory factory,
+                                                final int maxFps) {
+        final Duration framePeriod = Duration.ofMillis(1000 / Math.max(1, Math.min(maxFps, MAX_FPS)));
+
+        return Flux.defer(() -> {
+            final FactoryStream stream = new FactoryStream(factory);
+            streams.computeIfAbsent(factory.getId(), id -> ConcurrentHashMap.newKeySet()).add(stream);
+
+            return Flux.interval(Duration.ZERO, framePeriod)
+                /* Frames the client is not ready for are skipped, their changes stay pending */
+                .onBackpressureDrop()
+                .<ServerSentEvent<String>>handle((frame, sink) -> {
+                    final ServerSentEvent<String> event = stream.nextEvent();
+                    if (event != null) {
+                        sink.next(event);
+                    }
+                })
+                .doFinally(signal -> remove(factory.getId(), stream));
+        });
+    }
+
+    /**
+     * Publishes a change of the factory with the given id to its streams.
+     *
+     * @param delta the components changed by a tick, null for a structural change.
+     */
+    public void publish(final String factoryId,
+                        final FactoryDelta delta) {
+        changeLogs.computeIfAbsent(factoryId, id -> new ChangeLog()).record(delta);
+
+        final Set<FactoryStream> factoryStreams = streams.get(factoryId);
+        if (factoryStreams == null) {
+            return;
+        }
+
+        for (final FactoryStream stream : factoryStreams) {
+            stream.offer(delta);
+        }
+    }
+
+    /**
+     * Retrieves the deltas of the ticks of the factory with the given id after the given one.
+     *
+     * @return null if they are not all logged, the tick being too old, unknown or followed by a
+     *         structural change, and an empty list if nothing changed.
+     */
+    public List<FactoryDelta> changesSince(final String factoryId,
+                                           final long tick) {
+        final ChangeLog changeLog = changeLogs.get(factoryId);
+
+        return changeLog == null ? null : changeLog.changesSince(tick);
+    }
+
+    /**
+     * Waits for the next change of the factory with the given id. The future is completed by the
+     * simulation thread and must be cancelled with cancelAwait if it is not waited for anymore.
+     */
+    public CompletableFuture<Void> awaitChange(final String factoryId) {
+        return changeLogs.computeIfAbsent(factoryId, id -> new ChangeLog()).await();
+    }
+
+    public void cancelAwait(final String factoryId,
+                            final CompletableFuture<Void> change) {
+        final ChangeLog changeLog = changeLogs.get(factoryId);
+        if (changeLog != null) {
+            changeLog.cancel(change);
+        }
+    }
+
+    private void remove(final String factoryId,
+                        final FactoryStream stream) {
+        streams.computeIfPresent(factoryId, (id, factoryStreams) -> {
+            factoryStreams.remove(stream);
+            return factoryStreams.isEmpty() ? null : factoryStreams;
+        });
+    }
+
+    /* Recent changes of a factory, and the requests waiting for the next one */
+    private static final class ChangeLog {
+
+        private static final long NONE = Long.MAX_VALUE;
+
+        /* Non empty deltas of the logged ticks, oldest first */
+        private final ArrayDeque<FactoryDelta> deltas = new ArrayDeque<>();
+
+        /* First and last logged ticks, none until a delta follows a structural change */
+        private long firstTick = NONE;
+
+        private long lastTick = NONE;
+
+        private final List<CompletableFuture<Void>> waiters = new ArrayList<>();
+
+        void record(final FactoryDelta delta) {
+            final List<CompletableFuture<Void>> changed;
+
+            synchronized (this) {
+                if (delta == null) {
+                    deltas.clear();
+                    firstTick = NONE;
+                    lastTick  = NONE;
+                }
+                else {
+                    if (firstTick == NONE) {
+                        firstTick = delta.getTick();
+                    }
+                    lastTick = delta.getTick();
+
+                    if (delta.size() > 0) {
+                        deltas.addLast(delta);
+
+                        while (lastTick - deltas.peekFirst().getTick() >= CHANGE_LOG_TICKS) {
+                            firstTick = deltas.removeFirst().getTick() + 1;
+                        }
+                    }
+                }
+
+                if (waiters.isEmpty() || (delta != null && delta.size() == 0)) {
+                    return;
+                }
+
+                changed = new ArrayList<>(waiters);
+                waiters.clear();
+            }
+
+            /* Outside of the lock, the waiters may go on on this thread */
+            for (final CompletableFuture<Void> waiter : changed) {
+                waiter.complete(null);
+            }
+        }
+
+        synchronized List<FactoryDelta> changesSince(final long tick) {
+            if (firstTick == NONE || tick < firstTick - 1 || tick > lastTick) {
+                return null;
+            }
+
+            final List<FactoryDelta> changes = new ArrayList<>();
+            final Iterator<FactoryDelta> newestFirst = deltas.descendingIterator();
+
+            while (newestFirst.hasNext()) {
+                final FactoryDelta delta = newestFirst.next();
+                if (delta.getTick() <= tick) {
+                    break;
+                }
+                changes.add(0, delta);
+            }
+
+            return changes;
+        }
+
+        synchronized CompletableFuture<Void> await() {
+            final CompletableFuture<Void> change = new CompletableFuture<>();
+            waiters.add(change);
+
+            return change;
+        }
+
+        synchronized void cancel(final CompletableFuture<Void> change) {
+            waiters.remove(change);
+        }
+    }
+
+    /* Changes of a factory not sent yet to one client */
+    private static final class FactoryStream {
+
+        private final Factory factory;
+
+        /* The next event is a keyframe, when the stream starts and after a structural change */
+        private boolean keyframeDue = true;
+
+        /* Tick of the last keyframe sent, deltas computed before it are outdated */
+        private long keyframeTick = -1;
+
+        /* Changes since the last event or the last structural change, merged */
+        private FactoryDelta pendingDelta;
+
+        private FactoryStream(final Factory factory) {
+            this.factory = factory;
+        }
+
+        synchronized void offer(final FactoryDelta delta) {
+            if (delta == null) {
+                keyframeDue  = true;
+                pendingDelta = null;
+            }
+            else if (delta.size() > 0 && (keyframeDue || delta.getTick() > keyframeTick)) {
+                pendingDelta = pendingDelta == null ? delta : FactoryDelta.merge(List.of(pendingDelta, delta));
+            }
+        }
+
+        /* Event holding the pending changes, null if there are none */
+        synchronized ServerSentEvent<String> nextEvent() {
+            try {
+                if (keyframeDue) {
+                    keyframeDue = false;
+
+                    /* The factory is changed by the simulation thread, its snapshot can be read safely */
+                    final FactorySnapshot snapshot = factory.getSnapshot();
+                    final Factory keyframe = snapshot != null ? snapshot.getFactory() : factory;
+
+                    keyframeTick = snapshot != null ? snapshot.getTick() : factory.getTickCount() - 1;
+
+                    /* Changes of ticks after the snapshot are sent next, reapplying older entries is harmless */
+                    if (pendingDelta != null && pendingDelta.getTick() <= keyframeTick) {
+                        pendingDelta = null;
+                    }
+
+                    return ServerSentEvent.builder(FactoryJsonCodec.writeFactory(keyframe))
+                        .event(KEYFRAME_EVENT)
+                        .id(Long.toString(keyframeTick))
+                        .build();
+                }
+
+                if (pendingDelta == null) {
+                    return null;
+                }
+
+                final FactoryDelta delta = pendingDelta;
+                pendingDelta = null;
+
+                return ServerSentEvent.builder(FactoryJsonCodec.writeDelta(delta))
+                    .event(DELTA_EVENT)
+                    .id(Long.toString(delta.getTick()))
+                    .build();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.controller;
+
+/* Java related packets */
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/* Kafka related packets */
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.config.TopicConfig;
+import org.apache.kafka.common.errors.TopicExistsException;
+
+/* Spring related packets */
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+/* RobotSim related packets */
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.SimulationServiceUtils;
+
+/**
+ * Creates the Kafka topics of the simulations, shared by all the notifiers of the service.
+ *
+ * A single admin client is kept for the lifetime of the service. Topics are requested without
+ * blocking the caller: requests arriving within BATCH_DELAY of each other are sent to the broker as
+ * one batch, and each topic is only requested once, later callers get the future of the first
+ * request. A failed creation is forgotten so that the next request retries it.
+ */
+@Component
+public class SimulationTopicManager {
+
+    private static final Logger LOGGER = Logger.getLogger(SimulationTopicManager.class.getName());
+
+    /* Time during which topic requests are gathered before being sent to the broker */
+    private static final long BATCH_DELAY_MS = 20;
+
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(5);
+
+    private final KafkaTopicSettings topicSettings;
+
+    /* Topics created or being created, by name */
+    private final ConcurrentMap<String, CompletableFuture<Void>> topics = new ConcurrentHashMap<>();
+
+    /* Topics waiting for the next batch */
+    private final Queue<PendingTopic> pendingTopics = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean batchScheduled = new AtomicBoolean();
+
+    /* Single thread sending the batches, so the admin client is only used from there */
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "simulation-topic-manager");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private AdminClient admin;
+
+    public SimulationTopicManager(final KafkaTopicSettings topicSettings) {
+        this.topicSettings = topicSettings;
+    }
+
+    /**
+     * Requests the delta and keyframe topics of the given factory.
+     *
+     * @return a future completed once both topics exist
+     */
+    public CompletableFuture<Void> ensureTopics(final Factory factory) {
+        /* Deltas are only useful until the next keyframe, they do not need to be kept long */
+        final NewTopic deltaTopic = new NewTopic(SimulationServiceUtils.getTopicName(factory),
+                                                 topicSettings.getPartitions(),
+                                                 topicSettings.getReplicationFactor())
+            .configs(Map.of(TopicConfig.RETENTION_MS_CONFIG, Long.toString(topicSettings.getDeltaRetentionMs())));
+
+        /* Only the latest keyframe of the factory needs to be kept, under a single key */
+        final NewTopic keyframeTopic = new NewTopic(SimulationServiceUtils.getKeyframeTopicName(factory), 1,
+                                                    topicSettings.getReplicationFactor())
+            .configs(Map.of(TopicConfig.CLEANUP_POLICY_CONFIG, TopicConfig.CLEANUP_POLICY_COMPACT));
+
+        return CompletableFuture.allOf(ensureTopic(deltaTopic), ensureTopic(keyframeTopic));
+    }
+
+    /**
+     * Requests the given topic, unless it was already requested.
+     *
+     * @return a future completed once the topic exists
+     */
+    public CompletableFuture<Void> ensureTopic(final NewTopic topic) {
+        final CompletableFuture<Void> created = new CompletableFuture<>();
+        final CompletableFuture<Void> known = topics.putIfAbsent(topic.name(), created);
+        if (known != null) {
+            return known;
+        }
+
+        pendingTopics.add(new PendingTopic(topic, created));
+        if (batchScheduled.compareAndSet(false, true)) {
+            executor.schedule(this::createPendingTopics, BATCH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+
+        return created;
+    }
+
+    private void createPendingTopics() {
+        /* Requests added from now on go to the next batch */
+        batchScheduled.set(false);
+
+        final List<PendingTopic> batch = new ArrayList<>();
+        PendingTopic pendingTopic;
+        while ((pendingTopic = pendingTopics.poll()) != null) {
+            batch.add(pendingTopic);
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            final Map<String, KafkaFuture<Void>> results =
+                getAdmin().createTopics(batch.stream().map(PendingTopic::topic).toList()).values();
+
+            for (final PendingTopic requested : batch) {
+                results.get(requested.topic().name()).toCompletionStage()
+                    .whenComplete((result, ex) -> complete(requested, ex));
+            }
+        } catch (RuntimeException ex) {
+            batch.forEach(requested -> complete(requested, ex));
+        }
+    }
+
+    private void complete(final PendingTopic requested, final Throwable ex) {
+        final Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+
+        /* A topic created by an earlier run of the service is just as good */
+        if (cause == null || cause instanceof TopicExistsException) {
+            requested.created().complete(null);
+            return;
+        }
+
+        LOGGER.severe("Failed to create Kafka topic " + requested.topic().name() + ": " + cause.getMessage());
+        topics.remove(requested.topic().name(), requested.created());
+        requested.created().completeExceptionally(cause);
+    }
+
+    private AdminClient getAdmin() {
+        if (admin == null) {
+            admin = AdminClient.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG,
+                                              topicSettings.getBootstrapServers()));
+        }
+
+        return admin;
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdown();
+
+        try {
+            executor.awaitTermination(CLOSE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (admin != null) {
+            admin.close(CLOSE_TIMEOUT);
+        }
+    }
+
+    private record PendingTopic(NewTopic topic, CompletableFuture<Void> created) {
+    }
+}
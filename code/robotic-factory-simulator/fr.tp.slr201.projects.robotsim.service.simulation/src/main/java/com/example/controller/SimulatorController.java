@@ -1,10 +1,22 @@
 package com.example.controller;
 
 /* Spring related packages */
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+/* Reactor related packages */
+import reactor.core.publisher.Flux;
 
 /* Java related packages */
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.*;
 
 /* Robotsim related packages */
@@ -14,11 +26,16 @@ import fr.tp.inf112.projects.robotsim.model.*;
 @RequestMapping("/simulation")
 public class SimulatorController {
 
+    /* Longest time a retrieve request is held waiting for a change */
+    private static final long MAX_WAIT_MILLIS = 30000;
+
     private SimulationService service;
+    private SimulationStreamHub streamHub;
     private static final Logger logger = Logger.getLogger(SimulatorController.class.getName());
 
-	public SimulatorController(SimulationService service) {
+	public SimulatorController(SimulationService service, SimulationStreamHub streamHub) {
         this.service = service;
+        this.streamHub = streamHub;
     }
 
     /*  Start simulating a factory model as identified by its ID.
@@ -48,9 +65,17 @@ public class SimulatorController {
 
     /* Retrieve a factory model currently being simulated as identified by its ID passed as a
        parameter. This method will be used later by the factory viewer to obtain the
-       simulated model at a given period to be displayed by the viewer showing the fresh model. */
+       simulated model at a given period to be displayed by the viewer showing the fresh model.
+
+       The factory is sent with its tick and an ETag. A client sending the ETag back in
+       If-None-Match is answered 304 if the factory did not change, and a client giving the tick it
+       holds as since is only sent the delta of the ticks after it, while they are logged. With
+       wait, the request is held until there is something new or wait milliseconds elapsed. */
     @GetMapping("/retrieve/{id}")
-    public ResponseEntity<?> retrieve(@PathVariable String id) {
+    public DeferredResult<ResponseEntity<?>> retrieve(@PathVariable String id,
+            @RequestParam(required = false) Long since,
+            @RequestParam(defaultValue = "0") long wait,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         boolean response = false;
         Factory factory  = null;
 
@@ -60,11 +85,146 @@ public class SimulatorController {
 
         if (factory == null) {
             logger.info("No factory found for model ID: " + id);
-            return ResponseEntity.ok(response);
+            final DeferredResult<ResponseEntity<?>> result = new DeferredResult<>();
+            result.setResult(ResponseEntity.ok(response));
+            return result;
+        }
+
+        return retrieveVersioned(factory, since, wait, ifNoneMatch, false);
+    }
+
+    /* Same as retrieve, for the clients accepting the compact binary format of the factories */
+    @GetMapping(value = "/retrieve/{id}", produces = FactoryBinaryCodec.MEDIA_TYPE)
+    public DeferredResult<ResponseEntity<?>> retrieveBinary(@PathVariable String id,
+            @RequestParam(required = false) Long since,
+            @RequestParam(defaultValue = "0") long wait,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        logger.info("Received request to retrieve binary simulation for model ID: " + id);
+        final Factory factory = service.getSimulatedModel(id);
+
+        if (factory == null) {
+            logger.info("No factory found for model ID: " + id);
+            final DeferredResult<ResponseEntity<?>> result = new DeferredResult<>();
+            result.setResult(ResponseEntity.notFound().build());
+            return result;
+        }
+
+        return retrieveVersioned(factory, since, wait, ifNoneMatch, true);
+    }
+
+    /* Answers at once if the client does not hold the current version of the factory or does not
+       wait, else when the factory changes. The waiting request holds no thread. */
+    private DeferredResult<ResponseEntity<?>> retrieveVersioned(final Factory factory,
+                                                                final Long since,
+                                                                final long wait,
+                                                                final String ifNoneMatch,
+                                                                final boolean binary) {
+        final long waitMillis = Math.max(0, Math.min(wait, MAX_WAIT_MILLIS));
+        final DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(waitMillis > 0 ? waitMillis : null);
+
+        /* Waiting before looking at the factory, so that no change is missed in between */
+        final CompletableFuture<Void> change = waitMillis > 0 ? streamHub.awaitChange(factory.getId()) : null;
+
+        final ResponseEntity<?> current = changedFactory(factory, since, ifNoneMatch, binary);
+        if (current != null || change == null) {
+            if (change != null) {
+                streamHub.cancelAwait(factory.getId(), change);
+            }
+            result.setResult(current != null ? current : notModified());
+            return result;
+        }
+
+        result.onTimeout(() -> result.setResult(notModified()));
+        result.onCompletion(() -> streamHub.cancelAwait(factory.getId(), change));
+
+        /* Answered off the simulation thread, which completes the change */
+        change.thenRunAsync(() -> {
+            final ResponseEntity<?> changed = changedFactory(factory, since, ifNoneMatch, binary);
+            result.setResult(changed != null ? changed : notModified());
+        });
+
+        return result;
+    }
+
+    /* The delta since the given tick if it is logged, else the factory, null if the client holds
+       the current version */
+    private ResponseEntity<?> changedFactory(final Factory factory,
+                                             final Long since,
+                                             final String ifNoneMatch,
+                                             final boolean binary) {
+        if (since != null) {
+            final List<FactoryDelta> changes = streamHub.changesSince(factory.getId(), since);
+
+            if (changes != null) {
+                if (changes.isEmpty()) {
+                    return null;
+                }
+
+                final FactoryDelta delta = FactoryDelta.merge(changes);
+                try {
+                    return ResponseEntity.ok()
+                        .header(FactorySnapshot.TICK_HEADER, Long.toString(delta.getTick()))
+                        .contentType(MediaType.parseMediaType(FactoryJsonCodec.DELTA_MEDIA_TYPE))
+                        .body(FactoryJsonCodec.writeDelta(delta));
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        }
+
+        /* Serialize the state of the last tick, not the factory the simulation is changing */
+        final FactorySnapshot snapshot = factory.getSnapshot();
+        if (snapshot == null) {
+            /* Published when the factory is loaded, missing only if it cannot be encoded */
+            logger.warning("No snapshot of factory model ID: " + factory.getId());
+            return ResponseEntity.status(binary ? HttpStatus.NOT_ACCEPTABLE : HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+
+        if (matches(ifNoneMatch, snapshot.getETag())) {
+            return null;
+        }
+
+        logger.info("Returning factory for model ID: " + factory.getId());
+        return ResponseEntity.ok()
+            .eTag(snapshot.getETag())
+            .header(FactorySnapshot.TICK_HEADER, Long.toString(snapshot.getTick()))
+            .body(binary ? snapshot.getImage() : snapshot.getFactory());
+    }
+
+    private static boolean matches(final String ifNoneMatch, final String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+
+        for (final String tag : ifNoneMatch.split(",")) {
+            final String trimmed = tag.trim();
+            if (trimmed.equals("*") || trimmed.equals(eTag) || trimmed.equals("W/" + eTag)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static ResponseEntity<?> notModified() {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+    }
+
+    /* Push the changes of a simulated factory model as Server-Sent Events: a keyframe holding the
+       whole factory, then the deltas of the ticks, merged so that at most maxFps events are sent
+       per second and a slow client skips intermediate states instead of falling behind. */
+    @GetMapping(value = "/stream/{id}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<String>>> stream(@PathVariable String id,
+            @RequestParam(defaultValue = "" + SimulationStreamHub.DEFAULT_MAX_FPS) int maxFps) {
+        logger.info("Received request to stream simulation for model ID: " + id);
+        final Factory factory = service.getSimulatedModel(id);
+
+        if (factory == null) {
+            logger.info("No factory found for model ID: " + id);
+            return ResponseEntity.notFound().build();
         }
 
-        logger.info("Returning factory for model ID: " + id);
-        return ResponseEntity.ok(factory);
+        return ResponseEntity.ok(streamHub.stream(factory, maxFps));
     }
 
     /* Stop the simulation of a robotic factory model as identified by its ID passed as parameter.
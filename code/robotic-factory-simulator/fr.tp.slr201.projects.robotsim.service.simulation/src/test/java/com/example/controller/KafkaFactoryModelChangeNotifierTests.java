@@ -0,0 +1,88 @@
+package com.example.controller;
+
+/* Java related packets */
+import java.util.concurrent.CompletableFuture;
+
+/* JUnit related packets */
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/* Mockito related packets */
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/* Kafka related packets */
+import org.apache.kafka.common.KafkaException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.messaging.Message;
+
+/* RobotSim related packets */
+import fr.tp.inf112.projects.robotsim.model.Battery;
+import fr.tp.inf112.projects.robotsim.model.ChargingStation;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.FactoryDelta;
+import fr.tp.inf112.projects.robotsim.model.FactorySnapshot;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.path.AStarFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+/**
+ * Checks that a record the broker failed to store is made up for by the next keyframe.
+ */
+class KafkaFactoryModelChangeNotifierTests {
+
+    private Factory factory;
+
+    private KafkaTemplate<String, FactorySnapshot> keyframeTemplate;
+
+    private KafkaTemplate<String, FactoryDelta> deltaTemplate;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void createFactory() {
+        factory = new Factory(100, 100, "Failing Broker Test Factory");
+        factory.setId("Failing_Broker_Test_Factory.factory");
+
+        final ChargingStation station1 = new ChargingStation(factory, new RectangularShape(10, 80, 10, 10), "Station 1");
+        final ChargingStation station2 = new ChargingStation(factory, new RectangularShape(80, 80, 10, 10), "Station 2");
+        final Robot robot = new Robot(factory, new AStarFactoryPathFinder(factory, 5),
+                                      new CircularShape(5, 5, 2), new Battery(10), "Robot 1");
+        robot.addTargetComponent(station1);
+        robot.addTargetComponent(station2);
+
+        final SimulationTopicManager topicManager = mock(SimulationTopicManager.class);
+        when(topicManager.ensureTopics(factory)).thenReturn(CompletableFuture.completedFuture(null));
+
+        keyframeTemplate = mock(KafkaTemplate.class);
+        deltaTemplate = mock(KafkaTemplate.class);
+        when(deltaTemplate.send(any(Message.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        factory.setNotifier(new KafkaFactoryModelChangeNotifier(factory, keyframeTemplate, deltaTemplate,
+                                                                new KafkaTopicSettings("localhost:9092", 1, (short) 1, false, 600000),
+                                                                topicManager, new SimulationStreamHub()));
+        factory.publishStoppedState();
+    }
+
+    @Test
+    void testKeyframeRepublishedAfterFailedSend() {
+        when(keyframeTemplate.send(any(Message.class)))
+            .thenReturn(CompletableFuture.failedFuture(new KafkaException("Broker unavailable")))
+            .thenReturn(CompletableFuture.completedFuture(null));
+
+        /* The keyframe of the start of the simulation is lost */
+        factory.beginSimulation();
+        factory.behave();
+        verify(keyframeTemplate, times(1)).send(any(Message.class));
+
+        /* The next change is published as a keyframe again, then as deltas */
+        factory.behave();
+        verify(keyframeTemplate, times(2)).send(any(Message.class));
+
+        factory.behave();
+        verify(keyframeTemplate, times(2)).send(any(Message.class));
+    }
+}
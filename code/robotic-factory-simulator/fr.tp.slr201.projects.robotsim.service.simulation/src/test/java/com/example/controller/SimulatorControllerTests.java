@@ -0,0 +1,169 @@
+package com.example.controller;
+
+/* Java related packets */
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* JUnit related packets */
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/* Mockito related packets */
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/* Spring related packets */
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+
+/* RobotSim related packets */
+import fr.tp.inf112.projects.canvas.controller.Observer;
+import fr.tp.inf112.projects.robotsim.model.Battery;
+import fr.tp.inf112.projects.robotsim.model.ChargingStation;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.FactoryChange;
+import fr.tp.inf112.projects.robotsim.model.FactoryModelChangedNotifier;
+import fr.tp.inf112.projects.robotsim.model.FactorySnapshot;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.path.AStarFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+/**
+ * Checks that a retrieve request waiting for a change is answered with the tick which woke it up.
+ */
+class SimulatorControllerTests {
+
+    private static final String FACTORY_ID = "Waiting_Test_Factory.factory";
+
+    private static final long WAIT_MILLIS = 5000;
+
+    /* Time the simulation thread keeps on notifying after the stream hub, as when sending to Kafka */
+    private static final long NOTIFY_MILLIS = 200;
+
+    private Factory factory;
+
+    private SimulatorController controller;
+
+    @BeforeEach
+    void createFactory() {
+        factory = new Factory(100, 100, "Waiting Test Factory");
+        factory.setId(FACTORY_ID);
+
+        final ChargingStation station1 = new ChargingStation(factory, new RectangularShape(10, 80, 10, 10), "Station 1");
+        final ChargingStation station2 = new ChargingStation(factory, new RectangularShape(80, 80, 10, 10), "Station 2");
+        final Robot robot = new Robot(factory, new AStarFactoryPathFinder(factory, 5),
+                                      new CircularShape(5, 5, 2), new Battery(10), "Robot 1");
+        robot.addTargetComponent(station1);
+        robot.addTargetComponent(station2);
+
+        final SimulationStreamHub streamHub = new SimulationStreamHub();
+        factory.setNotifier(new StreamHubNotifier(factory, streamHub));
+
+        final SimulationService service = mock(SimulationService.class);
+        when(service.getSimulatedModel(FACTORY_ID)).thenReturn(factory);
+        controller = new SimulatorController(service, streamHub);
+
+        factory.publishStoppedState();
+        factory.beginSimulation();
+
+        /* The first tick holds the start of the simulation, the deltas are logged from the second one */
+        factory.behave();
+        factory.behave();
+    }
+
+    /* The snapshot is published before the change is notified, so a poll holding the previous
+       version is not answered as if nothing changed */
+    @Test
+    void testWokenPollReturnsNewTick() throws Exception {
+        final FactorySnapshot previous = factory.getSnapshot();
+        final DeferredResult<ResponseEntity<?>> result = controller.retrieve(FACTORY_ID, null, WAIT_MILLIS, previous.getETag());
+        assertFalse(result.hasResult());
+
+        factory.behave();
+
+        final ResponseEntity<?> response = awaitResult(result);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(Long.toString(previous.getTick() + 1), response.getHeaders().getFirst(FactorySnapshot.TICK_HEADER));
+    }
+
+    @Test
+    void testWokenDeltaPollReturnsNewTick() throws Exception {
+        final long since = factory.getSnapshot().getTick();
+        final DeferredResult<ResponseEntity<?>> result = controller.retrieve(FACTORY_ID, since, WAIT_MILLIS, null);
+        assertFalse(result.hasResult());
+
+        factory.behave();
+
+        final ResponseEntity<?> response = awaitResult(result);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(Long.toString(since + 1), response.getHeaders().getFirst(FactorySnapshot.TICK_HEADER));
+    }
+
+    /* The answer is set off the simulation thread */
+    private static ResponseEntity<?> awaitResult(final DeferredResult<ResponseEntity<?>> result) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WAIT_MILLIS);
+
+        while (!result.hasResult() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(result.hasResult());
+        return (ResponseEntity<?>) result.getResult();
+    }
+
+    /* Publishes the changes of the factory to the stream hub as the Kafka notifier does */
+    private static final class StreamHubNotifier implements FactoryModelChangedNotifier {
+
+        private final Factory factory;
+
+        private final SimulationStreamHub streamHub;
+
+        StreamHubNotifier(final Factory factory,
+                          final SimulationStreamHub streamHub) {
+            this.factory = factory;
+            this.streamHub = streamHub;
+        }
+
+        @Override
+        public boolean isSnapshotReader() {
+            return true;
+        }
+
+        @Override
+        public void notifyObservers() {
+            streamHub.publish(factory.getId(), null);
+        }
+
+        @Override
+        public void notifyObservers(final FactoryChange change) {
+            streamHub.publish(factory.getId(), change.isStructural() ? null : factory.createDelta(change));
+
+            /* The woken polls are answered meanwhile */
+            try {
+                Thread.sleep(NOTIFY_MILLIS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public boolean addObserver(final Observer observer) {
+            return false;
+        }
+
+        @Override
+        public boolean removeObserver(final Observer observer) {
+            return false;
+        }
+
+        @Override
+        public List<Observer> getObservers() {
+            return List.of();
+        }
+    }
+}